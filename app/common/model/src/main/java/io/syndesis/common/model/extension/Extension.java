@@ -49,6 +49,7 @@ import io.syndesis.common.util.IndexedProperty;
     @IndexedProperty("extensionId"),
     @IndexedProperty("status")
 })
+@IndexedProperty.Composite({"extensionId", "status"})
 @SuppressWarnings("immutables")
 public interface Extension extends WithId<Extension>, WithActions<Action>, WithName, WithTags, WithProperties, WithDependencies, WithMetadata, WithUsage {
 
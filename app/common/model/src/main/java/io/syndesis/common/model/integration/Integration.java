@@ -22,6 +22,7 @@ import io.syndesis.common.model.validation.AllValidations;
 import io.syndesis.common.model.validation.UniquenessRequired;
 import io.syndesis.common.model.validation.integration.NoDuplicateIntegration;
 import io.syndesis.common.model.validation.integration.ValidLabels;
+import io.syndesis.common.util.IndexedProperty;
 import org.immutables.value.Value;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
@@ -30,6 +31,7 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 @JsonDeserialize(builder = Integration.Builder.class)
 @NoDuplicateIntegration(groups = UniquenessRequired.class)
 @ValidLabels(groups = AllValidations.class)
+@IndexedProperty("flows.steps.connection.id")
 @SuppressWarnings("immutables")
 @Audited
 public interface Integration extends WithId<Integration>, IntegrationBase {
@@ -32,6 +32,7 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
     @IndexedProperty("currentState"),
     @IndexedProperty("targetState")
 })
+@IndexedProperty.Composite({"currentState", "targetState"})
 @Value.Immutable
 @JsonDeserialize(builder = IntegrationDeployment.Builder.class)
 @SuppressWarnings("immutables")
@@ -51,6 +51,24 @@ public interface EventBus {
          * @param data the data associated the the event type
          */
         void onEvent(String event, String data);
+
+        /**
+         * Called when the event bus removes the subscription because the
+         * subscriber didn't keep up with the events delivered to it.
+         */
+        default void onDisconnect() {
+            // nothing to release by default
+        }
+
+        /**
+         * Whether the event bus may drop the events it can't deliver in time
+         * or disconnect the subscription, as for browser clients which reload
+         * what they show when reconnecting. Other subscriptions, the default,
+         * receive every event.
+         */
+        default boolean isLossy() {
+            return false;
+        }
     }
 
     /**
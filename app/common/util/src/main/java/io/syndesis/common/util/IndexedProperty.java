@@ -23,6 +23,11 @@ import static java.lang.annotation.ElementType.ANNOTATION_TYPE;
 import static java.lang.annotation.ElementType.TYPE;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
+/**
+ * Indexes the property of the annotated model in the data store. The property
+ * can be nested, its path given with dots as in {@code flows.steps.connection.id},
+ * each element of arrays along the path is indexed.
+ */
 @Target(TYPE)
 @Retention(RUNTIME)
 @Documented
@@ -36,4 +41,15 @@ public @interface IndexedProperty {
     @interface Multiple {
         IndexedProperty[] value();
     }
+
+    /**
+     * Indexes the properties of the annotated model together, for lookups
+     * matching the values of all of them at once.
+     */
+    @Target(TYPE)
+    @Retention(RUNTIME)
+    @Documented
+    @interface Composite {
+        String[] value();
+    }
 }
@@ -34,6 +34,10 @@ import java.util.function.LongSupplier;
  * You can also consider the generated kys to be like UUIDS except:
  * (1) strictly increment from the generating node's point of view
  * (2) loosely increment based on relative machine time when viewed across nodes.
+ * <p>
+ * The keys of a node are numbered by a single counter, started at a random
+ * value picked per node and incremented without compare and set loop, so
+ * that keys are generated in the order of their creation across threads.
  */
 public final class KeyGenerator {
 
@@ -41,10 +45,11 @@ public final class KeyGenerator {
 
     static LongSupplier clock = DEFAULT_CLOCK;
 
-    private static final AtomicLong LAST_TIMESTAMP = new AtomicLong(clock.getAsLong());
     static byte randomnessByte;
     private static final AtomicLong RANDOMNESS_LONG;
 
+    private static final char[] BASE64_ORDERED = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz".toCharArray();
+
     @SuppressWarnings("boxing")
     private static final Set<Character> BASE64_ORDERED_CHARS = new TreeSet<>(Arrays.asList('-', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J',
         'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z', '_', 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm',
@@ -53,7 +58,8 @@ public final class KeyGenerator {
     static {
         final SecureRandom random = new SecureRandom();
         randomnessByte = (byte) random.nextInt();
-        RANDOMNESS_LONG = new AtomicLong(random.nextLong());
+        // positive, so that the keys only wrap around after 2^63 keys
+        RANDOMNESS_LONG = new AtomicLong(random.nextLong() >>> 1);
     }
 
     private KeyGenerator() {
@@ -65,25 +71,7 @@ public final class KeyGenerator {
     public static String createKey() {
         final long now = clock.getAsLong();
 
-        final ByteBuffer buffer = ByteBuffer.wrap(new byte[8 + 1 + 8]);
-        buffer.putLong(now);
-        buffer.put(randomnessByte);
-
-        buffer.putLong(getRandomPart(now));
-
-        return encodeKey(buffer.array());
-    }
-
-    static long getRandomPart(final long timeStamp) {
-        return RANDOMNESS_LONG.updateAndGet(randomVal -> {
-            long current;
-            do {
-                current = LAST_TIMESTAMP.get();
-                randomVal++;
-            } while (!LAST_TIMESTAMP.compareAndSet(current, timeStamp));
-
-            return randomVal;
-        });
+        return encodeKey(now, randomnessByte, RANDOMNESS_LONG.getAndIncrement());
     }
 
     /**
@@ -107,21 +95,30 @@ public final class KeyGenerator {
      * is encoded into it.
      */
     public static String recreateKey(long timestamp, int random1, long random2) {
-
-        final ByteBuffer buffer = ByteBuffer.wrap(new byte[8 + 1 + 8]);
-        buffer.putLong(timestamp);
-        buffer.put((byte) random1);
-        buffer.putLong(random2);
-
-        return encodeKey(buffer.array());
+        return encodeKey(timestamp, random1, random2);
     }
 
-    private static String encodeKey(byte[] data) {
-        try {
-            return "i" + Base64.encodeBytes(data, 2, 15, Base64.ORDERED) + "z";
-        } catch (final IOException e) {
-            throw new SyndesisServerException(e);
+    /**
+     * Encodes the lower 6 bytes of the timestamp, the random byte and the 8
+     * bytes of the random long with the ordered Base64 alphabet, 20
+     * characters of 6 bits each, in between the prefix and suffix.
+     */
+    private static String encodeKey(long timestamp, int random1, long random2) {
+        // 48 bits of the timestamp and 8 bits of the random byte
+        final long high = (timestamp & 0xFFFF_FFFF_FFFFL) << 8 | (random1 & 0xFF);
+
+        final char[] key = new char[22];
+        key[0] = 'i';
+        for (int i = 0; i < 9; i++) {
+            key[1 + i] = BASE64_ORDERED[(int) (high >>> (50 - 6 * i)) & 0x3F];
+        }
+        key[10] = BASE64_ORDERED[(int) ((high & 0x3) << 4 | random2 >>> 60)];
+        for (int i = 0; i < 10; i++) {
+            key[11 + i] = BASE64_ORDERED[(int) (random2 >>> (54 - 6 * i)) & 0x3F];
         }
+        key[21] = 'z';
+
+        return new String(key);
     }
 
 
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.common.util.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Estimates the weight of values from the average weight of the values of
+ * the same class, computing the weight of the first values of each class and
+ * then of one value in {@code rate}. For weights that are costly to compute,
+ * like the size of the serialized value.
+ */
+public class SampledWeigher implements ToLongFunction<Object> {
+
+    // values of a class weighed before relying on their average
+    private static final int WARM_UP = 8;
+
+    private final ToLongFunction<Object> weigher;
+    private final int rate;
+
+    private final ConcurrentMap<Class<?>, Sample> samples = new ConcurrentHashMap<>();
+
+    private static final class Sample {
+        private final AtomicLong count = new AtomicLong();
+        // updates may race, the average being an estimate anyway
+        private volatile long average;
+    }
+
+    public SampledWeigher(ToLongFunction<Object> weigher, int rate) {
+        this.weigher = weigher;
+        this.rate = rate;
+    }
+
+    @Override
+    public long applyAsLong(Object value) {
+        if (value == null) {
+            return 0;
+        }
+
+        Sample sample = samples.computeIfAbsent(value.getClass(), c -> new Sample());
+        long count = sample.count.getAndIncrement();
+        if (count >= WARM_UP && count % rate != 0) {
+            return sample.average;
+        }
+
+        long weight = weigher.applyAsLong(value);
+        // the average of the first values, then a moving average
+        long weighed = Math.min(count + 1, WARM_UP);
+        long average = sample.average;
+        sample.average = average + (weight - average) / weighed;
+        return weight;
+    }
+}
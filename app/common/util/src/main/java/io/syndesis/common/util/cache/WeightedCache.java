@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.common.util.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * A cache based on {@code ConcurrentHashMap}, reads don't lock. The cache is
+ * bounded by the sum of the weights of its values, when a write exceeds the
+ * maximum weight the least recently used values are evicted until the cache
+ * is back to 90% of the maximum weight. Values can optionally expire a fixed
+ * time after they were written and can be held by soft references.
+ *
+ * The values to evict are picked in a few passes over the map, from the
+ * weights of the values by how long ago they were accessed, without copying
+ * or sorting the entries.
+ *
+ * {@link #keySet()} and {@link #values()} return snapshots.
+ */
+public class WeightedCache<K, V> implements Cache<K, V> {
+
+    // resolution of the access times eviction picks the values by
+    private static final int BUCKETS = 64;
+
+    private final ConcurrentHashMap<K, Node<V>> map = new ConcurrentHashMap<>();
+
+    private final long maximumWeight;
+    private final long timeToLiveNanos;
+    private final ToLongFunction<? super V> weigher;
+    private final boolean soft;
+    private final LongSupplier ticker;
+
+    private final AtomicLong weight = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile BiConsumer<? super K, ? super V> evictionListener = (key, value) -> { };
+
+    private static final class Node<V> {
+        private final Object value;
+        private final long weight;
+        private final long writtenAt;
+        private volatile long accessedAt;
+
+        Node(Object value, long weight, long now) {
+            this.value = value;
+            this.weight = weight;
+            this.writtenAt = now;
+            this.accessedAt = now;
+        }
+
+        @SuppressWarnings("unchecked")
+        V value() {
+            if (value instanceof Reference) {
+                return ((Reference<V>) value).get();
+            }
+            return (V) value;
+        }
+    }
+
+    /**
+     * @param maximumWeight the maximum total weight of the values
+     * @param timeToLive time after which a value expires, or {@code 0} to never expire
+     * @param unit unit of {@code timeToLive}
+     * @param weigher computes the weight of a value, for instance its approximate size
+     * @param soft if the values should be held by soft references
+     */
+    public WeightedCache(long maximumWeight, long timeToLive, TimeUnit unit, ToLongFunction<? super V> weigher, boolean soft) {
+        this(maximumWeight, unit.toNanos(timeToLive), weigher, soft, System::nanoTime);
+    }
+
+    WeightedCache(long maximumWeight, long timeToLiveNanos, ToLongFunction<? super V> weigher, boolean soft, LongSupplier ticker) {
+        this.maximumWeight = maximumWeight;
+        this.timeToLiveNanos = timeToLiveNanos;
+        this.weigher = weigher;
+        this.soft = soft;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Registers a listener invoked with the keys and values the cache
+     * removes by itself, evicted, expired or collected, from the thread
+     * writing to or reading from the cache. The value is {@code null} if it
+     * was collected.
+     */
+    public WeightedCache<K, V> onEviction(BiConsumer<? super K, ? super V> listener) {
+        this.evictionListener = listener;
+        return this;
+    }
+
+    @Override
+    public V get(K key) {
+        Node<V> node = map.get(key);
+        if (node != null) {
+            long now = ticker.getAsLong();
+            V value = node.value();
+            if (value != null && !isExpired(node, now)) {
+                node.accessedAt = now;
+                hits.increment();
+                return value;
+            }
+            if (removeNode(key, node)) {
+                evictionListener.accept(key, value);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns true if the cache holds a value for the key, without counting
+     * as an access.
+     */
+    public boolean containsKey(K key) {
+        Node<V> node = map.get(key);
+        return node != null && isLive(node, ticker.getAsLong());
+    }
+
+    @Override
+    public Set<K> keySet() {
+        long now = ticker.getAsLong();
+        Set<K> keys = new HashSet<>();
+        map.forEach((key, node) -> {
+            if (isLive(node, now)) {
+                keys.add(key);
+            }
+        });
+        return Collections.unmodifiableSet(keys);
+    }
+
+    @Override
+    public Collection<V> values() {
+        long now = ticker.getAsLong();
+        List<V> values = new ArrayList<>(map.size());
+        for (Node<V> node : map.values()) {
+            V value = node.value();
+            if (value != null && !isExpired(node, now)) {
+                values.add(value);
+            }
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        long valueWeight = Math.max(0, weigher.applyAsLong(value));
+        Node<V> node = new Node<>(soft ? new SoftReference<>(value) : value, valueWeight, ticker.getAsLong());
+        Node<V> previous = map.put(key, node);
+        weight.addAndGet(previous == null ? valueWeight : valueWeight - previous.weight);
+
+        if (weight.get() > maximumWeight) {
+            evict();
+        }
+    }
+
+    @Override
+    public V remove(K key) {
+        Node<V> node = map.remove(key);
+        if (node == null) {
+            return null;
+        }
+        weight.addAndGet(-node.weight);
+        return isExpired(node, ticker.getAsLong()) ? null : node.value();
+    }
+
+    @Override
+    public void clear() {
+        for (K key : map.keySet()) {
+            Node<V> node = map.remove(key);
+            if (node != null) {
+                weight.addAndGet(-node.weight);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        long now = ticker.getAsLong();
+        int size = 0;
+        for (Node<V> node : map.values()) {
+            if (isLive(node, now)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public boolean isSoft() {
+        return soft;
+    }
+
+    private void evict() {
+        evictionLock.lock();
+        try {
+            if (weight.get() <= maximumWeight) {
+                return;
+            }
+
+            long now = ticker.getAsLong();
+            long oldest = now;
+            for (Map.Entry<K, Node<V>> entry : map.entrySet()) {
+                Node<V> node = entry.getValue();
+                if (!isLive(node, now)) {
+                    if (removeNode(entry.getKey(), node)) {
+                        evictionListener.accept(entry.getKey(), node.value());
+                    }
+                } else {
+                    oldest = Math.min(oldest, node.accessedAt);
+                }
+            }
+
+            // evict below the maximum so that the following writes don't evict
+            long excess = weight.get() - (maximumWeight - maximumWeight / 10);
+            if (excess <= 0) {
+                return;
+            }
+
+            // the weight of the values by how long ago they were accessed
+            long span = now - oldest + 1;
+            long[] weights = new long[BUCKETS];
+            for (Node<V> node : map.values()) {
+                weights[bucket(node, oldest, span)] += node.weight;
+            }
+
+            // the buckets of the least recently used values are evicted, and
+            // the values of the last one until the excess weight is evicted
+            int cutoff = 0;
+            long older = 0;
+            while (cutoff < BUCKETS - 1 && older + weights[cutoff] < excess) {
+                older += weights[cutoff++];
+            }
+            long fromCutoff = excess - older;
+
+            for (Map.Entry<K, Node<V>> entry : map.entrySet()) {
+                Node<V> node = entry.getValue();
+                int bucket = bucket(node, oldest, span);
+                if (bucket > cutoff || bucket == cutoff && fromCutoff <= 0) {
+                    continue;
+                }
+                if (removeNode(entry.getKey(), node)) {
+                    if (bucket == cutoff) {
+                        fromCutoff -= node.weight;
+                    }
+                    evictions.increment();
+                    evictionListener.accept(entry.getKey(), node.value());
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static int bucket(Node<?> node, long oldest, long span) {
+        // values accessed since the eviction started are in the last bucket
+        return (int) Math.min(BUCKETS - 1, Math.max(0, node.accessedAt - oldest) * BUCKETS / span);
+    }
+
+    private boolean removeNode(K key, Node<V> node) {
+        if (map.remove(key, node)) {
+            weight.addAndGet(-node.weight);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isLive(Node<V> node, long now) {
+        return !isExpired(node, now) && node.value() != null;
+    }
+
+    private boolean isExpired(Node<V> node, long now) {
+        return timeToLiveNanos > 0 && now - node.writtenAt >= timeToLiveNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "WeightedCache{" +
+            "size=" + map.size() +
+            ", weight=" + weight.get() +
+            ", maximumWeight=" + maximumWeight +
+            '}';
+    }
+}
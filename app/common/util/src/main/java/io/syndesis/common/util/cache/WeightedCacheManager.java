@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.common.util.cache;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates {@link WeightedCache}s, each bounded by the given maximum weight.
+ */
+public class WeightedCacheManager implements CacheManager {
+    private static final Logger LOG = LoggerFactory.getLogger(CacheManager.class);
+
+    private final ConcurrentMap<String, WeightedCache<?, ?>> caches = new ConcurrentHashMap<>();
+    private final List<BiConsumer<String, WeightedCache<?, ?>>> listeners = new CopyOnWriteArrayList<>();
+
+    private final long maximumWeight;
+    private final long timeToLive;
+    private final TimeUnit unit;
+    private final ToLongFunction<Object> weigher;
+
+    public WeightedCacheManager(long maximumWeight, long timeToLive, TimeUnit unit, ToLongFunction<Object> weigher) {
+        this.maximumWeight = maximumWeight;
+        this.timeToLive = timeToLive;
+        this.unit = unit;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Clears the caches, the caches themselves are kept so that references
+     * to them, and their statistics, remain valid.
+     */
+    @Override
+    public void evictAll() {
+        caches.values().forEach(Cache::clear);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <K, V> Cache<K, V> getCache(String name, boolean soft) {
+        WeightedCache<K, V> cache = (WeightedCache<K, V>) caches.get(name);
+        if (cache == null) {
+            WeightedCache<K, V> created = new WeightedCache<>(maximumWeight, timeToLive, unit, weigher, soft);
+            cache = (WeightedCache<K, V>) caches.putIfAbsent(name, created);
+            if (cache == null) {
+                listeners.forEach(l -> l.accept(name, created));
+                return created;
+            }
+        }
+        if (soft != cache.isSoft()) {
+            LOG.warn("Cache {} is being used in mixed 'soft' and 'hard' mode", name);
+        }
+        return cache;
+    }
+
+    /**
+     * Registers a listener invoked with each cache created, including the
+     * caches already created.
+     */
+    public void onCacheCreated(BiConsumer<String, WeightedCache<?, ?>> listener) {
+        listeners.add(listener);
+        caches.forEach(listener);
+    }
+}
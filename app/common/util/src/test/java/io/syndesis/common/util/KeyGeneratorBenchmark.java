@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.common.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.iharder.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares generating keys from a shared counter incremented without compare
+ * and set loop and encoding them by hand, as {@link KeyGenerator} does, with
+ * generating them from a shared sequence updated in a compare and set loop and
+ * encoding them with {@link Base64}, as it used to, with 1 to 64 threads.
+ *
+ * Run from the IDE or with: {@code mvn test-compile exec:java
+ * -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.syndesis.common.util.KeyGeneratorBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyGeneratorBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private final AtomicLong lastTimestamp = new AtomicLong();
+    private final AtomicLong randomnessLong = new AtomicLong(System.nanoTime());
+
+    @Benchmark
+    public String sharedCounter() {
+        return KeyGenerator.createKey();
+    }
+
+    @Benchmark
+    public String sharedSequence() throws IOException {
+        final long now = System.currentTimeMillis();
+
+        final ByteBuffer buffer = ByteBuffer.wrap(new byte[8 + 1 + 8]);
+        buffer.putLong(now);
+        buffer.put(KeyGenerator.randomnessByte);
+        buffer.putLong(randomnessLong.updateAndGet(randomVal -> {
+            long current;
+            do {
+                current = lastTimestamp.get();
+                randomVal++;
+            } while (!lastTimestamp.compareAndSet(current, now));
+
+            return randomVal;
+        }));
+
+        return "i" + Base64.encodeBytes(buffer.array(), 2, 15, Base64.ORDERED) + "z";
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder()
+                .include(KeyGeneratorBenchmark.class.getSimpleName())
+                .threads(threads)
+                .build()).run();
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package io.syndesis.common.util;
 
+import net.iharder.Base64;
 import org.assertj.core.api.Condition;
 import org.assertj.core.data.Offset;
 import org.junit.jupiter.api.Assertions;
@@ -22,11 +23,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
@@ -86,6 +91,37 @@ public class KeyGeneratorTest {
         assertThat(keys).allSatisfy(KeyGenerator::resemblesAKey);
     }
 
+    @Test
+    public void shouldGenerateIncreasingKeysAcrossThreads() throws InterruptedException, ExecutionException {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            // each key is created by another thread than the previous one
+            final List<String> keys = new ArrayList<>();
+            for (int i = 0; i < 10000; i++) {
+                keys.add(executor.submit(KeyGenerator::createKey).get());
+            }
+
+            assertThat(keys).isSorted().doesNotHaveDuplicates();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldEncodeKeysWithOrderedBase64() throws IOException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 10000; i++) {
+            final long timestamp = random.nextLong(1L << 48);
+            final int random1 = random.nextInt();
+            final long random2 = random.nextLong();
+
+            final byte[] data = ByteBuffer.allocate(17).putLong(timestamp).put((byte) random1).putLong(random2).array();
+            final String expected = "i" + Base64.encodeBytes(data, 2, 15, Base64.ORDERED) + "z";
+
+            assertThat(KeyGenerator.recreateKey(timestamp, random1, random2)).isEqualTo(expected);
+            assertThat(KeyGenerator.getKeyTimeMillis(expected)).isEqualTo(timestamp);
+        }
+    }
 
     @Test
     public void testGetKeyTimeMillis() throws IOException {
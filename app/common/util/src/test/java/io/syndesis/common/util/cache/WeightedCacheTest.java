@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.common.util.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class WeightedCacheTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+
+    @Test
+    public void testWeightedEviction() {
+        WeightedCache<String, String> cache = new WeightedCache<>(10, 0, String::length, false, this::tick);
+
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        assertThat(cache.get("a")).isEqualTo("aaaa");
+        cache.put("c", "cc");
+        assertThat(cache.getWeight()).isEqualTo(10);
+
+        // evicts the least recently used, down to 90%
+        cache.put("d", "d");
+        assertThat(cache.keySet()).containsOnly("a", "c", "d");
+        assertThat(cache.getWeight()).isEqualTo(7);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+
+        cache.put("a", "a");
+        assertThat(cache.getWeight()).isEqualTo(4);
+        assertThat(cache.remove("c")).isEqualTo("cc");
+        assertThat(cache.getWeight()).isEqualTo(2);
+        cache.clear();
+        assertThat(cache.getWeight()).isZero();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWithoutSorting() {
+        WeightedCache<Integer, String> cache = new WeightedCache<>(1000, 0, String::length, false, this::tick);
+        List<Integer> evicted = new ArrayList<>();
+        cache.onEviction((key, value) -> evicted.add(key));
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "0123456789");
+        }
+        // the first ones are used again
+        for (int i = 0; i < 10; i++) {
+            assertThat(cache.get(i)).isNotNull();
+        }
+        cache.put(100, "0123456789");
+
+        assertThat(cache.getWeight()).isEqualTo(900);
+        assertThat(evicted).containsOnly(10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20);
+        assertThat(cache.containsKey(0)).isTrue();
+        assertThat(cache.containsKey(10)).isFalse();
+        assertThat(cache.getEvictionCount()).isEqualTo(11);
+    }
+
+    @Test
+    public void testSampledWeigher() {
+        AtomicLong weighed = new AtomicLong();
+        SampledWeigher weigher = new SampledWeigher(v -> {
+            weighed.incrementAndGet();
+            return ((String) v).length();
+        }, 4);
+
+        for (int i = 0; i < 8; i++) {
+            assertThat(weigher.applyAsLong("0123456789")).isEqualTo(10);
+        }
+        assertThat(weighed.get()).isEqualTo(8);
+
+        // then one in four is weighed, the others estimated by the average
+        for (int i = 0; i < 8; i++) {
+            assertThat(weigher.applyAsLong("01234567890123456789")).isBetween(10L, 20L);
+        }
+        assertThat(weighed.get()).isEqualTo(10);
+    }
+
+    @Test
+    public void testExpiry() {
+        WeightedCache<String, String> cache = new WeightedCache<>(10, 100, String::length, false, this::tick);
+
+        cache.put("a", "a");
+        ticker.addAndGet(50);
+        cache.put("b", "b");
+        assertThat(cache.get("a")).isEqualTo("a");
+        ticker.addAndGet(60);
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.values()).containsOnly("b");
+        assertThat(cache.getWeight()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSnapshots() {
+        WeightedCache<String, String> cache = new WeightedCache<>(10, 0, String::length, false, this::tick);
+        cache.put("a", "a");
+        cache.put("b", "b");
+
+        for (String key : cache.keySet()) {
+            cache.remove(key);
+        }
+        assertThat(cache.size()).isZero();
+        assertThatExceptionOfType(UnsupportedOperationException.class).isThrownBy(() -> cache.values().clear());
+    }
+
+    @Test
+    public void testManagerReusesCaches() {
+        WeightedCacheManager manager = new WeightedCacheManager(10, 0, TimeUnit.SECONDS, v -> 1);
+        AtomicLong created = new AtomicLong();
+        manager.onCacheCreated((name, cache) -> created.incrementAndGet());
+
+        Cache<String, String> cache = manager.getCache("cache", false);
+        cache.put("a", "a");
+        assertThat(manager.<String, String>getCache("cache", false)).isSameAs(cache);
+        manager.evictAll();
+
+        assertThat(cache.size()).isZero();
+        assertThat(manager.<String, String>getCache("cache", false)).isSameAs(cache);
+        assertThat(created.get()).isEqualTo(1);
+    }
+
+    private long tick() {
+        return ticker.incrementAndGet();
+    }
+}
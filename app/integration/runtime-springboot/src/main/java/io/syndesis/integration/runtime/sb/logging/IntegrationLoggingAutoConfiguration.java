@@ -15,9 +15,12 @@
  */
 package io.syndesis.integration.runtime.sb.logging;
 
+import java.io.IOException;
+
 import io.syndesis.integration.runtime.ActivityTrackingPolicyFactory;
 import io.syndesis.integration.runtime.logging.ActivityTracker;
 import io.syndesis.integration.runtime.logging.ActivityTrackingInterceptStrategy;
+import io.syndesis.integration.runtime.logging.BatchingActivityTracker;
 import io.syndesis.integration.runtime.logging.BodyLogger;
 import io.syndesis.integration.runtime.logging.IntegrationActivityTrackingPolicyFactory;
 import io.syndesis.integration.runtime.logging.FlowActivityTrackingPolicyFactory;
@@ -40,8 +43,24 @@ import org.springframework.context.annotation.Configuration;
 public class IntegrationLoggingAutoConfiguration {
     @Bean
     @ConditionalOnMissingBean(ActivityTracker.class)
-    public ActivityTracker activityTracker() {
-        return new ActivityTracker.SysOut();
+    public ActivityTracker activityTracker(IntegrationLoggingConfiguration configuration) throws IOException {
+        final IntegrationLoggingConfiguration.Push push = configuration.getPush();
+        if (push.getUrl() == null) {
+            return new ActivityTracker.SysOut();
+        }
+
+        final BatchingActivityTracker tracker = new BatchingActivityTracker(
+            BatchingActivityTracker.httpSender(push.getUrl(), push.getToken(), push.getTimeout()),
+            new ActivityTracker.SysOut(),
+            push.getQueueSize(),
+            push.getBatchSize(),
+            push.getFlushInterval(),
+            push.getMaxBlock(),
+            push.getRetryTime(),
+            push.getSampling());
+        tracker.start();
+
+        return tracker;
     }
 
     @Bean
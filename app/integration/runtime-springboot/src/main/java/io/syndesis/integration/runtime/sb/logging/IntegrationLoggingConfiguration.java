@@ -15,6 +15,8 @@
  */
 package io.syndesis.integration.runtime.sb.logging;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties(prefix = "syndesis.integration.runtime.logging")
@@ -24,6 +26,12 @@ public class IntegrationLoggingConfiguration {
      */
     private boolean enabled = true;
 
+    /**
+     * Pushing of the activity tracking events to the server, instead of
+     * printing them on STDOUT.
+     */
+    private final Push push = new Push();
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -31,4 +39,132 @@ public class IntegrationLoggingConfiguration {
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
     }
+
+    public Push getPush() {
+        return push;
+    }
+
+    public static class Push {
+        /**
+         * URL to push the events to, like:
+         * {@code http://syndesis-server/api/v1/activity/pods/${HOSTNAME}}, the
+         * events are printed on STDOUT if not set.
+         */
+        private String url;
+
+        /**
+         * Token the events are pushed with, set by the server when deploying
+         * the integration.
+         */
+        private String token;
+
+        /**
+         * Maximum number of events waiting to be pushed.
+         */
+        private int queueSize = 10_000;
+
+        /**
+         * Maximum number of events pushed at once.
+         */
+        private int batchSize = 500;
+
+        /**
+         * Maximum time an event waits for others to be pushed with.
+         */
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        /**
+         * Maximum time an exchange waits for room in a full queue before its
+         * event is dropped.
+         */
+        private Duration maxBlock = Duration.ZERO;
+
+        /**
+         * Maximum time to retry pushing events before they are printed on
+         * STDOUT, for the server to read them from the log of the pod.
+         */
+        private Duration retryTime = Duration.ofMinutes(1);
+
+        /**
+         * Rate, from 0 to 1, of the exchanges of the integration to track.
+         */
+        private double sampling = 1.0;
+
+        /**
+         * Timeout of the connection to and responses of the server.
+         */
+        private Duration timeout = Duration.ofSeconds(5);
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public void setToken(String token) {
+            this.token = token;
+        }
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public void setQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public Duration getMaxBlock() {
+            return maxBlock;
+        }
+
+        public void setMaxBlock(Duration maxBlock) {
+            this.maxBlock = maxBlock;
+        }
+
+        public Duration getRetryTime() {
+            return retryTime;
+        }
+
+        public void setRetryTime(Duration retryTime) {
+            this.retryTime = retryTime;
+        }
+
+        public double getSampling() {
+            return sampling;
+        }
+
+        public void setSampling(double sampling) {
+            this.sampling = sampling;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+    }
 }
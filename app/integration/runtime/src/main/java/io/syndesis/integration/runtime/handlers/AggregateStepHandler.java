@@ -17,10 +17,12 @@
 package io.syndesis.integration.runtime.handlers;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
-import javax.script.SimpleBindings;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +44,7 @@ import org.apache.camel.Message;
 import org.apache.camel.Processor;
 import org.apache.camel.model.ProcessorDefinition;
 import org.apache.camel.processor.aggregate.AggregationStrategy;
+import org.apache.camel.processor.aggregate.CompletionAwareAggregationStrategy;
 import org.apache.camel.processor.aggregate.GroupedBodyAggregationStrategy;
 import org.apache.camel.processor.aggregate.UseLatestAggregationStrategy;
 import org.apache.camel.processor.aggregate.UseOriginalAggregationStrategy;
@@ -115,10 +118,22 @@ public class AggregateStepHandler implements IntegrationStepHandler {
         }
     }
 
-    private static class ScriptAggregationStrategy implements AggregationStrategy {
+    /**
+     * Aggregates with a script compiled once per step. The script is given the {@code oldExchange} and the
+     * {@code newExchange}, the body of the new exchange as {@code body}, parsed if it is JSON, and the
+     * {@code aggregate} so far, a {@link java.util.List} to start with. A script evaluating to an exchange aggregates
+     * to that exchange, a script evaluating to anything else to the aggregated exchange with the value as the new
+     * aggregate. The aggregate is kept parsed until the aggregation completes and is then set as the body, as JSON
+     * unless it is a String. Each aggregation is evaluated in a scope of its own, so script globals are kept from one
+     * exchange to the next of an aggregation but not shared with other aggregations.
+     */
+    private static class ScriptAggregationStrategy implements CompletionAwareAggregationStrategy {
+        private static final String AGGREGATE = "Syndesis.ScriptAggregationStrategy.Aggregate";
+        private static final String BINDINGS = "Syndesis.ScriptAggregationStrategy.Bindings";
+
         private String language;
         private String script;
-        private ScriptEngine engine;
+        private volatile CompiledAggregation compiled;
 
         ScriptAggregationStrategy() {
             this("nashorn", "oldExchange;");
@@ -127,19 +142,75 @@ public class AggregateStepHandler implements IntegrationStepHandler {
         ScriptAggregationStrategy(String language, String script) {
             this.language = language;
             this.script = script;
-            this.engine = new ScriptEngineManager().getEngineByName(this.language);
         }
 
         @Override
         public Exchange aggregate(Exchange oldExchange, Exchange newExchange) {
-            Bindings bindings = new SimpleBindings();
+            final CompiledAggregation aggregation = compiled();
+
+            Object aggregate = oldExchange == null ? null : oldExchange.getProperty(AGGREGATE);
+            if (aggregate == null) {
+                aggregate = new ArrayList<>();
+            }
+
+            Bindings bindings = oldExchange == null ? null : oldExchange.getProperty(BINDINGS, Bindings.class);
+            if (bindings == null) {
+                bindings = aggregation.createBindings();
+            }
             bindings.put("oldExchange", oldExchange);
             bindings.put("newExchange", newExchange);
+            bindings.put("body", parse(newExchange.getIn().getBody()));
+            bindings.put("aggregate", aggregate);
 
+            final Object result;
             try {
-                return (Exchange) engine.eval(script, bindings);
+                result = aggregation.eval(bindings);
             } catch (ScriptException e) {
                 throw new IllegalStateException("Script aggregation strategy failed", e);
+            } finally {
+                bindings.remove("oldExchange");
+                bindings.remove("newExchange");
+                bindings.remove("body");
+                bindings.remove("aggregate");
+            }
+
+            if (result == null) {
+                return null;
+            }
+
+            if (result instanceof Exchange) {
+                final Exchange aggregated = (Exchange) result;
+                aggregated.setProperty(BINDINGS, bindings);
+                return aggregated;
+            }
+
+            final Exchange aggregated = oldExchange == null ? newExchange : oldExchange;
+            aggregated.setProperty(BINDINGS, bindings);
+            aggregated.setProperty(AGGREGATE, result);
+            return aggregated;
+        }
+
+        @Override
+        public void onCompletion(Exchange exchange) {
+            if (exchange == null) {
+                return;
+            }
+
+            exchange.removeProperty(BINDINGS);
+            final Object aggregate = exchange.removeProperty(AGGREGATE);
+            if (aggregate == null) {
+                return;
+            }
+
+            if (aggregate instanceof String) {
+                exchange.getIn().setBody(aggregate);
+                return;
+            }
+
+            try {
+                exchange.getIn().setBody(JsonUtils.writer().writeValueAsString(aggregate));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to write script aggregation result as JSON", e);
             }
         }
 
@@ -148,6 +219,7 @@ public class AggregateStepHandler implements IntegrationStepHandler {
          */
         public void setScript(String script) {
             this.script = script;
+            this.compiled = null;
         }
 
         /**
@@ -155,7 +227,70 @@ public class AggregateStepHandler implements IntegrationStepHandler {
          */
         public void setLanguage(String language) {
             this.language = language;
-            this.engine = new ScriptEngineManager().getEngineByName(this.language);
+            this.compiled = null;
+        }
+
+        private CompiledAggregation compiled() {
+            CompiledAggregation current = compiled;
+            if (current == null) {
+                synchronized (this) {
+                    current = compiled;
+                    if (current == null) {
+                        current = new CompiledAggregation(language, script);
+                        compiled = current;
+                    }
+                }
+            }
+
+            return current;
+        }
+
+        private static Object parse(Object body) {
+            if (body instanceof String && JsonUtils.isJson((String) body)) {
+                try {
+                    return JsonUtils.reader().forType(Object.class).readValue((String) body);
+                } catch (IOException e) {
+                    LOG.debug("Unable to parse body for script aggregation, using it as is", e);
+                }
+            }
+
+            return body;
+        }
+    }
+
+    /**
+     * The aggregation script compiled once for its engine, evaluated with the bindings of each aggregation so that the
+     * engine sets up a global scope per aggregation rather than per evaluation.
+     */
+    private static final class CompiledAggregation {
+        private final ScriptEngine engine;
+        private final String script;
+        private final CompiledScript compiled;
+
+        CompiledAggregation(String language, String script) {
+            this.engine = new ScriptEngineManager().getEngineByName(language);
+            if (engine == null) {
+                throw new IllegalStateException("No script engine found for aggregation script language: " + language);
+            }
+
+            this.script = script;
+            try {
+                this.compiled = engine instanceof Compilable ? ((Compilable) engine).compile(script) : null;
+            } catch (ScriptException e) {
+                throw new IllegalStateException("Unable to compile aggregation script", e);
+            }
+        }
+
+        Bindings createBindings() {
+            return engine.createBindings();
+        }
+
+        Object eval(Bindings bindings) throws ScriptException {
+            if (compiled != null) {
+                return compiled.eval(bindings);
+            }
+
+            return engine.eval(script, bindings);
         }
     }
 
@@ -15,11 +15,21 @@
  */
 package io.syndesis.integration.runtime.handlers;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.syndesis.common.model.integration.Step;
 import io.syndesis.common.model.integration.StepKind;
@@ -32,12 +42,17 @@ import org.apache.camel.Expression;
 import org.apache.camel.TypeConverter;
 import org.apache.camel.builder.Builder;
 import org.apache.camel.model.ProcessorDefinition;
+import org.apache.camel.model.SplitDefinition;
 import org.apache.camel.spi.Language;
 import org.apache.camel.support.ExpressionAdapter;
+import org.apache.camel.util.IOHelper;
 import org.apache.camel.util.ObjectHelper;
 
 public class SplitStepHandler implements IntegrationStepHandler {
 
+    // characters looked at to tell JSON from text when splitting streams
+    private static final int PEEK_LIMIT = 8192;
+
     /* Types that need conversion to String in order to perform a split operation */
     private enum AutoConvertTypes {
         INPUT_STREAM(InputStream.class),
@@ -76,13 +91,18 @@ public class SplitStepHandler implements IntegrationStepHandler {
     public Optional<ProcessorDefinition<?>> handle(Step step, ProcessorDefinition<?> route, IntegrationRouteBuilder builder, String flowIndex, String stepIndex) {
         ObjectHelper.notNull(route, "route");
 
-        SplitExpression splitExpression;
+        Expression splitExpression;
+        boolean streaming = Boolean.parseBoolean(step.getConfiguredProperties().get("streaming"));
         String languageName = step.getConfiguredProperties().get("language");
         String expressionDefinition = step.getConfiguredProperties().get("expression");
 
         if (step.hasUnifiedJsonSchemaOutputShape()) {
             // we have to split the nested unified body property by default.
-            splitExpression = new SplitExpression(new UnifiedJsonBodyExpression(Builder.body()));
+            if (streaming) {
+                splitExpression = new StreamingSplitExpression(Builder.body(), true);
+            } else {
+                splitExpression = new SplitExpression(new UnifiedJsonBodyExpression(Builder.body()));
+            }
         } else if (ObjectHelper.isNotEmpty(expressionDefinition)) {
             if (ObjectHelper.isEmpty(languageName)) {
                 languageName = "simple";
@@ -96,18 +116,30 @@ public class SplitStepHandler implements IntegrationStepHandler {
             }
 
             final Language language = builder.getContext().resolveLanguage(languageName);
-            splitExpression = new SplitExpression(language.createExpression(expressionDefinition));
+            if (streaming) {
+                splitExpression = new StreamingSplitExpression(language.createExpression(expressionDefinition), false);
+            } else {
+                splitExpression = new SplitExpression(language.createExpression(expressionDefinition));
+            }
+        } else if (streaming) {
+            splitExpression = new StreamingSplitExpression(Builder.body(), false);
         } else {
             splitExpression = new SplitExpression(Builder.body());
         }
 
+        // collecting the bodies of all the elements would defeat streaming,
+        // so by default a streaming split only keeps the latest one
         AggregateStepHandler.AggregationOption aggregation = Optional.ofNullable(step.getConfiguredProperties().get("aggregationStrategy"))
                 .map(AggregateStepHandler.AggregationOption::valueOf)
-                .orElse(AggregateStepHandler.AggregationOption.body);
+                .orElse(streaming ? AggregateStepHandler.AggregationOption.latest : AggregateStepHandler.AggregationOption.body);
 
-        route = route.split(splitExpression).aggregationStrategy(aggregation.getStrategy(step.getConfiguredProperties()));
+        SplitDefinition split = route.split(splitExpression).aggregationStrategy(aggregation.getStrategy(step.getConfiguredProperties()));
+        if (streaming) {
+            // split the elements as they are read instead of collecting them first
+            split.streaming();
+        }
 
-        return Optional.of(route);
+        return Optional.of(split);
     }
 
     /**
@@ -144,6 +176,238 @@ public class SplitStepHandler implements IntegrationStepHandler {
         }
     }
 
+    /**
+     * Split expression that reads the value to split as a stream and emits its elements one at a time, so the value
+     * never has to be held in memory as a whole. A JSON array is split into its elements, a sequence of JSON
+     * documents (JSON Lines) into the documents and any other text into its lines. When the value is unified Json
+     * the nested body property is split the same way.
+     * Values that are neither text nor streams, e.g. lists of Json beans, are handed to Camel's splitter as they are.
+     */
+    private static class StreamingSplitExpression extends ExpressionAdapter {
+        private final Expression delegate;
+        private final boolean unifiedJsonBody;
+
+        StreamingSplitExpression(Expression delegate, boolean unifiedJsonBody) {
+            this.delegate = delegate;
+            this.unifiedJsonBody = unifiedJsonBody;
+        }
+
+        @Override
+        public Object evaluate(Exchange exchange) {
+            Object value = delegate.evaluate(exchange, Object.class);
+            Reader reader = toReader(value, exchange);
+            if (reader == null) {
+                return value;
+            }
+
+            BufferedReader buffered = new BufferedReader(reader);
+            try {
+                if (isJson(buffered)) {
+                    return new JsonElementIterator(buffered, unifiedJsonBody);
+                }
+
+                return new LineIterator(buffered);
+            } catch (IOException e) {
+                IOHelper.close(buffered);
+                throw SyndesisServerException.launderThrowable(e);
+            }
+        }
+
+        private static Reader toReader(Object value, Exchange exchange) {
+            if (value instanceof String) {
+                return new StringReader((String) value);
+            }
+
+            InputStream stream = null;
+            if (value instanceof InputStream) {
+                stream = (InputStream) value;
+            } else if (value instanceof byte[]) {
+                stream = new ByteArrayInputStream((byte[]) value);
+            } else if (value != null && AutoConvertTypes.REMOTE_FILE.isInstance(value)) {
+                stream = exchange.getContext().getTypeConverter().tryConvertTo(InputStream.class, exchange, value);
+            }
+
+            if (stream == null) {
+                return null;
+            }
+
+            try {
+                return new InputStreamReader(stream, IOHelper.getCharsetName(exchange));
+            } catch (IOException e) {
+                throw SyndesisServerException.launderThrowable(e);
+            }
+        }
+
+        /**
+         * Tells whether the first character that is not white space starts a JSON array or object, without
+         * consuming it.
+         */
+        private static boolean isJson(BufferedReader reader) throws IOException {
+            reader.mark(PEEK_LIMIT);
+            try {
+                for (int i = 0; i < PEEK_LIMIT; i++) {
+                    int ch = reader.read();
+                    if (ch == -1 || !Character.isWhitespace(ch)) {
+                        return ch == '[' || ch == '{';
+                    }
+                }
+
+                return false;
+            } finally {
+                reader.reset();
+            }
+        }
+    }
+
+    /**
+     * Iterator reading the next element of a split stream only once the previous one was taken. Camel's splitter
+     * closes the iterator, and with it the stream, once it is done.
+     */
+    private abstract static class StreamingIterator implements Iterator<String>, Closeable {
+        private final Closeable source;
+        private String next;
+        private boolean done;
+
+        StreamingIterator(Closeable source) {
+            this.source = source;
+        }
+
+        /**
+         * Reads the next element, or returns null at the end of the stream.
+         */
+        protected abstract String read() throws IOException;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    next = read();
+                } catch (IOException e) {
+                    throw SyndesisServerException.launderThrowable(e);
+                }
+
+                if (next == null) {
+                    done = true;
+                    IOHelper.close(this);
+                }
+            }
+
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            String answer = next;
+            next = null;
+            return answer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            done = true;
+            source.close();
+        }
+    }
+
+    /**
+     * Emits the elements of a JSON array, or the documents of a sequence of JSON documents, as Json bean strings.
+     */
+    private static final class JsonElementIterator extends StreamingIterator {
+        private final JsonParser parser;
+        private final boolean array;
+        private boolean single;
+        private boolean first = true;
+
+        JsonElementIterator(Reader reader, boolean unifiedJsonBody) throws IOException {
+            this(JsonUtils.reader().getFactory().createParser(reader), unifiedJsonBody);
+        }
+
+        private JsonElementIterator(JsonParser parser, boolean unifiedJsonBody) throws IOException {
+            super(parser);
+            this.parser = parser;
+
+            JsonToken token = parser.nextToken();
+            if (unifiedJsonBody) {
+                token = toBodyProperty(parser, token);
+                single = true;
+            }
+
+            array = token == JsonToken.START_ARRAY;
+            if (token == null) {
+                // nothing to split
+                single = true;
+                first = false;
+            }
+        }
+
+        @Override
+        protected String read() throws IOException {
+            JsonToken token;
+            if (array) {
+                token = parser.nextToken();
+                if (token == JsonToken.END_ARRAY) {
+                    return null;
+                }
+            } else if (first) {
+                first = false;
+                token = parser.currentToken();
+            } else if (single) {
+                return null;
+            } else {
+                token = parser.nextToken();
+            }
+
+            if (token == null) {
+                return null;
+            }
+
+            JsonNode element = JsonUtils.reader().readTree(parser);
+            return JsonUtils.writer().writeValueAsString(element);
+        }
+
+        /**
+         * Moves the parser from the start of a unified Json object to the value of its body property, returns null if
+         * there is no such property.
+         */
+        private static JsonToken toBodyProperty(JsonParser parser, JsonToken token) throws IOException {
+            if (token != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("body".equals(name)) {
+                    return value;
+                }
+                parser.skipChildren();
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Emits the lines of a text.
+     */
+    private static final class LineIterator extends StreamingIterator {
+        private final BufferedReader reader;
+
+        LineIterator(BufferedReader reader) {
+            super(reader);
+            this.reader = reader;
+        }
+
+        @Override
+        protected String read() throws IOException {
+            return reader.readLine();
+        }
+    }
+
     /**
      * Expression extracts body property from unified Json schema typed input. The unified Json holds the actual body in
      * a nested property. This property is extracted and set as expression result so follow up expressions can operate on the body.
@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.integration.runtime.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.syndesis.integration.runtime.util.JsonSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks activities by sending them in batches instead of printing them on
+ * STDOUT. Events are queued by the threads of the exchanges and written by a
+ * single thread as lines like the ones read from the pod log, i.e.:
+ * {@code 2018-06-06T21:54:36.306Z {"exchange":"i-LEM51uGKc6IuIjvR95Vz","status":"begin"}},
+ * so they are processed by the server just like the log of the pod.
+ *
+ * Exchanges are sampled by their activity id, all events of an exchange are
+ * either tracked or not. Once the queue is full an event waits up to the
+ * configured time for room in the queue and is dropped after that.
+ *
+ * Batches that can't be sent are retried with a growing delay up to the
+ * configured retry time, their events are then handed to the fallback
+ * tracker, i.e. printed on STDOUT for the server to read them from the log of
+ * the pod, or dropped without a fallback.
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public class BatchingActivityTracker implements ActivityTracker, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchingActivityTracker.class);
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    // the sampling rate is kept in steps of 1/SAMPLES
+    private static final int SAMPLES = 10_000;
+
+    // longest wait for events without checking whether the tracker is closed
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // bounds of the delay between attempts to send a batch
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * Sends a batch of events.
+     */
+    @FunctionalInterface
+    public interface Sender {
+        /**
+         * Sends the first {@code length} bytes of the given batch.
+         */
+        void send(byte[] batch, int length) throws IOException;
+    }
+
+    private static final class Event {
+        final long time;
+        final Object[] fields;
+
+        Event(long time, Object... fields) {
+            this.time = time;
+            this.fields = fields;
+        }
+    }
+
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(64 * 1024);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
+
+    private final Sender sender;
+    private final ActivityTracker fallback;
+    private final BlockingQueue<Event> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long maxBlockNanos;
+    private final long retryNanos;
+    private final int sampled;
+    private final Buffer buffer = new Buffer();
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private long droppedReported;
+    // timestamp of the last event written, events often share it
+    private long lastTime = -1;
+    private String lastTimestamp;
+    private volatile boolean stopped;
+
+    /**
+     * @param sender sends the batches
+     * @param fallback tracks the events of the batches that can't be sent,
+     *        they are dropped if null
+     * @param queueSize maximum number of events waiting to be sent
+     * @param batchSize maximum number of events sent at once
+     * @param flushInterval maximum time an event waits for more events to
+     *        send with, before the batch is sent
+     * @param maxBlock maximum time to wait for room in a full queue
+     * @param retryTime maximum time to retry sending a batch
+     * @param sampling rate, from 0 to 1, of the exchanges to track
+     */
+    @SuppressWarnings("PMD.ExcessiveParameterList")
+    public BatchingActivityTracker(Sender sender, ActivityTracker fallback, int queueSize, int batchSize, Duration flushInterval, Duration maxBlock,
+                                   Duration retryTime, double sampling) {
+        this.sender = sender;
+        this.fallback = fallback;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.maxBlockNanos = maxBlock.toNanos();
+        this.retryNanos = retryTime.toNanos();
+        this.sampled = (int) Math.round(Math.max(0, Math.min(1, sampling)) * SAMPLES);
+        this.writer = new Thread(this::run, "Activity Tracker");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Starts sending the tracked events.
+     */
+    public void start() {
+        writer.start();
+    }
+
+    @Override
+    public void track(Object... fields) {
+        if (!isSampled(fields)) {
+            return;
+        }
+
+        final Event event = new Event(System.currentTimeMillis(), fields);
+        if (queue.offer(event)) {
+            return;
+        }
+
+        try {
+            if (maxBlockNanos > 0 && queue.offer(event, maxBlockNanos, TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dropped.increment();
+    }
+
+    /**
+     * Sends the events still queued and stops.
+     */
+    @Override
+    public void close() {
+        stopped = true;
+        try {
+            writer.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) + TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.interrupt();
+    }
+
+    /**
+     * Returns the number of events dropped as the queue was full or they
+     * could not be sent without a fallback.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of events waiting to be sent.
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    boolean isSampled(Object... fields) {
+        if (sampled >= SAMPLES) {
+            return true;
+        }
+
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            if ("exchange".equals(fields[i])) {
+                final Object activityId = fields[i + 1];
+                if (activityId == null) {
+                    return true;
+                }
+                return Math.floorMod(mix(activityId.hashCode()), SAMPLES) < sampled;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Spreads the hash codes of the activity ids, they are generated in
+     * sequence and their hash codes differ in the lowest bits only.
+     */
+    private static int mix(int hashCode) {
+        int hash = hashCode ^ (hashCode >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void run() {
+        final List<Event> batch = new ArrayList<>(batchSize);
+        try {
+            while (!stopped || !queue.isEmpty()) {
+                collect(batch);
+                if (!batch.isEmpty()) {
+                    send(batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("Interrupted, {} activity tracking events not sent", queue.size() + batch.size());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for events up to the flush interval, and then for more events
+     * until the batch is full or the flush interval elapsed.
+     */
+    private void collect(List<Event> batch) throws InterruptedException {
+        final Event first = queue.poll(Math.min(flushIntervalNanos, POLL_NANOS), TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+
+        batch.add(first);
+        final long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            final long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || stopped) {
+                return;
+            }
+
+            final Event next = queue.poll(Math.min(remaining, POLL_NANOS), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+    }
+
+    private void send(List<Event> batch) throws InterruptedException {
+        try {
+            write(batch);
+        } catch (IOException e) {
+            LOG.warn("Unable to write {} activity tracking events, dropping them", batch.size(), e);
+            dropped.add(batch.size());
+            return;
+        }
+
+        final long deadline = System.nanoTime() + retryNanos;
+        long backoff = Math.max(MIN_BACKOFF_NANOS, flushIntervalNanos);
+        for (int attempt = 1;; attempt++) {
+            try {
+                sender.send(buffer.bytes(), buffer.size());
+                break;
+            } catch (IOException e) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || stopped) {
+                    giveUp(batch, e);
+                    break;
+                }
+                LOG.debug("Unable to send activity tracking events, attempt {}", attempt, e);
+                TimeUnit.NANOSECONDS.sleep(Math.min(backoff, remaining));
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+            }
+        }
+
+        final long droppedNow = dropped.sum();
+        if (droppedNow > droppedReported) {
+            LOG.warn("{} activity tracking events dropped so far", droppedNow);
+            droppedReported = droppedNow;
+        }
+    }
+
+    private void giveUp(List<Event> batch, IOException cause) {
+        LOG.debug("Unable to send activity tracking events", cause);
+        if (fallback == null) {
+            LOG.warn("Unable to send {} activity tracking events, dropping them: {}", batch.size(), cause.getMessage());
+            dropped.add(batch.size());
+            return;
+        }
+
+        LOG.warn("Unable to send {} activity tracking events, logging them instead: {}", batch.size(), cause.getMessage());
+        for (Event event : batch) {
+            fallback.track(event.fields);
+        }
+    }
+
+    private void write(List<Event> batch) throws IOException {
+        buffer.reset();
+        try (JsonGenerator jg = FACTORY.createGenerator(buffer)) {
+            // the lines are separated by new lines only
+            jg.setRootValueSeparator(null);
+            for (Event event : batch) {
+                if (event.time != lastTime) {
+                    lastTime = event.time;
+                    lastTimestamp = TIMESTAMP.format(Instant.ofEpochMilli(event.time)) + ' ';
+                }
+                jg.writeRaw(lastTimestamp);
+                JsonSupport.writeJsonObject(jg, event.fields);
+                jg.writeRaw('\n');
+            }
+        }
+    }
+
+    /**
+     * Returns a sender posting the batches to the given URL, authenticated
+     * with the given bearer token if not null.
+     */
+    public static Sender httpSender(String url, String token, Duration timeout) throws IOException {
+        final URL target = new URL(url);
+        final int timeoutMillis = (int) timeout.toMillis();
+
+        return (batch, length) -> {
+            final HttpURLConnection connection = (HttpURLConnection) target.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setFixedLengthStreamingMode(length);
+            connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+            if (token != null) {
+                connection.setRequestProperty("Authorization", "Bearer " + token);
+            }
+
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(batch, 0, length);
+            }
+
+            final int status = connection.getResponseCode();
+            // read the response fully, so that the connection is kept alive
+            try (InputStream response = status < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream() : connection.getErrorStream()) {
+                if (response != null) {
+                    final byte[] skipped = new byte[256];
+                    while (response.read(skipped) >= 0) {
+                        // skip the response
+                    }
+                }
+            }
+
+            if (status / 100 != 2) {
+                throw new IOException("Activity tracking events rejected with HTTP status " + status + " by: " + url);
+            }
+        };
+    }
+}
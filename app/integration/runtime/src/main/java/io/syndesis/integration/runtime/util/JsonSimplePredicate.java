@@ -18,6 +18,7 @@ package io.syndesis.integration.runtime.util;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -28,8 +29,8 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import io.syndesis.common.util.IOStreams;
 import org.apache.camel.CamelContext;
@@ -39,16 +40,34 @@ import org.apache.camel.Predicate;
 import org.apache.camel.language.bean.RuntimeBeanExpressionException;
 import org.apache.camel.spi.Language;
 import org.apache.camel.spi.Registry;
-import org.apache.camel.util.ExchangeHelper;
 import org.apache.camel.util.ObjectHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Predicate which tries to convert a JSON message to a map first before
- * applying
+ * applying. The expression is compiled once, the message is parsed once per
+ * exchange for all the predicates evaluated against the same body.
+ *
+ * Plain paths into the body, like {@code ${body.user.name}} or
+ * {@code ${body[0].id}}, are compiled to lookups in the parsed body instead of
+ * being evaluated as OGNL, their values are handed to the expression as
+ * exchange properties. The OGNL expression is still used for everything else
+ * and whenever a path does not lead to a value in the body, so that any error
+ * is reported as before.
  */
 public final class JsonSimplePredicate implements Predicate {
+    static final String PARSED_BODY = "Syndesis.JsonSimplePredicate.ParsedBody";
+
+    static final String PATH_PROPERTY = "SyndesisJsonSimplePredicatePath";
+
+    private static final Pattern PATH_SEGMENT = Pattern.compile("[\\w$-]+");
+
+    private static final Pattern INDEX = Pattern.compile("\\d{1,9}");
+
+    // returned by lookups of paths that do not lead to a value in the body
+    private static final Object UNRESOLVED = new Object();
+
     private static final Pattern SIMPLE_EXPRESSION = Pattern.compile("\\$\\{([^}]+)\\}");
 
     private static final Logger LOG = LoggerFactory.getLogger(JsonSimplePredicate.class);
@@ -61,6 +80,26 @@ public final class JsonSimplePredicate implements Predicate {
 
     private final Predicate predicate;
 
+    private final Predicate compiledPredicate;
+
+    private final String[][] paths;
+
+    private final String[] pathProperties;
+
+    /**
+     * The body of an exchange parsed by the predicates, valid as long as the
+     * exchange carries the same body.
+     */
+    private static final class ParsedBody {
+        final Object source;
+        final Object json;
+
+        ParsedBody(final Object source, final Object json) {
+            this.source = source;
+            this.json = json;
+        }
+    }
+
     public JsonSimplePredicate(final String expression, final CamelContext context) {
         final Language language = ObjectHelper.notNull(context.resolveLanguage("simple"), "simple language");
         final String ognlExpression = convertSimpleToOGNLForMaps(expression);
@@ -68,6 +107,15 @@ public final class JsonSimplePredicate implements Predicate {
         predicate = language.createPredicate(expression);
         ognlPredicate = language.createPredicate(ognlExpression);
 
+        final List<String[]> compiledPaths = new ArrayList<>();
+        final String compiledExpression = compileBodyPaths(expression, compiledPaths);
+        paths = compiledPaths.toArray(new String[0][]);
+        pathProperties = new String[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            pathProperties[i] = PATH_PROPERTY + i;
+        }
+        compiledPredicate = paths.length == 0 ? null : language.createPredicate(compiledExpression);
+
         final Registry registry = context.getRegistry();
         final Set<ObjectMapper> mappers = registry.findByType(ObjectMapper.class);
 
@@ -80,60 +128,137 @@ public final class JsonSimplePredicate implements Predicate {
 
     @Override
     public boolean matches(final Exchange exchange) {
-        // Clone the exchange and set the JSON message converted to a Map /
-        // List as in message.
-        // The intention is that only this predicate acts on the converted
-        // value, but the original in-message still continues to carry the
-        // same format.
-        // The predicated is supposed to be read only with respect to the
-        // incoming message.
-        final Exchange exchangeForProcessing = ExchangeHelper.createCopy(exchange, true);
-        final Message payload = exchangeForProcessing.getIn();
-
-        if (payload.getBody() instanceof List) {
-            List<?> jsonBeans = payload.getBody(List.class);
-            payload.setBody("[" + jsonBeans.stream().map(Object::toString).collect(Collectors.joining(",")) + "]");
-        }
-
-        try (InputStream stream = payload.getBody(InputStream.class)) {
-            if (stream == null) {
-                return predicate.matches(exchange);
+        final Message in = exchange.getIn();
+        final Object json = parsedBody(exchange, in);
+        if (json == null) {
+            return predicate.matches(exchange);
+        }
+
+        // The JSON message converted to a Map / List is set as the in-message
+        // only while the predicate is evaluated, the in-message continues to
+        // carry the same format. The predicate is supposed to be read only
+        // with respect to the incoming message.
+        final Object body = in.getBody();
+        in.setBody(json);
+        try {
+            return matchesJson(exchange, json);
+        } catch (RuntimeBeanExpressionException e) {
+            if (json instanceof List && Optional.ofNullable(e.getCause())
+                        .map(Object::getClass)
+                        .map(IndexOutOfBoundsException.class::equals)
+                        .orElse(false)) {
+                LOG.debug("Try to match array item out of bounds");
+                // we do not need to dump on the logs so log it at trace level.
+                LOG.trace("Try to match array item out of bounds ", e);
+                return false;
+            }
+
+            throw e;
+        } finally {
+            in.setBody(body);
+        }
+    }
+
+    private boolean matchesJson(final Exchange exchange, final Object json) {
+        if (compiledPredicate == null) {
+            return ognlPredicate.matches(exchange);
+        }
+
+        final Object[] values = new Object[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            values[i] = lookup(json, paths[i]);
+            if (values[i] == UNRESOLVED) {
+                return ognlPredicate.matches(exchange);
+            }
+        }
+
+        try {
+            for (int i = 0; i < paths.length; i++) {
+                exchange.setProperty(pathProperties[i], values[i]);
+            }
+            return compiledPredicate.matches(exchange);
+        } finally {
+            for (final String pathProperty : pathProperties) {
+                exchange.removeProperty(pathProperty);
             }
+        }
+    }
 
-            ResetAfterCloseInputStream resetAfterCloseInputStream = new ResetAfterCloseInputStream(stream);
-            if (exchange.getIn().getBody() instanceof InputStream) {
-                exchange.getIn().setBody(resetAfterCloseInputStream);
+    /**
+     * Looks up the given path in the parsed body like OGNL does, keys in maps
+     * and indexes in lists, or returns {@link #UNRESOLVED} for anything OGNL
+     * would fail on or handle differently.
+     */
+    static Object lookup(final Object json, final String... path) {
+        Object current = json;
+        for (final String key : path) {
+            if (current instanceof Map) {
+                current = ((Map<?, ?>) current).get(key);
+            } else if (current instanceof List && INDEX.matcher(key).matches()) {
+                final List<?> list = (List<?>) current;
+                final int index = Integer.parseInt(key);
+                if (index >= list.size()) {
+                    return UNRESOLVED;
+                }
+                current = list.get(index);
+            } else {
+                return UNRESOLVED;
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Returns the body of the message parsed as a JSON object or array to a
+     * Map or List, or null if it is not one. The parsed body is kept in the
+     * exchange for all predicates evaluated until the body is replaced.
+     */
+    private Object parsedBody(final Exchange exchange, final Message in) {
+        final ParsedBody cached = exchange.getProperty(PARSED_BODY, ParsedBody.class);
+        if (cached != null && cached.source == in.getBody()) {
+            return cached.json;
+        }
+
+        final Object json = parse(in);
+        exchange.setProperty(PARSED_BODY, new ParsedBody(in.getBody(), json));
+        return json;
+    }
+
+    private Object parse(final Message in) {
+        final Object body = in.getBody();
+        try {
+            final Object json;
+            if (body instanceof String) {
+                json = mapper.readValue((String) body, Object.class);
+            } else if (body instanceof byte[]) {
+                json = mapper.readValue((byte[]) body, Object.class);
+            } else if (body instanceof List) {
+                final List<?> jsonBeans = (List<?>) body;
+                json = mapper.readValue("[" + jsonBeans.stream().map(Object::toString).collect(Collectors.joining(",")) + "]", Object.class);
+            } else {
+                final byte[] bytes;
+                try (InputStream stream = in.getBody(InputStream.class)) {
+                    if (stream == null) {
+                        return null;
+                    }
+
+                    final ResetAfterCloseInputStream resetAfterCloseInputStream = new ResetAfterCloseInputStream(stream);
+                    if (body instanceof InputStream) {
+                        in.setBody(resetAfterCloseInputStream);
+                    }
+                    bytes = resetAfterCloseInputStream.sourceBytes;
+                }
+                json = mapper.readValue(bytes, Object.class);
             }
 
             // If it is a JSON document, suppose that this is a document which
             // needs to be parsed as JSON, therefore we set a map instead of the
             // string
-            final JsonNode json = mapper.readTree(resetAfterCloseInputStream);
-
-            if (json != null) {
-                if (json.isArray()) {
-                    payload.setBody(mapper.convertValue(json, List.class));
-                    try {
-                        return ognlPredicate.matches(exchangeForProcessing);
-                    } catch (RuntimeBeanExpressionException e) {
-                        if (Optional.ofNullable(e.getCause())
-                                    .map(Object::getClass)
-                                    .map(IndexOutOfBoundsException.class::equals)
-                                    .orElse(false)) {
-                            LOG.debug("Try to match array item out of bounds");
-                            // we do not need to dump on the logs so log it at trace level.
-                            LOG.trace("Try to match array item out of bounds ", e);
-                            return false;
-                        }
-
-                        throw e;
-                    }
-                } else if (json.isObject()) {
-                    payload.setBody(mapper.convertValue(json, Map.class));
-                    return ognlPredicate.matches(exchangeForProcessing);
-                }
+            if (json instanceof Map || json instanceof List) {
+                return json;
             }
-        } catch (final JsonParseException e) {
+        } catch (final JsonParseException | MismatchedInputException e) {
             LOG.debug("Incoming message is not a json, try to match using simple language");
             // in case the body is not convertible to a map, the json converter
             // may throw an exception we do not need to dump on the logs so log
@@ -144,8 +269,7 @@ public final class JsonSimplePredicate implements Predicate {
             LOG.debug("Unable to parse incoming message body as JSON needed for simple filtering", e);
         }
 
-        // if above fails
-        return predicate.matches(exchange);
+        return null;
     }
 
     static String convertSimpleToOGNLForMaps(final String simple) {
@@ -163,6 +287,63 @@ public final class JsonSimplePredicate implements Predicate {
         return ognl.toString();
     }
 
+    /**
+     * Replaces the plain paths into the body with references to the exchange
+     * properties holding their values and the rest with their OGNL variant,
+     * the segments of the replaced paths are added to the given list.
+     */
+    static String compileBodyPaths(final String simple, final List<String[]> paths) {
+        final Matcher matcher = SIMPLE_EXPRESSION.matcher(simple);
+
+        final StringBuffer compiled = new StringBuffer(simple.length() + 5);
+        while (matcher.find()) {
+            final String[] path = toBodyPath(matcher.group(1));
+            if (path == null) {
+                matcher.appendReplacement(compiled, "\\$\\{" + toOgnl(matcher) + "\\}");
+            } else {
+                matcher.appendReplacement(compiled, "\\$\\{exchangeProperty." + PATH_PROPERTY + paths.size() + "\\}");
+                paths.add(path);
+            }
+        }
+
+        matcher.appendTail(compiled);
+
+        return compiled.toString();
+    }
+
+    /**
+     * Returns the segments of a plain path into the body, or null if the
+     * expression is anything else.
+     */
+    static String[] toBodyPath(final String expression) {
+        if (!(expression.startsWith("body.") || expression.startsWith("body[")) || isCollectionPath(expression)) {
+            return null;
+        }
+
+        final List<String> segments = new ArrayList<>();
+        final StringBuilder segment = new StringBuilder();
+        for (int i = "body".length(); i < expression.length(); i++) {
+            final char ch = expression.charAt(i);
+            if (ch == '.' || ch == '[') {
+                if (i > "body".length()) {
+                    segments.add(segment.toString());
+                    segment.setLength(0);
+                }
+            } else if (ch != ']') {
+                segment.append(ch);
+            }
+        }
+        segments.add(segment.toString());
+
+        for (final String key : segments) {
+            if (!PATH_SEGMENT.matcher(key).matches()) {
+                return null;
+            }
+        }
+
+        return segments.toArray(new String[0]);
+    }
+
     static String toOgnl(final Matcher matcher) {
         final String expression = matcher.group(1);
         if (!(expression.startsWith("body.") || expression.startsWith("body[")) || isCollectionPath(expression)) {
@@ -19,6 +19,7 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import io.syndesis.common.util.SyndesisServerException;
 
+import java.io.IOException;
 import java.io.StringWriter;
 
 /**
@@ -26,36 +27,44 @@ import java.io.StringWriter;
  */
 public final class JsonSupport {
 
+    private static final JsonFactory FACTORY = new JsonFactory();
+
     private JsonSupport(){
     }
 
     public static String toJsonObject(Object... fields) {
         try {
             StringWriter w = new StringWriter();
-            JsonGenerator jg = new JsonFactory().createGenerator(w);
-
-            jg.writeStartObject();
-            for (int i = 0; i + 1 < fields.length; i += 2) {
-                Object key = fields[i];
-                Object value = fields[i+1];
-                if (key != null && value != null) {
-                    jg.writeFieldName(key.toString());
-                    if (value instanceof Boolean ) {
-                        jg.writeBoolean((Boolean) value);
-                    } else if (value instanceof Number ) {
-                        jg.writeNumber(((Number) value).longValue());
-                    } else {
-                        jg.writeString(value.toString());
-                    }
-                }
-            }
-            jg.writeEndObject();
-
+            JsonGenerator jg = FACTORY.createGenerator(w);
+            writeJsonObject(jg, fields);
             jg.close();
             return w.toString();
-        } catch (java.io.IOException e) {
+        } catch (IOException e) {
             throw new SyndesisServerException(e);
         }
     }
 
+    /**
+     * Writes the fields, given as key value pairs, as a json object. Fields
+     * with a null key or value are skipped.
+     */
+    public static void writeJsonObject(JsonGenerator jg, Object... fields) throws IOException {
+        jg.writeStartObject();
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            Object key = fields[i];
+            Object value = fields[i+1];
+            if (key != null && value != null) {
+                jg.writeFieldName(key.toString());
+                if (value instanceof Boolean ) {
+                    jg.writeBoolean((Boolean) value);
+                } else if (value instanceof Number ) {
+                    jg.writeNumber(((Number) value).longValue());
+                } else {
+                    jg.writeString(value.toString());
+                }
+            }
+        }
+        jg.writeEndObject();
+    }
+
 }
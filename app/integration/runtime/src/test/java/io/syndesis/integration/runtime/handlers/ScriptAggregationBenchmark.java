@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.integration.runtime.handlers;
+
+import javax.script.Bindings;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.processor.aggregate.AggregationStrategy;
+import org.apache.camel.processor.aggregate.CompletionAwareAggregationStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares aggregating JSON messages with a script compiled once and an
+ * aggregate kept parsed until completion, as the script aggregation strategy
+ * does, with evaluating the script for every message and parsing and writing
+ * the aggregate as a JSON string every time, as it used to. Scores are the
+ * time per aggregated message, the compiled script aggregates 100k messages,
+ * the evaluated one only 1k as its cost grows with the number of messages
+ * aggregated so far. Needs a JVM providing the nashorn script engine.
+ *
+ * Run from the IDE or with: {@code mvn test-compile exec:java
+ * -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.syndesis.integration.runtime.handlers.ScriptAggregationBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScriptAggregationBenchmark {
+
+    private static final int MESSAGES = 100_000;
+
+    private static final int EVALUATED_MESSAGES = 1_000;
+
+    private static final String COMPILED_SCRIPT = "aggregate.add(body); aggregate;";
+
+    private static final String EVALUATED_SCRIPT = "var aggregate = oldExchange ? JSON.parse(oldExchange.in.body) : [];\n"
+        + "aggregate.push(JSON.parse(newExchange.in.body));\n"
+        + "newExchange.in.body = JSON.stringify(aggregate);\n"
+        + "newExchange;";
+
+    private final DefaultCamelContext context = new DefaultCamelContext();
+
+    private CompletionAwareAggregationStrategy compiled;
+
+    private AggregationStrategy evaluated;
+
+    @Setup
+    public void createStrategies() {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put("aggregationScriptLanguage", "nashorn");
+        properties.put("aggregationScript", COMPILED_SCRIPT);
+        compiled = (CompletionAwareAggregationStrategy) AggregateStepHandler.AggregationOption.script.getStrategy(properties);
+
+        final ScriptEngine engine = new ScriptEngineManager().getEngineByName("nashorn");
+        evaluated = (oldExchange, newExchange) -> {
+            final Bindings bindings = new SimpleBindings();
+            bindings.put("oldExchange", oldExchange);
+            bindings.put("newExchange", newExchange);
+            try {
+                return (Exchange) engine.eval(EVALUATED_SCRIPT, bindings);
+            } catch (ScriptException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public Object compiledScript() {
+        final Exchange aggregated = aggregate(compiled, MESSAGES);
+        compiled.onCompletion(aggregated);
+        return aggregated.getIn().getBody();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVALUATED_MESSAGES)
+    public Object evaluatedScript() {
+        return aggregate(evaluated, EVALUATED_MESSAGES).getIn().getBody();
+    }
+
+    private Exchange aggregate(AggregationStrategy strategy, int messages) {
+        Exchange aggregated = null;
+        for (int i = 0; i < messages; i++) {
+            final Exchange exchange = new DefaultExchange(context);
+            exchange.getIn().setBody("{\"id\":" + i + ",\"name\":\"item-" + i + "\"}");
+            aggregated = strategy.aggregate(aggregated, exchange);
+        }
+        return aggregated;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ScriptAggregationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
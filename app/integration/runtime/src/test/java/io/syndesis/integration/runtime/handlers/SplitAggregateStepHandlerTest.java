@@ -16,7 +16,9 @@
 package io.syndesis.integration.runtime.handlers;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import io.syndesis.common.model.action.ConnectorAction;
@@ -35,6 +37,8 @@ import org.apache.camel.ProducerTemplate;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.component.mock.MockEndpoint;
 import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.processor.aggregate.CompletionAwareAggregationStrategy;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -622,6 +626,105 @@ public class SplitAggregateStepHandlerTest {
         }
     }
 
+    @Test
+    public void testSplitAggregateScriptAggregate() throws Exception {
+        final CamelContext context = new DefaultCamelContext();
+
+        try {
+            final RouteBuilder routes = newIntegrationRouteBuilder(activityTracker,
+                new Step.Builder()
+                    .id(START_STEP)
+                    .stepKind(StepKind.endpoint)
+                    .action(new ConnectorAction.Builder()
+                        .descriptor(new ConnectorDescriptor.Builder()
+                            .componentScheme("direct")
+                            .putConfiguredProperty("name", "expression")
+                            .build())
+                        .build())
+                    .build(),
+                new Step.Builder()
+                    .id(SPLIT_STEP)
+                    .stepKind(StepKind.split)
+                    .putConfiguredProperty("aggregationStrategy", "script")
+                    .putConfiguredProperty("aggregationScriptLanguage", "nashorn")
+                    .putConfiguredProperty("aggregationScript", "aggregate.add(body.name);\n" +
+                            "aggregate;")
+                    .build(),
+                new Step.Builder()
+                    .id(MOCK_STEP)
+                    .stepKind(StepKind.endpoint)
+                    .action(new ConnectorAction.Builder()
+                        .descriptor(new ConnectorDescriptor.Builder()
+                            .componentScheme("mock")
+                            .putConfiguredProperty("name", "split")
+                            .build())
+                        .build())
+                    .build(),
+                new Step.Builder()
+                    .id(AGGREGATE_STEP)
+                    .stepKind(StepKind.aggregate)
+                    .build()
+            );
+
+            // Set up the camel context
+            context.setUuidGenerator(KeyGenerator::createKey);
+            context.addLogListener(new IntegrationLoggingListener(activityTracker));
+            context.addInterceptStrategy(new ActivityTrackingInterceptStrategy(activityTracker));
+            context.addRoutes(routes);
+            context.start();
+
+            // Dump routes as XML for troubleshooting
+            dumpRoutes(context);
+
+            final ProducerTemplate template = context.createProducerTemplate();
+            final MockEndpoint result = context.getEndpoint("mock:split", MockEndpoint.class);
+            final String body = "[{\"id\": 1, \"name\": \"a\"},{\"id\": 2, \"name\": \"b\"},{\"id\": 3, \"name\": \"c\"}]";
+
+            result.expectedBodiesReceived("{\"id\":1,\"name\":\"a\"}", "{\"id\":2,\"name\":\"b\"}", "{\"id\":3,\"name\":\"c\"}");
+
+            String response = template.requestBody("direct:expression", body, String.class);
+
+            result.assertIsSatisfied();
+            Assertions.assertThat(response).isEqualTo("[\"a\",\"b\",\"c\"]");
+
+            verify(activityTracker).startTracking(any(Exchange.class));
+            verifyActivityStepTracking(START_STEP, 1);
+            verifyActivityStepTracking(SPLIT_STEP, 0);
+            verifyActivityStepTracking(MOCK_STEP, 3);
+            verifyActivityStepTracking(AGGREGATE_STEP, 0);
+            verify(activityTracker, times(4)).track(eq("exchange"), anyString(), eq("step"), anyString(), eq("id"), anyString(), eq("duration"), anyLong(), eq("failure"), isNull());
+            verify(activityTracker).finishTracking(any(Exchange.class));
+        } finally {
+            context.stop();
+        }
+    }
+
+    @Test
+    public void testScriptAggregationsDoNotShareGlobals() {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put("aggregationScriptLanguage", "nashorn");
+        properties.put("aggregationScript", "if (typeof seen === 'undefined') { seen = ''; }\n" +
+                "seen += body;\n" +
+                "aggregate.add(seen);\n" +
+                "aggregate;");
+        final CompletionAwareAggregationStrategy strategy =
+            (CompletionAwareAggregationStrategy) AggregateStepHandler.AggregationOption.script.getStrategy(properties);
+
+        final CamelContext context = new DefaultCamelContext();
+        // both aggregations on this thread, one after the other
+        for (int i = 0; i < 2; i++) {
+            Exchange aggregated = null;
+            for (String body : Arrays.asList("a", "b")) {
+                final Exchange exchange = new DefaultExchange(context);
+                exchange.getIn().setBody(body);
+                aggregated = strategy.aggregate(aggregated, exchange);
+            }
+            strategy.onCompletion(aggregated);
+
+            Assertions.assertThat(aggregated.getIn().getBody(String.class)).isEqualTo("[\"a\",\"ab\"]");
+        }
+    }
+
     private void verifyActivityStepTracking(String stepId, int times) {
         verify(activityTracker, times(times)).track(eq("exchange"), anyString(), eq("step"), eq(stepId), eq("id"), anyString(), eq("duration"), anyLong(), eq("failure"), isNull());
     }
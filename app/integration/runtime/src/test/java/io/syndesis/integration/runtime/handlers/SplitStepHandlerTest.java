@@ -17,8 +17,10 @@ package io.syndesis.integration.runtime.handlers;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.List;
 
 import io.syndesis.common.model.DataShape;
@@ -53,6 +55,7 @@ import org.slf4j.LoggerFactory;
 import static io.syndesis.integration.runtime.IntegrationTestSupport.dumpRoutes;
 import static io.syndesis.integration.runtime.IntegrationTestSupport.newIntegrationRouteBuilder;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -339,6 +342,136 @@ public class SplitStepHandlerTest {
         }
     }
 
+    @Test
+    public void testStreamingSplitJsonArrayInputStream() throws Exception {
+        final String body = "[{\"id\": 1, \"name\": \"a\"},{\"id\": 2, \"name\": \"b\"},{\"id\": 3, \"name\": \"c\"}]";
+
+        assertStreamingSplit(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+            "{\"id\":1,\"name\":\"a\"}", "{\"id\":2,\"name\":\"b\"}", "{\"id\":3,\"name\":\"c\"}");
+    }
+
+    @Test
+    public void testStreamingSplitJsonLines() throws Exception {
+        final String body = "{\"id\": 1}\n{\"id\": 2}\n";
+
+        assertStreamingSplit(body, "{\"id\":1}", "{\"id\":2}");
+    }
+
+    @Test
+    public void testStreamingSplitTextLines() throws Exception {
+        final String body = "a,b\nc\r\nd";
+
+        assertStreamingSplit(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), "a,b", "c", "d");
+    }
+
+    @Test
+    public void testStreamingSplitLargeJsonArray() throws Exception {
+        final int elements = 10_000;
+        final InputStream body = new SequenceInputStream(new Enumeration<InputStream>() {
+            int element = -1;
+
+            @Override
+            public boolean hasMoreElements() {
+                return element <= elements;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                final String chunk;
+                if (element == -1) {
+                    chunk = "[";
+                } else if (element == elements) {
+                    chunk = "]";
+                } else {
+                    chunk = (element > 0 ? "," : "") + "{\"id\":" + element + "}";
+                }
+                element++;
+                return new ByteArrayInputStream(chunk.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        final DefaultCamelContext context = streamingSplitContext();
+        try {
+            final MockEndpoint result = context.getEndpoint("mock:expression", MockEndpoint.class);
+            result.setRetainFirst(1);
+            result.setRetainLast(1);
+            result.expectedMessageCount(elements);
+
+            final Object aggregated = context.createProducerTemplate().requestBody("direct:expression", body);
+
+            result.assertIsSatisfied();
+            assertThat(result.getExchanges().get(0).getIn().getBody()).isEqualTo("{\"id\":0}");
+            assertThat(result.getExchanges().get(1).getIn().getBody()).isEqualTo("{\"id\":" + (elements - 1) + "}");
+
+            // the elements are not collected, only the latest one is kept
+            assertThat(aggregated).isEqualTo("{\"id\":" + (elements - 1) + "}");
+        } finally {
+            context.stop();
+        }
+    }
+
+    private void assertStreamingSplit(Object body, String... expected) throws Exception {
+        final DefaultCamelContext context = streamingSplitContext();
+
+        try {
+            final ProducerTemplate template = context.createProducerTemplate();
+            final MockEndpoint result = context.getEndpoint("mock:expression", MockEndpoint.class);
+
+            result.expectedMessageCount(expected.length);
+            result.expectedBodiesReceived((Object[]) expected);
+
+            template.sendBody("direct:expression", body);
+
+            result.assertIsSatisfied();
+
+            verifyActivityStepTracking(MOCK_STEP, expected.length);
+        } finally {
+            context.stop();
+        }
+    }
+
+    private DefaultCamelContext streamingSplitContext() throws Exception {
+        final DefaultCamelContext context = new DefaultCamelContext();
+
+        final RouteBuilder routes = newIntegrationRouteBuilder(activityTracker,
+                new Step.Builder()
+                    .id(START_STEP)
+                    .stepKind(StepKind.endpoint)
+                    .action(new ConnectorAction.Builder()
+                        .descriptor(new ConnectorDescriptor.Builder()
+                            .componentScheme("direct")
+                            .putConfiguredProperty("name", "expression")
+                            .build())
+                        .build())
+                    .build(),
+                new Step.Builder()
+                    .id(SPLIT_STEP)
+                    .stepKind(StepKind.split)
+                    .putConfiguredProperty("streaming", "true")
+                    .build(),
+                new Step.Builder()
+                    .id(MOCK_STEP)
+                    .stepKind(StepKind.endpoint)
+                    .action(new ConnectorAction.Builder()
+                        .descriptor(new ConnectorDescriptor.Builder()
+                            .componentScheme("mock")
+                            .putConfiguredProperty("name", "expression")
+                            .build())
+                        .build())
+                    .build()
+        );
+
+        // Set up the camel context
+        context.setUuidGenerator(KeyGenerator::createKey);
+        context.addLogListener(new IntegrationLoggingListener(activityTracker));
+        context.addInterceptStrategy(new ActivityTrackingInterceptStrategy(activityTracker));
+        context.addRoutes(routes);
+
+        context.start();
+
+        return context;
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"/person-unified-schema.json",
                  "/person-unified-schema-draft-4.json",
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.integration.runtime.logging;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.syndesis.common.util.KeyGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the throughput of tracking the activities of exchanges by printing
+ * them on STDOUT with sending them in batches, by the threads of the
+ * exchanges. STDOUT goes nowhere and the batches are discarded, so only the
+ * cost in the integration is measured, the batching tracker waits for room in
+ * its queue so it is measured up to the sending of the events.
+ *
+ * Run from the IDE or with: {@code mvn test-compile exec:java
+ * -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.syndesis.integration.runtime.logging.ActivityTrackerBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ActivityTrackerBenchmark {
+
+    private final LongAdder sent = new LongAdder();
+
+    private PrintStream stdout;
+    private ActivityTracker sysOut;
+    private BatchingActivityTracker batching;
+
+    @Setup
+    public void createTrackers() {
+        stdout = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                // discarded
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                // discarded
+            }
+        }));
+
+        sysOut = new ActivityTracker.SysOut();
+        batching = new BatchingActivityTracker((batch, length) -> sent.add(length), null, 10_000, 500, Duration.ofSeconds(1), Duration.ofMinutes(1),
+            Duration.ZERO, 1.0);
+        batching.start();
+    }
+
+    @TearDown
+    public void closeTrackers() {
+        batching.close();
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public void stdout() {
+        track(sysOut);
+    }
+
+    @Benchmark
+    public void batching() {
+        track(batching);
+    }
+
+    private static void track(ActivityTracker tracker) {
+        String exchange = KeyGenerator.createKey();
+        tracker.track("exchange", exchange, "status", "begin");
+        tracker.track("exchange", exchange, "step", "s1", "id", KeyGenerator.createKey(), "message", "Hello World");
+        tracker.track("exchange", exchange, "step", "s1", "id", KeyGenerator.createKey(), "duration", 582_977L, "failure", null);
+        tracker.track("exchange", exchange, "status", "done", "failed", false);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ActivityTrackerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.integration.runtime.logging;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.syndesis.common.util.KeyGenerator;
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchingActivityTrackerTest {
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void shouldSendEventsAsLogLines() {
+        BatchingActivityTracker tracker = new BatchingActivityTracker(this::send, null, 100, 10, Duration.ofSeconds(10), Duration.ZERO, Duration.ZERO, 1.0);
+        tracker.start();
+
+        tracker.track("exchange", "i-1", "status", "begin");
+        tracker.track("exchange", "i-1", "step", "s1", "id", "i-2", "duration", 10L, "failure", null);
+        tracker.track("exchange", "i-1", "status", "done", "failed", false);
+        tracker.close();
+
+        assertThat(sent).hasSize(1);
+        String[] lines = sent.get(0).split("\n", -1);
+        assertThat(lines).hasSize(4);
+        assertThat(lines[0]).matches("\\d{4}-\\d\\d-\\d\\dT\\d\\d:\\d\\d:\\d\\d\\.\\d{3}Z \\{\"exchange\":\"i-1\",\"status\":\"begin\"}");
+        assertThat(lines[1]).endsWith(" {\"exchange\":\"i-1\",\"step\":\"s1\",\"id\":\"i-2\",\"duration\":10}");
+        assertThat(lines[2]).endsWith(" {\"exchange\":\"i-1\",\"status\":\"done\",\"failed\":false}");
+        assertThat(lines[3]).isEmpty();
+    }
+
+    @Test
+    public void shouldSendBatchesOfAtMostBatchSize() {
+        BatchingActivityTracker tracker = new BatchingActivityTracker(this::send, null, 100, 2, Duration.ofSeconds(10), Duration.ZERO, Duration.ZERO, 1.0);
+        for (int i = 0; i < 5; i++) {
+            tracker.track("exchange", "i-" + i, "status", "begin");
+        }
+        tracker.start();
+        tracker.close();
+
+        assertThat(sent).hasSize(3);
+        assertThat(sent.get(2)).contains("\"i-4\"");
+    }
+
+    @Test
+    public void shouldSampleWholeExchanges() {
+        BatchingActivityTracker tracker = new BatchingActivityTracker(this::send, null, 10_000, 100, Duration.ofSeconds(10), Duration.ZERO, Duration.ZERO, 0.25);
+
+        int sampled = 0;
+        for (int i = 0; i < 1000; i++) {
+            String exchange = KeyGenerator.createKey();
+            boolean begin = tracker.isSampled("exchange", exchange, "status", "begin");
+            assertThat(tracker.isSampled("exchange", exchange, "step", "s1", "id", KeyGenerator.createKey())).isEqualTo(begin);
+            assertThat(tracker.isSampled("exchange", exchange, "status", "done")).isEqualTo(begin);
+            if (begin) {
+                sampled++;
+            }
+        }
+
+        assertThat(sampled).isBetween(150, 350);
+        assertThat(new BatchingActivityTracker(this::send, null, 1, 1, Duration.ZERO, Duration.ZERO, Duration.ZERO, 0).isSampled("exchange", "i-1")).isFalse();
+    }
+
+    @Test
+    public void shouldDropEventsOnceTheQueueIsFull() {
+        BatchingActivityTracker tracker = new BatchingActivityTracker(this::send, null, 2, 10, Duration.ofSeconds(10), Duration.ofMillis(1), Duration.ZERO, 1.0);
+        for (int i = 0; i < 5; i++) {
+            tracker.track("exchange", "i-" + i, "status", "begin");
+        }
+
+        assertThat(tracker.getQueued()).isEqualTo(2);
+        assertThat(tracker.getDropped()).isEqualTo(3);
+
+        tracker.start();
+        tracker.close();
+        assertThat(sent).hasSize(1);
+        assertThat(sent.get(0)).contains("\"i-0\"", "\"i-1\"");
+    }
+
+    @Test
+    public void shouldRetryAndThenDropBatches() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        BatchingActivityTracker tracker = new BatchingActivityTracker((batch, length) -> {
+            if (new String(batch, 0, length, UTF_8).contains("\"i-1\"")) {
+                attempts.incrementAndGet();
+                throw new IOException("Unavailable");
+            }
+            send(batch, length);
+            done.countDown();
+        }, null, 100, 1, Duration.ofMillis(1), Duration.ZERO, Duration.ofMillis(200), 1.0);
+        tracker.start();
+
+        tracker.track("exchange", "i-1", "status", "begin");
+        tracker.track("exchange", "i-2", "status", "begin");
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        tracker.close();
+
+        // the first batch is retried with a growing delay for the retry time, then dropped
+        assertThat(attempts.get()).isBetween(3, 10);
+        assertThat(tracker.getDropped()).isEqualTo(1);
+        assertThat(sent).hasSize(1);
+        assertThat(sent.get(0)).contains("\"i-2\"");
+    }
+
+    @Test
+    public void shouldHandBatchesThatCantBeSentToFallback() {
+        List<Object[]> logged = new CopyOnWriteArrayList<>();
+        BatchingActivityTracker tracker = new BatchingActivityTracker((batch, length) -> {
+            throw new IOException("Unavailable");
+        }, logged::add, 100, 10, Duration.ofMillis(1), Duration.ZERO, Duration.ofMillis(50), 1.0);
+        tracker.start();
+
+        tracker.track("exchange", "i-1", "status", "begin");
+        tracker.track("exchange", "i-1", "status", "done");
+        tracker.close();
+
+        assertThat(tracker.getDropped()).isZero();
+        assertThat(logged).containsExactly(
+            new Object[] {"exchange", "i-1", "status", "begin"},
+            new Object[] {"exchange", "i-1", "status", "done"});
+    }
+
+    private void send(byte[] batch, int length) {
+        sent.add(new String(batch, 0, length, UTF_8));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.integration.runtime.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Predicate;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.util.ExchangeHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares evaluating the predicates of a rule filter, built from the rules
+ * like {@code RuleFilterStepHandler} does, and of an expression filter with
+ * {@link JsonSimplePredicate} against copying the exchange and parsing its
+ * body for each predicate, as it used to. Each benchmark evaluates three
+ * predicates against the same exchange, like the conditions of a choice.
+ *
+ * Run from the IDE or with: {@code mvn test-compile exec:java
+ * -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.syndesis.integration.runtime.util.JsonSimplePredicateBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSimplePredicateBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String[] RULES = {
+        "${body.user.name} == 'user-1' && ${body.count} > '10'",
+        "${body.user.name} == 'user-2' || ${body.count} < '5'",
+        "${body.user.name} contains 'user' && ${body.text} != 'none'",
+    };
+
+    private static final String[] EXPRESSIONS = {
+        "${body.count} > 10 && ${body.text} in 'Hello,World'",
+        "${body.items[0].id} == 0",
+        "${body.user.name} regex 'user-[0-9]+'",
+    };
+
+    @Param({"10", "1000"})
+    int items;
+
+    private final DefaultCamelContext context = new DefaultCamelContext();
+
+    private String payload;
+    private Predicate[] rules;
+    private Predicate[] expressions;
+    private Predicate[] copiedRules;
+    private Predicate[] copiedExpressions;
+
+    @Setup
+    public void createPredicates() {
+        StringBuilder builder = new StringBuilder("{\"user\":{\"name\":\"user-1\"},\"count\":12,\"text\":\"Hello\",\"items\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i).append("\",\"price\":").append(i * 1.5).append('}');
+        }
+        payload = builder.append("]}").toString();
+
+        rules = predicates(RULES);
+        expressions = predicates(EXPRESSIONS);
+        copiedRules = copyingPredicates(RULES);
+        copiedExpressions = copyingPredicates(EXPRESSIONS);
+    }
+
+    @Benchmark
+    public int ruleFilter() {
+        return evaluate(rules);
+    }
+
+    @Benchmark
+    public int expressionFilter() {
+        return evaluate(expressions);
+    }
+
+    @Benchmark
+    public int ruleFilterCopyingExchange() {
+        return evaluate(copiedRules);
+    }
+
+    @Benchmark
+    public int expressionFilterCopyingExchange() {
+        return evaluate(copiedExpressions);
+    }
+
+    private int evaluate(Predicate[] predicates) {
+        Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody(payload);
+
+        int matches = 0;
+        for (Predicate predicate : predicates) {
+            if (predicate.matches(exchange)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private Predicate[] predicates(String... expressions) {
+        Predicate[] predicates = new Predicate[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            predicates[i] = new JsonSimplePredicate(expressions[i], context);
+        }
+        return predicates;
+    }
+
+    private Predicate[] copyingPredicates(String... expressions) {
+        Predicate[] predicates = new Predicate[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            Predicate ognl = context.resolveLanguage("simple").createPredicate(JsonSimplePredicate.convertSimpleToOGNLForMaps(expressions[i]));
+            predicates[i] = exchange -> {
+                Exchange copy = ExchangeHelper.createCopy(exchange, true);
+                Message in = copy.getIn();
+                try (InputStream stream = in.getBody(InputStream.class)) {
+                    JsonNode json = MAPPER.readTree(stream);
+                    in.setBody(MAPPER.convertValue(json, Map.class));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                return ognl.matches(copy);
+            };
+        }
+        return predicates;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JsonSimplePredicateBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -19,16 +19,23 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.syndesis.common.util.IOStreams;
 import org.apache.camel.Exchange;
 import org.apache.camel.impl.DefaultCamelContext;
 import org.apache.camel.impl.DefaultExchange;
 import org.apache.camel.impl.DefaultMessage;
+import org.apache.camel.impl.SimpleRegistry;
+import org.apache.camel.language.bean.RuntimeBeanExpressionException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
@@ -69,6 +76,41 @@ public class JsonSimplePredicateTest {
         assertThat(JsonSimplePredicate.toOgnl(matcher)).isEqualTo(ognl);
     }
 
+    @ParameterizedTest
+    @CsvSource({"2 == 1, 2 == 1, ''",
+        "${body.prop} == 1, ${exchangeProperty.SyndesisJsonSimplePredicatePath0} == 1, prop",
+        "${body.size()} == 1 && ${body[0].prop} == 1, ${body.size()} == 1 && ${exchangeProperty.SyndesisJsonSimplePredicatePath0} == 1, 0/prop",
+        "${body.fr_op.gl$op.ml0op[3]} == '2.4' OR ${body.a.b()}, ${exchangeProperty.SyndesisJsonSimplePredicatePath0} == '2.4' OR ${body[a][b()]}, fr_op/gl$op/ml0op/3"})
+    public void shouldCompilePlainBodyPaths(final String simple, final String compiled, final String path) {
+        final List<String[]> paths = new ArrayList<>();
+
+        assertThat(JsonSimplePredicate.compileBodyPaths(simple, paths)).isEqualTo(compiled);
+        assertThat(paths.stream().map(p -> String.join("/", p))).containsExactlyElementsOf(
+            path.isEmpty() ? Collections.emptyList() : Collections.singletonList(path));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"${body.user.name} == 'bob', true",
+        "${body.user.age} == null, true",
+        "${body.items[1].id} == 2, true",
+        "${body.items[2].id} == 2, false",
+        "${body.user.name.first} == 'bob', false",
+        "${body.size()} == 2 && ${body[user][name]} regex 'b.b', true"})
+    public void shouldEvaluateCompiledPathsLikeOgnl(final String expression, final boolean expected) {
+        final String payload = "{\"user\": {\"name\": \"bob\"}, \"items\": [{\"id\": 1}, {\"id\": 2}]}";
+        final JsonSimplePredicate predicate = new JsonSimplePredicate(expression, CONTEXT);
+        final Exchange exchange = exchangeWith(payload);
+
+        boolean matches;
+        try {
+            matches = predicate.matches(exchange);
+        } catch (RuntimeBeanExpressionException | IndexOutOfBoundsException e) {
+            matches = false;
+        }
+        assertThat(matches).isEqualTo(expected);
+        assertThat(exchange.getProperties()).doesNotContainKeys(JsonSimplePredicate.PATH_PROPERTY + 0);
+    }
+
     @Test
     public void shouldFilterByDefaultForJavaBeanInput() {
         final JsonSimplePredicate predicate = new JsonSimplePredicate("${body.prop} == 1", CONTEXT);
@@ -115,6 +157,35 @@ public class JsonSimplePredicateTest {
         assertThat(predicate.matches(exchangeWith(Arrays.asList("{\"prop\": 3}", "{\"prop\": 4}")))).isEqualTo(false);
     }
 
+    @Test
+    public void shouldParseBodyOncePerExchange() {
+        final AtomicInteger parsed = new AtomicInteger();
+        final SimpleRegistry registry = new SimpleRegistry();
+        registry.put("mapper", new ObjectMapper() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public <T> T readValue(String content, Class<T> valueType) throws JsonProcessingException {
+                parsed.incrementAndGet();
+                return super.readValue(content, valueType);
+            }
+        });
+        final DefaultCamelContext context = new DefaultCamelContext(registry);
+
+        final JsonSimplePredicate first = new JsonSimplePredicate("${body.prop} == 1", context);
+        final JsonSimplePredicate second = new JsonSimplePredicate("${body.prop} == 2", context);
+        final Exchange exchange = exchangeWith("{\"prop\": 2}");
+
+        assertThat(first.matches(exchange)).isEqualTo(false);
+        assertThat(second.matches(exchange)).isEqualTo(true);
+        assertThat(parsed).hasValue(1);
+        assertThat(exchange.getIn().getBody()).isEqualTo("{\"prop\": 2}");
+
+        exchange.getIn().setBody("{\"prop\": 1}");
+        assertThat(first.matches(exchange)).isEqualTo(true);
+        assertThat(parsed).hasValue(2);
+    }
+
     private static Exchange exchangeWith(final Object body) {
         final DefaultExchange exchange = new DefaultExchange(CONTEXT);
         final DefaultMessage payload = new DefaultMessage(CONTEXT);
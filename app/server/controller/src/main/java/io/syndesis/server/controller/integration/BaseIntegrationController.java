@@ -17,13 +17,17 @@ package io.syndesis.server.controller.integration;
 
 import java.io.IOException;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
 import io.syndesis.common.model.ChangeEvent;
 import io.syndesis.common.model.Kind;
 import io.syndesis.common.model.integration.IntegrationDeployment;
@@ -40,10 +44,15 @@ import io.syndesis.server.dao.manager.DataManager;
 import io.syndesis.server.openshift.OpenShiftService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 
 /**
  * This class tracks changes to Integrations and attempts to process them so that
  * their current status matches their desired status.
+ *
+ * Changed and periodically rechecked deployments are queued by id and
+ * reconciled by a pool of workers, so deployments are reconciled in parallel
+ * but a deployment is never reconciled by more than one worker at a time.
  */
 public abstract class BaseIntegrationController implements BackendController {
     private static final Logger LOG = LoggerFactory.getLogger(BaseIntegrationController.class);
@@ -53,11 +62,14 @@ public abstract class BaseIntegrationController implements BackendController {
     private final DataManager dataManager;
     private final EventBus eventBus;
     private final ConcurrentHashMap<IntegrationDeploymentState, StateChangeHandler> handlers = new ConcurrentHashMap<>();
-    private final Set<String> scheduledChecks = ConcurrentHashMap.newKeySet();
     private final ControllersConfigurationProperties properties;
 
-    private ExecutorService executor;
+    private ExecutorService workers;
     private ScheduledExecutorService scheduler;
+    private WorkQueue queue;
+
+    private MeterRegistry meterRegistry = new CompositeMeterRegistry();
+    private Timer reconcileTimer;
 
     protected BaseIntegrationController(OpenShiftService openShiftService, DataManager dataManager, EventBus eventBus,
                                      StateChangeHandlerProvider handlerFactory, ControllersConfigurationProperties properties) {
@@ -88,14 +100,35 @@ public abstract class BaseIntegrationController implements BackendController {
         return properties;
     }
 
-    protected Set<String> getScheduledChecks() { return scheduledChecks; }
-
     protected ScheduledExecutorService getScheduler() { return scheduler; }
 
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        Gauge.builder("integration.controller.queue.depth", this, BaseIntegrationController::getQueueDepth)
+            .description("Integration deployments waiting to be reconciled")
+            .register(registry);
+    }
+
+    int getQueueDepth() {
+        WorkQueue current = queue;
+        return current == null ? 0 : current.size();
+    }
+
     @SuppressWarnings("FutureReturnValueIgnored")
     protected void doStart() {
-        executor = Executors.newSingleThreadExecutor(Threads.newThreadFactory("Integration Controller"));
-        scheduler = Executors.newScheduledThreadPool(2, Threads.newThreadFactory("Integration Controller Scheduler"));
+        scheduler = Executors.newScheduledThreadPool(1, Threads.newThreadFactory("Integration Controller Scheduler"));
+        // failed reconciliations are retried sooner than the periodic check
+        queue = new WorkQueue(scheduler, 1, Math.max(1, properties.getIntegrationStateCheckInterval()), TimeUnit.SECONDS);
+        reconcileTimer = Timer.builder("integration.controller.reconcile")
+            .description("Time taken to reconcile integration deployments")
+            .register(meterRegistry);
+
+        int workerCount = Math.max(1, properties.getIntegrationWorkers());
+        workers = Executors.newFixedThreadPool(workerCount, Threads.newThreadFactory("Integration Controller"));
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::work);
+        }
 
         scheduler.scheduleAtFixedRate(this::scanIntegrationsForWork, 0, properties.getIntegrationStateCheckInterval(), TimeUnit.SECONDS);
         eventBus.subscribe(EVENT_BUS_ID, this::onChangeEvent);
@@ -104,39 +137,64 @@ public abstract class BaseIntegrationController implements BackendController {
     protected void doStop() {
         eventBus.unsubscribe(EVENT_BUS_ID);
 
+        queue.shutdown();
         scheduler.shutdownNow();
-        executor.shutdownNow();
+        workers.shutdownNow();
         try {
             boolean schedulerStopped = false;
-            boolean executorStopped = false;
+            boolean workersStopped = false;
 
             do {
                 schedulerStopped = scheduler.awaitTermination(10, TimeUnit.SECONDS);
-                executorStopped = executor.awaitTermination(10, TimeUnit.SECONDS);
-            } while (!schedulerStopped && !executorStopped);
+                workersStopped = workers.awaitTermination(10, TimeUnit.SECONDS);
+            } while (!schedulerStopped && !workersStopped);
         } catch (final InterruptedException e) {
             LOG.warn("Unable to cleanly stop: {}", e.getMessage());
             LOG.debug("Interrupted while stopping", e);
         }
     }
 
+    /**
+     * Queues the check of the deployment, unless it is already queued. A check
+     * requested while the deployment is being checked is made once that
+     * check is done.
+     */
     protected void checkIntegrationStatusIfNotAlreadyInProgress(String id) {
-        executor.execute(() -> {
-            IntegrationDeployment integrationDeployment = dataManager.fetch(IntegrationDeployment.class, id);
-            if( integrationDeployment != null) {
-                String scheduledKey = getIntegrationMarkerKey(integrationDeployment);
-
-                LOG.debug("Check if IntegrationStatus {} is already in progress for key: {} (keys: {})", id, scheduledKey, scheduledChecks);
-                // Don't start check is already a check is running
-                if (!scheduledChecks.contains(scheduledKey)) {
+        queue.add(id);
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            final String id;
+            try {
+                id = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (id == null) {
+                // shut down
+                return;
+            }
+
+            final long start = System.nanoTime();
+            try {
+                IntegrationDeployment integrationDeployment = dataManager.fetch(IntegrationDeployment.class, id);
+                if (integrationDeployment != null) {
                     checkIntegrationStatus(integrationDeployment);
                 } else {
-                    LOG.debug("A check for IntegrationDeployment {} is already configured with key {}", id, scheduledKey);
+                    LOG.debug("No IntegrationDeployment with id: {}", id);
                 }
-            } else {
-                LOG.debug("No IntegrationDeployment with id: {}", id);
+                queue.forget(id);
+            } catch (@SuppressWarnings("PMD.AvoidCatchingGenericException") RuntimeException e) {
+                LOG.warn("Unable to check the status of IntegrationDeployment {}, retrying: {}", id, e.getMessage());
+                LOG.debug("Unable to check the status of IntegrationDeployment {}", id, e);
+                queue.addRateLimited(id);
+            } finally {
+                queue.done(id);
+                reconcileTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             }
-        });
+        }
     }
 
     private void onChangeEvent(final String event, final String data) {
@@ -162,9 +220,12 @@ public abstract class BaseIntegrationController implements BackendController {
 
     private void scanIntegrationsForWork() {
         LOG.info("Checking integrations for their status.");
-        executor.execute(
-            () -> dataManager.fetchIds(IntegrationDeployment.class).forEach(this::checkIntegrationStatusIfNotAlreadyInProgress)
-        );
+        try {
+            dataManager.fetchIds(IntegrationDeployment.class).forEach(this::checkIntegrationStatusIfNotAlreadyInProgress);
+        } catch (@SuppressWarnings("PMD.AvoidCatchingGenericException") RuntimeException e) {
+            // an exception would cancel the periodic scans
+            LOG.error("Error while checking integrations for their status", e);
+        }
     }
 
     private void checkIntegrationStatus(IntegrationDeployment integrationDeployment) {
@@ -185,9 +246,6 @@ public abstract class BaseIntegrationController implements BackendController {
                 });
         } else if (reconciled.getCurrentState() !=  integrationDeployment.getCurrentState()) {
             dataManager.update(reconciled);
-            scheduledChecks.remove(getIntegrationMarkerKey(reconciled));
-        } else {
-            scheduledChecks.remove(getIntegrationMarkerKey(reconciled));
         }
     }
 
@@ -195,80 +253,63 @@ public abstract class BaseIntegrationController implements BackendController {
         return "Integration " + integrationDeployment.getIntegrationId().orElse("[none]");
     }
 
+    /**
+     * Executes the handler on the worker holding the deployment, so no other
+     * worker checks the deployment while the handler executes.
+     */
     void callStateChangeHandler(StateChangeHandler handler, IntegrationDeployment integrationDeployment) {
         String integrationDeploymentId = integrationDeployment.getId().get();
-        executor.execute(() -> {
-            String checkKey = getIntegrationMarkerKey(integrationDeployment);
-            scheduledChecks.add(checkKey);
-
-            if (stale(handler, integrationDeployment)) {
-                scheduledChecks.remove(checkKey);
-                return;
-            }
+        if (stale(handler, integrationDeployment)) {
+            return;
+        }
 
-            try {
-                final String integrationId = integrationDeployment.getIntegrationId().get();
-                final int deploymentVersion = integrationDeployment.getVersion();
-                LOG.info("IntegrationDeploymentId {} Integration {} : Start processing integration: {}, version: {} with handler: {}", integrationDeploymentId, integrationId, integrationId, deploymentVersion, handler.getClass().getSimpleName());
-                handler.execute(integrationDeployment, update-> {
-                    if (LOG.isInfoEnabled()) {
-                        LOG.info("{} : Setting status to {}{}",
-                            getLabel(integrationDeployment),
-                            update.getState(),
-                            Optional.ofNullable(update.getStatusMessage()).map(x->" ("+x+")").orElse(""));
-                    }
+        try {
+            final String integrationId = integrationDeployment.getIntegrationId().get();
+            final int deploymentVersion = integrationDeployment.getVersion();
+            LOG.info("IntegrationDeploymentId {} Integration {} : Start processing integration: {}, version: {} with handler: {}", integrationDeploymentId, integrationId, integrationId, deploymentVersion, handler.getClass().getSimpleName());
+            handler.execute(integrationDeployment, update-> {
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("{} : Setting status to {}{}",
+                        getLabel(integrationDeployment),
+                        update.getState(),
+                        Optional.ofNullable(update.getStatusMessage()).map(x->" ("+x+")").orElse(""));
+                }
 
-                    // handler.execute might block for while so refresh our copy of the integration
-                    // data before we update the current status
-                    IntegrationDeployment current = dataManager.fetch(IntegrationDeployment.class, integrationDeploymentId);
-                    final IntegrationDeployment updated = current.builder()
-                        .statusMessage(Optional.ofNullable(update.getStatusMessage()))
-                        .currentState(update.getState())
-                        .error(update.getError())
-                        .stepsDone(update.getStepsPerformed())
-                        .build();
-                    LOG.trace("Updated {} , Current {}", updated, current);
-                    if (!updated.equals(current)) {
-                        LOG.debug("IntegrationDeploymentId {} Integration {} , version: {} : jsonDB state update from {} to {}", integrationDeploymentId, integrationId, deploymentVersion, current.getCurrentState(), updated.getCurrentState());
-                        dataManager.update(updated.builder().updatedAt(System.currentTimeMillis()).build());
-                    }
-                });
-            } catch (Exception e) {
-                LOG.error("Error while processing integration status for integration {}", integrationDeploymentId, e);
-                // Something went wrong.. lets note it.
+                // handler.execute might block for while so refresh our copy of the integration
+                // data before we update the current status
                 IntegrationDeployment current = dataManager.fetch(IntegrationDeployment.class, integrationDeploymentId);
-                dataManager.update(new IntegrationDeployment.Builder()
-                    .createFrom(current)
-                    .currentState(IntegrationDeploymentState.Error)
-                    .statusMessage(Exceptions.toString(e))
-                    .updatedAt(System.currentTimeMillis())
-                    .build());
-
-            } finally {
-                // Add a next check for the next interval
-                reschedule(integrationDeploymentId, checkKey);
-            }
-
-        });
-    }
-
-    @SuppressWarnings("FutureReturnValueIgnored")
-    protected void reschedule(String integrationId, String checkKey) {
-        LOG.debug("Reschedule IntegrationDeployment check, id:{}, keys: {}", integrationId, scheduledChecks);
-        scheduler.schedule(() -> {
-                IntegrationDeployment i = dataManager.fetch(IntegrationDeployment.class, integrationId);
-                LOG.debug("Trigger checkIntegrationStatus, id:{}", integrationId);
-                checkIntegrationStatus(i);
-            },
-            properties.getIntegrationStateCheckInterval(),
-            TimeUnit.SECONDS
-        );
+                final IntegrationDeployment updated = current.builder()
+                    .statusMessage(Optional.ofNullable(update.getStatusMessage()))
+                    .currentState(update.getState())
+                    .error(update.getError())
+                    .stepsDone(update.getStepsPerformed())
+                    .build();
+                LOG.trace("Updated {} , Current {}", updated, current);
+                if (!updated.equals(current)) {
+                    LOG.debug("IntegrationDeploymentId {} Integration {} , version: {} : jsonDB state update from {} to {}", integrationDeploymentId, integrationId, deploymentVersion, current.getCurrentState(), updated.getCurrentState());
+                    dataManager.update(updated.builder().updatedAt(System.currentTimeMillis()).build());
+                }
+            });
+        } catch (Exception e) {
+            LOG.error("Error while processing integration status for integration {}", integrationDeploymentId, e);
+            // Something went wrong.. lets note it.
+            IntegrationDeployment current = dataManager.fetch(IntegrationDeployment.class, integrationDeploymentId);
+            dataManager.update(new IntegrationDeployment.Builder()
+                .createFrom(current)
+                .currentState(IntegrationDeploymentState.Error)
+                .statusMessage(Exceptions.toString(e))
+                .updatedAt(System.currentTimeMillis())
+                .build());
+
+        } finally {
+            // Add a next check for the next interval
+            reschedule(integrationDeploymentId);
+        }
     }
 
-    private static String getIntegrationMarkerKey(IntegrationDeployment integrationDeployment) {
-        return integrationDeployment.getTargetState() +
-               ":" +
-               integrationDeployment.getId().orElseThrow(() -> new IllegalArgumentException("No id set in integration " + integrationDeployment));
+    protected void reschedule(String integrationDeploymentId) {
+        LOG.debug("Reschedule IntegrationDeployment check, id:{}", integrationDeploymentId);
+        queue.addAfter(integrationDeploymentId, properties.getIntegrationStateCheckInterval(), TimeUnit.SECONDS);
     }
 
     private static boolean stale(StateChangeHandler handler, IntegrationDeployment integrationDeployment) {
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.controller.integration;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue of the keys of the objects to reconcile, shared by the workers of a
+ * controller. A key is queued once however often it is added before a worker
+ * takes it, and a key taken by a worker is not handed to another one before
+ * it is done: a key added meanwhile is queued again once it is done. Keys that
+ * failed to reconcile are added back after a delay growing exponentially with
+ * the number of consecutive failures.
+ */
+final class WorkQueue {
+
+    private final ScheduledExecutorService scheduler;
+    private final long baseDelay;
+    private final long maxDelay;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Deque<String> queue = new ArrayDeque<>();
+    // keys to be processed, queued or waiting for a worker to be done with them
+    private final Set<String> dirty = new HashSet<>();
+    private final Set<String> processing = new HashSet<>();
+    private final Map<String, Integer> failures = new HashMap<>();
+    private boolean shutdown;
+
+    /**
+     * @param scheduler used to add keys after a delay
+     * @param baseDelay delay before a key is added back after its first failure
+     * @param maxDelay maximum delay before a key is added back after failures
+     * @param unit unit of the delays
+     */
+    WorkQueue(ScheduledExecutorService scheduler, long baseDelay, long maxDelay, TimeUnit unit) {
+        this.scheduler = scheduler;
+        this.baseDelay = unit.toMillis(baseDelay);
+        this.maxDelay = unit.toMillis(maxDelay);
+    }
+
+    void add(String key) {
+        lock.lock();
+        try {
+            if (shutdown || !dirty.add(key)) {
+                return;
+            }
+            if (!processing.contains(key)) {
+                queue.add(key);
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("FutureReturnValueIgnored")
+    void addAfter(String key, long delay, TimeUnit unit) {
+        try {
+            scheduler.schedule(() -> add(key), delay, unit);
+        } catch (RejectedExecutionException ignored) {
+            // shutting down
+        }
+    }
+
+    /**
+     * Adds the key back after a delay depending on the number of times it
+     * failed since it was last forgotten.
+     */
+    void addRateLimited(String key) {
+        addAfter(key, backoff(key), TimeUnit.MILLISECONDS);
+    }
+
+    long backoff(String key) {
+        int failed;
+        lock.lock();
+        try {
+            failed = failures.merge(key, 1, Integer::sum);
+        } finally {
+            lock.unlock();
+        }
+        return Math.min(maxDelay, baseDelay << Math.min(failed - 1, 20));
+    }
+
+    /**
+     * Resets the failures of the key, once it reconciled.
+     */
+    void forget(String key) {
+        lock.lock();
+        try {
+            failures.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a key to process, the key is then held by the caller until
+     * {@link #done(String)} is invoked.
+     * @return the key, or {@code null} once the queue is shut down
+     */
+    String take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (queue.isEmpty() && !shutdown) {
+                notEmpty.await();
+            }
+            String key = queue.poll();
+            if (key != null) {
+                dirty.remove(key);
+                processing.add(key);
+            }
+            return key;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void done(String key) {
+        lock.lock();
+        try {
+            processing.remove(key);
+            if (dirty.contains(key) && !shutdown) {
+                queue.add(key);
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            queue.clear();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
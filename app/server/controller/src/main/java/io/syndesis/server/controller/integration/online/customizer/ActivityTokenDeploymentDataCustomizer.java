@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.controller.integration.online.customizer;
+
+import io.syndesis.common.model.integration.IntegrationDeployment;
+import io.syndesis.server.openshift.DeploymentData;
+import io.syndesis.server.openshift.IntegrationTokens;
+import io.syndesis.server.openshift.OpenShiftService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adds the token the integration pods authenticate the activities they push
+ * with to the application properties, mounted from the secret of the
+ * deployment.
+ */
+@Component
+public final class ActivityTokenDeploymentDataCustomizer implements DeploymentDataCustomizer {
+
+    static final String APPLICATION_PROPERTIES = "application.properties";
+
+    static final String TOKEN_PROPERTY = "syndesis.integration.runtime.logging.push.token";
+
+    private final IntegrationTokens tokens;
+
+    public ActivityTokenDeploymentDataCustomizer(@Value("${encrypt.key:}") String key) {
+        this.tokens = key.isEmpty() ? null : new IntegrationTokens(key);
+    }
+
+    @Override
+    public DeploymentData customize(final DeploymentData data, final IntegrationDeployment integrationDeployment) {
+        final String properties = data.getSecret().get(APPLICATION_PROPERTIES);
+        if (tokens == null || properties == null) {
+            return data;
+        }
+
+        // the labels the server identifies the pods of the deployment with
+        final String token = tokens.tokenOf(
+            data.getLabels().get(OpenShiftService.INTEGRATION_ID_LABEL),
+            data.getLabels().get(OpenShiftService.DEPLOYMENT_VERSION_LABEL));
+
+        return new DeploymentData.Builder()
+            .createFrom(data)
+            .addSecretEntry(APPLICATION_PROPERTIES, properties + '\n' + TOKEN_PROPERTY + '=' + token + '\n')
+            .build();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.controller.integration;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class WorkQueueTest {
+
+    private final WorkQueue queue = new WorkQueue(mock(ScheduledExecutorService.class), 1, 60, TimeUnit.SECONDS);
+
+    @Test
+    void shouldQueueKeysOnce() throws InterruptedException {
+        queue.add("a");
+        queue.add("b");
+        queue.add("a");
+
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(queue.take()).isEqualTo("a");
+        assertThat(queue.take()).isEqualTo("b");
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    void shouldNotHandOutKeysBeingProcessed() throws InterruptedException {
+        queue.add("a");
+        assertThat(queue.take()).isEqualTo("a");
+
+        // added while processed, queued once done
+        queue.add("a");
+        queue.add("a");
+        queue.add("b");
+        assertThat(queue.take()).isEqualTo("b");
+        assertThat(queue.size()).isZero();
+
+        queue.done("a");
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.take()).isEqualTo("a");
+
+        queue.done("a");
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    void shouldBackOffExponentially() {
+        assertThat(queue.backoff("a")).isEqualTo(1000);
+        assertThat(queue.backoff("a")).isEqualTo(2000);
+        assertThat(queue.backoff("a")).isEqualTo(4000);
+        assertThat(queue.backoff("b")).isEqualTo(1000);
+        for (int i = 0; i < 40; i++) {
+            assertThat(queue.backoff("a")).isLessThanOrEqualTo(60_000);
+        }
+
+        queue.forget("a");
+        assertThat(queue.backoff("a")).isEqualTo(1000);
+    }
+
+    @Test
+    void shouldReleaseWorkersOnShutdown() throws InterruptedException {
+        queue.add("a");
+        queue.shutdown();
+        queue.add("b");
+
+        assertThat(queue.take()).isNull();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.controller.integration.online.customizer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Properties;
+
+import io.syndesis.common.model.integration.Integration;
+import io.syndesis.common.model.integration.IntegrationDeployment;
+import io.syndesis.server.openshift.DeploymentData;
+import io.syndesis.server.openshift.IntegrationTokens;
+import io.syndesis.server.openshift.OpenShiftService;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ActivityTokenDeploymentDataCustomizerTest {
+
+    final IntegrationDeployment deployment = new IntegrationDeployment.Builder()
+        .spec(new Integration.Builder().build()).build();
+
+    final DeploymentData data = DeploymentData.builder()
+        .withVersion(3)
+        .addLabel(OpenShiftService.INTEGRATION_ID_LABEL, "my-integration")
+        .addLabel(OpenShiftService.DEPLOYMENT_VERSION_LABEL, "3")
+        .addSecretEntry("application.properties", "a=b")
+        .build();
+
+    @Test
+    public void shouldAddTheTokenOfTheDeployment() throws IOException {
+        final DeploymentData customized = new ActivityTokenDeploymentDataCustomizer("server-key").customize(data, deployment);
+
+        final Properties properties = new Properties();
+        properties.load(new StringReader(customized.getSecret().get("application.properties")));
+
+        assertThat(properties).containsEntry("a", "b");
+        assertThat(new IntegrationTokens("server-key").isValid(
+            properties.getProperty(ActivityTokenDeploymentDataCustomizer.TOKEN_PROPERTY), "my-integration", "3")).isTrue();
+    }
+
+    @Test
+    public void shouldNotAddTokensWithoutKey() {
+        final DeploymentData customized = new ActivityTokenDeploymentDataCustomizer("").customize(data, deployment);
+
+        assertThat(customized.getSecret()).containsEntry("application.properties", "a=b");
+    }
+}
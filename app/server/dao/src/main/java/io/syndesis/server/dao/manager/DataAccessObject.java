@@ -15,6 +15,10 @@
  */
 package io.syndesis.server.dao.manager;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
 
@@ -43,6 +47,22 @@ public interface DataAccessObject<T extends WithId<T>> {
      */
     T fetch(String id);
 
+    /**
+     * Fetches the entities with the given ids.
+     * @param ids   The ids.
+     * @return      The entities found, keyed by id.
+     */
+    default Map<String, T> fetchAll(Collection<String> ids) {
+        Map<String, T> entities = new HashMap<>();
+        for (String id : ids) {
+            T entity = fetch(id);
+            if (entity != null) {
+                entities.put(id, entity);
+            }
+        }
+        return entities;
+    }
+
     /**
      * Fetches all ids that have the specified property with the given value.
      * @param property      The name of the property.
@@ -51,6 +71,42 @@ public interface DataAccessObject<T extends WithId<T>> {
      */
     Set<String> fetchIdsByPropertyValue(String property, String propertyValue);
 
+    /**
+     * Fetches all ids that have all of the specified properties with the given values.
+     * @param propertyValues The values of the properties, by property name.
+     * @return               All identifiers with all of the specified property and value combinations.
+     */
+    default Set<String> fetchIdsByPropertyValues(Map<String, String> propertyValues) {
+        Set<String> matchingIds = null;
+        for (Map.Entry<String, String> propertyValue : propertyValues.entrySet()) {
+            Set<String> ids = fetchIdsByPropertyValue(propertyValue.getKey(), propertyValue.getValue());
+            if (matchingIds == null) {
+                matchingIds = new HashSet<>(ids);
+            } else {
+                matchingIds.retainAll(ids);
+            }
+            if (matchingIds.isEmpty()) {
+                // short circuit
+                break;
+            }
+        }
+        return matchingIds == null ? new HashSet<>() : matchingIds;
+    }
+
+    /**
+     * Fetches all ids that have the specified property with any of the given values.
+     * @param property The name of the property.
+     * @param values   The values of the property.
+     * @return         All identifiers with the specified property and one of the values.
+     */
+    default Set<String> fetchIdsByPropertyValueIn(String property, Collection<String> values) {
+        Set<String> ids = new HashSet<>();
+        for (String value : values) {
+            ids.addAll(fetchIdsByPropertyValue(property, value));
+        }
+        return ids;
+    }
+
     /**
      * Fetches all ids.
      * @return All identifiers
@@ -23,10 +23,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -257,9 +259,46 @@ public class DataManager implements DataAccessObjectRegistry {
     }
 
     public <K extends WithId<K>> Stream<K> fetchAllByPropertyValue(Class<K> type, String property, String value) {
-        return fetchIdsByPropertyValue(type, property, value).stream()
-            .map(id -> fetch(type, id))
-            .filter(Objects::nonNull);
+        return fetchAllById(type, fetchIdsByPropertyValue(type, property, value)).stream();
+    }
+
+    /**
+     * Fetches the entities with the given ids, the ones not cached are fetched
+     * together and cached.
+     * @return the entities found, in the order of the ids
+     */
+    public <T extends WithId<T>> List<T> fetchAllById(Class<T> model, Collection<String> ids) {
+        Kind kind = Kind.from(model);
+        boolean daoExists = getDataAccessObject(model) != null;
+        Cache<String, T> cache = caches.getCache(kind.getModelName(), daoExists);
+
+        Map<String, T> found = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (String id : ids) {
+            T value = cache.get(id);
+            if (value == null) {
+                missing.add(id);
+            } else {
+                found.put(id, value);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<String, T> fetched = doWithDataAccessObject(model, d -> d.fetchAll(missing));
+            if (fetched != null) {
+                fetched.forEach(cache::put);
+                found.putAll(fetched);
+            }
+        }
+
+        List<T> values = new ArrayList<>(found.size());
+        for (String id : ids) {
+            T value = found.get(id);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
     }
 
     public <T extends WithId<T>> T fetch(Class<T> model, String id) {
@@ -299,27 +338,31 @@ public class DataManager implements DataAccessObjectRegistry {
                 "Found: " + additionalPropValues.length);
         }
 
-        return doWithDataAccessObject(model, d -> {
-            Set<String> matchingIds = new HashSet<>(d.fetchIdsByPropertyValue(property, value));
-            for (int i = 0; i < additionalPropValues.length - 1; i += 2) {
-                if (matchingIds.isEmpty()) {
-                    // short circuit
-                    return matchingIds;
-                }
+        Map<String, String> propertyValues = new LinkedHashMap<>();
+        propertyValues.put(property, value);
+        for (int i = 0; i < additionalPropValues.length - 1; i += 2) {
+            propertyValues.put(additionalPropValues[i], additionalPropValues[i + 1]);
+        }
 
-                String propKey = additionalPropValues[i];
-                String propValue = additionalPropValues[i + 1];
-                Set<String> ids = d.fetchIdsByPropertyValue(propKey, propValue);
-                matchingIds.retainAll(ids);
-            }
-            return matchingIds;
-        });
+        // looked up together so that the values can be matched in a single query
+        return doWithDataAccessObject(model, d -> d.fetchIdsByPropertyValues(propertyValues));
     }
 
     public <T extends WithId<T>> Set<String> fetchIdsByPropertyValue(Class<T> model, String property, String value) {
         return doWithDataAccessObject(model, d -> d.fetchIdsByPropertyValue(property, value));
     }
 
+    /**
+     * Fetches the ids of the entities having any of the given values of the
+     * property, the values are looked up together.
+     */
+    public <T extends WithId<T>> Set<String> fetchIdsByPropertyValueIn(Class<T> model, String property, Collection<String> values) {
+        if (values.isEmpty()) {
+            return new HashSet<>();
+        }
+        return doWithDataAccessObject(model, d -> d.fetchIdsByPropertyValueIn(property, values));
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends WithId<T>> T create(final T entity) {
         Kind kind = entity.getKind();
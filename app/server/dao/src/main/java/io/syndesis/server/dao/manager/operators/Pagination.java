@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.dao.manager.operators;
+
+/**
+ * An operator selecting a page of the list that a data access object can
+ * evaluate in its query instead of in memory.
+ */
+public interface Pagination {
+
+    /**
+     * Returns the index of the first element of the page.
+     */
+    int getOffset();
+
+    /**
+     * Returns the maximum number of elements in the page.
+     */
+    int getLimit();
+
+}
@@ -41,7 +41,12 @@ import org.springframework.core.io.ResourceLoader;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DataManagerTest {
@@ -146,6 +151,26 @@ public class DataManagerTest {
         assertThat(dataManager.fetchIdsByPropertyValue(Connector.class, "prop", "not")).isEmpty();
     }
 
+    @Test
+    public void shouldFetchAllByPropertyValueTogether() {
+        @SuppressWarnings("unchecked")
+        final DataAccessObject<Connector> connectorDao = mock(DataAccessObject.class);
+        when(connectorDao.getType()).thenReturn(Connector.class);
+        dataManager.registerDataAccessObject(connectorDao);
+
+        final Connector cached = new Connector.Builder().id("c1").name("cached").build();
+        final Connector fetched = new Connector.Builder().id("c2").name("fetched").build();
+        dataManager.create(cached);
+
+        when(connectorDao.fetchIdsByPropertyValue("prop", "value")).thenReturn(new HashSet<>(Arrays.asList("c1", "c2", "c3")));
+        when(connectorDao.fetchAll(new HashSet<>(Arrays.asList("c2", "c3")))).thenReturn(Collections.singletonMap("c2", fetched));
+
+        assertThat(dataManager.fetchAllByPropertyValue(Connector.class, "prop", "value")).containsOnly(cached, fetched);
+        assertThat(dataManager.fetch(Connector.class, "c2")).isSameAs(fetched);
+        verify(connectorDao).fetchAll(anyCollection());
+        verify(connectorDao, never()).fetch(anyString());
+    }
+
     @Test
     public void shouldFetchIdsByMultiplePropertyValuePairs() {
         @SuppressWarnings("unchecked")
@@ -153,6 +178,7 @@ public class DataManagerTest {
         when(extensionDao.getType()).thenReturn(Extension.class);
         dataManager.registerDataAccessObject(extensionDao);
 
+        when(extensionDao.fetchIdsByPropertyValues(anyMap())).thenCallRealMethod();
         when(extensionDao.fetchIdsByPropertyValue("prop1", "value1"))
             .thenReturn(new HashSet<>(Arrays.asList("1", "2", "3")));
         when(extensionDao.fetchIdsByPropertyValue("prop2", "value2"))
@@ -171,6 +197,7 @@ public class DataManagerTest {
         when(extensionDao.getType()).thenReturn(Extension.class);
         dataManager.registerDataAccessObject(extensionDao);
 
+        when(extensionDao.fetchIdsByPropertyValues(anyMap())).thenCallRealMethod();
         when(extensionDao.fetchIdsByPropertyValue("prop1", "value1"))
             .thenReturn(Collections.emptySet());
         when(extensionDao.fetchIdsByPropertyValue("prop2", "value2"))
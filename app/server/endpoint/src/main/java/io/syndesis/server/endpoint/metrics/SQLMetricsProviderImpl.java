@@ -21,10 +21,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import io.fabric8.kubernetes.api.model.LabelSelector;
 import io.fabric8.openshift.client.NamespacedOpenShiftClient;
 import io.syndesis.common.model.ListResult;
+import io.syndesis.common.model.metrics.IntegrationDeploymentMetrics;
 import io.syndesis.common.model.metrics.IntegrationMetricsSummary;
 import io.syndesis.server.dao.manager.DataManager;
 
@@ -53,7 +55,27 @@ public class SQLMetricsProviderImpl implements MetricsProvider {
 
     @Override
     public IntegrationMetricsSummary getIntegrationMetricsSummary(String integrationId) {
-        return dataMgr.fetch(IntegrationMetricsSummary.class, integrationId);
+        IntegrationMetricsSummary summary = dataMgr.fetch(IntegrationMetricsSummary.class, integrationId);
+        if (summary == null) {
+            return null;
+        }
+
+        // summaries are only updated when the metrics change, the uptime is as of now
+        return new IntegrationMetricsSummary.Builder()
+                .createFrom(summary)
+                .uptimeDuration(uptime(summary.getStart()))
+                .integrationDeploymentMetrics(summary.getIntegrationDeploymentMetrics()
+                    .map(metrics -> metrics.stream()
+                        .map(m -> new IntegrationDeploymentMetrics.Builder()
+                            .createFrom(m)
+                            .uptimeDuration(uptime(m.getStart()))
+                            .build())
+                        .collect(Collectors.toList())))
+                .build();
+    }
+
+    private static long uptime(Optional<Instant> start) {
+        return start.map(date -> Duration.between(date, Instant.now()).toMillis()).orElse(0L);
     }
 
     @Override
@@ -16,21 +16,28 @@
 package io.syndesis.server.endpoint.util;
 
 import io.syndesis.common.model.ListResult;
+import io.syndesis.server.dao.manager.operators.PropertyValueFilter;
 import io.syndesis.server.endpoint.v1.util.PredicateFilter;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 
-public class ReflectiveFilterer<T> implements Function<ListResult<T>, ListResult<T>> {
+public class ReflectiveFilterer<T> implements Function<ListResult<T>, ListResult<T>>, PropertyValueFilter {
 
     private final List<PredicateFilter<T>> predicateFilters;
 
+    private final List<Map.Entry<String, String>> propertyValues;
+
     public ReflectiveFilterer(Class<T> modelClass, List<FilterOptionsParser.Filter> filters) {
         predicateFilters = new ArrayList<>(filters.size());
+        List<Map.Entry<String, String>> values = new ArrayList<>(filters.size());
         for (FilterOptionsParser.Filter f : filters) {
             String op = f.getOperation().orElseThrow(
                 () -> new IllegalArgumentException("Missing filter operation")
@@ -41,10 +48,12 @@ public class ReflectiveFilterer<T> implements Function<ListResult<T>, ListResult
                     () -> new IllegalArgumentException("Missing value in equality filter")
                 );
                 predicateFilters.add(equalityFilter(modelClass, f.getProperty(), value));
+                values.add(new AbstractMap.SimpleImmutableEntry<>(f.getProperty(), value));
             } else {
                 throw new IllegalArgumentException(String.format("Unknown filter operation %s", op));
             }
         }
+        propertyValues = Collections.unmodifiableList(values);
     }
 
     @Override
@@ -56,6 +65,11 @@ public class ReflectiveFilterer<T> implements Function<ListResult<T>, ListResult
         return intermediate;
     }
 
+    @Override
+    public List<Map.Entry<String, String>> getPropertyValues() {
+        return propertyValues;
+    }
+
     @SuppressWarnings("PMD.CyclomaticComplexity")
     private PredicateFilter<T> equalityFilter(final Class<T> modelClass, final String property, final String value) {
         Method stringGetMethod = ReflectionUtils.getGetMethodOfType(modelClass, property, String.class);
@@ -23,14 +23,19 @@ import java.util.List;
 import java.util.function.Function;
 
 import io.syndesis.common.model.ListResult;
+import io.syndesis.server.dao.manager.operators.PropertySort;
 
 /**
  * Generic comparator which sorts based on fields. Fields are retrieved by reflections
  */
-public class ReflectiveSorter<T> implements Function<ListResult<T>, ListResult<T>>, Comparator<T> {
+public class ReflectiveSorter<T> implements Function<ListResult<T>, ListResult<T>>, Comparator<T>, PropertySort {
 
     private Comparator<T> delegate;
 
+    private final String sortField;
+
+    private final boolean descending;
+
     @Override
     public ListResult<T> apply(ListResult<T> result) {
         List<T> list = new ArrayList<>(result.getItems());
@@ -42,14 +47,15 @@ public class ReflectiveSorter<T> implements Function<ListResult<T>, ListResult<T
     }
 
     public ReflectiveSorter(Class<T> modelClass, SortOptions options) {
-        String sortField = options.getSortField();
+        sortField = options.getSortField();
+        descending = options.getSortDirection() == SortOptions.SortDirection.DESC;
         if (sortField == null) {
             // No sorting
             delegate = null;
         } else {
             delegate = createDelegateComparator(modelClass, sortField);
 
-            if (options.getSortDirection() == SortOptions.SortDirection.DESC) {
+            if (descending) {
                 delegate = delegate.reversed();
             }
         }
@@ -103,4 +109,14 @@ public class ReflectiveSorter<T> implements Function<ListResult<T>, ListResult<T
         return delegate.compare(o1,o2);
     }
 
+    @Override
+    public String getSortProperty() {
+        return sortField;
+    }
+
+    @Override
+    public boolean isDescending() {
+        return descending;
+    }
+
 }
@@ -16,14 +16,21 @@
 package io.syndesis.server.endpoint.v1.handler.activity;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -42,6 +49,7 @@ import org.springframework.stereotype.Component;
 public class ActivityHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(ActivityHandler.class);
+    private static final String BEARER = "Bearer ";
     private final Optional<ActivityTrackingService> service;
 
     public ActivityHandler(Optional<ActivityTrackingService> resource) {
@@ -70,4 +78,36 @@ public class ActivityHandler {
         return service.get().getActivities(integrationId, from, limit);
     }
 
+    /**
+     * Receives the activities pushed by an integration pod, instead of them
+     * being read from the log of the pod. The pod authenticates with the
+     * bearer token of its deployment.
+     */
+    @POST
+    @Consumes(MediaType.TEXT_PLAIN)
+    @Path(value = "/pods/{pod}")
+    public Response ingest(
+        @PathParam("pod") String pod,
+        @HeaderParam(HttpHeaders.AUTHORIZATION) String authorization,
+        @Context HttpServletRequest request,
+        InputStream activities
+    ) throws IOException {
+        if( !service.isPresent() ) {
+            throw new WebApplicationException(Response.Status.NOT_IMPLEMENTED);
+        }
+        if (authorization == null || !authorization.startsWith(BEARER)) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        }
+        String token = authorization.substring(BEARER.length());
+        switch (service.get().ingest(pod, request.getRemoteAddr(), token, activities)) {
+            case ACCEPTED:
+                return Response.noContent().build();
+            case UNAVAILABLE:
+                // the pod retries, and logs the activities once it gives up
+                throw new WebApplicationException(Response.Status.SERVICE_UNAVAILABLE);
+            default:
+                throw new WebApplicationException(Response.Status.FORBIDDEN);
+        }
+    }
+
 }
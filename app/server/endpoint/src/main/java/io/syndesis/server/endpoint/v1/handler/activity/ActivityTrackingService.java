@@ -16,9 +16,31 @@
 package io.syndesis.server.endpoint.v1.handler.activity;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 public interface ActivityTrackingService {
+
+    /**
+     * Outcome of processing the activities pushed by an integration pod.
+     */
+    enum Ingestion {
+        ACCEPTED,
+        // the activities are not authenticated as being from the pod
+        REJECTED,
+        // the pod isn't tracked yet, the activities should be pushed again later
+        UNAVAILABLE
+    }
+
     List<Activity> getActivities(String integrationId, String from, Integer limit) throws IOException;
 
+    /**
+     * Processes the activities pushed by an integration pod, one structured
+     * log line per activity event, authenticated by the token of the
+     * deployment of the pod.
+     */
+    default Ingestion ingest(String podName, String address, String token, InputStream activities) throws IOException {
+        return Ingestion.REJECTED;
+    }
+
 }
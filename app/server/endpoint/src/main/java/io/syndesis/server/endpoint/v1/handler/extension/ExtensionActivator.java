@@ -20,7 +20,6 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
 
@@ -81,9 +80,9 @@ public class ExtensionActivator {
     }
 
     private void doDeleteInstalled(String logicalExtensionId) {
-        Set<String> ids = dataManager.fetchIdsByPropertyValue(Extension.class, "extensionId", logicalExtensionId);
-        for (String id : ids) {
-            Extension extension = dataManager.fetch(Extension.class, id);
+        List<Extension> extensions = dataManager.fetchAllByPropertyValue(Extension.class, "extensionId", logicalExtensionId)
+            .collect(Collectors.toList());
+        for (Extension extension : extensions) {
             if (extension.getStatus().isPresent() && extension.getStatus().get() == Extension.Status.Installed) {
                 doDelete(extension);
             }
@@ -154,10 +153,8 @@ public class ExtensionActivator {
         }
 
         final String connectorId = connector.getId().get();
-        final Set<String> ids = dataManager.fetchIdsByPropertyValue(Connection.class, "connectorId", connectorId);
 
-        return ids.stream()
-            .map(id -> dataManager.fetch(Connection.class, id))
+        return dataManager.fetchAllByPropertyValue(Connection.class, "connectorId", connectorId)
             .collect(Collectors.toList());
     }
 
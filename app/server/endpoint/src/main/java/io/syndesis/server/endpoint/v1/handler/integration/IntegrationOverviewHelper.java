@@ -17,12 +17,16 @@ package io.syndesis.server.endpoint.v1.handler.integration;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import io.syndesis.common.model.ListResult;
 import io.syndesis.common.model.bulletin.IntegrationBulletinBoard;
 import io.syndesis.common.model.integration.Flow;
 import io.syndesis.common.model.integration.Integration;
@@ -50,13 +54,69 @@ class IntegrationOverviewHelper {
         this.exposureHelper = exposureHelper;
     }
 
-    @SuppressWarnings("PMD.NPathComplexity")
     IntegrationOverview toCurrentIntegrationOverview(final Integration integration) {
         final String id = integration.getId().get();
+
+        final Optional<IntegrationBulletinBoard> board = DataManagerSupport.fetchBoard(dataManager, IntegrationBulletinBoard.class, id);
+
+        final List<IntegrationDeployment> deployments = dataManager.fetchAll(IntegrationDeployment.class,
+                new IdPrefixFilter<>(id + ":"), ReverseFilter.getInstance()).getItems();
+
+        return toCurrentIntegrationOverview(integration, board, deployments,
+            deploymentId -> dataManager.fetch(IntegrationEndpoint.class, deploymentId));
+    }
+
+    /**
+     * Creates the overviews of the given integrations, their boards,
+     * deployments and endpoints are looked up together for all of them.
+     */
+    List<IntegrationOverview> toCurrentIntegrationOverviews(final List<Integration> integrations) {
+        final Set<String> ids = integrations.stream()
+            .map(i -> i.getId().get())
+            .collect(Collectors.toSet());
+
+        final Map<String, IntegrationBulletinBoard> boards = new HashMap<>();
+        for (final IntegrationBulletinBoard board : dataManager.fetchAllById(IntegrationBulletinBoard.class,
+                dataManager.fetchIdsByPropertyValueIn(IntegrationBulletinBoard.class, "targetResourceId", ids))) {
+            boards.putIfAbsent(board.getTargetResourceId(), board);
+        }
+
+        // latest first, as listed by id for a single integration
+        final Map<String, List<IntegrationDeployment>> deployments = dataManager.fetchAllById(IntegrationDeployment.class,
+                dataManager.fetchIdsByPropertyValueIn(IntegrationDeployment.class, "integrationId", ids))
+            .stream()
+            .filter(d -> d.getIntegrationId().isPresent() && d.getId().isPresent())
+            .sorted(Comparator.comparing((IntegrationDeployment d) -> d.getId().get()).reversed())
+            .collect(Collectors.groupingBy(d -> d.getIntegrationId().get()));
+
+        final List<String> exposedDeploymentIds = new ArrayList<>();
+        for (final List<IntegrationDeployment> integrationDeployments : deployments.values()) {
+            exposedDeployment(integrationDeployments)
+                .flatMap(IntegrationDeployment::getId)
+                .ifPresent(exposedDeploymentIds::add);
+        }
+
+        final Map<String, IntegrationEndpoint> endpoints = new HashMap<>();
+        for (final IntegrationEndpoint endpoint : dataManager.fetchAllById(IntegrationEndpoint.class, exposedDeploymentIds)) {
+            endpoint.getId().ifPresent(id -> endpoints.put(id, endpoint));
+        }
+
+        final List<IntegrationOverview> overviews = new ArrayList<>(integrations.size());
+        for (final Integration integration : integrations) {
+            final String id = integration.getId().get();
+            overviews.add(toCurrentIntegrationOverview(integration, Optional.ofNullable(boards.get(id)),
+                deployments.getOrDefault(id, Collections.emptyList()), endpoints::get));
+        }
+        return overviews;
+    }
+
+    @SuppressWarnings("PMD.NPathComplexity")
+    private IntegrationOverview toCurrentIntegrationOverview(final Integration integration, final Optional<IntegrationBulletinBoard> board,
+            final List<IntegrationDeployment> deployments, final Function<String, IntegrationEndpoint> endpoints) {
         final IntegrationOverview.Builder builder = new IntegrationOverview.Builder().createFrom(integration);
 
         // add board
-        DataManagerSupport.fetchBoard(dataManager, IntegrationBulletinBoard.class, id).ifPresent(builder::board);
+        board.ifPresent(builder::board);
 
         // Defaults
         builder.isDraft(true);
@@ -92,35 +152,18 @@ class IntegrationOverviewHelper {
                 .collect(Collectors.toList()));
         }
 
-        final ListResult<IntegrationDeployment> deployments = dataManager.fetchAll(IntegrationDeployment.class,
-                new IdPrefixFilter<>(id + ":"), ReverseFilter.getInstance());
-
-        final List<IntegrationDeployment> activeDeployments = new ArrayList<>();
         for (final IntegrationDeployment deployment : deployments) {
             builder.addDeployment(IntegrationDeploymentOverview.of(deployment));
-
-            if (deployment.getCurrentState() == IntegrationDeploymentState.Pending ||
-                deployment.getCurrentState() == IntegrationDeploymentState.Published) {
-                activeDeployments.add(deployment);
-            }
         }
 
-        Optional<IntegrationDeployment> maybePublished = activeDeployments.stream()
-                  .filter(deployment -> deployment.getCurrentState() == IntegrationDeploymentState.Published)
-                  .findFirst();
-
         if (integration.isExposable()) {
             builder.exposureMeans(exposureHelper.getExposureMeans());
         }
 
-        IntegrationDeployment exposedDeployment = null;
-        if (maybePublished.isPresent()) {
-            IntegrationDeployment published = maybePublished.get();
-            builder.isDraft(computeDraft(integration, published.getSpec()));
-            builder.version(published.getVersion());
-            exposedDeployment = published;
-        } else if (activeDeployments.size() == 1) {
-            exposedDeployment = activeDeployments.get(0);
+        final IntegrationDeployment exposedDeployment = exposedDeployment(deployments).orElse(null);
+        if (exposedDeployment != null && exposedDeployment.getCurrentState() == IntegrationDeploymentState.Published) {
+            builder.isDraft(computeDraft(integration, exposedDeployment.getSpec()));
+            builder.version(exposedDeployment.getVersion());
         }
 
         // Set the URL of the integration deployment if present
@@ -132,21 +175,38 @@ class IntegrationOverviewHelper {
             if (exposedDeployment.getId().isPresent()) {
                 builder.managementUrl(Optional.ofNullable(exposureHelper.getManagementUrl(integration.getExposure())));
 
-                final IntegrationEndpoint endpoint = dataManager.fetch(IntegrationEndpoint.class,
-                    exposedDeployment.getId().get());
+                final IntegrationEndpoint endpoint = endpoints.apply(exposedDeployment.getId().get());
                 if (endpoint != null) {
                     builder.url(endpoint.getUrl());
                 }
             }
-        } else if (!deployments.getItems().isEmpty()) {
+        } else if (!deployments.isEmpty()) {
             // set overview status to latest deployment because there is no active deployment
-            builder.targetState(deployments.getItems().get(0).getTargetState());
-            builder.currentState(deployments.getItems().get(0).getCurrentState());
+            builder.targetState(deployments.get(0).getTargetState());
+            builder.currentState(deployments.get(0).getCurrentState());
         }
 
         return builder.build();
     }
 
+    /**
+     * The published deployment, or else the only pending one.
+     */
+    private static Optional<IntegrationDeployment> exposedDeployment(final List<IntegrationDeployment> deployments) {
+        final List<IntegrationDeployment> activeDeployments = new ArrayList<>();
+        for (final IntegrationDeployment deployment : deployments) {
+            if (deployment.getCurrentState() == IntegrationDeploymentState.Published) {
+                return Optional.of(deployment);
+            }
+
+            if (deployment.getCurrentState() == IntegrationDeploymentState.Pending) {
+                activeDeployments.add(deployment);
+            }
+        }
+
+        return activeDeployments.size() == 1 ? Optional.of(activeDeployments.get(0)) : Optional.empty();
+    }
+
     private static boolean computeDraft(final Integration current, final Integration deployed) {
         final List<Flow> currentFlows = current.getFlows();
         final List<Flow> deployedFlows = deployed.getFlows();
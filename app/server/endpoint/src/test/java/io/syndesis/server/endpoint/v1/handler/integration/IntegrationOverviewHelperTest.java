@@ -15,29 +15,43 @@
  */
 package io.syndesis.server.endpoint.v1.handler.integration;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import io.syndesis.common.model.ListResult;
 import io.syndesis.common.model.action.StepAction;
+import io.syndesis.common.model.bulletin.IntegrationBulletinBoard;
 import io.syndesis.common.model.integration.Flow;
 import io.syndesis.common.model.integration.Integration;
 import io.syndesis.common.model.integration.IntegrationDeployment;
 import io.syndesis.common.model.integration.IntegrationDeploymentState;
+import io.syndesis.common.model.integration.IntegrationEndpoint;
 import io.syndesis.common.model.integration.IntegrationOverview;
 import io.syndesis.common.model.integration.Step;
 import io.syndesis.server.dao.manager.DataManager;
 import io.syndesis.server.openshift.ExposureHelper;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import com.google.common.collect.Sets;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -116,4 +130,48 @@ public class IntegrationOverviewHelperTest {
 
         assertThat(integrationOverview.getExposureMeans()).isEqualTo(Collections.emptySet());
     }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100})
+    public void shouldLookupAllOverviewsTogether(int pageSize) {
+        final List<Integration> integrations = new ArrayList<>();
+        final List<IntegrationDeployment> deployments = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            final Integration integration = new Integration.Builder().id("i" + i).build();
+            integrations.add(integration);
+            deployments.add(new IntegrationDeployment.Builder().spec(integration).version(1)
+                .currentState(IntegrationDeploymentState.Unpublished).id("i" + i + ":1").build());
+            deployments.add(new IntegrationDeployment.Builder().spec(integration).version(2)
+                .currentState(IntegrationDeploymentState.Published).id("i" + i + ":2").build());
+        }
+        final List<String> deploymentIds = deployments.stream().map(d -> d.getId().get()).collect(Collectors.toList());
+        final List<IntegrationEndpoint> endpoints = IntStream.range(0, pageSize)
+            .mapToObj(i -> new IntegrationEndpoint.Builder().id("i" + i + ":2").protocol("http").host("i" + i).build())
+            .collect(Collectors.toList());
+
+        when(dataManager.fetchIdsByPropertyValueIn(eq(IntegrationBulletinBoard.class), eq("targetResourceId"), anyCollection()))
+            .thenReturn(Collections.singleton("board"));
+        when(dataManager.fetchAllById(eq(IntegrationBulletinBoard.class), anyCollection()))
+            .thenReturn(Collections.singletonList(new IntegrationBulletinBoard.Builder().id("board").targetResourceId("i0").build()));
+        when(dataManager.fetchIdsByPropertyValueIn(eq(IntegrationDeployment.class), eq("integrationId"), anyCollection()))
+            .thenReturn(new HashSet<>(deploymentIds));
+        when(dataManager.fetchAllById(eq(IntegrationDeployment.class), anyCollection())).thenReturn(deployments);
+        when(dataManager.fetchAllById(eq(IntegrationEndpoint.class), anyCollection())).thenReturn(endpoints);
+
+        final List<IntegrationOverview> overviews = handler.toCurrentIntegrationOverviews(integrations);
+
+        assertThat(overviews).hasSize(pageSize);
+        assertThat(overviews.get(0).getBoard().getId()).hasValue("board");
+        assertThat(overviews).allSatisfy(overview -> {
+            assertThat(overview.getDeployments()).hasSize(2);
+            assertThat(overview.getDeploymentVersion()).hasValue(2);
+            assertThat(overview.getCurrentState()).isEqualTo(IntegrationDeploymentState.Published);
+            assertThat(overview.getUrl()).hasValue("http://" + overview.getId().get());
+        });
+
+        verify(dataManager, times(2)).fetchIdsByPropertyValueIn(any(), anyString(), anyCollection());
+        verify(dataManager, times(3)).fetchAllById(any(), anyCollection());
+        verify(dataManager, never()).fetch(any(), anyString());
+        verify(dataManager, never()).fetchAll(eq(IntegrationDeployment.class), any(), any());
+    }
 }
@@ -36,6 +36,8 @@ public class GetOptions implements ToJson, Cloneable {
     private String endAt;
     private String endBefore;
     private Integer limitToFirst;
+    private Integer offset;
+    private String sortBy;
     private Order order = Order.ASC;
     private Filter filter;
 
@@ -117,6 +119,32 @@ public class GetOptions implements ToJson, Cloneable {
         return this;
     }
 
+    public Integer offset() {
+        return offset;
+    }
+
+    /**
+     * Skips the given number of children, in the requested order.
+     */
+    public GetOptions offset(Integer offset) {
+        this.offset = offset;
+        return this;
+    }
+
+    public String sortBy() {
+        return sortBy;
+    }
+
+    /**
+     * Orders the children by the value of the given indexed field, instead
+     * of by their key. Children without a value for the field are not
+     * returned.
+     */
+    public GetOptions sortBy(String sortBy) {
+        this.sortBy = sortBy;
+        return this;
+    }
+
     public Order order() {
         return order;
     }
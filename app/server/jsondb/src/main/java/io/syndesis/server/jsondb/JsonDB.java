@@ -20,6 +20,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -51,6 +55,51 @@ public interface JsonDB {
      */
     Set<String> fetchIdsByPropertyValue(String collectionPath, String property, String value);
 
+    /**
+     * Fetches all paths that hold all of the properties with the given values.
+     * The returned paths are in the form of {@code /<collection>/:<id>}.
+     */
+    default Set<String> fetchIdsByPropertyValues(String collectionPath, Map<String, String> propertyValues) {
+        Set<String> matching = null;
+        for (Map.Entry<String, String> propertyValue : propertyValues.entrySet()) {
+            Set<String> paths = fetchIdsByPropertyValue(collectionPath, propertyValue.getKey(), propertyValue.getValue());
+            if (matching == null) {
+                matching = new HashSet<>(paths);
+            } else {
+                matching.retainAll(paths);
+            }
+            if (matching.isEmpty()) {
+                // short circuit
+                break;
+            }
+        }
+        return matching == null ? new HashSet<>() : matching;
+    }
+
+    /**
+     * Fetches all paths that hold the property with any of the given values.
+     * The returned paths are in the form of {@code /<collection>/:<id>}.
+     */
+    default Set<String> fetchIdsByPropertyValueIn(String collectionPath, String property, Collection<String> values) {
+        Set<String> matching = new HashSet<>();
+        for (String value : values) {
+            matching.addAll(fetchIdsByPropertyValue(collectionPath, property, value));
+        }
+        return matching;
+    }
+
+    /**
+     * Counts the children of the path matching the filter and range of the
+     * options, ignoring the {@code offset} and {@code limitToFirst} options.
+     */
+    int count(String path, GetOptions options);
+
+    /**
+     * Checks if the property of the collection members is indexed, so that
+     * it can be used in filters and to sort.
+     */
+    boolean isIndexed(String collectionPath, String property);
+
     /**
      * Generates a sortable unique id as described at:
      * https://firebase.googleblog.com/2015/02/the-2120-ways-to-ensure-unique_68.html
@@ -134,6 +183,23 @@ public interface JsonDB {
         return os.toByteArray();
     }
 
+    /**
+     * Reads the children of path with the given keys, same as reading
+     * {@code path + "/" + key} for each key, but in as few round trips to the
+     * database as possible.
+     * @return the json of the children found, keyed by the child key
+     */
+    default Map<String, byte[]> getChildrenAsByteArray(String path, Collection<String> keys) {
+        Map<String, byte[]> children = new HashMap<>();
+        for (String key : keys) {
+            byte[] json = getAsByteArray(path + "/" + key);
+            if( json!=null ) {
+                children.put(key, json);
+            }
+        }
+        return children;
+    }
+
     default void set(String path, byte[] json) {
         set(path, new ByteArrayInputStream(json));
     }
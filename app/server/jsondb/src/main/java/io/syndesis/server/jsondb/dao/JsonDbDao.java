@@ -16,11 +16,16 @@
 package io.syndesis.server.jsondb.dao;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -36,6 +41,10 @@ import io.syndesis.common.util.SyndesisServerException;
 import io.syndesis.common.util.json.JsonUtils;
 import io.syndesis.server.dao.manager.DataAccessObject;
 import io.syndesis.server.dao.manager.operators.IdPrefixFilter;
+import io.syndesis.server.dao.manager.operators.Pagination;
+import io.syndesis.server.dao.manager.operators.PropertySort;
+import io.syndesis.server.dao.manager.operators.PropertyValueFilter;
+import io.syndesis.server.jsondb.Filter;
 import io.syndesis.server.jsondb.GetOptions;
 import io.syndesis.server.jsondb.JsonDB;
 
@@ -44,6 +53,8 @@ import io.syndesis.server.jsondb.JsonDB;
  */
 public abstract class JsonDbDao<T extends WithId<T>> implements DataAccessObject<T> {
 
+    private static final Pattern INTEGER = Pattern.compile("^-?\\d{1,18}$");
+
     private final ObjectReader reader;
 
     private final JsonDB jsondb;
@@ -75,6 +86,31 @@ public abstract class JsonDbDao<T extends WithId<T>> implements DataAccessObject
         }
     }
 
+    @Override
+    public Map<String, T> fetchAll(Collection<String> ids) {
+        try {
+            Map<String, T> entities = new HashMap<>();
+            if( ids.isEmpty() ) {
+                return entities;
+            }
+
+            Map<String, String> idsByKey = new HashMap<>();
+            for (String id : ids) {
+                idsByKey.put(":"+id, id);
+            }
+            ObjectReader entityReader = reader.forType(getType());
+            for (Map.Entry<String, byte[]> child : jsondb.getChildrenAsByteArray(getCollectionPath(), idsByKey.keySet()).entrySet()) {
+                byte[] json = child.getValue();
+                if( json!=null && json.length > 0 ) {
+                    entities.put(idsByKey.get(child.getKey()), entityReader.readValue(json));
+                }
+            }
+            return entities;
+        } catch (@SuppressWarnings("PMD.AvoidCatchingGenericException") RuntimeException|IOException e) {
+            throw SyndesisServerException.launderThrowable(e);
+        }
+    }
+
     @Override
     @SuppressWarnings({"rawtypes","unchecked"})
     public ListResult<T> fetchAll() {
@@ -82,28 +118,53 @@ public abstract class JsonDbDao<T extends WithId<T>> implements DataAccessObject
     }
 
     @Override
-    @SuppressWarnings({"unchecked", "PMD.CyclomaticComplexity"})
+    @SuppressWarnings({"unchecked", "PMD.CyclomaticComplexity", "PMD.NPathComplexity"})
     public ListResult<T> fetchAll(Function<ListResult<T>, ListResult<T>>... operators) {
         try {
 
             GetOptions options = new GetOptions();
 
-            // Try to convert operators to equivalent DB queries.
+            // Try to convert operators to equivalent DB queries, filters, sort
+            // and pagination only as long as the previous operators were converted
+            // as their order matters.
+            boolean paginated = false;
             if( operators!=null ) {
+                boolean converting = true;
                 for (int i = 0; i < operators.length; i++) {
                     Function<ListResult<T>, ListResult<T>> operator = operators[i];
-                    if( operator.getClass() == IdPrefixFilter.class ) {
+                    if( operator.getClass() == IdPrefixFilter.class && !paginated ) {
                         IdPrefixFilter<T> filter = (IdPrefixFilter<T>) operator;
                         options.startAt(":"+filter.getPrefix());
                         options.endAt(":"+filter.getPrefix());
                         operators[i] = null; // Take it out of the list.
+                    } else if( converting && !paginated && operator instanceof PropertyValueFilter && isIndexed((PropertyValueFilter) operator) ) {
+                        for (Map.Entry<String, String> propertyValue : ((PropertyValueFilter) operator).getPropertyValues()) {
+                            Filter filter = equalTo(propertyValue.getKey(), propertyValue.getValue());
+                            options.filter(options.filter() == null ? filter : Filter.and(options.filter(), filter));
+                        }
+                        operators[i] = null;
+                    } else if( converting && !paginated && operator instanceof PropertySort && isIndexed((PropertySort) operator) ) {
+                        PropertySort sort = (PropertySort) operator;
+                        if( sort.getSortProperty()!=null ) {
+                            options.sortBy(sort.getSortProperty());
+                            options.order(sort.isDescending() ? GetOptions.Order.DESC : GetOptions.Order.ASC);
+                        }
+                        operators[i] = null;
+                    } else if( converting && !paginated && operator instanceof Pagination ) {
+                        Pagination pagination = (Pagination) operator;
+                        options.offset(pagination.getOffset());
+                        options.limitToFirst(pagination.getLimit());
+                        paginated = true;
+                        operators[i] = null;
+                    } else {
+                        converting = false;
                     }
                 }
             }
 
             // get the data out..
             byte[] json = jsondb.getAsByteArray(getCollectionPath(), options);
-            ListResult<T> result;
+            List<T> items;
             if( json!=null && json.length > 0 ) {
 
                 // Lets use jackson to parse the map of keys to our model instances
@@ -111,9 +172,19 @@ public abstract class JsonDbDao<T extends WithId<T>> implements DataAccessObject
                 MapType mapType = typeFactory.constructMapType(LinkedHashMap.class, String.class, getType());
                 LinkedHashMap<String, T> map = reader.forType(mapType).readValue(json);
 
-                result = ListResult.of(map.values());
+                items = new ArrayList<>(map.values());
+            } else {
+                items = Collections.emptyList();
+            }
+
+            ListResult<T> result;
+            if( paginated ) {
+                result = new ListResult.Builder<T>()
+                    .items(items)
+                    .totalCount(jsondb.count(getCollectionPath(), options))
+                    .build();
             } else {
-                result = ListResult.of(Collections.<T>emptyList());
+                result = ListResult.of(items);
             }
 
             if (operators == null) {
@@ -130,6 +201,37 @@ public abstract class JsonDbDao<T extends WithId<T>> implements DataAccessObject
         }
     }
 
+    private boolean isIndexed(PropertyValueFilter filter) {
+        for (Map.Entry<String, String> propertyValue : filter.getPropertyValues()) {
+            if( !jsondb.isIndexed(getCollectionPath(), propertyValue.getKey()) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isIndexed(PropertySort sort) {
+        return sort.getSortProperty() == null || jsondb.isIndexed(getCollectionPath(), sort.getSortProperty());
+    }
+
+    /**
+     * The value is compared with the string representation of the property
+     * so it also matches numbers and booleans stored as such.
+     */
+    private static Filter equalTo(String property, String value) {
+        List<Filter> filters = new ArrayList<>(2);
+        filters.add(Filter.child(property, Filter.Op.EQ, value));
+        if( INTEGER.matcher(value).matches() ) {
+            filters.add(Filter.child(property, Filter.Op.EQ, Long.valueOf(value)));
+        } else if( "true".equals(value) || "false".equals(value) ) {
+            filters.add(Filter.child(property, Filter.Op.EQ, Boolean.valueOf(value)));
+        }
+        if( filters.size() == 1 ) {
+            return filters.get(0);
+        }
+        return Filter.or(filters.toArray(new Filter[0]));
+    }
+
     @Override
     public Set<String> fetchIds() {
         try {
@@ -154,6 +256,20 @@ public abstract class JsonDbDao<T extends WithId<T>> implements DataAccessObject
             .stream().map(path -> path.substring(path.indexOf(':') + 1)).collect(Collectors.toSet());
     }
 
+    @Override
+    public Set<String> fetchIdsByPropertyValues(final Map<String, String> propertyValues) {
+        Map<String, String> values = new LinkedHashMap<>();
+        propertyValues.forEach((property, value) -> values.put(property.replace('.', '/'), value));
+        return jsondb.fetchIdsByPropertyValues(getCollectionPath(), values)
+            .stream().map(path -> path.substring(path.indexOf(':') + 1)).collect(Collectors.toSet());
+    }
+
+    @Override
+    public Set<String> fetchIdsByPropertyValueIn(final String property, final Collection<String> values) {
+        return jsondb.fetchIdsByPropertyValueIn(getCollectionPath(), property.replace('.', '/'), values)
+            .stream().map(path -> path.substring(path.indexOf(':') + 1)).collect(Collectors.toSet());
+    }
+
     @Override
     public T create(T entity) {
         try {
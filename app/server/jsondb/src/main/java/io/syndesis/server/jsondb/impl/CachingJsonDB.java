@@ -0,0 +1,459 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.jsondb.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import io.syndesis.common.util.EventBus;
+import io.syndesis.common.util.cache.WeightedCache;
+import io.syndesis.server.jsondb.GetOptions;
+import io.syndesis.server.jsondb.JsonDB;
+import io.syndesis.server.jsondb.JsonDBException;
+import io.syndesis.server.jsondb.WithGlobalTransaction;
+
+/**
+ * Read-through cache of the JSON read from a {@link JsonDB}. Only reads of the
+ * configured collections, and paths within them, are cached, the serialized
+ * JSON is held per path and options used to read it. Entries are invalidated
+ * on writes made through this JsonDB and on {@code jsondb-updated} and
+ * {@code jsondb-deleted} events broadcast by the delegate: any entry for a
+ * path containing or contained in the changed path is removed.
+ *
+ * The entries are held by a {@link WeightedCache}, bounded by the size of the
+ * cached JSON, the least recently used entries are evicted first.
+ *
+ * Reads don't lock. Entries are indexed by their path, so an invalidation
+ * only visits the entries it removes. Writes to the cache share a read lock
+ * and invalidations, and the removal of evicted entries from the index, take
+ * the write lock. A load is not cached if a path containing or contained in
+ * the loaded path was invalidated while it was loaded.
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+public class CachingJsonDB implements JsonDB, WithGlobalTransaction {
+
+    private static final byte[] ABSENT = new byte[0];
+
+    // approximate overhead of an entry on top of the cached JSON
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final JsonDB delegate;
+    private final Set<String> collections;
+    private final long maximumSize;
+
+    private final WeightedCache<String, Entry> entries;
+    // keys of the entries by the path they were read from
+    private final NavigableMap<String, Set<String>> keysByPath = new ConcurrentSkipListMap<>();
+    // evicted entries still to remove from the index
+    private final Queue<Entry> evicted = new ConcurrentLinkedQueue<>();
+
+    // loads in progress, marked stale by invalidations of related paths
+    private final Set<Load> loads = ConcurrentHashMap.newKeySet();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private static final class Entry {
+        private final String key;
+        private final String path;
+        private final byte[] json;
+
+        Entry(String key, String path, byte[] json) {
+            this.key = key;
+            this.path = path;
+            this.json = json;
+        }
+
+        long weight() {
+            return ENTRY_OVERHEAD + 2L * key.length() + json.length;
+        }
+    }
+
+    private static final class Load {
+        private final String path;
+        private volatile boolean stale;
+
+        Load(String path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * @param delegate the JsonDB to read from and write to
+     * @param collections paths of the collections to cache, for example {@code /integrations}
+     * @param maximumSize maximum number of bytes held by the cache
+     */
+    public CachingJsonDB(JsonDB delegate, Collection<String> collections, long maximumSize) {
+        this.delegate = delegate;
+        this.collections = collections.stream()
+            .map(JsonRecordSupport::convertToDBPath)
+            .collect(Collectors.toSet());
+        this.maximumSize = maximumSize;
+        this.entries = new WeightedCache<String, Entry>(maximumSize, 0, TimeUnit.NANOSECONDS, Entry::weight, false)
+            .onEviction((key, entry) -> evicted.add(entry));
+    }
+
+    /**
+     * Subscribes to the changes broadcast by the delegate JsonDB.
+     */
+    public CachingJsonDB subscribeTo(EventBus bus) {
+        bus.subscribe(CachingJsonDB.class.getName() + "@" + System.identityHashCode(this), (event, data) -> {
+            if ("jsondb-updated".equals(event) || "jsondb-deleted".equals(event)) {
+                invalidate(data);
+            }
+        });
+        return this;
+    }
+
+    @Override
+    public Consumer<OutputStream> getAsStreamingOutput(String path, GetOptions options) {
+        String dbPath = JsonRecordSupport.convertToDBPath(path);
+        if (!isCached(dbPath, options)) {
+            return delegate.getAsStreamingOutput(path, options);
+        }
+
+        String key = key(dbPath, options);
+        byte[] json = get(key);
+        if (json == null) {
+            misses.increment();
+            Load load = startLoad(dbPath);
+            try {
+                json = delegate.getAsByteArray(path, options);
+                if (json == null) {
+                    json = ABSENT;
+                }
+                put(new Entry(key, dbPath, json), load);
+            } finally {
+                loads.remove(load);
+            }
+        } else {
+            hits.increment();
+        }
+
+        if (json == ABSENT) {
+            return null;
+        }
+        byte[] result = json;
+        return output -> {
+            try {
+                output.write(result);
+            } catch (IOException e) {
+                throw new JsonDBException(e);
+            }
+        };
+    }
+
+    @Override
+    public Map<String, byte[]> getChildrenAsByteArray(String path, Collection<String> keys) {
+        String dbPath = JsonRecordSupport.convertToDBPath(path);
+        if (!isCached(dbPath, null)) {
+            return delegate.getChildrenAsByteArray(path, keys);
+        }
+
+        Map<String, byte[]> children = new HashMap<>();
+        Map<String, String> missing = new HashMap<>();
+        for (String key : keys) {
+            String childPath = JsonRecordSupport.convertToDBPath(dbPath + JsonRecordSupport.validateKey(key));
+            byte[] json = get(childPath);
+            if (json == null) {
+                missing.put(key, childPath);
+            } else {
+                hits.increment();
+                if (json != ABSENT) {
+                    children.put(key, json);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return children;
+        }
+
+        // cached as if read one by one
+        misses.add(missing.size());
+        Load load = startLoad(dbPath);
+        Map<String, byte[]> loaded;
+        try {
+            loaded = delegate.getChildrenAsByteArray(path, missing.keySet());
+            for (Map.Entry<String, String> child : missing.entrySet()) {
+                byte[] json = loaded.get(child.getKey());
+                put(new Entry(child.getValue(), child.getValue(), json == null ? ABSENT : json), load);
+            }
+        } finally {
+            loads.remove(load);
+        }
+        children.putAll(loaded);
+        return children;
+    }
+
+    @Override
+    public boolean exists(String path) {
+        return delegate.exists(path);
+    }
+
+    @Override
+    public Set<String> fetchIdsByPropertyValue(String collectionPath, String property, String value) {
+        return delegate.fetchIdsByPropertyValue(collectionPath, property, value);
+    }
+
+    @Override
+    public Set<String> fetchIdsByPropertyValues(String collectionPath, Map<String, String> propertyValues) {
+        return delegate.fetchIdsByPropertyValues(collectionPath, propertyValues);
+    }
+
+    @Override
+    public Set<String> fetchIdsByPropertyValueIn(String collectionPath, String property, Collection<String> values) {
+        return delegate.fetchIdsByPropertyValueIn(collectionPath, property, values);
+    }
+
+    @Override
+    public int count(String path, GetOptions options) {
+        return delegate.count(path, options);
+    }
+
+    @Override
+    public boolean isIndexed(String collectionPath, String property) {
+        return delegate.isIndexed(collectionPath, property);
+    }
+
+    @Override
+    public String createKey() {
+        return delegate.createKey();
+    }
+
+    @Override
+    public boolean delete(String path) {
+        try {
+            return delegate.delete(path);
+        } finally {
+            invalidate(path);
+        }
+    }
+
+    @Override
+    public void set(String path, InputStream body) {
+        try {
+            delegate.set(path, body);
+        } finally {
+            invalidate(path);
+        }
+    }
+
+    @Override
+    public void update(String path, InputStream body) {
+        try {
+            delegate.update(path, body);
+        } finally {
+            invalidate(path);
+        }
+    }
+
+    @Override
+    public String push(String path, InputStream body) {
+        try {
+            return delegate.push(path, body);
+        } finally {
+            invalidate(path);
+        }
+    }
+
+    @Override
+    public void withGlobalTransaction(Consumer<JsonDB> handler) {
+        if (!(delegate instanceof WithGlobalTransaction)) {
+            throw new UnsupportedOperationException("Global transactions are not supported by " + delegate);
+        }
+        try {
+            ((WithGlobalTransaction) delegate).withGlobalTransaction(handler);
+        } finally {
+            // changes made within the transaction bypass the cache
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Removes all entries for paths containing or contained in the given path.
+     */
+    public void invalidate(String path) {
+        String dbPath = JsonRecordSupport.convertToDBPath(path);
+        invalidations.increment();
+        lock.writeLock().lock();
+        try {
+            for (Load load : loads) {
+                if (load.path.startsWith(dbPath) || dbPath.startsWith(load.path)) {
+                    load.stale = true;
+                }
+            }
+
+            // the path and the paths within it
+            NavigableMap<String, Set<String>> contained = keysByPath.subMap(dbPath, true, dbPath + Character.MAX_VALUE, false);
+            contained.values().forEach(this::removeAll);
+            contained.clear();
+
+            // the paths containing it, paths always end with a slash
+            for (int i = dbPath.indexOf('/'); i >= 0 && i < dbPath.length() - 1; i = dbPath.indexOf('/', i + 1)) {
+                Set<String> keys = keysByPath.remove(dbPath.substring(0, i + 1));
+                if (keys != null) {
+                    removeAll(keys);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        invalidations.increment();
+        lock.writeLock().lock();
+        try {
+            loads.forEach(load -> load.stale = true);
+            entries.clear();
+            keysByPath.clear();
+            evicted.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return entries.getEvictionCount();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public long getSize() {
+        return entries.getWeight();
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    private boolean isCached(String dbPath, GetOptions options) {
+        if (options != null && options.filter() != null) {
+            return false;
+        }
+        for (String collection : collections) {
+            if (dbPath.startsWith(collection)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] get(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.json;
+    }
+
+    private Load startLoad(String dbPath) {
+        Load load = new Load(dbPath);
+        loads.add(load);
+        return load;
+    }
+
+    private void put(Entry entry, Load load) {
+        if (entry.weight() > maximumSize) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            if (load.stale) {
+                // changed while it was loaded, it might be stale
+                return;
+            }
+            keysByPath.computeIfAbsent(entry.path, p -> ConcurrentHashMap.newKeySet()).add(entry.key);
+            // might evict entries, removed from the index below
+            entries.put(entry.key, entry);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (!evicted.isEmpty()) {
+            unindexEvicted();
+        }
+    }
+
+    private void unindexEvicted() {
+        lock.writeLock().lock();
+        try {
+            Entry entry;
+            while ((entry = evicted.poll()) != null) {
+                if (entries.containsKey(entry.key)) {
+                    // cached again since, still indexed
+                    continue;
+                }
+                Set<String> keys = keysByPath.get(entry.path);
+                if (keys != null) {
+                    keys.remove(entry.key);
+                    if (keys.isEmpty()) {
+                        keysByPath.remove(entry.path);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeAll(Set<String> keys) {
+        keys.forEach(entries::remove);
+    }
+
+    private static String key(String dbPath, GetOptions options) {
+        if (options == null) {
+            return dbPath;
+        }
+        return String.join("|", dbPath,
+            String.valueOf(options.prettyPrint()),
+            String.valueOf(options.depth()),
+            String.valueOf(options.callback()),
+            String.valueOf(options.startAfter()),
+            String.valueOf(options.startAt()),
+            String.valueOf(options.endAt()),
+            String.valueOf(options.endBefore()),
+            String.valueOf(options.limitToFirst()),
+            String.valueOf(options.offset()),
+            String.valueOf(options.sortBy()),
+            String.valueOf(options.order()));
+    }
+}
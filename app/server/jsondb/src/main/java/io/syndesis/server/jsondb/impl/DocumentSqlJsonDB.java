@@ -0,0 +1,651 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.jsondb.impl;
+
+import static io.syndesis.server.jsondb.impl.JsonRecordSupport.STRING_VALUE_PREFIX;
+import static io.syndesis.server.jsondb.impl.Strings.prefix;
+import static io.syndesis.server.jsondb.impl.Strings.trimSuffix;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.PreparedBatch;
+import org.skife.jdbi.v2.Query;
+import org.skife.jdbi.v2.ResultIterator;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+import org.skife.jdbi.v2.util.StringColumnMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.syndesis.common.util.EventBus;
+import io.syndesis.server.jsondb.GetOptions;
+import io.syndesis.server.jsondb.JsonDBException;
+
+/**
+ * Implements the JsonDB via DBI/JDBC storing each collection member, a value at
+ * a path in the form of {@code /<collection>/:<id>}, as a single record holding
+ * the whole JSON document of the member. Values outside of collection members
+ * are stored one record per value, same as {@link SqlJsonDB} does.
+ *
+ * The values of indexed properties are kept in the {@code jsondb_doc_idx} table
+ * next to the documents so filtering and lookups by property value work without
+ * parsing the documents.
+ */
+@SuppressWarnings({"PMD.GodClass", "PMD.TooManyMethods"})
+public class DocumentSqlJsonDB extends SqlJsonDB {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DocumentSqlJsonDB.class);
+
+    private static final Pattern DOCUMENT_PATH = Pattern.compile("^/[^/]+/:[^/]+/");
+
+    private static final Comparator<JsonRecord> BY_PATH = Comparator.comparing(JsonRecord::getPath);
+
+    public DocumentSqlJsonDB(DBI dbi, EventBus bus) {
+        this(dbi, bus, Collections.emptyList());
+    }
+
+    public DocumentSqlJsonDB(DBI dbi, EventBus bus, Collection<Index> indexes) {
+        super(dbi, bus, indexes);
+    }
+
+    @Override
+    public void createTables() {
+        withTransaction(dbi -> {
+            if (getDatabaseKind() == DatabaseKind.PostgreSQL) {
+                dbi.update("CREATE TABLE IF NOT EXISTS jsondb_doc (path VARCHAR COLLATE \"C\" PRIMARY KEY, value VARCHAR)");
+                dbi.update("CREATE TABLE IF NOT EXISTS jsondb_doc_idx (path VARCHAR COLLATE \"C\" PRIMARY KEY, doc VARCHAR COLLATE \"C\" NOT NULL, idx VARCHAR COLLATE \"C\" NOT NULL, value VARCHAR)");
+            } else {
+                dbi.update("CREATE TABLE IF NOT EXISTS jsondb_doc (path VARCHAR PRIMARY KEY, value VARCHAR)");
+                dbi.update("CREATE TABLE IF NOT EXISTS jsondb_doc_idx (path VARCHAR PRIMARY KEY, doc VARCHAR NOT NULL, idx VARCHAR NOT NULL, value VARCHAR)");
+            }
+            dbi.update("CREATE INDEX IF NOT EXISTS jsondb_doc_idx_value ON jsondb_doc_idx (idx, value)");
+            dbi.update("CREATE INDEX IF NOT EXISTS jsondb_doc_idx_doc ON jsondb_doc_idx (doc)");
+        });
+        super.createTables();
+    }
+
+    @Override
+    public void dropTables() {
+        withTransaction(dbi -> {
+            dbi.update("DROP TABLE IF EXISTS jsondb_doc_idx");
+            dbi.update("DROP TABLE IF EXISTS jsondb_doc");
+        });
+        super.dropTables();
+    }
+
+    /**
+     * Moves the values of collection members stored one record per value, as
+     * {@link SqlJsonDB} stores them, into documents. Members already stored as
+     * documents are not touched, so this can be invoked on every start.
+     * @return the number of migrated documents
+     */
+    public int migrateToDocuments() {
+        int[] migrated = new int[] {0};
+        withTransaction(dbi -> {
+            List<String> documentPaths = new ArrayList<>();
+            try (ResultIterator<JsonRecord> iterator = dbi.createQuery("SELECT path,value,ovalue FROM jsondb WHERE path LIKE '/%/:%' ORDER BY path")
+                .map(JsonRecordMapper.INSTANCE).iterator()) {
+
+                DocumentBatch batch = new DocumentBatch(dbi);
+                while (iterator.hasNext()) {
+                    JsonRecord record = iterator.next();
+                    String documentPath = documentPath(record.getPath());
+                    if (documentPath != null) {
+                        if (!documentPath.equals(batch.currentPath())) {
+                            documentPaths.add(documentPath);
+                        }
+                        batch.accept(documentPath, withIndex(record));
+                    }
+                }
+                batch.flush();
+            }
+
+            if (!documentPaths.isEmpty()) {
+                PreparedBatch delete = dbi.prepareBatch("DELETE FROM jsondb WHERE path LIKE :like");
+                for (String documentPath : documentPaths) {
+                    delete.bind("like", documentPath + "%").add();
+                }
+                delete.execute();
+            }
+            migrated[0] = documentPaths.size();
+        });
+
+        if (migrated[0] > 0) {
+            LOG.info("Migrated {} collection members to documents", migrated[0]);
+        }
+        return migrated[0];
+    }
+
+    /**
+     * Rebuilds the index entries of the documents of the indexed collections
+     * before the index entries of the values.
+     */
+    @Override
+    public void reindex() {
+        withTransaction(dbi -> {
+            PreparedBatch insert = dbi.prepareBatch("INSERT into jsondb_doc_idx (path, doc, idx, value) values (:path, :doc, :idx, :value)");
+            for (String collection : indexedCollections()) {
+                dbi.update("DELETE FROM jsondb_doc_idx WHERE doc >= ? AND doc < ?", collection, incrementKey(collection));
+                try (ResultIterator<JsonRecord> documents = dbi.createQuery("SELECT path,value FROM jsondb_doc WHERE path >= ? AND path < ?")
+                    .bind(0, collection)
+                    .bind(1, incrementKey(collection))
+                    .map(DocumentMapper.INSTANCE).iterator()) {
+                    while (documents.hasNext()) {
+                        JsonRecord document = documents.next();
+                        for (JsonRecord record : toRecords(document)) {
+                            if (record.getIndex() != null) {
+                                insert.bind("path", record.getPath())
+                                    .bind("doc", document.getPath())
+                                    .bind("idx", record.getIndex())
+                                    .bind("value", record.getValue())
+                                    .add();
+                            }
+                        }
+                    }
+                }
+            }
+            if (insert.size() > 0) {
+                insert.execute();
+            }
+        });
+        super.reindex();
+    }
+
+    @Override
+    public Set<String> fetchIdsByPropertyValue(final String collectionPath, final String property, final String value) {
+        Set<String> ids = new HashSet<>(super.fetchIdsByPropertyValue(collectionPath, property, value));
+
+        String path = prefix(trimSuffix(collectionPath, "/"), "/");
+        String idx = path + "/#" + property;
+        withTransaction(dbi -> {
+            if (getIndexPaths().contains(idx)) {
+                List<String> documentPaths = dbi.createQuery("SELECT doc FROM jsondb_doc_idx WHERE idx = ? AND value = ?")
+                    .bind(0, idx)
+                    .bind(1, STRING_VALUE_PREFIX + value)
+                    .map(StringColumnMapper.INSTANCE).list();
+                for (String documentPath : documentPaths) {
+                    ids.add(trimSuffix(documentPath, "/"));
+                }
+            } else {
+                String expected = STRING_VALUE_PREFIX + value;
+                try (ResultIterator<JsonRecord> documents = queryDocuments(dbi, JsonRecordSupport.convertToDBPath(path), new GetOptions())) {
+                    while (documents.hasNext()) {
+                        JsonRecord document = documents.next();
+                        String propertyPath = document.getPath() + property + "/";
+                        for (JsonRecord record : toRecords(document)) {
+                            if (record.getPath().equals(propertyPath) && expected.equals(record.getValue())) {
+                                ids.add(trimSuffix(document.getPath(), "/"));
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        });
+
+        return ids;
+    }
+
+    @Override
+    protected List<String> pathTables() {
+        return Arrays.asList("jsondb", "jsondb_doc");
+    }
+
+    @Override
+    protected String pathSource() {
+        return "(SELECT path FROM jsondb UNION ALL SELECT path FROM jsondb_doc) P";
+    }
+
+    @Override
+    protected String indexSource() {
+        return "(SELECT path, idx, value FROM jsondb WHERE idx IS NOT NULL UNION ALL SELECT path, idx, value FROM jsondb_doc_idx) I";
+    }
+
+    @Override
+    protected List<String> indexTables() {
+        return Arrays.asList("jsondb", "jsondb_doc_idx");
+    }
+
+    @Override
+    protected ResultIterator<JsonRecord> queryRecords(Handle h, String baseDBPath, GetOptions o) {
+        String documentPath = documentPath(baseDBPath);
+        if (documentPath == null) {
+            ResultIterator<JsonRecord> values = super.queryRecords(h, baseDBPath, o);
+            ResultIterator<JsonRecord> documents = queryDocuments(h, baseDBPath, o);
+            return new MergingIterator(values, documents, o.order() == GetOptions.Order.DESC);
+        }
+
+        JsonRecord document = readDocument(h, documentPath);
+        if (document == null) {
+            // might not have been migrated yet
+            return super.queryRecords(h, baseDBPath, o);
+        }
+        if (o.filter() != null) {
+            throw new JsonDBException("You can only filter on fields that are indexed.");
+        }
+
+        List<PathBound> bounds = PathBound.of(baseDBPath, o);
+        List<JsonRecord> records = new ArrayList<>();
+        for (JsonRecord record : toRecords(document)) {
+            if (record.getPath().startsWith(baseDBPath) && bounds.stream().allMatch(b -> b.matches(record.getPath()))) {
+                records.add(record);
+            }
+        }
+        if (o.order() == GetOptions.Order.DESC) {
+            Collections.reverse(records);
+        }
+        return new ListIterator(records);
+    }
+
+    @Override
+    protected ResultIterator<JsonRecord> queryChildRecords(Handle h, List<String> childPaths) {
+        for (String childPath : childPaths) {
+            if (!childPath.equals(documentPath(childPath))) {
+                // not collection members, read as any other path
+                return new ChildRecordIterator(h, childPaths);
+            }
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT path,value FROM jsondb_doc WHERE path IN (");
+        for (int i = 0; i < childPaths.size(); i++) {
+            sql.append(i > 0 ? ", :child" : ":child").append(i);
+        }
+        sql.append(") ORDER BY path");
+        Query<Map<String, Object>> query = h.createQuery(sql.toString());
+        for (int i = 0; i < childPaths.size(); i++) {
+            query.bind("child" + i, childPaths.get(i));
+        }
+
+        // members might not have been migrated yet
+        ResultIterator<JsonRecord> values = super.queryChildRecords(h, childPaths);
+        ResultIterator<JsonRecord> documents = query.map(DocumentMapper.INSTANCE).iterator();
+        return new MergingIterator(values, documents, false);
+    }
+
+    @Override
+    protected int deleteRecords(Handle h, String baseDBPath) {
+        String documentPath = documentPath(baseDBPath);
+        if (documentPath == null) {
+            String like = baseDBPath + "%";
+            int count = super.deleteRecords(h, baseDBPath);
+            h.update("DELETE FROM jsondb_doc_idx WHERE doc LIKE ?", like);
+            return count + h.update("DELETE FROM jsondb_doc WHERE path LIKE ?", like);
+        }
+
+        if (documentPath.equals(baseDBPath)) {
+            int count = super.deleteRecords(h, baseDBPath);
+            h.update("DELETE FROM jsondb_doc_idx WHERE doc = ?", documentPath);
+            return count + h.update("DELETE FROM jsondb_doc WHERE path = ?", documentPath);
+        }
+
+        List<JsonRecord> records = readDocumentRecords(h, documentPath);
+        int size = records.size();
+        // same as deleting records, parent values are removed as well
+        records.removeIf(r -> r.getPath().startsWith(baseDBPath) || baseDBPath.startsWith(r.getPath()));
+        int removed = size - records.size();
+        if (removed > 0) {
+            replaceDocument(h, documentPath, records);
+        }
+        return removed;
+    }
+
+    @Override
+    protected boolean hasRecords(Handle h, String baseDBPath) {
+        if (super.hasRecords(h, baseDBPath)) {
+            return true;
+        }
+
+        String documentPath = documentPath(baseDBPath);
+        if (documentPath == null) {
+            return !h.createQuery("SELECT path FROM jsondb_doc WHERE path LIKE ?")
+                .bind(0, baseDBPath + "%")
+                .setMaxRows(1)
+                .map(StringColumnMapper.INSTANCE).list().isEmpty();
+        }
+
+        JsonRecord document = readDocument(h, documentPath);
+        if (document == null) {
+            return false;
+        }
+        if (documentPath.equals(baseDBPath)) {
+            return true;
+        }
+        return toRecords(document).stream().anyMatch(r -> r.getPath().startsWith(baseDBPath));
+    }
+
+    @Override
+    protected void write(Handle h, String baseDBPath, RecordSource source) throws IOException {
+        String documentPath = documentPath(baseDBPath);
+        if (documentPath == null) {
+            deleteRecords(h, baseDBPath);
+
+            BatchManager mb = new BatchManager(h);
+            Consumer<JsonRecord> values = mb.createSetConsumer();
+            DocumentBatch documents = new DocumentBatch(h);
+            source.forEach(r -> {
+                String recordDocumentPath = documentPath(r.getPath());
+                if (recordDocumentPath == null) {
+                    values.accept(r);
+                } else {
+                    documents.accept(recordDocumentPath, r);
+                }
+            });
+            documents.flush();
+            mb.flush();
+        } else {
+            List<JsonRecord> records = readDocumentRecords(h, documentPath);
+            records.removeIf(r -> r.getPath().startsWith(baseDBPath) || baseDBPath.startsWith(r.getPath()));
+            source.forEach(records::add);
+            replaceDocument(h, documentPath, records);
+        }
+    }
+
+    @Override
+    protected SqlJsonDB createCheckpointed(DBI transacted, EventBus transactedBus) {
+        return new DocumentSqlJsonDB(transacted, transactedBus, getIndexes());
+    }
+
+    /**
+     * Returns the path of the collection member containing the given path, or
+     * {@code null} if the path is not within a collection member.
+     */
+    static String documentPath(String dbPath) {
+        Matcher matcher = DOCUMENT_PATH.matcher(dbPath);
+        if (matcher.find()) {
+            return matcher.group();
+        }
+        return null;
+    }
+
+    private ResultIterator<JsonRecord> queryDocuments(Handle h, String baseDBPath, GetOptions o) {
+        return createQuery(h, "path,value", "jsondb_doc", "jsondb_doc_idx", baseDBPath, o).map(DocumentMapper.INSTANCE).iterator();
+    }
+
+    private static JsonRecord readDocument(Handle h, String documentPath) {
+        return h.createQuery("SELECT path,value FROM jsondb_doc WHERE path = ?")
+            .bind(0, documentPath)
+            .map(DocumentMapper.INSTANCE).first();
+    }
+
+    /**
+     * Reads the records of the document, or the records stored one per value if
+     * the document has not been migrated yet.
+     */
+    private List<JsonRecord> readDocumentRecords(Handle h, String documentPath) {
+        JsonRecord document = readDocument(h, documentPath);
+        if (document != null) {
+            return toRecords(document);
+        }
+
+        List<JsonRecord> records = new ArrayList<>();
+        try (ResultIterator<JsonRecord> iterator = h.createQuery("SELECT path,value,ovalue FROM jsondb WHERE path LIKE ? ORDER BY path")
+            .bind(0, documentPath + "%")
+            .map(JsonRecordMapper.INSTANCE).iterator()) {
+            while (iterator.hasNext()) {
+                records.add(withIndex(iterator.next()));
+            }
+        }
+        return records;
+    }
+
+    private void replaceDocument(Handle h, String documentPath, List<JsonRecord> records) {
+        // removes the values not migrated yet along with any parent values
+        super.deleteRecords(h, documentPath);
+        h.update("DELETE FROM jsondb_doc_idx WHERE doc = ?", documentPath);
+        h.update("DELETE FROM jsondb_doc WHERE path = ?", documentPath);
+
+        DocumentBatch documents = new DocumentBatch(h);
+        documents.add(documentPath, records);
+        documents.flush();
+    }
+
+    private JsonRecord withIndex(JsonRecord record) {
+        return JsonRecord.of(record.getPath(), record.getValue(), record.getOValue(),
+            JsonRecordSupport.indexFieldValue(getIndexPaths(), record.getPath()));
+    }
+
+    private List<JsonRecord> toRecords(JsonRecord document) {
+        List<JsonRecord> records = new ArrayList<>();
+        try {
+            JsonRecordSupport.jsonStreamToRecords(getIndexPaths(), document.getPath(),
+                new ByteArrayInputStream(document.getValue().getBytes(StandardCharsets.UTF_8)), records::add);
+        } catch (IOException e) {
+            throw new JsonDBException(e);
+        }
+        return records;
+    }
+
+    /**
+     * Batches the inserts of documents and their index entries. The records of
+     * each document are sorted by path before they are written so documents
+     * are read back in the same order the records would be read from the
+     * {@code jsondb} table.
+     */
+    static final class DocumentBatch {
+
+        private final Handle dbi;
+        private long batchSize;
+        private PreparedBatch documentBatch;
+        private PreparedBatch indexBatch;
+        private String currentPath;
+        private List<JsonRecord> currentRecords = new ArrayList<>();
+
+        DocumentBatch(Handle dbi) {
+            this.dbi = dbi;
+        }
+
+        String currentPath() {
+            return currentPath;
+        }
+
+        /**
+         * Collects the record of a document. The records of a document are
+         * expected to be contiguous, as they are when read in document or
+         * path order.
+         */
+        void accept(String documentPath, JsonRecord record) {
+            if (!documentPath.equals(currentPath)) {
+                addCurrent();
+                currentPath = documentPath;
+            }
+            currentRecords.add(record);
+        }
+
+        void add(String documentPath, List<JsonRecord> records) {
+            if (records.isEmpty()) {
+                return;
+            }
+            records.sort(BY_PATH);
+
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            try (JsonRecordConsumer toJson = new JsonRecordConsumer(documentPath, os, new GetOptions())) {
+                records.forEach(toJson);
+            } catch (IOException e) {
+                throw new JsonDBException(e);
+            }
+            String json = new String(os.toByteArray(), StandardCharsets.UTF_8);
+
+            if (documentBatch == null) {
+                documentBatch = dbi.prepareBatch("INSERT into jsondb_doc (path, value) values (:path, :value)");
+                indexBatch = dbi.prepareBatch("INSERT into jsondb_doc_idx (path, doc, idx, value) values (:path, :doc, :idx, :value)");
+            }
+            documentBatch.bind("path", documentPath)
+                .bind("value", json)
+                .add();
+            for (JsonRecord record : records) {
+                if (record.getIndex() != null) {
+                    indexBatch.bind("path", record.getPath())
+                        .bind("doc", documentPath)
+                        .bind("idx", record.getIndex())
+                        .bind("value", record.getValue())
+                        .add();
+                }
+            }
+
+            batchSize += documentPath.length() + json.length();
+            if (batchSize > 512 * 1024) { // Write the batch once we have enough data.
+                execute();
+            }
+        }
+
+        void flush() {
+            addCurrent();
+            execute();
+        }
+
+        private void addCurrent() {
+            if (currentPath != null) {
+                add(currentPath, currentRecords);
+                currentPath = null;
+                currentRecords = new ArrayList<>();
+            }
+        }
+
+        private void execute() {
+            if (batchSize > 0) {
+                documentBatch.execute();
+                if (indexBatch.size() > 0) {
+                    indexBatch.execute();
+                }
+                batchSize = 0;
+            }
+        }
+    }
+
+    /**
+     * Merges the records stored one per value with the records of documents,
+     * both expected in the same path order. Records stored one per value are
+     * never within a document path so documents can be ordered by their path.
+     */
+    private final class MergingIterator implements ResultIterator<JsonRecord> {
+
+        private final ResultIterator<JsonRecord> values;
+        private final ResultIterator<JsonRecord> documents;
+        private final boolean descending;
+        private JsonRecord nextValue;
+        private JsonRecord nextDocument;
+        private Iterator<JsonRecord> current = Collections.emptyIterator();
+
+        MergingIterator(ResultIterator<JsonRecord> values, ResultIterator<JsonRecord> documents, boolean descending) {
+            this.values = values;
+            this.documents = documents;
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current.hasNext() || nextValue != null || nextDocument != null || values.hasNext() || documents.hasNext();
+        }
+
+        @Override
+        public JsonRecord next() {
+            if (current.hasNext()) {
+                return current.next();
+            }
+            if (nextValue == null && values.hasNext()) {
+                nextValue = values.next();
+            }
+            if (nextDocument == null && documents.hasNext()) {
+                nextDocument = documents.next();
+            }
+
+            if (nextDocument == null && nextValue == null) {
+                throw new NoSuchElementException();
+            }
+
+            if (nextDocument == null || nextValue != null && precedes(nextValue, nextDocument)) {
+                JsonRecord value = nextValue;
+                nextValue = null;
+                return value;
+            }
+
+            List<JsonRecord> records = toRecords(nextDocument);
+            nextDocument = null;
+            if (descending) {
+                Collections.reverse(records);
+            }
+            current = records.iterator();
+            return next();
+        }
+
+        private boolean precedes(JsonRecord value, JsonRecord document) {
+            int cmp = value.getPath().compareTo(document.getPath());
+            return descending ? cmp > 0 : cmp < 0;
+        }
+
+        @Override
+        public void close() {
+            try {
+                values.close();
+            } finally {
+                documents.close();
+            }
+        }
+    }
+
+    private static final class ListIterator implements ResultIterator<JsonRecord> {
+
+        private final Iterator<JsonRecord> delegate;
+
+        ListIterator(List<JsonRecord> records) {
+            this.delegate = records.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public JsonRecord next() {
+            return delegate.next();
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+
+    private static class DocumentMapper implements ResultSetMapper<JsonRecord> {
+        private static final DocumentMapper INSTANCE = new DocumentMapper();
+        @Override
+        public JsonRecord map(int index, ResultSet r, StatementContext ctx) throws SQLException {
+            return JsonRecord.of(r.getString("path"), r.getString("value"), null, null);
+        }
+    }
+}
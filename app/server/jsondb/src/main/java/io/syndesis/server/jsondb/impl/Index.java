@@ -15,24 +15,49 @@
  */
 package io.syndesis.server.jsondb.impl;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
- * JsonRecord is used to hold that data stored in a database record.
+ * Index on a field of the members of the collection at path. The field can
+ * be nested within the members, as in {@code flows/steps/connection/id}, the
+ * elements of arrays along the way are all indexed. An index on more than one
+ * field is a composite index, members are then looked up by the values of
+ * all of the fields at once.
  */
 public final class Index {
 
     private final String path;
-    private final String field;
+    private final List<String> fields;
 
     public Index(String path, String field) {
+        this(path, Collections.singletonList(field));
+    }
+
+    public Index(String path, List<String> fields) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("An index needs at least one field");
+        }
         this.path = path;
-        this.field = field;
+        this.fields = Collections.unmodifiableList(fields);
     }
 
     public String getPath() {
         return path;
     }
 
+    /**
+     * The indexed field, the first one of a composite index.
+     */
     public String getField() {
-        return field;
+        return fields.get(0);
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public boolean isComposite() {
+        return fields.size() > 1;
     }
 }
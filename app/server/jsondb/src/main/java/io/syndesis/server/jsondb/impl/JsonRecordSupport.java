@@ -27,7 +27,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Set;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -44,7 +43,6 @@ import static com.fasterxml.jackson.core.JsonToken.VALUE_NULL;
 public final class JsonRecordSupport {
 
     public static final Pattern INTEGER_PATTERN = Pattern.compile("^\\d+$");
-    public static final Pattern INDEX_EXTRACTOR_PATTERN = Pattern.compile("^(.+)/[^/]+/([^/]+)/$");
 
     public static final char NULL_VALUE_PREFIX = '\u0000';
     public static final char FALSE_VALUE_PREFIX = '\u0001';
@@ -193,18 +191,39 @@ public final class JsonRecordSupport {
         }
     }
 
-    private static String indexFieldValue(Set<String> indexes, String path) {
-        Matcher matcher = INDEX_EXTRACTOR_PATTERN.matcher(path);
-        if( !matcher.matches() ) {
+    /**
+     * Finds the index holding the value at the given path, the path is made of
+     * the path of a collection, the key of a member and the field within the
+     * member. Fields can be nested, the elements of arrays along the way are
+     * indexed under the field holding the array.
+     */
+    static String indexFieldValue(Set<String> indexes, String path) {
+        if( indexes.isEmpty() ) {
             return null;
         }
 
-        String idx = matcher.replaceAll("$1/#$2");
-        if( !indexes.contains(idx) ) {
-            return null;
-        }
+        String[] segments = path.split("/");
+        StringBuilder collection = new StringBuilder(path.length());
+        for (int c = 1; c + 2 < segments.length; c++) {
+            collection.append('/').append(segments[c]);
+
+            StringBuilder idx = new StringBuilder(path.length() + 1).append(collection).append("/#");
+            int fieldStart = idx.length();
+            for (int f = c + 2; f < segments.length; f++) {
+                if( segments[f].isEmpty() || segments[f].charAt(0) == ARRAY_VALUE_PREFIX ) {
+                    continue;
+                }
+                if( idx.length() > fieldStart ) {
+                    idx.append('/');
+                }
+                idx.append(segments[f]);
+            }
 
-        return idx;
+            if( idx.length() > fieldStart && indexes.contains(idx.toString()) ) {
+                return idx.toString();
+            }
+        }
+        return null;
     }
 
     private static String toArrayIndexPath(int idx) {
@@ -21,6 +21,7 @@ import static io.syndesis.server.jsondb.impl.Strings.prefix;
 import static io.syndesis.server.jsondb.impl.Strings.suffix;
 import static io.syndesis.server.jsondb.impl.Strings.trimSuffix;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -33,10 +34,18 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -80,14 +89,24 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
 
     private static final Logger LOG = LoggerFactory.getLogger(SqlJsonDB.class);
 
+    // limits up to which the last child to read is found with index seeks
+    private static final int SKIP_SCAN_LIMIT = 100;
+
+    // children read by a single query of getChildrenAsByteArray
+    private static final int CHILDREN_PER_QUERY = 100;
+
+    // values looked up by a single query of fetchIdsByPropertyValueIn
+    private static final int MAX_IN_VALUES = 500;
+
     public enum DatabaseKind {
         PostgreSQL, SQLite, H2, CockroachDB
     }
 
     protected final DBI dbi;
-    private final EventBus bus;
+    protected final EventBus bus;
     private final Collection<Index> indexes;
     private final Set<String> indexPaths = new HashSet<>();
+    private final List<CompositeIndex> compositeIndexes = new ArrayList<>();
 
     // These values are used to compute a seq key
     private DatabaseKind databaseKind = DatabaseKind.PostgreSQL;
@@ -102,7 +121,12 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
         this.indexes = indexes;
 
         for (Index index : indexes) {
-            this.indexPaths.add(index.getPath()+"/#"+index.getField());
+            for (String field : index.getFields()) {
+                this.indexPaths.add(index.getPath()+"/#"+field);
+            }
+            if (index.isComposite()) {
+                this.compositeIndexes.add(new CompositeIndex(index));
+            }
         }
 
         // Lets find out the type of DB we are working with.
@@ -126,6 +150,15 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
 
 
     public void createTables() {
+        withTransaction(dbi -> {
+            if(databaseKind == DatabaseKind.PostgreSQL) {
+                dbi.update("CREATE TABLE IF NOT EXISTS jsondb_cidx (path VARCHAR COLLATE \"C\" NOT NULL, idx VARCHAR COLLATE \"C\" NOT NULL, value VARCHAR)");
+            } else {
+                dbi.update("CREATE TABLE IF NOT EXISTS jsondb_cidx (path VARCHAR NOT NULL, idx VARCHAR NOT NULL, value VARCHAR)");
+            }
+            dbi.update("CREATE INDEX IF NOT EXISTS jsondb_cidx_value ON jsondb_cidx (idx, value)");
+            dbi.update("CREATE INDEX IF NOT EXISTS jsondb_cidx_path ON jsondb_cidx (path)");
+        });
         withTransaction(dbi -> {
             if(databaseKind == DatabaseKind.PostgreSQL) {
                 dbi.update("CREATE TABLE IF NOT EXISTS jsondb (path VARCHAR COLLATE \"C\" PRIMARY KEY, value VARCHAR, ovalue VARCHAR, idx VARCHAR COLLATE \"C\")");
@@ -143,8 +176,12 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
 
     public void dropTables() {
         withTransaction(dbi -> {
+            dbi.update("DROP TABLE IF EXISTS jsondb_cidx");
             dbi.update("DROP TABLE jsondb");
         });
+        if( bus!=null ) {
+            bus.broadcast("jsondb-deleted", "/");
+        }
     }
 
     @Override
@@ -152,7 +189,7 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
         return KeyGenerator.createKey();
     }
 
-    private static String incrementKey(String value) {
+    static String incrementKey(String value) {
         if( value == null || value.isEmpty()) {
             return value;
         }
@@ -162,7 +199,6 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
     }
 
     @Override
-    @SuppressWarnings({"PMD.ExcessiveMethodLength", "PMD.NPathComplexity"})
     public Consumer<OutputStream> getAsStreamingOutput(String path, GetOptions options) {
 
         GetOptions o;
@@ -174,99 +210,16 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
 
         // Lets normalize the path a bit
         String baseDBPath = JsonRecordSupport.convertToDBPath(path);
-        String like = baseDBPath + "%";
-        GetOptions.Order order = o.order();
-        if( order == null ) {
-            order = GetOptions.Order.ASC;
-        }
 
         Consumer<OutputStream> result = null;
         final Handle h = dbi.open();
         try {
-
-            StringBuilder sql = new StringBuilder(250);
-            // Creating the iterator could fail with a runtime exception,
-            ArrayList<Consumer<Query<Map<String, Object>>>> binds = new ArrayList<>();
-
-            if( o.filter() == null ) {
-                sql.append("select path,value,ovalue from jsondb where path LIKE :like");
+            ResultIterator<JsonRecord> iterator;
+            if (o.sortBy() != null || o.offset() != null) {
+                iterator = new ChildRecordIterator(h, queryChildPaths(h, baseDBPath, o));
             } else {
-                sql.append("SELECT path,value,ovalue FROM jsondb A INNER JOIN (");
-                SqlExpressionBuilder.create(this, o.filter(), baseDBPath).build(sql, binds);
-                sql.append(") B ON A.path LIKE B.match_path||'%'");
-            }
-
-            if (o.startAfter() != null) {
-                String startAfter = validateKey(o.startAfter());
-                if (o.order() == GetOptions.Order.DESC) {
-                    sql.append(" and path <= :startAfter");
-                    binds.add(query -> {
-                        String bindPath = baseDBPath + startAfter;
-                        query.bind("startAfter", bindPath);
-                    });
-                } else {
-                    sql.append(" and path >= :startAfter");
-                    binds.add(query -> {
-                        String bindPath = baseDBPath + incrementKey(startAfter);
-                        query.bind("startAfter", bindPath);
-                    });
-                }
-            }
-            if (o.startAt() != null) {
-                String startAt = validateKey(o.startAt());
-                if (o.order() == GetOptions.Order.DESC) {
-                    sql.append(" and path < :startAt");
-                    binds.add(query -> {
-                        String bindPath = baseDBPath + incrementKey(startAt);
-                        query.bind("startAt", bindPath);
-                    });
-                } else {
-                    sql.append(" and path >= :startAt");
-                    binds.add(query -> {
-                        String bindPath = baseDBPath + startAt;
-                        query.bind("startAt", bindPath);
-                    });
-                }
-            }
-            if (o.endAt() != null) {
-                String endAt = validateKey(o.endAt());
-                if (o.order() == GetOptions.Order.DESC) {
-                    sql.append(" and path > :endAt");
-                    binds.add(query -> {
-                        String value = baseDBPath + endAt;
-                        query.bind("endAt", value);
-                    });
-                } else {
-                    sql.append(" and path < :endAt");
-                    binds.add(query -> {
-                        String bindPath = baseDBPath + incrementKey(endAt);
-                        query.bind("endAt", bindPath);
-                    });
-                }
-            }
-            if (o.endBefore() != null) {
-                String endBefore = validateKey(o.endBefore());
-                if (o.order() == GetOptions.Order.DESC) {
-                    sql.append(" and path >= :endBefore");
-                    binds.add(query -> {
-                        String value = baseDBPath + incrementKey(endBefore);
-                        query.bind("endBefore", value);
-                    });
-                } else {
-                    sql.append(" and path < :endBefore");
-                    binds.add(query -> {
-                        String value = baseDBPath + endBefore;
-                        query.bind("endBefore", value);
-                    });
-                }
-            }
-
-            sql.append(" order by path ").append(order);
-            Query<Map<String, Object>> query = h.createQuery(sql.toString()).bind("like", like);
-            for (Consumer<Query<Map<String, Object>>> bind : binds) {
-                bind.accept(query);
+                iterator = queryRecords(h, baseDBPath, plan(h, baseDBPath, o));
             }
-            ResultIterator<JsonRecord> iterator = query.map(JsonRecordMapper.INSTANCE).iterator();
 
             try {
                 // At this point we know if we can produce results..
@@ -299,14 +252,523 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
         return result;
     }
 
+    /**
+     * Narrows the range of the records to read so the database doesn't return
+     * records that would be left out of the JSON: with {@code limitToFirst}
+     * the path of the last child to read is looked up first, and becomes an
+     * upper (or, in descending order, lower) bound on the paths of the records.
+     */
+    protected GetOptions plan(Handle h, String baseDBPath, GetOptions o) {
+        if (o.limitToFirst() == null || o.limitToFirst() < 1) {
+            return o;
+        }
+
+        String last;
+        if (o.filter() == null && o.limitToFirst() <= SKIP_SCAN_LIMIT) {
+            last = skipScanChildren(h, baseDBPath, o);
+        } else {
+            StringBuilder sql = new StringBuilder(250);
+            ArrayList<Consumer<Query<Map<String, Object>>>> binds = new ArrayList<>();
+            String column = childPaths(sql, binds, baseDBPath, o);
+            sql.append(" ORDER BY ").append(column).append(o.order() == GetOptions.Order.DESC ? " DESC" : " ASC")
+                .append(" OFFSET ").append(o.limitToFirst() - 1).append(" ROWS FETCH FIRST 1 ROWS ONLY");
+
+            Query<Map<String, Object>> query = h.createQuery(sql.toString());
+            for (Consumer<Query<Map<String, Object>>> bind : binds) {
+                bind.accept(query);
+            }
+            last = query.map(StringColumnMapper.INSTANCE).first();
+            if (last != null && o.filter() == null) {
+                last = baseDBPath + last;
+            }
+        }
+
+        if (last == null || last.equals(baseDBPath + "/")) {
+            // fewer children than the limit, or a value stored at the path
+            return o;
+        }
+        return new PlannedOptions(o, last);
+    }
+
+    /**
+     * Finds the path of the last child to read by seeking from one child to
+     * the next over the primary key, rather than reading the paths of all the
+     * records under {@code baseDBPath}.
+     */
+    private String skipScanChildren(Handle h, String baseDBPath, GetOptions o) {
+        boolean desc = o.order() == GetOptions.Order.DESC;
+        List<PathBound> bounds = PathBound.of(baseDBPath, o);
+        List<String> seeks = new ArrayList<>();
+        for (String table : pathTables()) {
+            StringBuilder sql = new StringBuilder(150).append("SELECT path FROM ").append(table).append(" WHERE path LIKE :like");
+            for (PathBound bound : bounds) {
+                sql.append(" AND path ").append(bound.op).append(" :").append(bound.name);
+            }
+            sql.append(" AND path ").append(desc ? "< :next ORDER BY path DESC" : ">= :next ORDER BY path ASC").append(" FETCH FIRST 1 ROWS ONLY");
+            seeks.add(sql.toString());
+        }
+
+        String next = desc ? incrementKey(baseDBPath) : baseDBPath;
+        String childPath = null;
+        for (int i = 0; i < o.limitToFirst(); i++) {
+            String path = null;
+            for (String seek : seeks) {
+                Query<Map<String, Object>> query = h.createQuery(seek)
+                    .bind("like", baseDBPath + "%")
+                    .bind("next", next);
+                for (PathBound bound : bounds) {
+                    query.bind(bound.name, bound.path);
+                }
+                String found = query.map(StringColumnMapper.INSTANCE).first();
+                if (found != null && (path == null || (desc ? found.compareTo(path) > 0 : found.compareTo(path) < 0))) {
+                    path = found;
+                }
+            }
+            if (path == null) {
+                return null;
+            }
+            int slash = path.indexOf('/', baseDBPath.length());
+            if (slash < 0 || slash == baseDBPath.length()) {
+                // a value stored at the path itself
+                return null;
+            }
+            childPath = path.substring(0, slash + 1);
+            next = desc ? childPath : incrementKey(childPath);
+        }
+        return childPath;
+    }
+
+    /**
+     * Options of a read along with the path of the last child to read.
+     */
+    static final class PlannedOptions extends GetOptions {
+        final String lastChildPath;
+
+        PlannedOptions(GetOptions o, String lastChildPath) {
+            this.lastChildPath = lastChildPath;
+            prettyPrint(o.prettyPrint())
+                .depth(o.depth())
+                .callback(o.callback())
+                .startAfter(o.startAfter())
+                .startAt(o.startAt())
+                .endAt(o.endAt())
+                .endBefore(o.endBefore())
+                .limitToFirst(o.limitToFirst())
+                .offset(o.offset())
+                .sortBy(o.sortBy())
+                .order(o.order())
+                .filter(o.filter());
+        }
+    }
+
+    /**
+     * Queries the records stored under the given path, ordered by path as
+     * requested in the options.
+     */
+    protected ResultIterator<JsonRecord> queryRecords(Handle h, String baseDBPath, GetOptions o) {
+        return createQuery(h, "path,value,ovalue", "jsondb", "jsondb", baseDBPath, o).map(JsonRecordMapper.INSTANCE).iterator();
+    }
+
+    /**
+     * Queries the paths of the children of {@code baseDBPath} in the order,
+     * range and page requested in the options. Children are ordered by their
+     * path or by the value of the indexed {@code sortBy} field, in which case
+     * the children without a value come after (or, in descending order,
+     * before) the others.
+     */
+    protected List<String> queryChildPaths(Handle h, String baseDBPath, GetOptions o) {
+        StringBuilder sql = new StringBuilder(250);
+        ArrayList<Consumer<Query<Map<String, Object>>>> binds = new ArrayList<>();
+        String column = childPaths(sql, binds, baseDBPath, o);
+
+        boolean desc = o.order() == GetOptions.Order.DESC;
+        if (o.sortBy() != null) {
+            // values are encoded to sort numbers and strings byte by byte,
+            // children without a value sort after all the values, and like
+            // when sorting in memory, children with the same value stay in
+            // path order
+            sql.append(" ORDER BY sort_value");
+            if (databaseKind == DatabaseKind.PostgreSQL) {
+                sql.append(" COLLATE \"C\"");
+            }
+            sql.append(desc ? " DESC NULLS FIRST" : " ASC NULLS LAST").append(", ").append(column).append(" ASC");
+        } else {
+            sql.append(" ORDER BY ").append(column).append(desc ? " DESC" : " ASC");
+        }
+        if (o.offset() != null) {
+            sql.append(" OFFSET ").append(Math.max(0, o.offset())).append(" ROWS");
+        }
+        if (o.limitToFirst() != null) {
+            sql.append(" FETCH FIRST ").append(Math.max(0, o.limitToFirst())).append(" ROWS ONLY");
+        }
+
+        Query<Map<String, Object>> query = h.createQuery(sql.toString());
+        for (Consumer<Query<Map<String, Object>>> bind : binds) {
+            bind.accept(query);
+        }
+        List<String> paths = query.map(StringColumnMapper.INSTANCE).list();
+        if (o.filter() == null && o.sortBy() == null) {
+            // only the key was selected
+            return paths.stream().map(key -> baseDBPath + key).collect(Collectors.toList());
+        }
+        return paths;
+    }
+
+    @Override
+    public Map<String, byte[]> getChildrenAsByteArray(String path, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        String baseDBPath = JsonRecordSupport.convertToDBPath(path);
+
+        // sorted so that each query reads neighbouring children
+        Map<String, String> keysByChildPath = new TreeMap<>();
+        for (String key : keys) {
+            keysByChildPath.put(JsonRecordSupport.convertToDBPath(baseDBPath + validateKey(key)), key);
+        }
+        List<String> childPaths = new ArrayList<>(keysByChildPath.keySet());
+
+        Map<String, byte[]> children = new HashMap<>();
+        try (Handle h = dbi.open()) {
+            for (int i = 0; i < childPaths.size(); i += CHILDREN_PER_QUERY) {
+                List<String> batch = childPaths.subList(i, Math.min(childPaths.size(), i + CHILDREN_PER_QUERY));
+                try (ResultIterator<JsonRecord> records = queryChildRecords(h, batch)) {
+                    readChildren(baseDBPath, records, keysByChildPath, children);
+                }
+            }
+        } catch (IOException e) {
+            throw new JsonDBException(e);
+        }
+        return children;
+    }
+
+    private static void readChildren(String baseDBPath, Iterator<JsonRecord> records, Map<String, String> keysByChildPath, Map<String, byte[]> children) throws IOException {
+        String childPath = null;
+        ByteArrayOutputStream json = null;
+        JsonRecordConsumer toJson = null;
+        while (records.hasNext()) {
+            JsonRecord record = records.next();
+            String path = record.getPath();
+            if (childPath == null || !path.startsWith(childPath)) {
+                if (toJson != null) {
+                    toJson.close();
+                    children.put(keysByChildPath.get(childPath), json.toByteArray());
+                    toJson = null;
+                }
+                childPath = path.substring(0, path.indexOf('/', baseDBPath.length()) + 1);
+                json = new ByteArrayOutputStream();
+                toJson = new JsonRecordConsumer(childPath, json, new GetOptions());
+            }
+            toJson.accept(record);
+        }
+        if (toJson != null) {
+            toJson.close();
+            children.put(keysByChildPath.get(childPath), json.toByteArray());
+        }
+    }
+
+    /**
+     * Queries the records stored under any of the given child paths, ordered
+     * by path, in a single query.
+     */
+    protected ResultIterator<JsonRecord> queryChildRecords(Handle h, List<String> childPaths) {
+        StringBuilder sql = new StringBuilder(60 * childPaths.size());
+        for (int i = 0; i < childPaths.size(); i++) {
+            if (i > 0) {
+                sql.append(" UNION ALL ");
+            }
+            // each child is a range of the primary key of its own
+            sql.append("SELECT path,value,ovalue FROM jsondb WHERE path >= :child").append(i).append(" AND path < :end").append(i);
+        }
+        sql.append(" ORDER BY path");
+
+        Query<Map<String, Object>> query = h.createQuery(sql.toString());
+        for (int i = 0; i < childPaths.size(); i++) {
+            query.bind("child" + i, childPaths.get(i))
+                .bind("end" + i, incrementKey(childPaths.get(i)));
+        }
+        return query.map(JsonRecordMapper.INSTANCE).iterator();
+    }
+
+    @Override
+    public int count(String path, GetOptions options) {
+        GetOptions o = options == null ? new GetOptions() : options;
+        String baseDBPath = JsonRecordSupport.convertToDBPath(path);
+
+        StringBuilder sql = new StringBuilder(250);
+        ArrayList<Consumer<Query<Map<String, Object>>>> binds = new ArrayList<>();
+        sql.append("SELECT COUNT(*) FROM (");
+        childPaths(sql, binds, baseDBPath, o);
+        sql.append(") C");
+
+        AtomicReference<Integer> count = new AtomicReference<>();
+        withTransaction(h -> {
+            Query<Map<String, Object>> query = h.createQuery(sql.toString());
+            for (Consumer<Query<Map<String, Object>>> bind : binds) {
+                bind.accept(query);
+            }
+            count.set(query.map(IntegerColumnMapper.PRIMITIVE).first());
+        });
+        return count.get();
+    }
+
+    @Override
+    public boolean isIndexed(String collectionPath, String property) {
+        return indexPaths.contains(prefix(trimSuffix(collectionPath, "/"), "/") + "/#" + property);
+    }
+
+    /**
+     * Builds the query selecting the distinct paths of the matching children,
+     * returns the column holding the path or, without filter or sort field, the
+     * key of the child.
+     */
+    private String childPaths(StringBuilder sql, List<Consumer<Query<Map<String, Object>>>> binds, String baseDBPath, GetOptions o) {
+        String column;
+        if (o.sortBy() != null) {
+            String idx = baseDBPath + "#" + o.sortBy();
+            if (!indexPaths.contains(idx)) {
+                throw new JsonDBException("You can only sort on fields that are indexed.");
+            }
+            // all the children, joined with the value of the field of those
+            // holding it, the lowest one for fields of array elements
+            String childPath = childPathOf(baseDBPath);
+            sql.append("SELECT M.match_path, S.sort_value FROM (SELECT DISTINCT ").append(childPath)
+                .append(" AS match_path FROM ").append(pathSource()).append(" WHERE path LIKE :like) M LEFT JOIN (SELECT ")
+                .append(childPath).append(" AS match_path, MIN(value) AS sort_value FROM ").append(indexSource())
+                .append(" WHERE idx = :sort_idx GROUP BY ").append(childPath).append(") S ON M.match_path = S.match_path");
+            // a single character at least, leaving out a value stored at the path itself
+            binds.add(query -> query.bind("like", baseDBPath + "_%"));
+            binds.add(query -> query.bind("sort_idx", idx));
+            if (o.filter() != null) {
+                sql.append(" INNER JOIN (");
+                ArrayList<Consumer<Query<Map<String, Object>>>> filterBinds = new ArrayList<>();
+                SqlExpressionBuilder.create(this, o.filter(), baseDBPath, indexSource()).build(sql, filterBinds);
+                binds.addAll(filterBinds);
+                sql.append(") F ON M.match_path = F.match_path");
+            }
+            column = "M.match_path";
+        } else if (o.filter() != null) {
+            sql.append("SELECT DISTINCT match_path FROM (");
+            ArrayList<Consumer<Query<Map<String, Object>>>> filterBinds = new ArrayList<>();
+            SqlExpressionBuilder.create(this, o.filter(), baseDBPath, indexSource()).build(sql, filterBinds);
+            binds.addAll(filterBinds);
+            sql.append(") F");
+            column = "match_path";
+        } else {
+            sql.append("SELECT DISTINCT ").append(childKey(baseDBPath)).append(" AS child_key FROM ").append(pathSource()).append(" WHERE path LIKE :like");
+            binds.add(query -> query.bind("like", baseDBPath + "%"));
+            column = "child_key";
+        }
+
+        String boundColumn = o.sortBy() != null || o.filter() != null ? column : "path";
+        String conjunction = o.sortBy() != null || o.filter() != null ? " WHERE " : " AND ";
+        for (PathBound bound : PathBound.of(baseDBPath, o)) {
+            sql.append(conjunction).append(boundColumn).append(' ').append(bound.op).append(" :").append(bound.name);
+            binds.add(query -> query.bind(bound.name, bound.path));
+            conjunction = " AND ";
+        }
+        return column;
+    }
+
+    /**
+     * The key of the child of {@code baseDBPath} holding the record, including
+     * the trailing slash to order keys as paths.
+     */
+    private String childKey(String baseDBPath) {
+        if (databaseKind == DatabaseKind.H2) {
+            return "split_part('/', SUBSTRING(path, " + (baseDBPath.length() + 1) + "), 1)||'/'";
+        }
+        return "split_part(SUBSTRING(path, " + (baseDBPath.length() + 1) + "), '/', 1)||'/'";
+    }
+
+    /**
+     * The path of the child of {@code baseDBPath} holding the record, including
+     * the trailing slash.
+     */
+    public String childPathOf(String baseDBPath) {
+        if (databaseKind == DatabaseKind.H2) {
+            return "SUBSTRING(path, 1, LOCATE('/', path, " + (baseDBPath.length() + 1) + "))";
+        }
+        return "SUBSTRING(path, 1, " + baseDBPath.length() + ")||" + childKey(baseDBPath);
+    }
+
+    /**
+     * Same as {@link #childKey(String)} for records below a child, on H2 it
+     * avoids calling a Java function for each record.
+     */
+    private String deepChildKey(String baseDBPath) {
+        if (databaseKind == DatabaseKind.H2) {
+            return "SUBSTRING(path, 1, LOCATE('/', path, " + (baseDBPath.length() + 1) + "))";
+        }
+        return childKey(baseDBPath);
+    }
+
+    /**
+     * Tables holding the path of records, each sharing the order of the paths
+     * of all records.
+     */
+    protected List<String> pathTables() {
+        return Collections.singletonList("jsondb");
+    }
+
+    /**
+     * Table, or aliased derived table, holding the path of all records.
+     */
+    protected String pathSource() {
+        return "jsondb";
+    }
+
+    /**
+     * Table, or aliased derived table, holding the {@code path}, {@code idx}
+     * and {@code value} of all indexed values.
+     */
+    protected String indexSource() {
+        return "jsondb";
+    }
+
+    /**
+     * Tables holding the {@code path}, {@code idx} and {@code value} of
+     * indexed values, together they hold all indexed values.
+     */
+    protected List<String> indexTables() {
+        return Collections.singletonList("jsondb");
+    }
+
+    /**
+     * Creates a query selecting the given columns from the table for all paths
+     * under {@code baseDBPath}, constrained by the range and filter options.
+     * Filters are evaluated against the index entries held in the index table.
+     */
+    protected Query<Map<String, Object>> createQuery(Handle h, String columns, String table, String indexTable, String baseDBPath, GetOptions o) {
+        StringBuilder sql = new StringBuilder(250);
+        // Creating the iterator could fail with a runtime exception,
+        ArrayList<Consumer<Query<Map<String, Object>>>> binds = new ArrayList<>();
+
+        if( o.filter() == null ) {
+            sql.append("select ").append(columns).append(" from ").append(table).append(" where path LIKE :like");
+        } else {
+            sql.append("SELECT ").append(columns).append(" FROM ").append(table).append(" A INNER JOIN (");
+            SqlExpressionBuilder.create(this, o.filter(), baseDBPath, indexTable).build(sql, binds);
+            sql.append(") B ON A.path LIKE B.match_path||'%'");
+        }
+
+        StringBuilder range = new StringBuilder();
+        for (PathBound bound : PathBound.of(baseDBPath, o)) {
+            range.append(" and path ").append(bound.op).append(" :").append(bound.name);
+            binds.add(query -> query.bind(bound.name, bound.path));
+        }
+        sql.append(range);
+
+        if (o.depth() != null && o.filter() == null) {
+            // records deeper than the depth are only needed to tell which
+            // children hold them, one record per child will do
+            String slashes = "LENGTH(path) - LENGTH(REPLACE(path, '/', ''))";
+            sql.append(" and ").append(slashes).append(" <= :maxSlashes")
+                .append(" union all select ").append(columns).append(" from ").append(table)
+                .append(" inner join (select min(path) as deep_path from ").append(table).append(" where path LIKE :like").append(range)
+                .append(" and ").append(slashes).append(" > :maxSlashes group by ").append(deepChildKey(baseDBPath))
+                .append(") D on path = D.deep_path");
+            int maxSlashes = slashes(baseDBPath) + Math.max(0, o.depth());
+            binds.add(query -> query.bind("maxSlashes", maxSlashes));
+        }
+
+        GetOptions.Order order = o.order();
+        if( order == null ) {
+            order = GetOptions.Order.ASC;
+        }
+        sql.append(" order by path ").append(order);
+        Query<Map<String, Object>> query = h.createQuery(sql.toString()).bind("like", baseDBPath + "%");
+        for (Consumer<Query<Map<String, Object>>> bind : binds) {
+            bind.accept(query);
+        }
+        return query;
+    }
+
+    /**
+     * Path comparison derived from the {@code startAfter}, {@code startAt},
+     * {@code endAt} and {@code endBefore} options, so that the same range can
+     * be applied in a SQL query or on records already in memory.
+     */
+    static final class PathBound {
+        final String name;
+        final String op;
+        final String path;
+
+        private PathBound(String name, String op, String path) {
+            this.name = name;
+            this.op = op;
+            this.path = path;
+        }
+
+        boolean matches(String value) {
+            int cmp = value.compareTo(path);
+            switch (op) {
+                case "<":
+                    return cmp < 0;
+                case "<=":
+                    return cmp <= 0;
+                case ">":
+                    return cmp > 0;
+                default:
+                    return cmp >= 0;
+            }
+        }
+
+        @SuppressWarnings("PMD.NPathComplexity")
+        static List<PathBound> of(String baseDBPath, GetOptions o) {
+            List<PathBound> bounds = new ArrayList<>(4);
+            boolean desc = o.order() == GetOptions.Order.DESC;
+            if (o.startAfter() != null) {
+                String startAfter = validateKey(o.startAfter());
+                if (desc) {
+                    bounds.add(new PathBound("startAfter", "<=", baseDBPath + startAfter));
+                } else {
+                    bounds.add(new PathBound("startAfter", ">=", baseDBPath + incrementKey(startAfter)));
+                }
+            }
+            if (o.startAt() != null) {
+                String startAt = validateKey(o.startAt());
+                if (desc) {
+                    bounds.add(new PathBound("startAt", "<", baseDBPath + incrementKey(startAt)));
+                } else {
+                    bounds.add(new PathBound("startAt", ">=", baseDBPath + startAt));
+                }
+            }
+            if (o.endAt() != null) {
+                String endAt = validateKey(o.endAt());
+                if (desc) {
+                    bounds.add(new PathBound("endAt", ">", baseDBPath + endAt));
+                } else {
+                    bounds.add(new PathBound("endAt", "<", baseDBPath + incrementKey(endAt)));
+                }
+            }
+            if (o.endBefore() != null) {
+                String endBefore = validateKey(o.endBefore());
+                if (desc) {
+                    bounds.add(new PathBound("endBefore", ">=", baseDBPath + incrementKey(endBefore)));
+                } else {
+                    bounds.add(new PathBound("endBefore", "<", baseDBPath + endBefore));
+                }
+            }
+            if (o instanceof PlannedOptions) {
+                String lastChildPath = ((PlannedOptions) o).lastChildPath;
+                if (desc) {
+                    bounds.add(new PathBound("lastChild", ">=", lastChildPath));
+                } else {
+                    bounds.add(new PathBound("lastChild", "<", incrementKey(lastChildPath)));
+                }
+            }
+            return bounds;
+        }
+    }
 
     @Override
     public boolean delete(String path) {
         String baseDBPath = JsonRecordSupport.convertToDBPath(path);
-        String like = baseDBPath+"%";
         boolean rc[] = new boolean[]{false};
         withTransaction(dbi -> {
-            rc[0] = deleteJsonRecords(dbi, baseDBPath, like) > 0;
+            rc[0] = deleteRecords(dbi, baseDBPath) > 0;
+            updateCompositeIndexes(dbi, baseDBPath);
         });
         if( bus!=null && rc[0] ) {
             bus.broadcast("jsondb-deleted", prefix(trimSuffix(path, "/"), "/"));
@@ -321,14 +783,47 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
     @Override
     public boolean exists(String path) {
         String baseDBPath = JsonRecordSupport.convertToDBPath(path);
-        String like = baseDBPath+"%";
         boolean rc[] = new boolean[]{false};
         withTransaction(dbi -> {
-            rc[0] = countJsonRecords(dbi, like) > 0;
+            rc[0] = hasRecords(dbi, baseDBPath);
         });
         return rc[0];
     }
 
+    /**
+     * Deletes the records stored under the given path.
+     * @return the number of deleted records
+     */
+    protected int deleteRecords(Handle h, String baseDBPath) {
+        return deleteJsonRecords(h, baseDBPath, baseDBPath + "%");
+    }
+
+    /**
+     * Checks if any record is stored under the given path.
+     */
+    protected boolean hasRecords(Handle h, String baseDBPath) {
+        return countJsonRecords(h, baseDBPath + "%") > 0;
+    }
+
+    /**
+     * Replaces the records stored under the given path with the records
+     * provided by the source.
+     */
+    protected void write(Handle h, String baseDBPath, RecordSource source) throws IOException {
+        BatchManager mb = new BatchManager(h);
+        mb.deleteRecordsForSet(baseDBPath);
+        source.forEach(mb.createSetConsumer());
+        mb.flush();
+    }
+
+    /**
+     * Provides the records to be written, in document order.
+     */
+    @FunctionalInterface
+    protected interface RecordSource {
+        void forEach(Consumer<JsonRecord> consumer) throws IOException;
+    }
+
     @Override
     public Set<String> fetchIdsByPropertyValue(final String collectionPath, final String property, final String value) {
 
@@ -348,9 +843,9 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
                     .bind(1, STRING_VALUE_PREFIX+value)
                     .map(StringColumnMapper.INSTANCE).list();
 
-                String suffix = "/" + property + "/";
+                // the member holding the value, the property might be nested
                 ret.set(paths.stream()
-                    .map(x -> trimSuffix(x, suffix))
+                    .map(x -> x.substring(0, x.indexOf('/', path.length() + 1)))
                     .collect(Collectors.toCollection(HashSet::new)));
             });
             return ret.get();
@@ -366,7 +861,8 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
             if (databaseKind == DatabaseKind.PostgreSQL) {
                 query = "SELECT regexp_replace(path, '(/.+/:[^/]+).*', '\\1') from jsondb where path ~ ? and value = ?";
             } else if (databaseKind == DatabaseKind.H2) {
-                query = "SELECT regexp_replace(path, '(/.+/:[^/]+).*', '$1') from jsondb where path regexp ? and value = ?";
+                // H2 in PostgreSQL mode uses the PostgreSQL back references
+                query = "SELECT regexp_replace(path, '(/.+/:[^/]+).*', '\\1') from jsondb where path regexp ? and value = ?";
             } else {
                 throw new UnsupportedOperationException(
                     "Don't know how to use regex in a query with database: " + databaseKind);
@@ -383,6 +879,258 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
         return ret.get();
     }
 
+    @Override
+    public Set<String> fetchIdsByPropertyValues(final String collectionPath, final Map<String, String> propertyValues) {
+        String path = prefix(trimSuffix(collectionPath, "/"), "/");
+        if (propertyValues.isEmpty() || !propertyValues.keySet().stream().allMatch(p -> indexPaths.contains(path + "/#" + p))) {
+            return JsonDB.super.fetchIdsByPropertyValues(collectionPath, propertyValues);
+        }
+
+        // a single query intersecting the members holding each value, values
+        // of a composite index are looked up together
+        String baseDBPath = JsonRecordSupport.convertToDBPath(path);
+        Map<String, String> remaining = new LinkedHashMap<>(propertyValues);
+        List<String> selects = new ArrayList<>();
+        List<String> params = new ArrayList<>();
+
+        CompositeIndex composite = compositeIndexFor(baseDBPath, propertyValues.keySet());
+        if (composite != null) {
+            List<String> values = new ArrayList<>();
+            for (String field : composite.fields) {
+                values.add(STRING_VALUE_PREFIX + remaining.remove(field));
+            }
+            selects.add("SELECT path AS member FROM jsondb_cidx WHERE idx = ? AND value = ?");
+            params.add(composite.idx);
+            params.add(compositeValue(values));
+        }
+        for (Map.Entry<String, String> propertyValue : remaining.entrySet()) {
+            selects.add("SELECT " + childPathOf(baseDBPath) + " AS member FROM " + indexSource() + " WHERE idx = ? AND value = ?");
+            params.add(path + "/#" + propertyValue.getKey());
+            params.add(STRING_VALUE_PREFIX + propertyValue.getValue());
+        }
+
+        final AtomicReference<Set<String>> ret = new AtomicReference<>();
+        withTransaction(dbi -> {
+            Query<Map<String, Object>> query = dbi.createQuery(String.join(" INTERSECT ", selects));
+            for (int i = 0; i < params.size(); i++) {
+                query.bind(i, params.get(i));
+            }
+            ret.set(query.map(StringColumnMapper.INSTANCE).list().stream()
+                .map(x -> trimSuffix(x, "/"))
+                .collect(Collectors.toCollection(HashSet::new)));
+        });
+        return ret.get();
+    }
+
+    @Override
+    public Set<String> fetchIdsByPropertyValueIn(final String collectionPath, final String property, final Collection<String> values) {
+        String path = prefix(trimSuffix(collectionPath, "/"), "/");
+        String idx = path + "/#" + property;
+        if (values.isEmpty() || !indexPaths.contains(idx)) {
+            return JsonDB.super.fetchIdsByPropertyValueIn(collectionPath, property, values);
+        }
+
+        String baseDBPath = JsonRecordSupport.convertToDBPath(path);
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(values));
+
+        final Set<String> ret = new HashSet<>();
+        withTransaction(dbi -> {
+            // bounded number of parameters per query
+            for (int from = 0; from < distinct.size(); from += MAX_IN_VALUES) {
+                List<String> chunk = distinct.subList(from, Math.min(from + MAX_IN_VALUES, distinct.size()));
+                String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+
+                Query<Map<String, Object>> query = dbi.createQuery("SELECT DISTINCT " + childPathOf(baseDBPath) + " AS member FROM "
+                    + indexSource() + " WHERE idx = ? AND value IN (" + placeholders + ")");
+                query.bind(0, idx);
+                for (int i = 0; i < chunk.size(); i++) {
+                    query.bind(i + 1, STRING_VALUE_PREFIX + chunk.get(i));
+                }
+                for (String member : query.map(StringColumnMapper.INSTANCE).list()) {
+                    ret.add(trimSuffix(member, "/"));
+                }
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * The composite index of the collection covering the most of the given
+     * fields, all of its fields being among them.
+     */
+    private CompositeIndex compositeIndexFor(String collection, Set<String> fields) {
+        CompositeIndex found = null;
+        for (CompositeIndex composite : compositeIndexes) {
+            if (composite.collection.equals(collection) && fields.containsAll(composite.fields)
+                && (found == null || composite.fields.size() > found.fields.size())) {
+                found = composite;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Brings the index entries of the indexed collections in line with the
+     * configured indexes. Entries are only maintained as values are written,
+     * this is needed once the indexes change.
+     */
+    public void reindex() {
+        withTransaction(h -> {
+            for (String collection : indexedCollections()) {
+                PreparedBatch update = h.prepareBatch("UPDATE jsondb SET idx = :idx WHERE path = :path");
+                try (ResultIterator<JsonRecord> records = h.createQuery("SELECT path, idx FROM jsondb WHERE path >= ? AND path < ?")
+                    .bind(0, collection)
+                    .bind(1, incrementKey(collection))
+                    .map((index, r, ctx) -> JsonRecord.of(r.getString("path"), null, null, r.getString("idx")))
+                    .iterator()) {
+                    while (records.hasNext()) {
+                        JsonRecord record = records.next();
+                        String idx = JsonRecordSupport.indexFieldValue(indexPaths, record.getPath());
+                        if (!Objects.equals(idx, record.getIndex())) {
+                            update.bind("idx", idx).bind("path", record.getPath()).add();
+                        }
+                    }
+                }
+                if (update.size() > 0) {
+                    LOG.info("Reindexing {} values of {}", update.size(), collection);
+                    update.execute();
+                }
+            }
+
+            h.update("DELETE FROM jsondb_cidx");
+            updateCompositeIndexes(h, "/");
+        });
+    }
+
+    /**
+     * Paths of the collections having indexes.
+     */
+    protected Set<String> indexedCollections() {
+        return indexes.stream()
+            .map(index -> JsonRecordSupport.convertToDBPath(index.getPath()))
+            .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Recomputes the entries of the composite indexes of the collection
+     * members written or deleted at {@code baseDBPath}. Members holding more
+     * than one value for a field get an entry for each combination of values.
+     */
+    private void updateCompositeIndexes(Handle h, String baseDBPath) {
+        for (CompositeIndex composite : compositeIndexes) {
+            String scope;
+            if (baseDBPath.startsWith(composite.collection) && baseDBPath.length() > composite.collection.length()) {
+                scope = baseDBPath.substring(0, baseDBPath.indexOf('/', composite.collection.length()) + 1);
+            } else if (composite.collection.startsWith(baseDBPath)) {
+                scope = composite.collection;
+            } else {
+                continue;
+            }
+            String end = incrementKey(scope);
+
+            h.update("DELETE FROM jsondb_cidx WHERE idx = ? AND path >= ? AND path < ?", composite.idx, scope, end);
+
+            Map<String, Map<String, List<String>>> members = queryMemberValues(h, composite, scope, end);
+            PreparedBatch insert = h.prepareBatch("INSERT into jsondb_cidx (path, idx, value) values (:path, :idx, :value)");
+            for (Map.Entry<String, Map<String, List<String>>> member : members.entrySet()) {
+                for (List<String> combination : combinations(composite.fieldIdxs, member.getValue())) {
+                    insert.bind("path", member.getKey())
+                        .bind("idx", composite.idx)
+                        .bind("value", compositeValue(combination))
+                        .add();
+                }
+            }
+            if (insert.size() > 0) {
+                insert.execute();
+            }
+        }
+    }
+
+    /**
+     * Queries the values of the fields of the composite index held by the
+     * members of the collection within the scope, by member and field.
+     */
+    private Map<String, Map<String, List<String>>> queryMemberValues(Handle h, CompositeIndex composite, String scope, String end) {
+        StringBuilder sql = new StringBuilder(200);
+        for (String table : indexTables()) {
+            if (sql.length() > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT path, idx, value FROM ").append(table).append(" WHERE path >= :scope AND path < :end AND idx IN (");
+            for (int i = 0; i < composite.fieldIdxs.size(); i++) {
+                sql.append(i > 0 ? ", :idx" : ":idx").append(i);
+            }
+            sql.append(')');
+        }
+        Query<Map<String, Object>> query = h.createQuery(sql.toString())
+            .bind("scope", scope)
+            .bind("end", end);
+        for (int i = 0; i < composite.fieldIdxs.size(); i++) {
+            query.bind("idx" + i, composite.fieldIdxs.get(i));
+        }
+
+        Map<String, Map<String, List<String>>> members = new HashMap<>();
+        for (JsonRecord record : query.map((index, r, ctx) -> JsonRecord.of(r.getString("path"), r.getString("value"), null, r.getString("idx"))).list()) {
+            String member = record.getPath().substring(0, record.getPath().indexOf('/', composite.collection.length()) + 1);
+            members.computeIfAbsent(member, m -> new HashMap<>())
+                .computeIfAbsent(record.getIndex(), i -> new ArrayList<>())
+                .add(record.getValue());
+        }
+        return members;
+    }
+
+    /**
+     * Each combination of the values of the fields, none if a field has no
+     * value.
+     */
+    private static List<List<String>> combinations(List<String> fieldIdxs, Map<String, List<String>> values) {
+        List<List<String>> combinations = Collections.singletonList(Collections.emptyList());
+        for (String fieldIdx : fieldIdxs) {
+            List<String> fieldValues = values.getOrDefault(fieldIdx, Collections.emptyList());
+            List<List<String>> next = new ArrayList<>(combinations.size() * fieldValues.size());
+            for (List<String> combination : combinations) {
+                for (String value : fieldValues) {
+                    List<String> extended = new ArrayList<>(combination);
+                    extended.add(value);
+                    next.add(extended);
+                }
+            }
+            combinations = next;
+        }
+        return combinations;
+    }
+
+    /**
+     * Joins the values of the fields of a composite index, each value is
+     * prefixed by its length so that joined values can't be mistaken for
+     * others.
+     */
+    private static String compositeValue(List<String> values) {
+        StringBuilder value = new StringBuilder();
+        for (String v : values) {
+            value.append(v.length()).append(':').append(v);
+        }
+        return value.toString();
+    }
+
+    /**
+     * Index on more than one field of the members of a collection, its entries
+     * are held in the {@code jsondb_cidx} table.
+     */
+    static final class CompositeIndex {
+        final String collection;
+        final String idx;
+        final List<String> fields;
+        final List<String> fieldIdxs;
+
+        CompositeIndex(Index index) {
+            this.collection = JsonRecordSupport.convertToDBPath(index.getPath());
+            this.idx = index.getPath() + "/#" + String.join("&", index.getFields());
+            this.fields = index.getFields();
+            this.fieldIdxs = index.getFields().stream().map(field -> index.getPath() + "/#" + field).collect(Collectors.toList());
+        }
+    }
+
     @Override
     public String push(String path, InputStream body) {
         String key = createKey();
@@ -440,15 +1188,13 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
     @Override
     public void set(String path, InputStream body) {
         withTransaction(dbi -> {
-            BatchManager mb = new BatchManager(dbi);
             String baseDBPath = JsonRecordSupport.convertToDBPath(path);
-            mb.deleteRecordsForSet(baseDBPath);
             try {
-                JsonRecordSupport.jsonStreamToRecords(indexPaths, baseDBPath, body, mb.createSetConsumer());
+                write(dbi, baseDBPath, consumer -> JsonRecordSupport.jsonStreamToRecords(indexPaths, baseDBPath, body, consumer));
+                updateCompositeIndexes(dbi, baseDBPath);
             } catch (IOException e) {
                 throw new JsonDBException(e);
             }
-            mb.flush();
         });
         if( bus!=null ) {
             bus.broadcast("jsondb-updated", prefix(trimSuffix(path, "/"), "/"));
@@ -460,8 +1206,6 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
         ArrayList<String> updatePaths = new ArrayList<>();
         withTransaction(dbi -> {
             try {
-                BatchManager mb = new BatchManager(dbi);
-
                 try (JsonParser jp = new JsonFactory().createParser(is)) {
                     JsonToken nextToken = jp.nextToken();
                     if (nextToken != JsonToken.START_OBJECT ) {
@@ -481,20 +1225,14 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
                         String key = suffix(path, "/")+jp.getCurrentName();
                         updatePaths.add(key);
                         String baseDBPath = JsonRecordSupport.convertToDBPath(key);
-                        mb.deleteRecordsForSet(baseDBPath);
-
-                        try {
-                            JsonRecordSupport.jsonStreamToRecords(indexPaths, jp, baseDBPath, mb.createSetConsumer());
-                        } catch (IOException e) {
-                            throw new JsonDBException(e);
-                        }
+                        write(dbi, baseDBPath, consumer -> JsonRecordSupport.jsonStreamToRecords(indexPaths, jp, baseDBPath, consumer));
+                        updateCompositeIndexes(dbi, baseDBPath);
                     }
 
                     nextToken = jp.nextToken();
                     if (nextToken != null) {
                         throw new JsonParseException(jp, "Document did not terminate as expected.");
                     }
-                    mb.flush();
                 }
             } catch (IOException e) {
                 throw new JsonDBException(e);
@@ -509,7 +1247,7 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
     }
 
 
-    private static int deleteJsonRecords(Handle dbi, String baseDBPath, String like) {
+    static int deleteJsonRecords(Handle dbi, String baseDBPath, String like) {
 
         ArrayList<String> expressions = new ArrayList<>();
         ArrayList<String> queryParams = new ArrayList<>();
@@ -540,6 +1278,16 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
         return  params;
     }
 
+    private static int slashes(String path) {
+        int count = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '/') {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private static int countJsonRecords(Handle dbi, String like) {
         Integer result = dbi.createQuery("SELECT COUNT(*) from jsondb where path LIKE ?")
             .bind(0, like)
@@ -547,15 +1295,61 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
         return result.intValue();
     }
 
-    private static class JsonRecordMapper implements ResultSetMapper<JsonRecord> {
-        private static final JsonRecordMapper INSTANCE = new JsonRecordMapper();
+    static class JsonRecordMapper implements ResultSetMapper<JsonRecord> {
+        static final JsonRecordMapper INSTANCE = new JsonRecordMapper();
         @Override
         public JsonRecord map(int index, ResultSet r, StatementContext ctx) throws SQLException {
             return JsonRecord.of(r.getString("path"), r.getString("value"), r.getString("ovalue"), null);
         }
     }
 
-    private void withTransaction(Consumer<Handle> cb) {
+    /**
+     * Iterates over the records of each child in turn, querying the records
+     * of a child once those of the previous one are consumed.
+     */
+    final class ChildRecordIterator implements ResultIterator<JsonRecord> {
+        private final Handle h;
+        private final Iterator<String> childPaths;
+        private ResultIterator<JsonRecord> current;
+
+        ChildRecordIterator(Handle h, List<String> childPaths) {
+            this.h = h;
+            this.childPaths = childPaths.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (current != null) {
+                    current.close();
+                    current = null;
+                }
+                if (!childPaths.hasNext()) {
+                    return false;
+                }
+                current = queryRecords(h, childPaths.next(), new GetOptions());
+            }
+            return true;
+        }
+
+        @Override
+        public JsonRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public void close() {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+
+    protected void withTransaction(Consumer<Handle> cb) {
         try (Handle h = dbi.open()) {
             try {
                 h.begin();
@@ -576,6 +1370,14 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
         return indexPaths;
     }
 
+    /**
+     * Names of the composite indexes, in the form of
+     * {@code <collection>/#<field>&<field>...}.
+     */
+    public Set<String> getCompositeIndexPaths() {
+        return compositeIndexes.stream().map(c -> c.idx).collect(Collectors.toSet());
+    }
+
     public DatabaseKind getDatabaseKind() {
         return databaseKind;
     }
@@ -590,7 +1392,7 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
 
             try (Connection connection = handle.getConnection(); Connection transacted = withoutTransactionControl(connection)) {
                 final TransactedEventBus transactedBus = new TransactedEventBus(bus);
-                final SqlJsonDB checkpointed = new SqlJsonDB(new DBI(() -> transacted), transactedBus);
+                final SqlJsonDB checkpointed = createCheckpointed(new DBI(() -> transacted), transactedBus);
 
                 boolean committed = false;
                 try {
@@ -612,6 +1414,14 @@ public class SqlJsonDB implements JsonDB, WithGlobalTransaction {
         }
     }
 
+    /**
+     * Creates the JsonDB used within {@link #withGlobalTransaction(Consumer)},
+     * bound to the connection of the global transaction.
+     */
+    protected SqlJsonDB createCheckpointed(DBI transacted, EventBus transactedBus) {
+        return new SqlJsonDB(transacted, transactedBus, indexes);
+    }
+
     private static Connection withoutTransactionControl(Connection connection) {
         return (Connection) Proxy.newProxyInstance(SqlJsonDB.class.getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
             // we control the transaction not the DBI or the consumer
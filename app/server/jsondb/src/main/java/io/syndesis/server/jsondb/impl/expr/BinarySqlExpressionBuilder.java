@@ -15,8 +15,6 @@
  */
 package io.syndesis.server.jsondb.impl.expr;
 
-import static io.syndesis.server.jsondb.impl.SqlJsonDB.DatabaseKind.H2;
-
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -28,12 +26,16 @@ import io.syndesis.server.jsondb.impl.SqlJsonDB;
 
 class BinarySqlExpressionBuilder extends SqlExpressionBuilder {
     private final SqlJsonDB db;
+    private final String table;
+    private final String path;
     private final SqlExpressionBuilder arg1;
     private final String op;
     private final SqlExpressionBuilder arg2;
 
-    public BinarySqlExpressionBuilder(SqlJsonDB db, SqlExpressionBuilder arg1, String op, SqlExpressionBuilder arg2) {
+    public BinarySqlExpressionBuilder(SqlJsonDB db, String table, String path, SqlExpressionBuilder arg1, String op, SqlExpressionBuilder arg2) {
         this.db = db;
+        this.table = table;
+        this.path = path;
         this.arg1 = arg1;
         this.op = op;
         this.arg2 = arg2;
@@ -41,13 +43,8 @@ class BinarySqlExpressionBuilder extends SqlExpressionBuilder {
 
     @Override
     public void build(StringBuilder sql, ArrayList<Consumer<Query<Map<String, Object>>>> binds, AtomicInteger bindCounter) {
-        sql.append("SELECT ");
-        if (db.getDatabaseKind() == H2) {
-            sql.append("trim_suffix(path, split_part('#', idx, 2)||'/')");
-        } else {
-            sql.append("trim(trailing split_part('#', idx, 2)||'/' from path)");
-        }
-        sql.append("as match_path FROM jsondb WHERE (");
+        // the member holding the value, the field might be nested
+        sql.append("SELECT ").append(db.childPathOf(path)).append(" as match_path FROM ").append(table).append(" WHERE (");
         arg1.build(sql, binds, bindCounter);
         sql.append(op);
         arg2.build(sql, binds, bindCounter);
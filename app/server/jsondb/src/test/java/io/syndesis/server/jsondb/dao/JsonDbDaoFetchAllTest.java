@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.jsondb.dao;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import io.syndesis.common.model.ListResult;
+import io.syndesis.common.model.integration.Integration;
+import io.syndesis.server.dao.manager.operators.Pagination;
+import io.syndesis.server.dao.manager.operators.PropertySort;
+import io.syndesis.server.dao.manager.operators.PropertyValueFilter;
+import io.syndesis.server.jsondb.CloseableJsonDB;
+import io.syndesis.server.jsondb.impl.Index;
+import io.syndesis.server.jsondb.impl.MemorySqlJsonDB;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JsonDbDaoFetchAllTest {
+
+    private CloseableJsonDB jsondb;
+
+    private JsonDbDao<Integration> dao;
+
+    @BeforeEach
+    public void createDao() {
+        jsondb = MemorySqlJsonDB.create(Collections.singletonList(new Index("/integrations", "name")));
+        dao = new JsonDbDao<Integration>(jsondb) {
+            @Override
+            public Class<Integration> getType() {
+                return Integration.class;
+            }
+        };
+
+        for (String name : new String[] {"d", "b", "a", "c", "b"}) {
+            dao.create(new Integration.Builder().id(jsondb.createKey()).name(name).description("of " + name).build());
+        }
+    }
+
+    @AfterEach
+    public void closeDB() throws IOException {
+        jsondb.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldSortAndPaginateInQuery() {
+        ListResult<Integration> result = dao.fetchAll(new NameSort(true), new Page(1, 2));
+
+        assertThat(names(result)).containsExactly("c", "b");
+        assertThat(result.getTotalCount()).isEqualTo(5);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldFilterInQuery() {
+        ListResult<Integration> result = dao.fetchAll(new PropertyEquals("name", "b", Integration::getName), new Page(0, 1));
+
+        assertThat(names(result)).containsExactly("b");
+        assertThat(result.getTotalCount()).isEqualTo(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldApplyOperatorsAfterUnindexedFilterInMemory() {
+        ListResult<Integration> result = dao.fetchAll(
+            new PropertyEquals("description", "of b", i -> i.getDescription().orElse(null)),
+            new NameSort(false),
+            new Page(1, 2));
+
+        assertThat(names(result)).containsExactly("b");
+        assertThat(result.getTotalCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldFetchAllById() {
+        dao.create(new Integration.Builder().id("i1").name("e").build());
+        dao.create(new Integration.Builder().id("i2").name("f").build());
+
+        Map<String, Integration> fetched = dao.fetchAll(Arrays.asList("i2", "missing", "i1"));
+
+        assertThat(fetched).containsOnlyKeys("i1", "i2");
+        assertThat(fetched.get("i1").getName()).isEqualTo("e");
+        assertThat(fetched.get("i2")).isEqualTo(dao.fetch("i2"));
+    }
+
+    private static List<String> names(ListResult<Integration> result) {
+        return result.getItems().stream().map(Integration::getName).collect(Collectors.toList());
+    }
+
+    private static final class PropertyEquals implements Function<ListResult<Integration>, ListResult<Integration>>, PropertyValueFilter {
+        private final String property;
+        private final String value;
+        private final Function<Integration, String> getter;
+
+        PropertyEquals(String property, String value, Function<Integration, String> getter) {
+            this.property = property;
+            this.value = value;
+            this.getter = getter;
+        }
+
+        @Override
+        public ListResult<Integration> apply(ListResult<Integration> result) {
+            return ListResult.of(result.getItems().stream().filter(i -> value.equals(getter.apply(i))).collect(Collectors.toList()));
+        }
+
+        @Override
+        public List<Map.Entry<String, String>> getPropertyValues() {
+            return Collections.singletonList(new AbstractMap.SimpleImmutableEntry<>(property, value));
+        }
+    }
+
+    private static final class NameSort implements Function<ListResult<Integration>, ListResult<Integration>>, PropertySort {
+        private final boolean descending;
+
+        NameSort(boolean descending) {
+            this.descending = descending;
+        }
+
+        @Override
+        public ListResult<Integration> apply(ListResult<Integration> result) {
+            Comparator<Integration> byName = Comparator.comparing(Integration::getName);
+            return ListResult.of(result.getItems().stream()
+                .sorted(descending ? byName.reversed() : byName)
+                .collect(Collectors.toList()));
+        }
+
+        @Override
+        public String getSortProperty() {
+            return "name";
+        }
+
+        @Override
+        public boolean isDescending() {
+            return descending;
+        }
+    }
+
+    private static final class Page implements Function<ListResult<Integration>, ListResult<Integration>>, Pagination {
+        private final int offset;
+        private final int limit;
+
+        Page(int offset, int limit) {
+            this.offset = offset;
+            this.limit = limit;
+        }
+
+        @Override
+        public ListResult<Integration> apply(ListResult<Integration> result) {
+            List<Integration> items = result.getItems().stream().skip(offset).limit(limit).collect(Collectors.toList());
+            return new ListResult.Builder<Integration>().createFrom(result).items(items).build();
+        }
+
+        @Override
+        public int getOffset() {
+            return offset;
+        }
+
+        @Override
+        public int getLimit() {
+            return limit;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.jsondb.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.skife.jdbi.v2.DBI;
+
+import io.syndesis.common.util.EventBus;
+import io.syndesis.server.jsondb.Filter;
+import io.syndesis.server.jsondb.Filter.Op;
+import io.syndesis.server.jsondb.GetOptions;
+
+public class CachingJsonDBTest {
+
+    private SqlJsonDB sqlJsonDB;
+    private CachingJsonDB jsondb;
+
+    @BeforeEach
+    public void before() {
+        DBI dbi = new DBI(dataSource());
+
+        TestEventBus bus = new TestEventBus();
+        sqlJsonDB = new SqlJsonDB(dbi, bus, Collections.singletonList(new Index("/users", "name")));
+        try {
+            sqlJsonDB.dropTables();
+        } catch (Exception e) {
+        }
+        sqlJsonDB.createTables();
+
+        jsondb = new CachingJsonDB(sqlJsonDB, Arrays.asList("/users", "/groups"), 64 * 1024).subscribeTo(bus);
+    }
+
+    @Test
+    public void shouldCacheReads() {
+        jsondb.set("/users/:u1", "{\"name\":\"u1\"}");
+
+        assertThat(jsondb.getAsString("/users/:u1")).isEqualTo("{\"name\":\"u1\"}");
+        assertThat(jsondb.getAsString("/users/:u1")).isEqualTo("{\"name\":\"u1\"}");
+        assertThat(jsondb.getAsString("/users/:u1", new GetOptions().prettyPrint(true))).isEqualTo("{\n  \"name\" : \"u1\"\n}");
+        assertThat(jsondb.getAsString("/users/:missing")).isNull();
+        assertThat(jsondb.getAsString("/users/:missing")).isNull();
+
+        assertThat(jsondb.getMisses()).isEqualTo(3);
+        assertThat(jsondb.getHits()).isEqualTo(2);
+        assertThat(jsondb.getEntryCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldCacheChildrenReadTogether() {
+        jsondb.set("/users/:u1", "{\"name\":\"u1\"}");
+        jsondb.set("/users/:u2", "{\"name\":\"u2\"}");
+        assertThat(jsondb.getAsString("/users/:u1")).isEqualTo("{\"name\":\"u1\"}");
+
+        Map<String, byte[]> children = jsondb.getChildrenAsByteArray("/users", Arrays.asList(":u1", ":u2", ":missing"));
+        assertThat(children).containsOnlyKeys(":u1", ":u2");
+        assertThat(jsondb.getMisses()).isEqualTo(3);
+        assertThat(jsondb.getHits()).isEqualTo(1);
+
+        // cached as if read one by one
+        assertThat(jsondb.getAsString("/users/:u2")).isEqualTo("{\"name\":\"u2\"}");
+        assertThat(jsondb.getAsString("/users/:missing")).isNull();
+        assertThat(jsondb.getChildrenAsByteArray("/users", Arrays.asList(":u1", ":u2"))).containsOnlyKeys(":u1", ":u2");
+        assertThat(jsondb.getMisses()).isEqualTo(3);
+        assertThat(jsondb.getHits()).isEqualTo(5);
+    }
+
+    @Test
+    public void shouldNotCacheOtherPathsOrFilters() {
+        jsondb.set("/activity/:a1", "{\"id\":\"a1\"}");
+        jsondb.set("/users/:u1", "{\"name\":\"u1\"}");
+
+        assertThat(jsondb.getAsString("/activity/:a1")).isEqualTo("{\"id\":\"a1\"}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().filter(Filter.child("name", Op.EQ, "u1"))))
+            .isEqualTo("{\":u1\":{\"name\":\"u1\"}}");
+
+        assertThat(jsondb.getMisses()).isZero();
+        assertThat(jsondb.getEntryCount()).isZero();
+    }
+
+    @Test
+    public void shouldInvalidateOnWrites() {
+        jsondb.set("/users/:u1", "{\"name\":\"u1\"}");
+        jsondb.set("/users/:u2", "{\"name\":\"u2\"}");
+        jsondb.set("/groups/:g1", "{\"name\":\"g1\"}");
+        assertThat(jsondb.getAsString("/users")).isEqualTo("{\":u1\":{\"name\":\"u1\"},\":u2\":{\"name\":\"u2\"}}");
+        assertThat(jsondb.getAsString("/users/:u2")).isEqualTo("{\"name\":\"u2\"}");
+        assertThat(jsondb.getAsString("/groups/:g1")).isEqualTo("{\"name\":\"g1\"}");
+
+        jsondb.update("/users/:u1", "{\"name\":\"u3\"}");
+
+        // the collection containing the change is invalidated, unrelated entries are kept
+        assertThat(jsondb.getEntryCount()).isEqualTo(2);
+        assertThat(jsondb.getAsString("/users")).isEqualTo("{\":u1\":{\"name\":\"u3\"},\":u2\":{\"name\":\"u2\"}}");
+
+        jsondb.delete("/users");
+        assertThat(jsondb.getAsString("/users/:u2")).isNull();
+        assertThat(jsondb.getAsString("/groups/:g1")).isEqualTo("{\"name\":\"g1\"}");
+    }
+
+    @Test
+    public void shouldInvalidateOnEvents() {
+        jsondb.set("/users/:u1", "{\"name\":\"u1\"}");
+        assertThat(jsondb.getAsString("/users/:u1")).isEqualTo("{\"name\":\"u1\"}");
+
+        // written without going through the cache
+        sqlJsonDB.set("/users/:u1/name", "\"u2\"");
+        assertThat(jsondb.getAsString("/users/:u1")).isEqualTo("{\"name\":\"u2\"}");
+
+        jsondb.withGlobalTransaction(db -> db.delete("/users/:u1"));
+        assertThat(jsondb.getAsString("/users/:u1")).isNull();
+    }
+
+    @Test
+    public void shouldOnlyDiscardLoadsOfInvalidatedPaths() {
+        AtomicReference<Runnable> whileLoading = new AtomicReference<>(() -> {});
+        SqlJsonDB loading = new SqlJsonDB(new DBI(dataSource()), new TestEventBus()) {
+            @Override
+            public byte[] getAsByteArray(String path, GetOptions options) {
+                whileLoading.get().run();
+                return sqlJsonDB.getAsByteArray(path, options);
+            }
+        };
+        jsondb = new CachingJsonDB(loading, Arrays.asList("/users", "/groups"), 64 * 1024);
+        sqlJsonDB.set("/users/:u1", "{\"name\":\"u1\"}");
+        sqlJsonDB.set("/groups/:g1", "{\"name\":\"g1\"}");
+
+        // an unrelated change doesn't keep the load from being cached
+        whileLoading.set(() -> jsondb.invalidate("/users/:u2"));
+        assertThat(jsondb.getAsString("/groups/:g1")).isEqualTo("{\"name\":\"g1\"}");
+        assertThat(jsondb.getAsString("/users/:u1")).isEqualTo("{\"name\":\"u1\"}");
+        assertThat(jsondb.getEntryCount()).isEqualTo(2);
+
+        // a change of the loaded path or of the path containing it does
+        whileLoading.set(() -> jsondb.invalidate("/groups"));
+        assertThat(jsondb.getAsString("/groups")).isEqualTo("{\":g1\":{\"name\":\"g1\"}}");
+        whileLoading.set(() -> jsondb.invalidate("/users/:u1/name"));
+        jsondb.invalidate("/users/:u1");
+        assertThat(jsondb.getAsString("/users/:u1")).isEqualTo("{\"name\":\"u1\"}");
+        assertThat(jsondb.getEntryCount()).isZero();
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() {
+        jsondb = new CachingJsonDB(sqlJsonDB, Collections.singletonList("/users"), 1024);
+        for (int i = 0; i < 10; i++) {
+            jsondb.set("/users/:u" + i, "{\"name\":\"" + String.format("%0200d", i) + "\"}");
+        }
+
+        assertThat(jsondb.getAsString("/users/:u0")).isNotNull();
+        for (int i = 1; i < 10; i++) {
+            assertThat(jsondb.getAsString("/users/:u" + i)).isNotNull();
+            // keep the first one in use
+            assertThat(jsondb.getAsString("/users/:u0")).isNotNull();
+        }
+
+        assertThat(jsondb.getSize()).isLessThanOrEqualTo(1024);
+        assertThat(jsondb.getEvictions()).isPositive();
+        long misses = jsondb.getMisses();
+        assertThat(jsondb.getAsString("/users/:u0")).isNotNull();
+        assertThat(jsondb.getMisses()).isEqualTo(misses);
+
+        // larger than the cache, not cached at all
+        jsondb.set("/users/:large", "{\"name\":\"" + String.format("%02000d", 0) + "\"}");
+        assertThat(jsondb.getAsString("/users/:large")).isNotNull();
+        assertThat(jsondb.getSize()).isLessThanOrEqualTo(1024);
+    }
+
+    private static JdbcDataSource dataSource() {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:caching;DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+        return ds;
+    }
+
+    private static class TestEventBus implements EventBus {
+
+        private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+        @Override
+        public Subscription subscribe(String subscriberId, Subscription handler) {
+            return subscriptions.put(subscriberId, handler);
+        }
+
+        @Override
+        public Subscription unsubscribe(String subscriberId) {
+            return subscriptions.remove(subscriberId);
+        }
+
+        @Override
+        public void broadcast(String event, String data) {
+            subscriptions.values().forEach(s -> s.onEvent(event, data));
+        }
+
+        @Override
+        public void send(String subscriberId, String event, String data) {
+            Subscription subscription = subscriptions.get(subscriberId);
+            if (subscription != null) {
+                subscription.onEvent(event, data);
+            }
+        }
+    }
+}
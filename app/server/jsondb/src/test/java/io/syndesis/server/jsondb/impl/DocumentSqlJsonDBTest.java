@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.jsondb.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.util.IntegerColumnMapper;
+
+import io.syndesis.server.jsondb.Filter;
+import io.syndesis.server.jsondb.Filter.Op;
+import io.syndesis.server.jsondb.GetOptions;
+
+/**
+ * Runs the JsonDB tests against the document storage, along with tests
+ * covering collection members.
+ */
+public class DocumentSqlJsonDBTest extends JsonDBTest {
+
+    private DBI dbi;
+
+    @Override
+    protected SqlJsonDB createJsonDB(DBI dbi, List<Index> indexes) {
+        this.dbi = dbi;
+        return new DocumentSqlJsonDB(dbi, null, indexes);
+    }
+
+    @Test
+    public void shouldStoreCollectionMembersAsDocuments() throws IOException {
+        jsondb.set("/users/:u1", mapper.writeValueAsString(map(
+            "name", "u1",
+            "age", 9,
+            "tags", new Object[] {"a", "b"}
+        )));
+
+        assertThat(count("SELECT COUNT(*) FROM jsondb_doc")).isEqualTo(1);
+        assertThat(count("SELECT COUNT(*) FROM jsondb")).isZero();
+        assertThat(count("SELECT COUNT(*) FROM jsondb_doc_idx")).isEqualTo(2);
+
+        assertThat(jsondb.getAsString("/users/:u1")).isEqualTo("{\"age\":9,\"name\":\"u1\",\"tags\":[\"a\",\"b\"]}");
+        assertThat(jsondb.getAsString("/users/:u1/tags/1")).isEqualTo("\"b\"");
+        assertThat(jsondb.getAsString("/users/:u1/missing")).isNull();
+        assertThat(jsondb.exists("/users/:u1")).isTrue();
+        assertThat(jsondb.exists("/users/:u1/name")).isTrue();
+        assertThat(jsondb.exists("/users/:u1/missing")).isFalse();
+        assertThat(jsondb.exists("/users")).isTrue();
+    }
+
+    @Test
+    public void shouldMergeDocumentsWithValues() throws IOException {
+        jsondb.set("/users/:u2", mapper.writeValueAsString(map("name", "u2")));
+        jsondb.set("/users/:u1", mapper.writeValueAsString(map("name", "u1")));
+        jsondb.set("/users/count", "2");
+        jsondb.set("/users/:u3", mapper.writeValueAsString(map("name", "u3")));
+
+        assertThat(jsondb.getAsString("/users"))
+            .isEqualTo("{\":u1\":{\"name\":\"u1\"},\":u2\":{\"name\":\"u2\"},\":u3\":{\"name\":\"u3\"},\"count\":2}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().order(GetOptions.Order.DESC)))
+            .isEqualTo("{\"count\":2,\":u3\":{\"name\":\"u3\"},\":u2\":{\"name\":\"u2\"},\":u1\":{\"name\":\"u1\"}}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().depth(1)))
+            .isEqualTo("{\"count\":2,\":u1\":true,\":u2\":true,\":u3\":true}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().limitToFirst(2)))
+            .isEqualTo("{\":u1\":{\"name\":\"u1\"},\":u2\":{\"name\":\"u2\"}}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().startAfter(":u1").endAt(":u2")))
+            .isEqualTo("{\":u2\":{\"name\":\"u2\"}}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().startAt(":u2").order(GetOptions.Order.DESC)))
+            .isEqualTo("{\":u2\":{\"name\":\"u2\"},\":u1\":{\"name\":\"u1\"}}");
+    }
+
+    @Test
+    public void shouldUpdateAndDeleteWithinDocuments() throws IOException {
+        jsondb.set("/users/:u1", mapper.writeValueAsString(map(
+            "name", "u1",
+            "props", map("city", "Tampa", "state", "FL")
+        )));
+
+        jsondb.update("/users/:u1", mapper.writeValueAsString(map(
+            "name", "u2",
+            "props/city", "Miami"
+        )));
+        assertThat(jsondb.getAsString("/users/:u1")).isEqualTo("{\"name\":\"u2\",\"props\":{\"city\":\"Miami\",\"state\":\"FL\"}}");
+        assertThat(jsondb.fetchIdsByPropertyValue("/users", "name", "u2")).containsOnly("/users/:u1");
+        assertThat(jsondb.fetchIdsByPropertyValue("/users", "name", "u1")).isEmpty();
+
+        assertThat(jsondb.delete("/users/:u1/props/city")).isTrue();
+        assertThat(jsondb.delete("/users/:u1/props/city")).isFalse();
+        assertThat(jsondb.getAsString("/users/:u1")).isEqualTo("{\"name\":\"u2\",\"props\":{\"state\":\"FL\"}}");
+
+        jsondb.set("/users/:u1/props", "\"none\"");
+        assertThat(jsondb.getAsString("/users/:u1")).isEqualTo("{\"name\":\"u2\",\"props\":\"none\"}");
+
+        assertThat(jsondb.delete("/users/:u1")).isTrue();
+        assertThat(jsondb.getAsString("/users/:u1")).isNull();
+        assertThat(count("SELECT COUNT(*) FROM jsondb_doc")).isZero();
+        assertThat(count("SELECT COUNT(*) FROM jsondb_doc_idx")).isZero();
+    }
+
+    @Test
+    public void shouldSplitDocumentsWhenSettingCollections() throws IOException {
+        jsondb.set("/", mapper.writeValueAsString(map(
+            "users", map(
+                ":u1", map("name", "u1"),
+                ":u2", map("name", "u2")
+            ),
+            "other", "value"
+        )));
+
+        assertThat(count("SELECT COUNT(*) FROM jsondb_doc")).isEqualTo(2);
+        assertThat(jsondb.getAsString("/")).isEqualTo("{\"other\":\"value\",\"users\":{\":u1\":{\"name\":\"u1\"},\":u2\":{\"name\":\"u2\"}}}");
+
+        jsondb.set("/users", "{}");
+        assertThat(count("SELECT COUNT(*) FROM jsondb_doc")).isZero();
+        assertThat(jsondb.getAsString("/")).isEqualTo("{\"other\":\"value\"}");
+    }
+
+    @Test
+    public void shouldFilterAndLookupDocuments() throws IOException {
+        jsondb.set("/users/:u1", mapper.writeValueAsString(map("name", "u1", "age", 9)));
+        jsondb.set("/users/:u2", mapper.writeValueAsString(map("name", "u2", "age", 10)));
+        jsondb.set("/users/:u3", mapper.writeValueAsString(map("name", "u3", "age", 21)));
+
+        assertThat(jsondb.getAsString("/users", new GetOptions().filter(
+            Filter.and(Filter.child("age", Op.GT, 9), Filter.child("name", Op.LT, "u3"))
+        ))).isEqualTo("{\":u2\":{\"age\":10,\"name\":\"u2\"}}");
+
+        assertThat(jsondb.fetchIdsByPropertyValue("/users", "name", "u3")).containsOnly("/users/:u3");
+        // not indexed
+        jsondb.set("/pair/:p1", mapper.writeValueAsString(map("key", "k", "other", "o")));
+        assertThat(jsondb.fetchIdsByPropertyValue("/pair", "other", "o")).containsOnly("/pair/:p1");
+    }
+
+    @Test
+    public void shouldMigrateValuesToDocuments() throws IOException {
+        SqlJsonDB values = new SqlJsonDB(dbi, null, jsondb.getIndexes());
+        values.set("/users/:u1", mapper.writeValueAsString(map("name", "u1", "age", 9)));
+        values.set("/users/:u2", mapper.writeValueAsString(map("name", "u2")));
+        values.set("/other", mapper.writeValueAsString(map("name", "value")));
+
+        // members not migrated yet are still readable and writable
+        assertThat(jsondb.getAsString("/users/:u1")).isEqualTo("{\"age\":9,\"name\":\"u1\"}");
+        jsondb.update("/users/:u2", mapper.writeValueAsString(map("age", 10)));
+        assertThat(jsondb.getAsString("/users/:u2")).isEqualTo("{\"age\":10,\"name\":\"u2\"}");
+
+        assertThat(((DocumentSqlJsonDB) jsondb).migrateToDocuments()).isEqualTo(1);
+        assertThat(((DocumentSqlJsonDB) jsondb).migrateToDocuments()).isZero();
+
+        assertThat(count("SELECT COUNT(*) FROM jsondb_doc")).isEqualTo(2);
+        assertThat(count("SELECT COUNT(*) FROM jsondb WHERE path LIKE '/users/%'")).isZero();
+        assertThat(jsondb.getAsString("/")).isEqualTo("{\"other\":{\"name\":\"value\"},\"users\":{\":u1\":{\"age\":9,\"name\":\"u1\"},\":u2\":{\"age\":10,\"name\":\"u2\"}}}");
+        assertThat(jsondb.fetchIdsByPropertyValue("/users", "name", "u1")).containsOnly("/users/:u1");
+    }
+
+    private int count(String sql) {
+        return dbi.withHandle(h -> h.createQuery(sql).map(IntegerColumnMapper.PRIMITIVE).first());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.jsondb.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.skife.jdbi.v2.DBI;
+
+import io.syndesis.server.jsondb.GetOptions;
+
+/**
+ * Reads a page and the ids of a collection of 100k leaves, with the limit and
+ * depth pushed into the queries, next to reading the whole collection that
+ * the database had to return for those before.
+ *
+ * Run from the IDE or with: {@code mvn test-compile exec:java
+ * -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.syndesis.server.jsondb.impl.JsonDBReadBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonDBReadBenchmark {
+
+    private static final int CHILDREN = 10_000;
+
+    private static final int LEAVES_PER_CHILD = 10;
+
+    private SqlJsonDB jsondb;
+
+    @Setup
+    public void populate() {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+        jsondb = new SqlJsonDB(new DBI(ds), null);
+        jsondb.createTables();
+
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < CHILDREN; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\":").append(String.format("%08d", i)).append("\":{");
+            for (int j = 0; j < LEAVES_PER_CHILD; j++) {
+                if (j > 0) {
+                    json.append(',');
+                }
+                json.append("\"field").append(j).append("\":\"value ").append(j).append('"');
+            }
+            json.append('}');
+        }
+        json.append('}');
+        jsondb.set("/bench", json.toString());
+    }
+
+    @TearDown
+    public void dropTables() {
+        jsondb.dropTables();
+    }
+
+    @Benchmark
+    public String firstPage() {
+        return jsondb.getAsString("/bench", new GetOptions().limitToFirst(10));
+    }
+
+    @Benchmark
+    public String nextPage() {
+        return jsondb.getAsString("/bench", new GetOptions().startAfter(":00005000").limitToFirst(10));
+    }
+
+    @Benchmark
+    public String firstPageDescending() {
+        return jsondb.getAsString("/bench", new GetOptions().order(GetOptions.Order.DESC).limitToFirst(10));
+    }
+
+    @Benchmark
+    public String nextPageDescending() {
+        return jsondb.getAsString("/bench", new GetOptions().order(GetOptions.Order.DESC).startAfter(":00005000").limitToFirst(10));
+    }
+
+    @Benchmark
+    public String ids() {
+        return jsondb.getAsString("/bench", new GetOptions().depth(1));
+    }
+
+    @Benchmark
+    public String whole() {
+        return jsondb.getAsString("/bench");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JsonDBReadBenchmark.class.getSimpleName()).build()).run();
+    }
+}
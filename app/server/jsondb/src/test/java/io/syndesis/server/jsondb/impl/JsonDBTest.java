@@ -21,8 +21,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -47,8 +49,9 @@ import io.syndesis.server.jsondb.JsonDBException;
  */
 public class JsonDBTest {
 
-    private SqlJsonDB jsondb;
-    private final ObjectMapper mapper = new ObjectMapper()
+    protected SqlJsonDB jsondb;
+    private DBI dbi;
+    protected final ObjectMapper mapper = new ObjectMapper()
         .setSerializationInclusion(JsonInclude.Include.ALWAYS);
 
     private final GetOptions prettyPrint = new GetOptions().prettyPrint(true);
@@ -57,13 +60,15 @@ public class JsonDBTest {
     public void before() {
         JdbcDataSource ds = new JdbcDataSource();
         ds.setURL("jdbc:h2:mem:test1;DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
-        DBI dbi = new DBI(ds);
+        dbi = new DBI(ds);
 
-        this.jsondb = new SqlJsonDB(dbi, null,
+        this.jsondb = createJsonDB(dbi,
             Arrays.asList(
                 new Index("/pair", "key"),
                 new Index("/users", "name"),
-                new Index("/users", "age")
+                new Index("/users", "age"),
+                new Index("/integrations", "flows/steps/connection/id"),
+                new Index("/extensions", Arrays.asList("extensionId", "status"))
             )
         );
 
@@ -74,6 +79,10 @@ public class JsonDBTest {
         this.jsondb.createTables();
     }
 
+    protected SqlJsonDB createJsonDB(DBI dbi, List<Index> indexes) {
+        return new SqlJsonDB(dbi, null, indexes);
+    }
+
     @Test
     public void testInvalidKeys() throws IOException {
 
@@ -582,6 +591,94 @@ public class JsonDBTest {
     }
 
 
+    @Test
+    public void shouldLookupByArrayElements() throws IOException {
+        jsondb.set("/integrations/:i1", mapper.writeValueAsString(map(
+            "flows", new Object[] {
+                map("steps", new Object[] {map("connection", map("id", "c1")), map("connection", map("id", "c2"))}),
+                map("steps", new Object[] {map("connection", map("id", "c3"))})
+            }
+        )));
+        jsondb.set("/integrations/:i2", mapper.writeValueAsString(map(
+            "flows", new Object[] {
+                map("steps", new Object[] {map("connection", map("id", "c3"))})
+            }
+        )));
+
+        assertThat(jsondb.fetchIdsByPropertyValue("/integrations", "flows/steps/connection/id", "c2")).containsOnly("/integrations/:i1");
+        assertThat(jsondb.fetchIdsByPropertyValue("/integrations", "flows/steps/connection/id", "c3")).containsOnly("/integrations/:i1", "/integrations/:i2");
+        assertThat(jsondb.getAsString("/integrations", new GetOptions().depth(1).filter(
+            Filter.child("flows/steps/connection/id", Op.EQ, "c1")
+        ))).isEqualTo("{\":i1\":true}");
+
+        jsondb.set("/integrations/:i1/flows", "[]");
+        assertThat(jsondb.fetchIdsByPropertyValue("/integrations", "flows/steps/connection/id", "c3")).containsOnly("/integrations/:i2");
+    }
+
+    @Test
+    public void shouldLookupByPropertyValues() throws IOException {
+        jsondb.set("/extensions/:e1", mapper.writeValueAsString(map("extensionId", "x", "status", "Installed")));
+        jsondb.set("/extensions/:e2", mapper.writeValueAsString(map("extensionId", "x", "status", "Deleted")));
+        jsondb.set("/extensions/:e3", mapper.writeValueAsString(map("extensionId", "y", "status", "Installed")));
+
+        assertThat(jsondb.fetchIdsByPropertyValues("/extensions", propertyValues("extensionId", "x", "status", "Installed")))
+            .containsOnly("/extensions/:e1");
+        assertThat(jsondb.fetchIdsByPropertyValues("/extensions", propertyValues("extensionId", "x"))).containsOnly("/extensions/:e1", "/extensions/:e2");
+        // the composite index is kept up to date
+        jsondb.update("/extensions/:e2", mapper.writeValueAsString(map("status", "Installed")));
+        assertThat(jsondb.fetchIdsByPropertyValues("/extensions", propertyValues("extensionId", "x", "status", "Installed")))
+            .containsOnly("/extensions/:e1", "/extensions/:e2");
+        assertThat(jsondb.delete("/extensions/:e1")).isTrue();
+        assertThat(jsondb.fetchIdsByPropertyValues("/extensions", propertyValues("extensionId", "x", "status", "Installed")))
+            .containsOnly("/extensions/:e2");
+        jsondb.set("/extensions", "{}");
+        assertThat(jsondb.fetchIdsByPropertyValues("/extensions", propertyValues("extensionId", "x", "status", "Installed"))).isEmpty();
+
+        jsondb.set("/users/:u1", mapper.writeValueAsString(map("name", "u1", "age", 9, "city", "Tampa")));
+        jsondb.set("/users/:u2", mapper.writeValueAsString(map("name", "u1", "age", 10, "city", "Tampa")));
+        assertThat(jsondb.fetchIdsByPropertyValues("/users", propertyValues("name", "u1", "city", "Tampa")))
+            .containsOnly("/users/:u1", "/users/:u2");
+        assertThat(jsondb.fetchIdsByPropertyValues("/users", propertyValues("name", "u1", "city", "Miami"))).isEmpty();
+    }
+
+    @Test
+    public void shouldLookupByAnyPropertyValue() throws IOException {
+        jsondb.set("/extensions/:e1", mapper.writeValueAsString(map("extensionId", "x", "name", "a")));
+        jsondb.set("/extensions/:e2", mapper.writeValueAsString(map("extensionId", "y", "name", "b")));
+        jsondb.set("/extensions/:e3", mapper.writeValueAsString(map("extensionId", "z", "name", "c")));
+
+        assertThat(jsondb.fetchIdsByPropertyValueIn("/extensions", "extensionId", Arrays.asList("x", "y", "x", "w")))
+            .containsOnly("/extensions/:e1", "/extensions/:e2");
+        assertThat(jsondb.fetchIdsByPropertyValueIn("/extensions", "extensionId", Collections.emptyList())).isEmpty();
+        // not indexed
+        assertThat(jsondb.fetchIdsByPropertyValueIn("/extensions", "name", Arrays.asList("b", "d")))
+            .containsOnly("/extensions/:e2");
+    }
+
+    @Test
+    public void shouldReindex() throws IOException {
+        SqlJsonDB unindexed = createJsonDB(dbi, Collections.singletonList(new Index("/users", "name")));
+        unindexed.set("/extensions/:e1", mapper.writeValueAsString(map("extensionId", "x", "status", "Installed")));
+        unindexed.set("/integrations/:i1", mapper.writeValueAsString(map(
+            "flows", new Object[] {map("steps", new Object[] {map("connection", map("id", "c1"))})}
+        )));
+        assertThat(jsondb.fetchIdsByPropertyValues("/extensions", propertyValues("extensionId", "x", "status", "Installed"))).isEmpty();
+
+        jsondb.reindex();
+
+        assertThat(jsondb.fetchIdsByPropertyValues("/extensions", propertyValues("extensionId", "x", "status", "Installed")))
+            .containsOnly("/extensions/:e1");
+        assertThat(jsondb.fetchIdsByPropertyValue("/integrations", "flows/steps/connection/id", "c1")).containsOnly("/integrations/:i1");
+    }
+
+    private static Map<String, String> propertyValues(String... values) {
+        Map<String, String> propertyValues = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i += 2) {
+            propertyValues.put(values[i], values[i + 1]);
+        }
+        return propertyValues;
+    }
+
     @Test
     public void testGetFilter() throws IOException {
 
@@ -683,8 +780,139 @@ public class JsonDBTest {
 
     }
 
+    @Test
+    public void testGetSortedPage() throws IOException {
+        jsondb.set("/users/:u1", mapper.writeValueAsString(map("name", "c", "age", 21)));
+        jsondb.set("/users/:u2", mapper.writeValueAsString(map("name", "a", "age", 9)));
+        jsondb.set("/users/:u3", mapper.writeValueAsString(map("name", "b", "age", 10)));
+        jsondb.set("/users/:u4", mapper.writeValueAsString(map("name", "b", "age", 10)));
+        jsondb.set("/users/:u5", mapper.writeValueAsString(map("age", 1)));
+
+        assertThat(jsondb.getAsString("/users", new GetOptions().offset(1).limitToFirst(2)))
+            .isEqualTo("{\":u2\":{\"age\":9,\"name\":\"a\"},\":u3\":{\"age\":10,\"name\":\"b\"}}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().offset(3).order(GetOptions.Order.DESC)))
+            .isEqualTo("{\":u2\":{\"age\":9,\"name\":\"a\"},\":u1\":{\"age\":21,\"name\":\"c\"}}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().offset(5))).isNull();
+
+        assertThat(jsondb.getAsString("/users", new GetOptions().sortBy("name").depth(1)))
+            .isEqualTo("{\":u2\":true,\":u3\":true,\":u4\":true,\":u1\":true,\":u5\":true}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().sortBy("name").order(GetOptions.Order.DESC).limitToFirst(3)))
+            .isEqualTo("{\":u5\":{\"age\":1},\":u1\":{\"age\":21,\"name\":\"c\"},\":u3\":{\"age\":10,\"name\":\"b\"}}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().sortBy("age").offset(1).limitToFirst(1)))
+            .isEqualTo("{\":u2\":{\"age\":9,\"name\":\"a\"}}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().sortBy("age").filter(Filter.child("name", Op.EQ, "b")).depth(1)))
+            .isEqualTo("{\":u3\":true,\":u4\":true}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().filter(Filter.child("name", Op.LT, "c")).offset(1).depth(1)))
+            .isEqualTo("{\":u3\":true,\":u4\":true}");
+        assertThatExceptionOfType(JsonDBException.class)
+            .isThrownBy(() -> jsondb.getAsString("/users", new GetOptions().sortBy("missing")));
+
+        assertThat(jsondb.count("/users", new GetOptions().offset(1).limitToFirst(1))).isEqualTo(5);
+        assertThat(jsondb.count("/users", new GetOptions().startAt(":u2").endAt(":u3"))).isEqualTo(2);
+        assertThat(jsondb.count("/users", new GetOptions().sortBy("name"))).isEqualTo(5);
+        assertThat(jsondb.count("/users", new GetOptions().filter(Filter.child("name", Op.EQ, "b")))).isEqualTo(2);
+        assertThat(jsondb.count("/missing", null)).isZero();
+
+        assertThat(jsondb.isIndexed("/users", "name")).isTrue();
+        assertThat(jsondb.isIndexed("/users/", "age")).isTrue();
+        assertThat(jsondb.isIndexed("/users", "other")).isFalse();
+    }
+
+    @Test
+    public void testGetSortedKeepsChildrenWithoutValue() throws IOException {
+        jsondb.set("/users/:u1", mapper.writeValueAsString(map("name", "b")));
+        jsondb.set("/users/:u2", mapper.writeValueAsString(map("age", 3)));
+        jsondb.set("/users/:u3", mapper.writeValueAsString(map("name", "a")));
+        jsondb.set("/users/:u4", mapper.writeValueAsString(map("name", "c")));
+
+        assertThat(jsondb.getAsString("/users", new GetOptions().sortBy("name").depth(1)))
+            .isEqualTo("{\":u3\":true,\":u1\":true,\":u4\":true,\":u2\":true}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().sortBy("name").order(GetOptions.Order.DESC).depth(1)))
+            .isEqualTo("{\":u2\":true,\":u4\":true,\":u1\":true,\":u3\":true}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().sortBy("name").offset(3).depth(1)))
+            .isEqualTo("{\":u2\":true}");
+        assertThat(jsondb.count("/users", new GetOptions().sortBy("name"))).isEqualTo(4);
+    }
+
+    @Test
+    public void testGetSortedByNumber() throws IOException {
+        jsondb.set("/users/:u1", mapper.writeValueAsString(map("age", 100)));
+        jsondb.set("/users/:u2", mapper.writeValueAsString(map("age", 9)));
+        jsondb.set("/users/:u3", mapper.writeValueAsString(map("age", 10)));
+        jsondb.set("/users/:u4", mapper.writeValueAsString(map("age", -5)));
+        jsondb.set("/users/:u5", mapper.writeValueAsString(map("age", 9.5)));
+        jsondb.set("/users/:u6", mapper.writeValueAsString(map("age", -20)));
+
+        assertThat(jsondb.getAsString("/users", new GetOptions().sortBy("age").depth(1)))
+            .isEqualTo("{\":u6\":true,\":u4\":true,\":u2\":true,\":u5\":true,\":u3\":true,\":u1\":true}");
+        assertThat(jsondb.getAsString("/users", new GetOptions().sortBy("age").order(GetOptions.Order.DESC).limitToFirst(2).depth(1)))
+            .isEqualTo("{\":u1\":true,\":u3\":true}");
+    }
+
+    @Test
+    public void testGetLimitedPages() throws IOException {
+        for (int i = 1; i <= 6; i++) {
+            jsondb.set("/test/:k" + i, mapper.writeValueAsString(map("name", "n" + i, "props", map("i", i))));
+        }
+
+        GetOptions page = new GetOptions().order(GetOptions.Order.DESC).limitToFirst(2).depth(1);
+        assertThat(jsondb.getAsString("/test", page)).isEqualTo("{\":k6\":true,\":k5\":true}");
+        assertThat(jsondb.getAsString("/test", page.startAfter(":k5"))).isEqualTo("{\":k4\":true,\":k3\":true}");
+        assertThat(jsondb.getAsString("/test", page.startAfter(":k3"))).isEqualTo("{\":k2\":true,\":k1\":true}");
+        assertThat(jsondb.getAsString("/test", page.startAfter(":k1"))).isNull();
+
+        assertThat(jsondb.getAsString("/test", new GetOptions().startAfter(":k4").limitToFirst(1)))
+            .isEqualTo("{\":k5\":{\"name\":\"n5\",\"props\":{\"i\":5}}}");
+        assertThat(jsondb.getAsString("/test", new GetOptions().order(GetOptions.Order.DESC).startAfter(":k2").limitToFirst(5)))
+            .isEqualTo("{\":k1\":{\"props\":{\"i\":1},\"name\":\"n1\"}}");
+        assertThat(jsondb.getAsString("/test/:k3", new GetOptions().order(GetOptions.Order.DESC).limitToFirst(1)))
+            .isEqualTo("{\"props\":{\"i\":3}}");
+    }
+
+    @Test
+    public void shouldBoundLimitedReadsByTheLastChild() throws IOException {
+        jsondb.set("/test/a1/b1", "1");
+        jsondb.set("/test/a1/b2", "2");
+        jsondb.set("/test/a2/b1", "3");
+        jsondb.set("/test/a3", "4");
+
+        GetOptions asc = dbi.withHandle(h -> jsondb.plan(h, "/test/", new GetOptions().limitToFirst(2)));
+        assertThat(((SqlJsonDB.PlannedOptions) asc).lastChildPath).isEqualTo("/test/a2/");
+
+        GetOptions desc = dbi.withHandle(h -> jsondb.plan(h, "/test/", new GetOptions().limitToFirst(2).order(GetOptions.Order.DESC)));
+        assertThat(((SqlJsonDB.PlannedOptions) desc).lastChildPath).isEqualTo("/test/a2/");
+
+        GetOptions after = dbi.withHandle(h -> jsondb.plan(h, "/test/", new GetOptions().limitToFirst(1).startAfter("a1")));
+        assertThat(((SqlJsonDB.PlannedOptions) after).lastChildPath).isEqualTo("/test/a2/");
+
+        GetOptions all = new GetOptions().limitToFirst(4);
+        GetOptions unbounded = dbi.withHandle(h -> jsondb.plan(h, "/test/", all));
+        assertThat(unbounded).isSameAs(all);
+    }
+
+    @Test
+    public void testGetChildren() throws IOException {
+        for (int i = 1; i <= 3; i++) {
+            jsondb.set("/test/:k" + i, mapper.writeValueAsString(map("name", "n" + i, "props", map("i", i))));
+        }
+        jsondb.set("/test/count", "3");
+
+        Map<String, byte[]> children = jsondb.getChildrenAsByteArray("/test", Arrays.asList(":k3", ":k1", ":missing", ":k_"));
+        assertThat(children).containsOnlyKeys(":k1", ":k3");
+        assertThat(new String(children.get(":k1"), StandardCharsets.UTF_8)).isEqualTo(jsondb.getAsString("/test/:k1"));
+        assertThat(new String(children.get(":k3"), StandardCharsets.UTF_8)).isEqualTo("{\"name\":\"n3\",\"props\":{\"i\":3}}");
+
+        children = jsondb.getChildrenAsByteArray("/test", Arrays.asList(":k2", "count"));
+        assertThat(new String(children.get(":k2"), StandardCharsets.UTF_8)).isEqualTo("{\"name\":\"n2\",\"props\":{\"i\":2}}");
+        assertThat(new String(children.get("count"), StandardCharsets.UTF_8)).isEqualTo("3");
+
+        assertThat(jsondb.getChildrenAsByteArray("/test", Collections.emptyList())).isEmpty();
+        assertThatExceptionOfType(JsonDBException.class)
+            .isThrownBy(() -> jsondb.getChildrenAsByteArray("/test", Collections.singletonList("a/b")));
+    }
+
     // Helper method to help construct maps with concise syntax
-    private HashMap<String, Object> map(Object... values) {
+    protected HashMap<String, Object> map(Object... values) {
         HashMap<String, Object> rc = new HashMap<String, Object>() {
             @Override
             public String toString() {
@@ -18,6 +18,9 @@ package io.syndesis.server.jsondb.impl;
 import static io.syndesis.server.jsondb.impl.JsonRecordSupport.toLexSortableString;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.junit.jupiter.api.Test;
@@ -72,6 +75,19 @@ public class JsonRecordSupportTest {
         }
     }
 
+    @Test
+    public void testIndexFieldValue() {
+        Set<String> indexes = new HashSet<>(Arrays.asList("/users/#name", "/integrations/#flows/steps/connection/id"));
+
+        assertThat(JsonRecordSupport.indexFieldValue(indexes, "/users/:u1/name/")).isEqualTo("/users/#name");
+        assertThat(JsonRecordSupport.indexFieldValue(indexes, "/users/:u1/age/")).isNull();
+        assertThat(JsonRecordSupport.indexFieldValue(indexes, "/users/name/")).isNull();
+
+        String connectionId = "/integrations/:i1/flows/" + toLexSortableString(0) + "/steps/" + toLexSortableString(12) + "/connection/id/";
+        assertThat(JsonRecordSupport.indexFieldValue(indexes, connectionId)).isEqualTo("/integrations/#flows/steps/connection/id");
+        assertThat(JsonRecordSupport.indexFieldValue(indexes, "/integrations/:i1/flows/" + toLexSortableString(0) + "/steps/")).isNull();
+    }
+
     private static String rtrim(String value, String suffix) {
         return value.replaceAll("("+Pattern.quote(suffix)+")+$", "");
     }
@@ -30,23 +30,37 @@ import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.api.model.PodListBuilder;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 import io.syndesis.common.util.DurationConverter;
+import io.syndesis.common.util.KeyGenerator;
 import io.syndesis.common.util.backend.BackendController;
 import io.syndesis.common.util.json.JsonUtils;
+import io.syndesis.server.endpoint.v1.handler.activity.ActivityTrackingService.Ingestion;
 import io.syndesis.server.jsondb.GetOptions;
 import io.syndesis.server.jsondb.JsonDB;
 import io.syndesis.server.jsondb.impl.JsonRecordSupport;
 import io.syndesis.server.jsondb.impl.SqlJsonDB;
+import io.syndesis.server.logging.jsondb.store.ActivityStore;
+import io.syndesis.server.openshift.IntegrationResourceCache;
+import io.syndesis.server.openshift.IntegrationTokens;
 import io.syndesis.server.openshift.OpenShiftService;
 import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.PreparedBatch;
+import org.skife.jdbi.v2.ResultIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -66,10 +80,16 @@ public class ActivityTrackingController implements BackendController, Closeable
 
     static final String IDLE_THREAD_NAME = "Logs Controller [idle]";
 
+    private static final String EXCHANGES_PATH = "/exchanges/";
+
+    private static final String LEGACY_EXCHANGES_PATH = "/activity/exchanges/";
+
     private static final Logger LOG = LoggerFactory.getLogger(ActivityTrackingController.class);
 
     private final DBI dbi;
+    private final ActivityStore activities;
     private final KubernetesClient client;
+    private IntegrationResourceCache cache;
     private final Map<String, PodLogMonitor> podHandlers = new ConcurrentHashMap<>();
     private final JsonDB jsondb;
     private ScheduledExecutorService scheduler;
@@ -77,21 +97,73 @@ public class ActivityTrackingController implements BackendController, Closeable
 
     final KubernetesSupport kubernetesSupport;
 
-    protected final LinkedBlockingDeque<BatchOperation> eventQueue = new LinkedBlockingDeque<>(1000);
+    // batches taking longer than this to write are made smaller
+    private static final long TARGET_WRITE_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final int MIN_BATCH_SIZE = 10;
+    private static final int MAX_BATCH_SIZE = 5000;
+
+    /**
+     * The events of an integration always go to the same partition, written
+     * by its own thread, so events are written in order.
+     */
+    static final class Partition {
+        final int index;
+        final LinkedBlockingDeque<BatchOperation> eventQueue = new LinkedBlockingDeque<>(1000);
+        // adapted to the time it takes to write batches
+        int batchSize = 1000;
+
+        Partition(int index) {
+            this.index = index;
+        }
+
+        void adaptBatchSize(int written, long nanos) {
+            if (nanos > TARGET_WRITE_NANOS) {
+                batchSize = Math.max(MIN_BATCH_SIZE, batchSize / 2);
+            } else if (nanos < TARGET_WRITE_NANOS / 2 && written >= batchSize) {
+                batchSize = Math.min(MAX_BATCH_SIZE, batchSize * 2);
+            }
+        }
+    }
+
+    private volatile Partition[] partitions = partitions(2);
     protected final AtomicBoolean stopped = new AtomicBoolean();
 
+    // meters of the registry set, if any
+    private MeterRegistry meterRegistry = new CompositeMeterRegistry();
+    private Timer writeTimer;
+    private Timer backpressureTimer;
+    private DistributionSummary batchSizes;
+
+    final LongAdder inflightExpired = new LongAdder();
+    final LongAdder inflightEvicted = new LongAdder();
+
     /** The number of retained activity log items */
     private int retention = 50;
     /** Logs older than this will not be processed */
     private Duration retentionTime = Duration.ofDays(1);
     private Duration cleanUpInterval = Duration.ofMinutes(15);
     private Duration startupDelay = Duration.ofSeconds(15);
+    /** Maximum number of activities in flight per pod */
+    private int maxInflight = 1000;
+    // time after which the log of a pod that stopped pushing is read again
+    private Duration pushTimeout = Duration.ofMinutes(1);
+    // without key, all pushed activities are rejected
+    private IntegrationTokens tokens;
+    private boolean pushAddressCheck = true;
     private SqlJsonDB.DatabaseKind databaseKind;
+    // activities written by older versions to jsondb are moved to the
+    // activity store on the first clean up
+    private boolean legacyActivitiesMigrated;
 
-    @Autowired
     public ActivityTrackingController(JsonDB jsondb, DBI dbi, KubernetesClient client) {
+        this(jsondb, dbi, client, new ActivityStore(dbi));
+    }
+
+    @Autowired
+    public ActivityTrackingController(JsonDB jsondb, DBI dbi, KubernetesClient client, ActivityStore activities) {
         this.jsondb = jsondb;
         this.dbi = dbi;
+        this.activities = activities;
         this.client = client;
         this.kubernetesSupport = new KubernetesSupport(client);
     }
@@ -106,7 +178,18 @@ public class ActivityTrackingController implements BackendController, Closeable
         scheduler = Executors.newScheduledThreadPool(1, newThreadFactory("Logs Controller Scheduler"));
         executor =  Executors.newCachedThreadPool(newThreadFactory("Logs Controller"));
         stopped.set(false);
-        executor.execute(this::processEventQueue);
+        writeTimer = Timer.builder("activity.tracking.write")
+            .description("Time taken to write batches of activities")
+            .register(meterRegistry);
+        backpressureTimer = Timer.builder("activity.tracking.backpressure")
+            .description("Time pod log monitors waited for room in the queues")
+            .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("activity.tracking.batch.size")
+            .description("Number of records written per batch")
+            .register(meterRegistry);
+        for (Partition partition : partitions) {
+            executor.execute(() -> processEventQueue(partition));
+        }
         scheduler.scheduleWithFixedDelay(this::pollPods, startupDelay.getSeconds(), 5, TimeUnit.SECONDS);
         scheduler.scheduleWithFixedDelay(this::cleanupLogs, startupDelay.toMillis(), cleanUpInterval.toMillis(), TimeUnit.MILLISECONDS);
 
@@ -133,16 +216,14 @@ public class ActivityTrackingController implements BackendController, Closeable
         try {
             LOG.info("Purging old activity logs");
 
-            @SuppressWarnings("unchecked")
-            Map<String, Object> hashMap = dbGet(HashMap.class, "/activity/integrations");
-            if( hashMap!=null ) {
-                for (String integrationId : hashMap.keySet()) {
-                    String integrationPath = "/activity/exchanges/" + integrationId + "/%";
-                    int count = deleteKeepingRetention(integrationPath);
-                    LOG.info("deleted {} transactions for integration: {}", count, integrationId);
-                }
+            if (!legacyActivitiesMigrated) {
+                migrateLegacyActivities();
+                legacyActivitiesMigrated = true;
             }
-        } catch (IOException e) {
+
+            int count = activities.purge(retention, retentionTime);
+            LOG.info("deleted {} transactions", count);
+        } catch (RuntimeException e) {
             LOG.error("Unexpected Error occurred.", e);
         } finally {
             Thread.currentThread().setName("Logs Controller Scheduler [idle]");
@@ -150,23 +231,53 @@ public class ActivityTrackingController implements BackendController, Closeable
     }
 
     /**
-     * TODO: push this into the jsondb API.
+     * Copies the activities older versions stored in jsondb to the activity
+     * store, those past the retention time excepted, and deletes them from
+     * jsondb once copied. The activities past the retention count are purged
+     * from the store afterwards, as usual.
      */
-    int deleteKeepingRetention(String path) {
-        return dbi.inTransaction((conn, status) -> {
-            final String skipLocked = databaseKind == SqlJsonDB.DatabaseKind.PostgreSQL ? "FOR KEY SHARE SKIP LOCKED " : "";
-
-            final String sql = "DELETE FROM jsondb WHERE path IN ("
-                + "SELECT path "
-                + "FROM jsondb "
-                + "WHERE path LIKE ? "
-                + "ORDER BY path DESC "
-                + skipLocked
-                + "OFFSET ? ROWS"
-                + ")";
-
-            return conn.update(sql, path, retention);
+    void migrateLegacyActivities() {
+        long expiredBefore = System.currentTimeMillis() - retentionTime.toMillis();
+        int migrated = dbi.inTransaction((conn, status) -> {
+            ActivityStore.Batch exchanges = activities.batch(conn);
+            int count = 0;
+            try (ResultIterator<String[]> rows = conn.createQuery("SELECT path, value FROM jsondb WHERE path LIKE :path")
+                    .bind("path", LEGACY_EXCHANGES_PATH + "%")
+                    .map((index, r, ctx) -> new String[] {r.getString("path"), r.getString("value")})
+                    .iterator()) {
+                while (rows.hasNext()) {
+                    String[] row = rows.next();
+                    // /activity/exchanges/<integration id>/<exchange id>/
+                    String path = row[0].substring(LEGACY_EXCHANGES_PATH.length(), row[0].length() - 1);
+                    int separator = path.indexOf('/');
+                    String value = row[1];
+                    if (separator < 0 || value == null || value.isEmpty() || value.charAt(0) != JsonRecordSupport.STRING_VALUE_PREFIX) {
+                        continue;
+                    }
+
+                    String exchangeId = path.substring(separator + 1);
+                    try {
+                        if (KeyGenerator.getKeyTimeMillis(exchangeId) < expiredBefore) {
+                            continue;
+                        }
+                    } catch (IOException | IllegalArgumentException e) {
+                        LOG.debug("Not migrating activity with invalid exchange id: {}", row[0], e);
+                        continue;
+                    }
+
+                    exchanges.add(path.substring(0, separator), exchangeId, value.substring(1));
+                    count++;
+                }
+            }
+            exchanges.execute();
+            return count;
         });
+
+        jsondb.delete("/activity/exchanges");
+        jsondb.delete("/activity/integrations");
+        if (migrated > 0) {
+            LOG.info("Migrated {} activities from jsondb", migrated);
+        }
     }
 
     private void writeBatch(Map<String, Object> batch) {
@@ -182,28 +293,30 @@ public class ActivityTrackingController implements BackendController, Closeable
                 sql = "INSERT into jsondb (path, value, ovalue) values (:path, :value, :ovalue)";
             }
 
+            ActivityStore.Batch exchanges = activities.batch(conn);
             PreparedBatch insert = conn.prepareBatch(sql);
+            int pods = 0;
             for (Map.Entry<String, Object> entry : batch.entrySet()) {
-                String key = "/activity" + entry.getKey() + "/";
-                String value = null;
-                String ovalue = null;
-                if( key.startsWith("/activity/exchanges" )) {
-                    value = JsonRecordSupport.STRING_VALUE_PREFIX + (String)entry.getValue();
-                } else if ( key.startsWith("/activity/integrations" )) {
-                    ovalue = "true";
-                    value = String.valueOf(JsonRecordSupport.TRUE_VALUE_PREFIX);
-                } else if ( key.startsWith("/activity/pods" )) {
+                String key = entry.getKey();
+                if (key.startsWith(EXCHANGES_PATH)) {
+                    // /exchanges/<integration id>/<exchange id>
+                    int separator = key.indexOf('/', EXCHANGES_PATH.length());
+                    exchanges.add(key.substring(EXCHANGES_PATH.length(), separator), key.substring(separator + 1), (String) entry.getValue());
+                } else if (key.startsWith("/pods/")) {
                     PodLogState p = (PodLogState) entry.getValue();
-                    key += "time/"; //NOPMD
-                    value = JsonRecordSupport.STRING_VALUE_PREFIX+p.time;
+                    insert
+                        .bind("path", "/activity" + key + "/time/")
+                        .bind("value", JsonRecordSupport.STRING_VALUE_PREFIX + p.time)
+                        .bind("ovalue", (String) null)
+                        .add();
+                    pods++;
                 }
-                insert
-                    .bind("path", key)
-                    .bind("value", value)
-                    .bind("ovalue", ovalue)
-                    .add();
             }
-            return insert.execute();
+            exchanges.execute();
+            if (pods > 0) {
+                insert.execute();
+            }
+            return null;
         });
     }
 
@@ -279,6 +392,12 @@ public class ActivityTrackingController implements BackendController, Closeable
                 }
             }
 
+            // exchanges of pods no longer logging expire as well, without
+            // waiting for the writers so that polling doesn't fall behind
+            for (PodLogMonitor handler : podHandlers.values()) {
+                handler.evictExpiredActivities();
+            }
+
             @SuppressWarnings("unchecked")
             Map<String, Object> pods = dbGet(HashMap.class, "/activity/pods"); //NOPMD
             if (pods != null) {
@@ -305,11 +424,16 @@ public class ActivityTrackingController implements BackendController, Closeable
     }
 
     protected PodList listPods() {
+        if (cache != null) {
+            return new PodListBuilder()
+                .withItems(cache.getPods(IntegrationResourceCache.integrationLabels(OpenShiftService.COMPONENT_LABEL, "integration")))
+                .build();
+        }
         return client.pods().withLabel(OpenShiftService.COMPONENT_LABEL, "integration").list();
     }
 
     protected boolean isPodRunning(String name) {
-        Pod pod = client.pods().withName(name).get();
+        Pod pod = cache != null ? cache.getPod(name) : client.pods().withName(name).get();
         if (pod == null) {
             return false;
         }
@@ -320,6 +444,23 @@ public class ActivityTrackingController implements BackendController, Closeable
         kubernetesSupport.watchLog(podName, handler, sinceTime, executor);
     }
 
+    /**
+     * Processes the activities pushed by an integration pod, they can't be
+     * processed until the pod is tracked, which takes up to a poll interval
+     * for new pods and the startup delay when the server starts.
+     */
+    public Ingestion ingest(String podName, String address, String token, InputStream activities) throws IOException {
+        if (stopped.get()) {
+            return Ingestion.UNAVAILABLE;
+        }
+
+        PodLogMonitor monitor = podHandlers.get(podName);
+        if (monitor == null) {
+            return Ingestion.UNAVAILABLE;
+        }
+        return monitor.ingest(address, token, activities);
+    }
+
     public void deletePodLogState(String podName) {
         jsondb.delete("/activity/pods/" + podName);
     }
@@ -344,10 +485,11 @@ public class ActivityTrackingController implements BackendController, Closeable
         return JsonUtils.reader().forType(type).readValue(data);
     }
 
-    private void processEventQueue() {
-        Thread.currentThread().setName("Logs Controller [running]: processEventQueue");
+    private void processEventQueue(Partition partition) {
+        Thread.currentThread().setName("Logs Controller [running]: processEventQueue " + partition.index);
+        final LinkedBlockingDeque<BatchOperation> eventQueue = partition.eventQueue;
         try {
-            LOG.info("Batch ingestion work thread started.");
+            LOG.info("Batch ingestion work thread {} started.", partition.index);
             while (!stopped.get()) {
 
                 // Using a timeout so that if queue is empty, we break out periodically to
@@ -371,7 +513,7 @@ public class ActivityTrackingController implements BackendController, Closeable
 
                         // Once the batch gets big enough, or we are taking too long on this batch..
                         long remaining = 1000 - (System.currentTimeMillis() - batchStartTime);
-                        if (batch.size() >= 1000 || remaining <= 0) {
+                        if (batch.size() >= partition.batchSize || remaining <= 0) {
                             event = null;
                         } else {
                             // try to get more for the batch
@@ -381,7 +523,12 @@ public class ActivityTrackingController implements BackendController, Closeable
 
                     // Write the batch..
                     try {
+                        long start = System.nanoTime();
                         writeBatch(batch);
+                        long took = System.nanoTime() - start;
+                        writeTimer.record(took, TimeUnit.NANOSECONDS);
+                        batchSizes.record(batch.size());
+                        partition.adaptBatchSize(batch.size(), took);
                     } catch (RuntimeException e) {
                         LOG.warn("Unable to write batch of events: {}", e.getMessage());
                         LOG.debug("Unable to write batch of events: ", e);
@@ -398,7 +545,55 @@ public class ActivityTrackingController implements BackendController, Closeable
         } finally {
             Thread.currentThread().setName(IDLE_THREAD_NAME);
         }
-        LOG.info("Batch ingestion work thread done.");
+        LOG.info("Batch ingestion work thread {} done.", partition.index);
+    }
+
+    /**
+     * Queues the operation for the partition of the integration, waits for
+     * room in the queue if the partition's writer is falling behind.
+     */
+    void enqueue(String integrationId, BatchOperation operation) throws InterruptedException {
+        LinkedBlockingDeque<BatchOperation> queue = partition(integrationId).eventQueue;
+        if (!queue.offer(operation)) {
+            long start = System.nanoTime();
+            queue.put(operation);
+            if (backpressureTimer != null) {
+                backpressureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Queues the operation for the partition of the integration if there is
+     * room in the queue.
+     * @return false if the queue is full
+     */
+    boolean tryEnqueue(String integrationId, BatchOperation operation) {
+        return partition(integrationId).eventQueue.offer(operation);
+    }
+
+    Partition partition(String integrationId) {
+        Partition[] current = partitions;
+        return current[Math.floorMod(integrationId.hashCode(), current.length)];
+    }
+
+    /**
+     * Returns the number of operations queued over all partitions.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Partition partition : partitions) {
+            depth += partition.eventQueue.size();
+        }
+        return depth;
+    }
+
+    private static Partition[] partitions(int count) {
+        Partition[] partitions = new Partition[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new Partition(i);
+        }
+        return partitions;
     }
 
     @Value("${controllers.dblogging.retention:50}")
@@ -416,6 +611,71 @@ public class ActivityTrackingController implements BackendController, Closeable
         this.cleanUpInterval = new DurationConverter().convert(cleanUpInterval);
     }
 
+    @Value("${controllers.dblogging.maxInflight:1000}")
+    public void setMaxInflight(int maxInflight) {
+        this.maxInflight = maxInflight;
+    }
+
+    @Value("${controllers.dblogging.pushTimeout:1 minute}")
+    public void setPushTimeout(String pushTimeout) {
+        this.pushTimeout = new DurationConverter().convert(pushTimeout);
+    }
+
+    /**
+     * Sets the key the tokens of the integration deployments are derived from,
+     * the same the deployments are given.
+     */
+    @Value("${encrypt.key:}")
+    public void setTokenKey(String key) {
+        this.tokens = key.isEmpty() ? null : new IntegrationTokens(key);
+    }
+
+    /**
+     * Checks that the pushed activities come from the address of the pod on
+     * top of the token, to be disabled when pods reach the server through a
+     * proxy.
+     */
+    @Value("${controllers.dblogging.pushAddressCheck:true}")
+    public void setPushAddressCheck(boolean pushAddressCheck) {
+        this.pushAddressCheck = pushAddressCheck;
+    }
+
+    /**
+     * Sets the number of threads writing activities, takes effect when opened.
+     */
+    @Value("${controllers.dblogging.writers:2}")
+    public void setWriters(int writers) {
+        this.partitions = partitions(Math.max(1, writers));
+    }
+
+    /**
+     * Polls the integration pods from the given cache instead of the API
+     * server.
+     */
+    @Autowired(required = false)
+    public void setResourceCache(IntegrationResourceCache cache) {
+        this.cache = cache;
+    }
+
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        Gauge.builder("activity.tracking.queue.depth", this, ActivityTrackingController::getQueueDepth)
+            .description("Activity tracking events waiting to be written")
+            .register(registry);
+        Gauge.builder("activity.tracking.inflight", this, ActivityTrackingController::getInflightCount)
+            .description("Activities of exchanges still in progress")
+            .register(registry);
+        FunctionCounter.builder("activity.tracking.incomplete", inflightExpired, LongAdder::sum)
+            .description("Activities recorded as incomplete")
+            .tag("reason", "expired")
+            .register(registry);
+        FunctionCounter.builder("activity.tracking.incomplete", inflightEvicted, LongAdder::sum)
+            .description("Activities recorded as incomplete")
+            .tag("reason", "evicted")
+            .register(registry);
+    }
+
     @Value("${controllers.dblogging.startupDelay:15 seconds}")
     public void setStartupDelay(String startupDelay) {
         this.startupDelay = new DurationConverter().convert(startupDelay);
@@ -429,6 +689,33 @@ public class ActivityTrackingController implements BackendController, Closeable
         return retentionTime;
     }
 
+    public int getMaxInflight() {
+        return maxInflight;
+    }
+
+    public Duration getPushTimeout() {
+        return pushTimeout;
+    }
+
+    public IntegrationTokens getTokens() {
+        return tokens;
+    }
+
+    public boolean isPushAddressCheck() {
+        return pushAddressCheck;
+    }
+
+    /**
+     * Returns the number of activities in flight over all pods.
+     */
+    public int getInflightCount() {
+        int count = 0;
+        for (PodLogMonitor monitor : podHandlers.values()) {
+            count += monitor.getInflightCount();
+        }
+        return count;
+    }
+
     void execute(String podName, Runnable task) {
         if (stopped.get()) {
             LOG.warn("Not executing task: {}, for pod {}, the activity tracking is stopping", task, podName);
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.logging.jsondb.controller;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.syndesis.common.util.json.JsonUtils;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * A structured log line written by the activity tracking of an integration,
+ * like: {@code 2018-06-06T21:54:36.30603486Z {"exchange":"i-LEM51uGKc6IuIjvR95Vz","status":"begin"}}.
+ *
+ * Parsed straight from the bytes read from the pod log: the timestamp is
+ * scanned by hand and the JSON is streamed, only the fields used to track
+ * the activities are bound, all other fields are kept in {@link #fields}.
+ */
+final class LogEntry {
+
+    String time;
+    String exchange;
+    String id;
+    String step;
+    String status;
+    String message;
+    String failure;
+    Long duration;
+    Boolean failed;
+
+    // fields other than the ones above, null if there are none
+    ObjectNode fields;
+
+    private LogEntry() {
+    }
+
+    /**
+     * Parses a log line, returns null if it is not a structured log line.
+     *
+     * @throws IOException if the JSON is invalid or a field has an unexpected type
+     */
+    static LogEntry parse(byte[] line, int offset, int length) throws IOException {
+        int end = offset + length;
+        while (end > offset && isWhitespace(line[end - 1])) {
+            end--;
+        }
+
+        int timeEnd = scanTimestamp(line, offset, end);
+        if (timeEnd < 0 || end - timeEnd < 3 || line[timeEnd] != ' ' || line[timeEnd + 1] != '{' || line[end - 1] != '}') {
+            return null;
+        }
+
+        LogEntry entry = new LogEntry();
+        try (JsonParser parser = JsonUtils.reader().getFactory().createParser(line, timeEnd + 1, end - timeEnd - 1)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (name) {
+                case "exchange":
+                    entry.exchange = text(parser, token);
+                    break;
+                case "id":
+                    entry.id = text(parser, token);
+                    break;
+                case "step":
+                    entry.step = text(parser, token);
+                    break;
+                case "status":
+                    entry.status = text(parser, token);
+                    break;
+                case "message":
+                    entry.message = text(parser, token);
+                    break;
+                case "failure":
+                    entry.failure = text(parser, token);
+                    break;
+                case "duration":
+                    entry.duration = number(parser, token);
+                    break;
+                case "failed":
+                    entry.failed = bool(parser, token);
+                    break;
+                default:
+                    entry.field(name, JsonUtils.reader().readTree(parser));
+                    break;
+                }
+            }
+        }
+
+        entry.time = new String(line, offset, timeEnd - offset, US_ASCII);
+        return entry;
+    }
+
+    /**
+     * Returns the fields not bound for step level events, null if there are none.
+     */
+    ObjectNode stepFields() {
+        ObjectNode result = fields;
+        if (status != null) {
+            result = put(result, "status", JsonNodeFactory.instance.textNode(status));
+        }
+        if (failed != null) {
+            result = put(result, "failed", JsonNodeFactory.instance.booleanNode(failed));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the fields not bound for exchange level events, null if there are none.
+     */
+    ObjectNode exchangeFields() {
+        ObjectNode result = fields;
+        if (message != null) {
+            result = put(result, "message", JsonNodeFactory.instance.textNode(message));
+        }
+        if (failure != null) {
+            result = put(result, "failure", JsonNodeFactory.instance.textNode(failure));
+        }
+        if (duration != null) {
+            result = put(result, "duration", JsonNodeFactory.instance.numberNode(duration));
+        }
+        return result;
+    }
+
+    private void field(String name, JsonNode value) {
+        fields = put(fields, name, value);
+    }
+
+    private static ObjectNode put(ObjectNode node, String name, JsonNode value) {
+        ObjectNode result = node == null ? JsonNodeFactory.instance.objectNode() : node;
+        result.set(name, value);
+        return result;
+    }
+
+    // returns the index following a timestamp like 2018-06-06T21:54:36.30603486Z, or -1
+    static int scanTimestamp(byte[] line, int offset, int end) {
+        int i = offset;
+        i = digits(line, i, end, 4);
+        i = expect(line, i, end, '-');
+        i = digits(line, i, end, 2);
+        i = expect(line, i, end, '-');
+        i = digits(line, i, end, 2);
+        i = expect(line, i, end, 'T');
+        i = digits(line, i, end, 2);
+        i = expect(line, i, end, ':');
+        i = digits(line, i, end, 2);
+        i = expect(line, i, end, ':');
+        i = digits(line, i, end, 2);
+        i = expect(line, i, end, '.');
+        if (i < 0 || i >= end || !isDigit(line[i])) {
+            return -1;
+        }
+        while (i < end && isDigit(line[i])) {
+            i++;
+        }
+        return expect(line, i, end, 'Z');
+    }
+
+    private static int digits(byte[] line, int i, int end, int count) {
+        if (i < 0 || i + count > end) {
+            return -1;
+        }
+        for (int j = i; j < i + count; j++) {
+            if (!isDigit(line[j])) {
+                return -1;
+            }
+        }
+        return i + count;
+    }
+
+    private static int expect(byte[] line, int i, int end, char c) {
+        if (i < 0 || i >= end || line[i] != c) {
+            return -1;
+        }
+        return i + 1;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    private static String text(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(parser, "Expected a string value for: " + parser.getCurrentName());
+        }
+        return parser.getText();
+    }
+
+    private static Long number(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isNumeric()) {
+            throw new JsonParseException(parser, "Expected a numeric value for: " + parser.getCurrentName());
+        }
+        return parser.getLongValue();
+    }
+
+    private static Boolean bool(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isBoolean()) {
+            throw new JsonParseException(parser, "Expected a boolean value for: " + parser.getCurrentName());
+        }
+        return parser.getBooleanValue();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.logging.jsondb.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits a log stream in lines, reading it in bulk into a reusable buffer.
+ * Lines longer than {@link #MAX_LINE_LENGTH} are cut to avoid blowing up
+ * our memory.
+ */
+final class LogLineReader {
+
+    static final int MAX_LINE_LENGTH = 1024 * 10;
+
+    // closes the JSON value of a line that was cut
+    private static final byte[] CUT_LINE_SUFFIX = {'"', '}'};
+
+    @FunctionalInterface
+    interface LineHandler {
+        void onLine(byte[] line, int offset, int length) throws IOException;
+    }
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[8192];
+    private final byte[] line = new byte[MAX_LINE_LENGTH + 1 + CUT_LINE_SUFFIX.length];
+    private int position;
+    private int limit;
+    private int lineLength;
+
+    LogLineReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next line, including its line terminator, and passes it to
+     * the handler. The line passed is only valid during the call.
+     *
+     * @return false once the end of the stream is reached
+     */
+    boolean readLine(LineHandler handler) throws IOException {
+        while (true) {
+            if (position == limit) {
+                int read = in.read(buffer);
+                if (read < 0) {
+                    return false;
+                }
+                position = 0;
+                limit = read;
+            }
+
+            int end = position;
+            while (end < limit && buffer[end] != '\n' && lineLength + end - position <= MAX_LINE_LENGTH) {
+                end++;
+            }
+
+            boolean newLine = end < limit && buffer[end] == '\n';
+            if (newLine) {
+                end++;
+            }
+            System.arraycopy(buffer, position, line, lineLength, end - position);
+            lineLength += end - position;
+            position = end;
+
+            if (newLine || lineLength > MAX_LINE_LENGTH) {
+                int length = lineLength;
+                if (!newLine) {
+                    // as the line is prematurely cut, add the closing terminator to the json value
+                    System.arraycopy(CUT_LINE_SUFFIX, 0, line, length, CUT_LINE_SUFFIX.length);
+                    length += CUT_LINE_SUFFIX.length;
+                }
+                lineLength = 0;
+                handler.onLine(line, 0, length);
+                return true;
+            }
+        }
+    }
+}
@@ -15,28 +15,29 @@
  */
 package io.syndesis.server.logging.jsondb.controller;
 
-import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.syndesis.common.util.KeyGenerator;
 import io.syndesis.common.util.json.JsonUtils;
+import io.syndesis.server.endpoint.v1.handler.activity.ActivityTrackingService.Ingestion;
 import io.syndesis.server.endpoint.v1.handler.activity.Activity;
 import io.syndesis.server.endpoint.v1.handler.activity.ActivityStep;
 import io.syndesis.server.jsondb.JsonDBException;
+import io.syndesis.server.openshift.IntegrationTokens;
 import io.syndesis.server.openshift.OpenShiftService;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -44,15 +45,14 @@ import org.slf4j.LoggerFactory;
 
 import static io.syndesis.server.jsondb.impl.JsonRecordSupport.validateKey;
 import static java.lang.String.format;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 @SuppressWarnings("PMD.GodClass")
 class PodLogMonitor implements Consumer<InputStream> {
 
     private static final Logger LOG = LoggerFactory.getLogger(ActivityTrackingController.class);
 
-    // matches log lines like: 2018-06-06T21:54:36.30603486Z {"exchange":"i-LEM51uGKc6IuIjvR95Vz","status":"begin"}
-    private static final Pattern LOG_LINE_REGEX = Pattern.compile("^(\\d\\d\\d\\d\\-\\d\\d\\-\\d\\dT\\d\\d:\\d\\d:\\d\\d\\.\\d+Z) (\\{.*\\})\\s*");
+    // status of the activities of exchanges that didn't complete in time
+    static final String INCOMPLETE = "incomplete";
 
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final ActivityTrackingController logsController;
@@ -61,8 +61,21 @@ class PodLogMonitor implements Consumer<InputStream> {
     protected final String podName;
     protected final String integrationId;
     protected final String deploymentVersion;
+    // address of the pod, the pushed activities are accepted from
+    protected final String podAddress;
+    // time the pod last pushed its activities, its log isn't read until it
+    // stops pushing for the push timeout
+    private volatile long pushedAt;
     protected PodLogState state;
-    protected HashMap<String, InflightData> inflightActivities = new HashMap<>();
+    // ordered by the time the exchanges were first seen
+    protected LinkedHashMap<String, InflightData> inflightActivities = new LinkedHashMap<>();
+    // exchanges recorded as incomplete by the time they were evicted, their
+    // later lines are skipped so that they don't overwrite the record
+    protected LinkedHashMap<String, Long> evictedActivities = new LinkedHashMap<>();
+    private volatile int inflightCount;
+    // held while processing lines and evicting activities, pushed activities
+    // and the log of the pod can be processed at the same time
+    private final ReentrantLock lock = new ReentrantLock();
 
     PodLogMonitor(ActivityTrackingController logsController, Pod pod) {
         this.logsController = logsController;
@@ -81,6 +94,8 @@ class PodLogMonitor implements Consumer<InputStream> {
         if (this.deploymentVersion == null) {
             throw new IllegalStateException("Could not determine the deployment version that is being run on the pod: " + this.podName);
         }
+
+        this.podAddress = pod.getStatus() == null ? null : pod.getStatus().getPodIP();
     }
 
     public void start() throws IOException {
@@ -101,7 +116,7 @@ class PodLogMonitor implements Consumer<InputStream> {
 
     public void run() {
 
-        if (logsController.stopped.get() || !keepTrying.get() || !logsController.isPodRunning(podName)) {
+        if (logsController.stopped.get() || !keepTrying.get() || isPushing() || !logsController.isPodRunning(podName)) {
             // Seems we don't need to keep trying, lets bail.
             return;
         }
@@ -136,30 +151,12 @@ class PodLogMonitor implements Consumer<InputStream> {
     }
 
     void processLogStream(final InputStream is) throws IOException, InterruptedException {
-        ByteArrayOutputStream line = new ByteArrayOutputStream();
-        int c;
-
-        while (!logsController.stopped.get()) {
-            c = is.read();
-            if (c < 0) {
-                break;
-            }
-
-            line.write(c);
-            // cut really long lines to avoid blowing up our memory.
-            if (line.size() > 1024 * 10) {
-                // as the string is prematurely cut, add the closing terminator to the json value
-                line.write("\"}".getBytes(UTF_8));
-                c = '\n';
-            }
-
-            if (c == '\n') {
-                processLine(new String(line.toByteArray(), UTF_8));
-                line.reset();
-            }
+        final LogLineReader reader = new LogLineReader(is);
+        while (!logsController.stopped.get() && !isPushing() && reader.readLine(this::processLine)) {
+            // each line is processed as it is read
         }
 
-        if (!logsController.stopped.get()) {
+        if (!logsController.stopped.get() && !isPushing()) {
             if (logsController.isPodRunning(podName)) {
                 // odd, why did our stream end??  try to resume processing..
                 LOG.info("End of Log stream for running pod: {}", podName);
@@ -170,11 +167,57 @@ class PodLogMonitor implements Consumer<InputStream> {
         }
     }
 
+    /**
+     * Processes the activities pushed by the pod, in the format of its log,
+     * the log of the pod is not read while it keeps pushing. The activities
+     * are rejected without the token of the deployment of the pod or, unless
+     * disabled, from another address than the pod's, and can't be processed
+     * before the state of the pod is recovered.
+     */
+    Ingestion ingest(String address, String token, InputStream is) throws IOException {
+        IntegrationTokens tokens = logsController.getTokens();
+        if (tokens == null || !tokens.isValid(token, integrationId, deploymentVersion)) {
+            return Ingestion.REJECTED;
+        }
+        if (logsController.isPushAddressCheck() && (podAddress == null || !podAddress.equals(address))) {
+            return Ingestion.REJECTED;
+        }
+        if (state == null) {
+            return Ingestion.UNAVAILABLE;
+        }
+
+        if (!isPushing()) {
+            LOG.info("Pod {} pushes its activities, no longer reading its log", podName);
+        }
+        pushedAt = now();
+
+        final LogLineReader reader = new LogLineReader(is);
+        while (!logsController.stopped.get() && reader.readLine(this::processLine)) {
+            // each line is processed as it is read
+        }
+
+        return Ingestion.ACCEPTED;
+    }
+
+    /**
+     * The log of a pod that stopped pushing is read again, from the time of
+     * the last activity processed, to pick up the activities the pod logged
+     * instead of pushing them.
+     */
+    boolean isPushing() {
+        return pushedAt != 0 && now() - pushedAt < logsController.getPushTimeout().toMillis();
+    }
+
     private static class InflightData {
+        final long seen;
         Activity activity = new Activity();
         ArrayList<ActivityStep> doneSteps = new ArrayList<>();
         Map<String, ActivityStep> activeSteps = new LinkedHashMap<>();
-        Map<String, Object> metadata = new HashMap<>();
+        ObjectNode metadata = JsonNodeFactory.instance.objectNode();
+
+        InflightData(long seen) {
+            this.seen = seen;
+        }
 
         public ActivityStep getStep(String step, String id) throws IOException {
             ActivityStep rc = activeSteps.get(step);
@@ -188,35 +231,116 @@ class PodLogMonitor implements Consumer<InputStream> {
         }
     }
 
-    InflightData getInflightData(String exchangeId, String logts) throws IOException {
+    InflightData getInflightData(String exchangeId, String logts) throws IOException, InterruptedException {
         InflightData data = inflightActivities.get(exchangeId);
         if (data == null) {
-            data = new InflightData();
+            evictInflightActivities();
+
+            data = new InflightData(now());
             data.activity.setPod(podName);
             data.activity.setVer(deploymentVersion);
             data.activity.setId(exchangeId);
             data.activity.setAt(KeyGenerator.getKeyTimeMillis(exchangeId));
             data.activity.setLogts(logts);
             inflightActivities.put(exchangeId, data);
+            inflightCount = inflightActivities.size();
         }
         return data;
     }
 
-    void processLine(String line) throws IOException {
-        // Does it look like a data of json structured output?
-        Matcher matcher = LOG_LINE_REGEX.matcher(line);
-        if (!matcher.matches()) {
+    /**
+     * Flushes the activities of the exchanges that didn't complete within the
+     * retention time, and the oldest ones to make room for a new exchange once
+     * the maximum number of activities in flight is reached. Called for each
+     * new exchange, waits for room in the queue of the writer.
+     */
+    void evictInflightActivities() throws InterruptedException {
+        lock.lock();
+        try {
+            evict(true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Same as {@link #evictInflightActivities()} without ever waiting, called
+     * periodically by the controller for the exchanges of pods no longer
+     * logging. Skipped while the activities of the pod are being processed,
+     * and stopped once the queue of the writer is full, the remaining
+     * activities are evicted by a later call.
+     */
+    void evictExpiredActivities() {
+        if (!lock.tryLock()) {
             return;
         }
+        try {
+            evict(false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict(boolean wait) throws InterruptedException {
+        long now = now();
+        long expiredBefore = now - logsController.getRetentionTime().toMillis();
+        int max = logsController.getMaxInflight();
+
+        Iterator<Long> evicted = evictedActivities.values().iterator();
+        while (evicted.hasNext()) {
+            long evictedAt = evicted.next();
+            if (evictedAt >= expiredBefore && evictedActivities.size() <= max) {
+                break;
+            }
+            evicted.remove();
+        }
+
+        Iterator<Map.Entry<String, InflightData>> i = inflightActivities.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<String, InflightData> oldest = i.next();
+            boolean expired = oldest.getValue().seen < expiredBefore;
+            if (!expired && inflightActivities.size() < max) {
+                break;
+            }
+
+            LOG.debug("Recording incomplete activity {} of pod {}", oldest.getKey(), podName);
+            BatchOperation incomplete = recordIncomplete(oldest.getKey(), oldest.getValue());
+            if (incomplete != null) {
+                if (wait) {
+                    logsController.enqueue(integrationId, incomplete);
+                } else if (!logsController.tryEnqueue(integrationId, incomplete)) {
+                    break;
+                }
+            }
+
+            i.remove();
+            if (expired) {
+                logsController.inflightExpired.increment();
+            } else {
+                logsController.inflightEvicted.increment();
+            }
+            evictedActivities.put(oldest.getKey(), now);
+        }
+        inflightCount = inflightActivities.size();
+    }
+
+    int getInflightCount() {
+        return inflightCount;
+    }
 
-        String time = matcher.group(1);
-        String data = matcher.group(2);
+    void processLine(byte[] line, int offset, int length) throws IOException {
+        lock.lock();
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> json = JsonUtils.reader().forType(HashMap.class).readValue(data); //NOPMD
+            // Does it look like a data of json structured output?
+            LogEntry entry = LogEntry.parse(line, offset, length);
+            if (entry == null) {
+                return;
+            }
 
             // are the required fields set?
-            String exchange = validate((String) json.remove("exchange"));
+            String exchange = validate(entry.exchange);
             if (exchange == null) {
                 // This log entry is not valid json format
                 return;
@@ -227,52 +351,57 @@ class PodLogMonitor implements Consumer<InputStream> {
                 // This log entry is too old.. don't process it..
                 return;
             }
-            InflightData inflightData = getInflightData(exchange, time);
+            if (evictedActivities.containsKey(exchange)) {
+                // already recorded as incomplete
+                return;
+            }
+            InflightData inflightData = getInflightData(exchange, entry.time);
 
-            String id = validate((String) json.remove("id"));
-            String step = (String) json.remove("step");
-            if (step == null) {
+            String id = validate(entry.id);
+            if (entry.step == null) {
                 // Looks like an exchange level logging event.
-                processLogLineExchange(json, inflightData, exchange, time);
+                processLogLineExchange(entry, inflightData, exchange);
             } else {
                 // Looks like a step level logging event.
-                processLogLineStep(json, inflightData, step, id);
+                processLogLineStep(entry, inflightData, id);
             }
 
-        } catch (JsonDBException | ClassCastException | IOException ignored) {
+        } catch (JsonDBException | IOException ignored) {
             /// log record not in the expected format.
         } catch (InterruptedException e) {
             final InterruptedIOException rethrow = new InterruptedIOException(e.getMessage());
             rethrow.initCause(e);
             throw rethrow;
+        } finally {
+            lock.unlock();
         }
     }
 
-    private static void processLogLineStep(Map<String, Object> json, InflightData inflightData, String step, String id) throws IOException {
+    private static void processLogLineStep(LogEntry entry, InflightData inflightData, String id) throws IOException {
+        String step = entry.step;
         ActivityStep as = inflightData.getStep(step, id);
-        String message = (String) json.remove("message");
-        if (message != null) {
+        if (entry.message != null) {
             if (as.getMessages() == null) {
                 as.setMessages(new ArrayList<>());
             }
-            as.getMessages().add(message);
+            as.getMessages().add(entry.message);
         }
 
-        String failure = (String) json.remove("failure");
-        if (failure != null) {
-            as.setFailure(failure);
+        if (entry.failure != null) {
+            as.setFailure(entry.failure);
         }
 
-        Number duration = (Number) json.remove("duration");
+        Long duration = entry.duration;
         if (duration != null) {
-            as.setDuration(duration.longValue());
+            as.setDuration(duration);
         }
 
-        if (!json.isEmpty()) {
+        ObjectNode fields = entry.stepFields();
+        if (fields != null) {
             if (as.getEvents() == null) {
                 as.setEvents(new ArrayList<>());
             }
-            as.getEvents().add(toJsonNode(json));
+            as.getEvents().add(fields);
         }
 
         if (duration != null) {
@@ -288,48 +417,74 @@ class PodLogMonitor implements Consumer<InputStream> {
         }
     }
 
-    private void processLogLineExchange(Map<String, Object> json, InflightData inflightData, String exchange, String time) throws IOException, InterruptedException {
-        Boolean failed = (Boolean) json.remove("failed");
-        if (failed != null) {
-            inflightData.activity.setFailed(failed);
+    private void processLogLineExchange(LogEntry entry, InflightData inflightData, String exchange) throws IOException, InterruptedException {
+        if (entry.failed != null) {
+            inflightData.activity.setFailed(entry.failed);
+        }
+        String status = entry.status;
+        ObjectNode fields = entry.exchangeFields();
+        if (fields != null) {
+            inflightData.metadata.setAll(fields);
         }
-        String status = (String) json.remove("status");
-        inflightData.metadata.putAll(json);
         if (status != null) {
             inflightData.activity.setStatus(status);
             if ("done".equals(status)) {
                 inflightData.activity.setSteps(inflightData.doneSteps);
-                if (!inflightData.metadata.isEmpty()) {
-                    inflightData.activity.setMetadata(toJsonNode(inflightData.metadata));
+                if (inflightData.metadata.size() > 0) {
+                    inflightData.activity.setMetadata(inflightData.metadata);
                 }
 
                 String activityAsString = JsonUtils.writer().writeValueAsString(inflightData.activity);
                 String transactionPath = format("/exchanges/%s/%s", integrationId, exchange);
                 inflightActivities.remove(exchange);
+                inflightCount = inflightActivities.size();
 
-                logsController.eventQueue.put(batch -> {
+                logsController.enqueue(integrationId, batch -> {
                     // Do as little as possible in here, single thread processes the event queue.
                     batch.put(transactionPath, activityAsString);
-                    trackState(time, batch);
+                    trackState(entry.time, batch);
                 });
 
             }
         }
     }
 
-    long now() {
-        return System.currentTimeMillis();
+    /**
+     * Returns the operation recording the activity as incomplete, null if it
+     * can't be written.
+     */
+    private BatchOperation recordIncomplete(String exchange, InflightData inflightData) {
+        inflightData.activity.setStatus(INCOMPLETE);
+        ArrayList<ActivityStep> steps = new ArrayList<>(inflightData.doneSteps);
+        steps.addAll(inflightData.activeSteps.values());
+        inflightData.activity.setSteps(steps);
+        if (inflightData.metadata.size() > 0) {
+            inflightData.activity.setMetadata(inflightData.metadata);
+        }
+
+        final String activityAsString;
+        try {
+            activityAsString = JsonUtils.writer().writeValueAsString(inflightData.activity);
+        } catch (IOException e) {
+            LOG.warn("Unable to record incomplete activity {} of pod {}", exchange, podName, e);
+            return null;
+        }
+        String transactionPath = format("/exchanges/%s/%s", integrationId, exchange);
+
+        return batch -> {
+            // the pod state isn't tracked, older exchanges might still be in flight
+            batch.put(transactionPath, activityAsString);
+        };
     }
 
-    private static JsonNode toJsonNode(Map<String, Object> json) throws IOException {
-        return JsonUtils.reader().readTree(JsonUtils.writer().writeValueAsString(json));
+    long now() {
+        return System.currentTimeMillis();
     }
 
     private void trackState(String time, Map<String, Object> batch) {
         state.time = time;
         String podStatPath = "/pods/" + podName;
         batch.put(podStatPath, state);
-        batch.put("/integrations/" + integrationId, Boolean.TRUE);
     }
 
     private static String validate(String value) {
@@ -15,26 +15,22 @@
  */
 package io.syndesis.server.logging.jsondb.service;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 import io.syndesis.common.util.json.JsonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.databind.JsonNode;
-
 import io.syndesis.server.endpoint.v1.handler.activity.Activity;
 import io.syndesis.server.endpoint.v1.handler.activity.ActivityTrackingService;
-import io.syndesis.server.jsondb.GetOptions;
-import io.syndesis.server.jsondb.JsonDB;
 import io.syndesis.server.logging.jsondb.controller.ActivityTrackingController;
+import io.syndesis.server.logging.jsondb.store.ActivityStore;
 
 /**
  * Implements a dblogging service for the Activity JAXRS service.
@@ -44,17 +40,25 @@ import io.syndesis.server.logging.jsondb.controller.ActivityTrackingController;
 public class DBActivityTrackingService implements ActivityTrackingService {
 
     private static final Logger LOG = LoggerFactory.getLogger(ActivityTrackingController.class);
-    private final JsonDB jsondb;
+    private final ActivityStore activities;
+    private ActivityTrackingController controller;
+
+    public DBActivityTrackingService(final ActivityStore activities) {
+        this.activities = activities;
+    }
 
-    public DBActivityTrackingService(final JsonDB jsondb) {
-        this.jsondb = jsondb;
+    /**
+     * Ingests the activities pushed by the integration pods with the given
+     * controller, none are accepted without it.
+     */
+    @Autowired(required = false)
+    public void setController(ActivityTrackingController controller) {
+        this.controller = controller;
     }
 
     @Override
     public List<Activity> getActivities(String integrationId, String from, Integer requestedLimit) throws IOException {
 
-        String path = "/activity/exchanges/" + integrationId;
-
         int limit = 10;
         if( requestedLimit != null ) {
             limit = requestedLimit;
@@ -63,23 +67,9 @@ public class DBActivityTrackingService implements ActivityTrackingService {
             limit = 1000; // max out to 1000 per request.
         }
 
-        GetOptions options = new GetOptions()
-            .order(GetOptions.Order.DESC) // reverse the order since we want most recent exchanges first.
-            .startAfter(from).limitToFirst(limit); // allow paging
-
-        byte[] data = jsondb.getAsByteArray(path, options);
-        if( data == null )  {
-            return new ArrayList<>();
-        }
-
-        JsonNode map = JsonUtils.reader().readTree(new ByteArrayInputStream(data));
         List<Activity> rc = new ArrayList<>();
-
-        Iterator<Map.Entry<String, JsonNode>> i = map.fields();
-        while (i.hasNext()) {
-            Map.Entry<String, JsonNode> entry = i.next();
+        for (String value : activities.getActivities(integrationId, from, limit)) {
             try {
-                String value = entry.getValue().textValue();
                 Activity activity = JsonUtils.reader().forType(Activity.class).readValue(value);
                 if (activity.getSteps() == null){
                     activity.setSteps(new ArrayList<>());
@@ -87,10 +77,18 @@ public class DBActivityTrackingService implements ActivityTrackingService {
                 rc.add(activity);
             } catch (RuntimeException ignored) {
                 // We could get stuff like class cast exceptions..
-                LOG.debug("Could convert entry: {}", entry, ignored);
+                LOG.debug("Could convert entry: {}", value, ignored);
             }
         }
         return rc;
     }
 
+    @Override
+    public Ingestion ingest(String podName, String address, String token, InputStream pushed) throws IOException {
+        if (controller == null) {
+            return Ingestion.REJECTED;
+        }
+        return controller.ingest(podName, address, token, pushed);
+    }
+
 }
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.logging.jsondb.store;
+
+import java.io.IOException;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import io.syndesis.common.util.KeyGenerator;
+import io.syndesis.server.jsondb.impl.SqlJsonDB;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.PreparedBatch;
+import org.skife.jdbi.v2.Query;
+import org.skife.jdbi.v2.exceptions.DBIException;
+import org.skife.jdbi.v2.util.IntegerColumnMapper;
+import org.skife.jdbi.v2.util.StringColumnMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores the activities of the integrations in tables of their own, apart
+ * from the configuration held by the jsondb table. There is a table per day
+ * the exchanges started, like {@code activity_20180118}, keyed by the
+ * integration id and exchange id. Expired activities are purged by dropping
+ * whole tables.
+ */
+@Component
+public class ActivityStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ActivityStore.class);
+
+    static final String TABLE_PREFIX = "activity_";
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyyMMdd", Locale.US).withZone(ZoneOffset.UTC);
+
+    private final DBI dbi;
+
+    // tables known to exist, most recent first, looked up once
+    private final Set<String> tables = new ConcurrentSkipListSet<>(Collections.reverseOrder());
+    private volatile boolean tablesLoaded;
+
+    private volatile SqlJsonDB.DatabaseKind databaseKind;
+
+    @Autowired
+    public ActivityStore(DBI dbi) {
+        this.dbi = dbi;
+    }
+
+    /**
+     * Activities written within a transaction, the tables of the days the
+     * exchanges started are created as needed, by a single writer at a time
+     * and outside of the transaction.
+     */
+    public final class Batch {
+        private final Handle handle;
+        private final Map<String, PreparedBatch> inserts = new HashMap<>();
+
+        Batch(Handle handle) {
+            this.handle = handle;
+        }
+
+        public void add(String integrationId, String exchangeId, String activity) throws IOException {
+            String table = table(KeyGenerator.getKeyTimeMillis(exchangeId));
+            PreparedBatch insert = inserts.get(table);
+            if (insert == null) {
+                createTable(table);
+                insert = handle.prepareBatch(upsert(handle, table));
+                inserts.put(table, insert);
+            }
+            insert
+                .bind("integration", integrationId)
+                .bind("exchange", exchangeId)
+                .bind("value", activity)
+                .add();
+        }
+
+        public void execute() {
+            for (PreparedBatch insert : inserts.values()) {
+                insert.execute();
+            }
+            inserts.clear();
+        }
+    }
+
+    public Batch batch(Handle handle) {
+        return new Batch(handle);
+    }
+
+    /**
+     * Returns the activities of the integration, most recent first.
+     *
+     * @param from the id of the exchange to list the activities before, or null
+     */
+    public List<String> getActivities(String integrationId, String from, int limit) {
+        return dbi.withHandle(h -> {
+            String fromTable = null;
+            if (from != null) {
+                try {
+                    fromTable = table(KeyGenerator.getKeyTimeMillis(from));
+                } catch (IOException ignored) {
+                    // not a key, look in all tables
+                }
+            }
+
+            List<String> activities = new ArrayList<>();
+            for (String table : tables(h)) {
+                if (activities.size() >= limit) {
+                    break;
+                }
+                if (fromTable != null && table.compareTo(fromTable) > 0) {
+                    continue;
+                }
+
+                String sql = "SELECT value FROM " + table + " WHERE integration = :integration"
+                    + (from == null ? "" : " AND exchange < :from")
+                    + " ORDER BY exchange DESC FETCH FIRST " + (limit - activities.size()) + " ROWS ONLY";
+                Query<Map<String, Object>> query = h.createQuery(sql).bind("integration", integrationId);
+                if (from != null) {
+                    query.bind("from", from);
+                }
+                activities.addAll(query.map(StringColumnMapper.INSTANCE).list());
+            }
+            return activities;
+        });
+    }
+
+    /**
+     * Drops the tables of the days before the retention time and deletes
+     * all but the most recent activities of each integration.
+     *
+     * @return the number of activities deleted
+     */
+    public int purge(int retention, Duration retentionTime) {
+        String expired = table(System.currentTimeMillis() - retentionTime.toMillis());
+        return dbi.withHandle(h -> {
+            int deleted = 0;
+            Map<String, Integer> kept = new HashMap<>();
+            for (String table : tables(h)) {
+                if (table.compareTo(expired) < 0) {
+                    LOG.info("Dropping expired activities table: {}", table);
+                    h.execute("DROP TABLE " + table);
+                    tables.remove(table);
+                    continue;
+                }
+
+                List<Map<String, Object>> counts = h.createQuery("SELECT integration, COUNT(*) AS activities FROM " + table + " GROUP BY integration").list();
+                for (Map<String, Object> count : counts) {
+                    String integrationId = (String) count.get("integration");
+                    int activities = ((Number) count.get("activities")).intValue();
+                    int before = kept.getOrDefault(integrationId, 0);
+                    if (before + activities <= retention) {
+                        kept.put(integrationId, before + activities);
+                    } else {
+                        deleted += deleteKeeping(h, table, integrationId, Math.max(0, retention - before));
+                        kept.put(integrationId, Math.max(retention, before));
+                    }
+                }
+            }
+            return deleted;
+        });
+    }
+
+    private int deleteKeeping(Handle h, String table, String integrationId, int keep) {
+        if (keep == 0) {
+            return h.update("DELETE FROM " + table + " WHERE integration = ?", integrationId);
+        }
+
+        final String skipLocked = databaseKind(h) == SqlJsonDB.DatabaseKind.PostgreSQL ? "FOR KEY SHARE SKIP LOCKED " : "";
+        return h.update("DELETE FROM " + table + " WHERE integration = ? AND exchange IN ("
+            + "SELECT exchange FROM " + table + " "
+            + "WHERE integration = ? "
+            + "ORDER BY exchange DESC "
+            + skipLocked
+            + "OFFSET ? ROWS"
+            + ")", integrationId, integrationId, keep);
+    }
+
+    /**
+     * Returns the number of activities stored for the integration.
+     */
+    public int count(String integrationId) {
+        return dbi.withHandle(h -> {
+            int count = 0;
+            for (String table : tables(h)) {
+                count += h.createQuery("SELECT COUNT(*) FROM " + table + " WHERE integration = :integration")
+                    .bind("integration", integrationId)
+                    .map(IntegerColumnMapper.PRIMITIVE).first();
+            }
+            return count;
+        });
+    }
+
+    public void dropTables() {
+        dbi.withHandle(h -> {
+            for (String table : tables(h)) {
+                h.execute("DROP TABLE " + table);
+            }
+            tables.clear();
+            return null;
+        });
+    }
+
+    static String table(long time) {
+        return TABLE_PREFIX + DAY.format(Instant.ofEpochMilli(time));
+    }
+
+    // the activity tables, most recent first
+    private List<String> tables(Handle h) throws SQLException {
+        if (!tablesLoaded) {
+            synchronized (tables) {
+                if (!tablesLoaded) {
+                    tables.addAll(loadTables(h));
+                    tablesLoaded = true;
+                }
+            }
+        }
+        return new ArrayList<>(tables);
+    }
+
+    private static List<String> loadTables(Handle h) throws SQLException {
+        List<String> result = new ArrayList<>();
+        DatabaseMetaData metaData = h.getConnection().getMetaData();
+        String prefix = TABLE_PREFIX.replace("_", metaData.getSearchStringEscape() + "_");
+        String pattern = metaData.storesUpperCaseIdentifiers() ? prefix.toUpperCase(Locale.US) + "%" : prefix + "%";
+        try (ResultSet rs = metaData.getTables(null, h.getConnection().getSchema(), pattern, new String[] {"TABLE"})) {
+            while (rs.next()) {
+                String name = rs.getString("TABLE_NAME").toLowerCase(Locale.US);
+                if (isActivityTable(name) && !result.contains(name)) {
+                    result.add(name);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isActivityTable(String name) {
+        if (!name.startsWith(TABLE_PREFIX) || name.length() != TABLE_PREFIX.length() + 8) {
+            return false;
+        }
+        for (int i = TABLE_PREFIX.length(); i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // in a transaction of its own, as concurrent CREATE TABLE IF NOT EXISTS
+    // statements can fail on PostgreSQL
+    private void createTable(String table) {
+        if (tables.contains(table)) {
+            return;
+        }
+        synchronized (tables) {
+            if (tables.contains(table)) {
+                return;
+            }
+            dbi.withHandle(h -> {
+                try {
+                    createTable(h, table);
+                } catch (DBIException e) {
+                    // created at the same time by another server, exists by now
+                    LOG.debug("Unable to create activities table {}, retrying", table, e);
+                    createTable(h, table);
+                }
+                return null;
+            });
+            tables.add(table);
+        }
+    }
+
+    private void createTable(Handle h, String table) {
+        if (databaseKind(h) == SqlJsonDB.DatabaseKind.PostgreSQL) {
+            h.execute("CREATE TABLE IF NOT EXISTS " + table + " (integration VARCHAR COLLATE \"C\" NOT NULL, exchange VARCHAR COLLATE \"C\" NOT NULL, value VARCHAR NOT NULL, PRIMARY KEY (integration, exchange))");
+        } else {
+            h.execute("CREATE TABLE IF NOT EXISTS " + table + " (integration VARCHAR NOT NULL, exchange VARCHAR NOT NULL, value VARCHAR NOT NULL, PRIMARY KEY (integration, exchange))");
+        }
+    }
+
+    private String upsert(Handle h, String table) {
+        switch (databaseKind(h)) {
+        case PostgreSQL:
+            return "INSERT INTO " + table + " (integration, exchange, value) VALUES (:integration, :exchange, :value) "
+                + "ON CONFLICT (integration, exchange) DO UPDATE SET value = :value";
+        case H2:
+            return "MERGE INTO " + table + " (integration, exchange, value) KEY (integration, exchange) VALUES (:integration, :exchange, :value)";
+        default:
+            return "INSERT INTO " + table + " (integration, exchange, value) VALUES (:integration, :exchange, :value)";
+        }
+    }
+
+    private SqlJsonDB.DatabaseKind databaseKind(Handle h) {
+        SqlJsonDB.DatabaseKind kind = databaseKind;
+        if (kind == null) {
+            try {
+                kind = SqlJsonDB.DatabaseKind.valueOf(h.getConnection().getMetaData().getDatabaseProductName());
+                // CockroachDB uses the PostgreSQL driver.. so need to look a little closer.
+                if (kind == SqlJsonDB.DatabaseKind.PostgreSQL) {
+                    String version = h.createQuery("SELECT VERSION()").mapTo(String.class).first();
+                    if (version.startsWith("CockroachDB")) {
+                        kind = SqlJsonDB.DatabaseKind.CockroachDB;
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not determine the database type", e);
+            }
+            databaseKind = kind;
+        }
+        return kind;
+    }
+}
@@ -23,14 +23,17 @@ import java.nio.charset.StandardCharsets;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
-import com.fasterxml.jackson.databind.JsonNode;
-
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.PodList;
 import io.fabric8.kubernetes.api.model.PodListBuilder;
@@ -40,7 +43,9 @@ import io.syndesis.common.util.KeyGenerator;
 import io.syndesis.common.util.json.JsonUtils;
 import io.syndesis.server.jsondb.GetOptions;
 import io.syndesis.server.jsondb.JsonDB;
+import io.syndesis.server.jsondb.impl.JsonRecordSupport;
 import io.syndesis.server.jsondb.impl.SqlJsonDB;
+import io.syndesis.server.logging.jsondb.store.ActivityStore;
 import io.syndesis.server.openshift.OpenShiftService;
 
 import org.h2.jdbcx.JdbcDataSource;
@@ -64,8 +69,8 @@ public class ActivityTrackingControllerTest {
 
         private final long time;
 
-        private StubbedController(JsonDB jsondb, DBI dbi, KubernetesClient client, InputStream podLogs, long time) {
-            super(jsondb, dbi, client);
+        private StubbedController(JsonDB jsondb, DBI dbi, KubernetesClient client, ActivityStore activities, InputStream podLogs, long time) {
+            super(jsondb, dbi, client, activities);
             this.podLogs = podLogs;
             this.time = time;
         }
@@ -111,6 +116,7 @@ public class ActivityTrackingControllerTest {
 
     private SqlJsonDB jsondb;
     private DBI dbi;
+    private ActivityStore activities;
 
     private KubernetesClient client;
 
@@ -121,6 +127,7 @@ public class ActivityTrackingControllerTest {
         this.dbi = new DBI(ds);
         this.jsondb = new SqlJsonDB(dbi, null);
         this.jsondb.createTables();
+        this.activities = new ActivityStore(dbi);
 
         client = mock(KubernetesClient.class);
         when(client.getConfiguration()).thenReturn(new ConfigBuilder().withMasterUrl("http://master").build());
@@ -129,15 +136,17 @@ public class ActivityTrackingControllerTest {
     @AfterEach
     public void destroyEverything() {
         jsondb.dropTables();
+        activities.dropTables();
     }
 
     @Test
     public void testLogsController() throws IOException {
         final String expectedDBState = resource("logs-controller-db.json").trim();
+        final String[] expectedActivities = JsonUtils.reader().forType(String[].class).readValue(resource("logs-controller-activities.json"));
         final String podLogs = resource("test-pod-x23x.txt");
         final InputStream podLogsStream = new ByteArrayInputStream(podLogs.getBytes(StandardCharsets.UTF_8));
 
-        try (ActivityTrackingController controller = new StubbedController(jsondb, dbi, client, podLogsStream, ZonedDateTime.parse("2018-01-12T21:22:02.068338027Z").toInstant().toEpochMilli())) {
+        try (ActivityTrackingController controller = new StubbedController(jsondb, dbi, client, activities, podLogsStream, ZonedDateTime.parse("2018-01-12T21:22:02.068338027Z").toInstant().toEpochMilli())) {
 
             controller.setStartupDelay("0 seconds");
             controller.setRetention(Integer.MAX_VALUE);
@@ -150,6 +159,7 @@ public class ActivityTrackingControllerTest {
                 .untilAsserted(() -> {
                     String db = jsondb.getAsString("/", new GetOptions().prettyPrint(true));
                     assertThat(db).isEqualTo(expectedDBState);
+                    assertThat(activities.getActivities("my-integration", null, 10)).containsExactly(expectedActivities);
                 });
         }
 
@@ -158,7 +168,7 @@ public class ActivityTrackingControllerTest {
     @Test
     public void shouldRetainLastRetainActivityLogs() throws IOException {
         try (InputStream podLogsStream = logStream(1100);
-            ActivityTrackingController controller = new StubbedController(jsondb, dbi, client, podLogsStream, System.currentTimeMillis())) {
+            ActivityTrackingController controller = new StubbedController(jsondb, dbi, client, activities, podLogsStream, System.currentTimeMillis())) {
 
             controller.setStartupDelay("0 seconds");
             controller.setCleanUpInterval("15 minutes");
@@ -168,19 +178,97 @@ public class ActivityTrackingControllerTest {
             given().await()
                 .atMost(20, SECONDS)
                 .pollInterval(1, SECONDS)
-                .untilAsserted(() -> {
-                    final String json = jsondb.getAsString("/", new GetOptions().prettyPrint(true));
-                    assertThat(json).isNotNull();
-                    final JsonNode tree = JsonUtils.reader().readTree(json);
-                    assertThat(tree.get("activity").get("exchanges").get("my-integration").size()).isGreaterThan(1000);
-                });
+                .untilAsserted(() -> assertThat(activities.count("my-integration")).isGreaterThan(1000));
 
             controller.cleanupLogs();
-            final String json = jsondb.getAsString("/", new GetOptions().prettyPrint(true));
-            assertThat(json).isNotNull();
-            final JsonNode tree = JsonUtils.reader().readTree(json);
-            assertThat(tree.get("activity").get("exchanges").get("my-integration").size()).isLessThanOrEqualTo(controller.getRetention());
+            assertThat(activities.count("my-integration")).isLessThanOrEqualTo(controller.getRetention());
+        }
+    }
+
+    @Test
+    public void shouldMigrateLegacyActivitiesWithinRetentionTime() {
+        String recent = KeyGenerator.createKey();
+        String expired = KeyGenerator.recreateKey(System.currentTimeMillis() - 2 * 24 * 60 * 60 * 1000L, 0, 0L);
+        dbi.useHandle(h -> {
+            // as written to jsondb by older versions
+            for (String exchange : new String[] {recent, expired}) {
+                h.insert("INSERT INTO jsondb (path, value, ovalue) VALUES (?, ?, NULL)",
+                    "/activity/exchanges/my-integration/" + exchange + "/", JsonRecordSupport.STRING_VALUE_PREFIX + "{\"id\":\"" + exchange + "\"}");
+            }
+            h.insert("INSERT INTO jsondb (path, value, ovalue) VALUES (?, ?, 'true')",
+                "/activity/integrations/my-integration/", String.valueOf(JsonRecordSupport.TRUE_VALUE_PREFIX));
+        });
+
+        ActivityTrackingController controller = new ActivityTrackingController(jsondb, dbi, client, activities);
+        controller.migrateLegacyActivities();
+
+        assertThat(activities.getActivities("my-integration", null, 10)).containsExactly("{\"id\":\"" + recent + "\"}");
+        assertThat(jsondb.exists("/activity/exchanges")).isFalse();
+        assertThat(jsondb.exists("/activity/integrations")).isFalse();
+    }
+
+    @Test
+    public void shouldPartitionEventsByIntegration() throws InterruptedException, IOException {
+        ActivityTrackingController controller = new ActivityTrackingController(jsondb, dbi, client);
+        controller.setWriters(4);
+
+        assertThat(controller.partition("my-integration")).isSameAs(controller.partition("my-integration"));
+        assertThat(controller.partition("my-integration").index).isBetween(0, 3);
+        assertThat(controller.getQueueDepth()).isZero();
+
+        // the events of the integrations are interleaved as they would be by the pods
+        for (int event = 0; event < 10; event++) {
+            for (int integration = 0; integration < 20; integration++) {
+                String integrationId = "integration-" + integration;
+                String path = integrationId + "/" + event;
+                controller.enqueue(integrationId, batch -> batch.put(path, path));
+            }
+        }
+        assertThat(controller.getQueueDepth()).isEqualTo(200);
+
+        Map<String, Integer> partitionOfIntegration = new HashMap<>();
+        Map<String, Integer> lastEventOfIntegration = new HashMap<>();
+        Set<ActivityTrackingController.Partition> partitions = new HashSet<>();
+        for (int integration = 0; integration < 20; integration++) {
+            partitions.add(controller.partition("integration-" + integration));
+        }
+        for (ActivityTrackingController.Partition partition : partitions) {
+            BatchOperation operation;
+            while ((operation = partition.eventQueue.poll()) != null) {
+                Map<String, Object> batch = new HashMap<>();
+                operation.apply(batch);
+                String[] path = batch.keySet().iterator().next().split("/");
+                int event = Integer.parseInt(path[1]);
+
+                // all events of an integration are in the same partition, in order
+                assertThat(partitionOfIntegration.computeIfAbsent(path[0], i -> partition.index)).isEqualTo(partition.index);
+                assertThat(event).isEqualTo(lastEventOfIntegration.getOrDefault(path[0], -1) + 1);
+                lastEventOfIntegration.put(path[0], event);
+            }
+        }
+
+        assertThat(lastEventOfIntegration).hasSize(20).allSatisfy((integrationId, last) -> assertThat(last).isEqualTo(9));
+        // the integrations are spread over the writers
+        assertThat(new HashSet<>(partitionOfIntegration.values()).size()).isGreaterThan(1);
+    }
+
+    @Test
+    public void shouldAdaptBatchSizeToWriteLatency() {
+        ActivityTrackingController.Partition partition = new ActivityTrackingController.Partition(0);
+
+        partition.adaptBatchSize(1000, SECONDS.toNanos(1));
+        assertThat(partition.batchSize).isEqualTo(500);
+
+        partition.adaptBatchSize(100, MILLISECONDS.toNanos(10));
+        assertThat(partition.batchSize).isEqualTo(500);
+
+        partition.adaptBatchSize(500, MILLISECONDS.toNanos(10));
+        assertThat(partition.batchSize).isEqualTo(1000);
+
+        for (int i = 0; i < 20; i++) {
+            partition.adaptBatchSize(partition.batchSize, SECONDS.toNanos(1));
         }
+        assertThat(partition.batchSize).isEqualTo(10);
     }
 
     private static String timestamp() {
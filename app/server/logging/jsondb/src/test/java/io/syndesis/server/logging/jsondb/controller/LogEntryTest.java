@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.logging.jsondb.controller;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LogEntryTest {
+
+    @Test
+    public void shouldParseStepLines() throws IOException {
+        LogEntry entry = parse("2018-01-12T21:22:02.068338027Z {\"exchange\":\"i-L38cZ51d1L876xV4vEFz\",\"step\":\"s2\","
+            + "\"id\":\"i-L38cZ5Jd1L876xV4vEHz\",\"message\":\"Hello World\",\"duration\":582977,\"body\":{\"a\":[1,2]}}\n");
+
+        assertThat(entry.time).isEqualTo("2018-01-12T21:22:02.068338027Z");
+        assertThat(entry.exchange).isEqualTo("i-L38cZ51d1L876xV4vEFz");
+        assertThat(entry.step).isEqualTo("s2");
+        assertThat(entry.id).isEqualTo("i-L38cZ5Jd1L876xV4vEHz");
+        assertThat(entry.message).isEqualTo("Hello World");
+        assertThat(entry.duration).isEqualTo(582977L);
+        assertThat(entry.stepFields().toString()).isEqualTo("{\"body\":{\"a\":[1,2]}}");
+    }
+
+    @Test
+    public void shouldParseExchangeLines() throws IOException {
+        LogEntry entry = parse("2018-01-12T21:22:02.1Z {\"exchange\":\"i-L38cZ51d1L876xV4vEFz\",\"status\":\"done\",\"failed\":true,\"failure\":null}  \r\n");
+
+        assertThat(entry.status).isEqualTo("done");
+        assertThat(entry.failed).isTrue();
+        assertThat(entry.failure).isNull();
+        assertThat(entry.step).isNull();
+        assertThat(entry.exchangeFields()).isNull();
+    }
+
+    @Test
+    public void shouldIgnoreUnstructuredLines() throws IOException {
+        assertThat(parse("2018-01-12T21:22:02.068338027Z Starting the Java application\n")).isNull();
+        assertThat(parse("2018-01-12T21:22:02.068338027Z\n")).isNull();
+        assertThat(parse("2018-01-12 21:22:02.068338027Z {\"exchange\":\"e\"}\n")).isNull();
+        assertThat(parse("2018-01-12T21:22:02.Z {\"exchange\":\"e\"}\n")).isNull();
+        assertThat(parse("2018-01-12T21:22:02.068338027Z {\"exchange\":\"e\"} trailing\n")).isNull();
+        assertThat(parse("")).isNull();
+    }
+
+    @Test
+    public void shouldRejectUnexpectedTypes() {
+        assertThatThrownBy(() -> parse("2018-01-12T21:22:02.1Z {\"exchange\":5}"))
+            .isInstanceOf(JsonParseException.class);
+        assertThatThrownBy(() -> parse("2018-01-12T21:22:02.1Z {\"exchange\":\"e\",\"duration\":\"long\"}"))
+            .isInstanceOf(JsonParseException.class);
+        assertThatThrownBy(() -> parse("2018-01-12T21:22:02.1Z {\"exchange\":\"e\",}"))
+            .isInstanceOf(JsonParseException.class);
+    }
+
+    @Test
+    public void shouldParseWithinLargerBuffer() throws IOException {
+        byte[] buffer = "xx2018-01-12T21:22:02.1Z {\"exchange\":\"e\"}\nyy".getBytes(UTF_8);
+
+        LogEntry entry = LogEntry.parse(buffer, 2, buffer.length - 4);
+
+        assertThat(entry.exchange).isEqualTo("e");
+        assertThat(entry.time).isEqualTo("2018-01-12T21:22:02.1Z");
+    }
+
+    private static LogEntry parse(String line) throws IOException {
+        byte[] bytes = line.getBytes(UTF_8);
+        return LogEntry.parse(bytes, 0, bytes.length);
+    }
+}
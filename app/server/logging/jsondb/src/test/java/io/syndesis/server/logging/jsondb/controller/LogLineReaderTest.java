@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.logging.jsondb.controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogLineReaderTest {
+
+    @Test
+    public void shouldSplitLines() throws IOException {
+        assertThat(lines("a\nbb\n\nccc")).containsExactly("a\n", "bb\n", "\n");
+    }
+
+    @Test
+    public void shouldSplitLinesSpanningReads() throws IOException {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            log.append("line ").append(i).append('\n');
+        }
+
+        List<String> lines = lines(log.toString());
+
+        assertThat(lines).hasSize(5000);
+        assertThat(lines.get(4999)).isEqualTo("line 4999\n");
+    }
+
+    @Test
+    public void shouldCutLongLines() throws IOException {
+        StringBuilder log = new StringBuilder("{\"message\":\"");
+        while (log.length() <= LogLineReader.MAX_LINE_LENGTH + 100) {
+            log.append('x');
+        }
+        log.append("\"}\nnext\n");
+
+        List<String> lines = lines(log.toString());
+
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0)).hasSize(LogLineReader.MAX_LINE_LENGTH + 3).endsWith("x\"}");
+        assertThat(lines.get(2)).isEqualTo("next\n");
+    }
+
+    private static List<String> lines(String log) throws IOException {
+        List<String> lines = new ArrayList<>();
+        LogLineReader reader = new LogLineReader(stream(log));
+        while (reader.readLine((line, offset, length) -> lines.add(new String(line, offset, length, UTF_8)))) {
+            // collect the lines
+        }
+        return lines;
+    }
+
+    private static InputStream stream(String log) {
+        // returns few bytes per read like network streams do
+        return new ByteArrayInputStream(log.getBytes(UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1000));
+            }
+        };
+    }
+}
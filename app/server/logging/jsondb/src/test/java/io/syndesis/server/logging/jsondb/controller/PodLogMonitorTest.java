@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.logging.jsondb.controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.syndesis.common.util.KeyGenerator;
+import io.syndesis.common.util.json.JsonUtils;
+import io.syndesis.server.endpoint.v1.handler.activity.ActivityTrackingService.Ingestion;
+import io.syndesis.server.openshift.IntegrationTokens;
+import io.syndesis.server.openshift.OpenShiftService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PodLogMonitorTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private ActivityTrackingController controller;
+
+    private PodLogMonitor monitor;
+
+    private long now = System.currentTimeMillis();
+
+    private final String token = new IntegrationTokens("server-key").tokenOf("my-integration", "3");
+
+    @BeforeEach
+    public void createMonitor() {
+        KubernetesClient client = mock(KubernetesClient.class);
+        when(client.getConfiguration()).thenReturn(new ConfigBuilder().withMasterUrl("http://master").build());
+        controller = new ActivityTrackingController(null, null, client);
+        controller.setRetentionTime("2 hours");
+        controller.setMaxInflight(2);
+        controller.setTokenKey("server-key");
+
+        Pod pod = new PodBuilder()
+            .withNewMetadata()
+            .withName("test-pod")
+            .addToLabels(OpenShiftService.DEPLOYMENT_VERSION_LABEL, "3")
+            .addToLabels(OpenShiftService.INTEGRATION_ID_LABEL, "my-integration")
+            .endMetadata()
+            .withNewStatus()
+            .withPodIP("10.1.2.3")
+            .endStatus()
+            .build();
+        monitor = new PodLogMonitor(controller, pod) {
+            @Override
+            long now() {
+                return now;
+            }
+        };
+        monitor.state = new PodLogState();
+    }
+
+    @Test
+    public void shouldRecordExpiredExchangesAsIncomplete() throws IOException {
+        now -= 3 * HOUR;
+        String expired = KeyGenerator.createKey();
+        log("{\"exchange\":\"" + expired + "\",\"status\":\"begin\"}");
+        log("{\"exchange\":\"" + expired + "\",\"step\":\"s1\",\"id\":\"" + KeyGenerator.createKey() + "\",\"message\":\"Hello\"}");
+        assertThat(monitor.getInflightCount()).isEqualTo(1);
+
+        now += 3 * HOUR;
+        String next = KeyGenerator.createKey();
+        log("{\"exchange\":\"" + next + "\",\"status\":\"begin\"}");
+
+        assertThat(monitor.getInflightCount()).isEqualTo(1);
+        assertThat(controller.inflightExpired.sum()).isEqualTo(1);
+        Map<String, Object> batch = drainQueue();
+        JsonNode activity = JsonUtils.reader().readTree((String) batch.get("/exchanges/my-integration/" + expired));
+        assertThat(activity.get("status").asText()).isEqualTo(PodLogMonitor.INCOMPLETE);
+        assertThat(activity.get("steps").get(0).get("messages").get(0).asText()).isEqualTo("Hello");
+        assertThat(batch).doesNotContainKey("/pods/test-pod");
+    }
+
+    @Test
+    public void shouldEvictOldestExchangesBeyondMaximum() throws IOException {
+        List<String> exchanges = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String exchange = KeyGenerator.createKey();
+            exchanges.add(exchange);
+            log("{\"exchange\":\"" + exchange + "\",\"status\":\"begin\"}");
+        }
+
+        assertThat(monitor.getInflightCount()).isEqualTo(2);
+        assertThat(monitor.inflightActivities).containsOnlyKeys(exchanges.get(2), exchanges.get(3));
+        assertThat(controller.inflightEvicted.sum()).isEqualTo(2);
+        assertThat(drainQueue()).containsKeys(
+            "/exchanges/my-integration/" + exchanges.get(0),
+            "/exchanges/my-integration/" + exchanges.get(1));
+    }
+
+    @Test
+    public void shouldNotEvictCompletedExchanges() throws IOException {
+        for (int i = 0; i < 4; i++) {
+            String exchange = KeyGenerator.createKey();
+            log("{\"exchange\":\"" + exchange + "\",\"status\":\"begin\"}");
+            log("{\"exchange\":\"" + exchange + "\",\"status\":\"done\"}");
+        }
+
+        assertThat(monitor.getInflightCount()).isZero();
+        assertThat(controller.inflightEvicted.sum()).isZero();
+        assertThat(controller.partition("my-integration").eventQueue).hasSize(4);
+    }
+
+    @Test
+    public void shouldEvictExpiredExchangesWithoutNewExchanges() throws Exception {
+        now -= 3 * HOUR;
+        String expired = KeyGenerator.createKey();
+        log("{\"exchange\":\"" + expired + "\",\"status\":\"begin\"}");
+
+        now += 3 * HOUR;
+        monitor.evictExpiredActivities();
+
+        assertThat(monitor.getInflightCount()).isZero();
+        assertThat(drainQueue()).containsKey("/exchanges/my-integration/" + expired);
+    }
+
+    @Test
+    public void shouldRetryEvictionOnceTheWriterHasRoom() throws Exception {
+        now -= 3 * HOUR;
+        String expired = KeyGenerator.createKey();
+        log("{\"exchange\":\"" + expired + "\",\"status\":\"begin\"}");
+
+        now += 3 * HOUR;
+        LinkedBlockingDeque<BatchOperation> queue = controller.partition("my-integration").eventQueue;
+        while (queue.offer(batch -> { })) {
+            // fill the queue of the writer
+        }
+        // returns instead of waiting for room in the queue
+        monitor.evictExpiredActivities();
+
+        assertThat(monitor.getInflightCount()).isEqualTo(1);
+        assertThat(controller.inflightExpired.sum()).isZero();
+
+        queue.clear();
+        monitor.evictExpiredActivities();
+
+        assertThat(monitor.getInflightCount()).isZero();
+        assertThat(controller.inflightExpired.sum()).isEqualTo(1);
+        assertThat(drainQueue()).containsOnlyKeys("/exchanges/my-integration/" + expired);
+    }
+
+    @Test
+    public void shouldNotOverwriteIncompleteActivitiesWithLaterLines() throws IOException {
+        List<String> exchanges = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String exchange = KeyGenerator.createKey();
+            exchanges.add(exchange);
+            log("{\"exchange\":\"" + exchange + "\",\"status\":\"begin\"}");
+        }
+        assertThat(drainQueue()).containsOnlyKeys("/exchanges/my-integration/" + exchanges.get(0));
+
+        // the evicted exchange completes after all
+        log("{\"exchange\":\"" + exchanges.get(0) + "\",\"step\":\"s1\",\"id\":\"" + KeyGenerator.createKey() + "\",\"duration\":1}");
+        log("{\"exchange\":\"" + exchanges.get(0) + "\",\"status\":\"done\"}");
+
+        assertThat(monitor.inflightActivities).containsOnlyKeys(exchanges.get(1), exchanges.get(2));
+        assertThat(drainQueue()).isEmpty();
+    }
+
+    @Test
+    public void shouldIngestPushedActivities() throws IOException {
+        String exchange = KeyGenerator.createKey();
+        byte[] pushed = ("2018-01-12T21:22:02.068Z {\"exchange\":\"" + exchange + "\",\"status\":\"begin\"}\n"
+            + "2018-01-12T21:22:02.069Z {\"exchange\":\"" + exchange + "\",\"status\":\"done\"}\n").getBytes(UTF_8);
+
+        assertThat(monitor.ingest("10.1.2.3", null, new ByteArrayInputStream(pushed))).isEqualTo(Ingestion.REJECTED);
+        assertThat(monitor.ingest("10.1.2.3", new IntegrationTokens("server-key").tokenOf("my-integration", "2"),
+            new ByteArrayInputStream(pushed))).isEqualTo(Ingestion.REJECTED);
+        assertThat(monitor.ingest("10.1.2.4", token, new ByteArrayInputStream(pushed))).isEqualTo(Ingestion.REJECTED);
+        assertThat(monitor.getInflightCount()).isZero();
+
+        assertThat(monitor.ingest("10.1.2.3", token, new ByteArrayInputStream(pushed))).isEqualTo(Ingestion.ACCEPTED);
+        Map<String, Object> batch = drainQueue();
+        assertThat(batch).containsKey("/exchanges/my-integration/" + exchange);
+        assertThat(((PodLogState) batch.get("/pods/test-pod")).time).isEqualTo("2018-01-12T21:22:02.069Z");
+    }
+
+    @Test
+    public void shouldIngestPushedActivitiesFromOtherAddressesWithoutAddressCheck() throws IOException {
+        controller.setPushAddressCheck(false);
+        byte[] pushed = ("2018-01-12T21:22:02.068Z {\"exchange\":\"" + KeyGenerator.createKey() + "\",\"status\":\"begin\"}\n").getBytes(UTF_8);
+
+        assertThat(monitor.ingest("10.1.2.4", null, new ByteArrayInputStream(pushed))).isEqualTo(Ingestion.REJECTED);
+        assertThat(monitor.ingest("10.1.2.4", token, new ByteArrayInputStream(pushed))).isEqualTo(Ingestion.ACCEPTED);
+    }
+
+    @Test
+    public void shouldNotIngestPushedActivitiesBeforeStateIsRecovered() throws IOException {
+        monitor.state = null;
+        byte[] pushed = ("2018-01-12T21:22:02.068Z {\"exchange\":\"" + KeyGenerator.createKey() + "\",\"status\":\"begin\"}\n").getBytes(UTF_8);
+
+        assertThat(monitor.ingest("10.1.2.3", token, new ByteArrayInputStream(pushed))).isEqualTo(Ingestion.UNAVAILABLE);
+        assertThat(monitor.getInflightCount()).isZero();
+        assertThat(controller.ingest("other-pod", "10.1.2.3", token, new ByteArrayInputStream(pushed))).isEqualTo(Ingestion.UNAVAILABLE);
+    }
+
+    @Test
+    public void shouldReadLogAgainOncePodStopsPushing() throws IOException {
+        byte[] pushed = ("2018-01-12T21:22:02.068Z {\"exchange\":\"" + KeyGenerator.createKey() + "\",\"status\":\"begin\"}\n").getBytes(UTF_8);
+        assertThat(monitor.isPushing()).isFalse();
+
+        monitor.ingest("10.1.2.3", token, new ByteArrayInputStream(pushed));
+        assertThat(monitor.isPushing()).isTrue();
+
+        now += controller.getPushTimeout().toMillis();
+        assertThat(monitor.isPushing()).isFalse();
+    }
+
+    private void log(String json) throws IOException {
+        byte[] line = ("2018-01-12T21:22:02.068338027Z " + json + "\n").getBytes(UTF_8);
+        monitor.processLine(line, 0, line.length);
+    }
+
+    private Map<String, Object> drainQueue() throws IOException {
+        Map<String, Object> batch = new TreeMap<>();
+        BatchOperation operation;
+        while ((operation = controller.partition("my-integration").eventQueue.poll()) != null) {
+            operation.apply(batch);
+        }
+        return batch;
+    }
+}
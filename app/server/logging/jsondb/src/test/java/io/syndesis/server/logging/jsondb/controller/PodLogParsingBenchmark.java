@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.logging.jsondb.controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.syndesis.common.util.KeyGenerator;
+import io.syndesis.common.util.json.JsonUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compares reading pod logs byte by byte and matching each line with a
+ * regular expression before binding its JSON to a map, as PodLogMonitor
+ * used to, with the bulk reads and streaming parsing of
+ * {@link LogLineReader} and {@link LogEntry}.
+ *
+ * Run from the IDE or with: {@code mvn test-compile exec:java
+ * -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.syndesis.server.logging.jsondb.controller.PodLogParsingBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PodLogParsingBenchmark {
+
+    private static final Pattern LOG_LINE_REGEX = Pattern.compile("^(\\d\\d\\d\\d\\-\\d\\d\\-\\d\\dT\\d\\d:\\d\\d:\\d\\d\\.\\d+Z) (\\{.*\\})\\s*");
+
+    private byte[] log;
+
+    @Setup
+    public void generateLog() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String exchange = KeyGenerator.createKey();
+            String time = "2018-01-12T21:22:02.068338027Z ";
+            builder.append(time).append("Some unstructured log output of the integration\n")
+                .append(time).append("{\"exchange\":\"").append(exchange).append("\",\"status\":\"begin\"}\n")
+                .append(time).append("{\"exchange\":\"").append(exchange).append("\",\"step\":\"s1\",\"id\":\"i-L38cZ5Jd1L876xV4vEHz\",\"message\":\"Hello World\"}\n")
+                .append(time).append("{\"exchange\":\"").append(exchange).append("\",\"step\":\"s1\",\"id\":\"i-L38cZ5Jd1L876xV4vEHz\",\"duration\":582977}\n")
+                .append(time).append("{\"exchange\":\"").append(exchange).append("\",\"status\":\"done\",\"failed\":false}\n");
+        }
+        log = builder.toString().getBytes(UTF_8);
+    }
+
+    @Benchmark
+    public void regularExpression(Blackhole blackhole) throws IOException {
+        InputStream is = new ByteArrayInputStream(log);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = is.read()) >= 0) {
+            line.write(c);
+            if (c == '\n') {
+                Matcher matcher = LOG_LINE_REGEX.matcher(new String(line.toByteArray(), UTF_8));
+                if (matcher.matches()) {
+                    blackhole.consume(matcher.group(1));
+                    blackhole.consume(JsonUtils.reader().forType(HashMap.class).<Map<?, ?>>readValue(matcher.group(2)));
+                }
+                line.reset();
+            }
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws IOException {
+        LogLineReader reader = new LogLineReader(new ByteArrayInputStream(log));
+        while (reader.readLine((line, offset, length) -> blackhole.consume(LogEntry.parse(line, offset, length)))) {
+            // parse all lines
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PodLogParsingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.logging.jsondb.store;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.syndesis.common.util.KeyGenerator;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.skife.jdbi.v2.DBI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ActivityStoreTest {
+
+    private static final long DAY = Duration.ofDays(1).toMillis();
+
+    private DBI dbi;
+    private ActivityStore store;
+
+    @BeforeEach
+    public void before() {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:activities;DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+        dbi = new DBI(ds);
+        store = new ActivityStore(dbi);
+    }
+
+    @AfterEach
+    public void after() {
+        store.dropTables();
+    }
+
+    @Test
+    public void shouldListActivitiesMostRecentFirstAcrossDays() throws IOException {
+        long now = System.currentTimeMillis();
+        List<String> exchanges = new ArrayList<>();
+        for (int i = 3; i >= 0; i--) {
+            exchanges.add(0, write("i1", now - i * DAY));
+        }
+        write("i2", now);
+
+        assertThat(store.getActivities("i1", null, 10)).containsExactlyElementsOf(exchanges);
+        assertThat(store.getActivities("i1", null, 2)).containsExactlyElementsOf(exchanges.subList(0, 2));
+        assertThat(store.getActivities("i1", exchanges.get(1), 10)).containsExactlyElementsOf(exchanges.subList(2, 4));
+        assertThat(store.getActivities("missing", null, 10)).isEmpty();
+    }
+
+    @Test
+    public void shouldOverwriteActivitiesOfTheSameExchange() throws IOException {
+        String exchange = KeyGenerator.createKey();
+        dbi.inTransaction((h, status) -> {
+            ActivityStore.Batch batch = store.batch(h);
+            batch.add("i1", exchange, "first");
+            batch.add("i1", exchange, "second");
+            batch.execute();
+            return null;
+        });
+
+        assertThat(store.getActivities("i1", null, 10)).containsExactly("second");
+    }
+
+    @Test
+    public void shouldDropExpiredDaysAndKeepRetention() throws IOException {
+        long now = System.currentTimeMillis();
+        write("i1", now - 5 * DAY);
+        List<String> recent = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            recent.add(0, write("i1", now - DAY + i));
+        }
+        for (int i = 0; i < 2; i++) {
+            recent.add(0, write("i1", now + i));
+        }
+        write("i2", now);
+
+        assertThat(store.purge(3, Duration.ofDays(2))).isEqualTo(4);
+
+        assertThat(store.getActivities("i1", null, 10)).containsExactlyElementsOf(recent.subList(0, 3));
+        assertThat(store.count("i2")).isEqualTo(1);
+        Boolean expired = dbi.withHandle(h -> h.getConnection().getMetaData().getTables(null, null, ActivityStore.table(now - 5 * DAY).toUpperCase(Locale.US), null).next());
+        assertThat(expired).isFalse();
+    }
+
+    @Test
+    public void shouldCreateTableOnceForConcurrentWriters() throws Exception {
+        long tomorrow = System.currentTimeMillis() + DAY;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> written = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                String integrationId = "i" + i;
+                written.add(writers.submit(() -> {
+                    start.await();
+                    return write(integrationId, tomorrow);
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < 4; i++) {
+                String exchange = written.get(i).get();
+                assertThat(store.getActivities("i" + i, null, 10)).containsExactly(exchange);
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+
+        // tables made by another store are found
+        assertThat(new ActivityStore(dbi).count("i0")).isEqualTo(1);
+    }
+
+    // writes the exchange id as activity
+    private String write(String integrationId, long time) throws IOException {
+        String exchange = KeyGenerator.recreateKey(time, 0, 0);
+        dbi.inTransaction((h, status) -> {
+            ActivityStore.Batch batch = store.batch(h);
+            batch.add(integrationId, exchange, exchange);
+            batch.execute();
+            return null;
+        });
+        return exchange;
+    }
+}
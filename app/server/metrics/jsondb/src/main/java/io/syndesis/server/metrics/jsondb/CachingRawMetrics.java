@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.metrics.jsondb;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the RawMetrics of the integrations in memory on top of the database,
+ * so that metrics equal to the ones already persisted are not written again,
+ * and the summaries of only the integrations whose metrics changed are
+ * computed again. The metrics of an integration are read from the database
+ * the first time they are needed.
+ */
+class CachingRawMetrics implements RawMetricsHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingRawMetrics.class);
+
+    private final RawMetricsHandler delegate;
+
+    // RawMetrics per pod, or history bucket, per integration
+    private final Map<String, Map<String, RawMetrics>> integrations = new ConcurrentHashMap<>();
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+    CachingRawMetrics(RawMetricsHandler delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void persist(RawMetrics rawMetrics) {
+        final String integrationId = rawMetrics.getIntegrationId();
+        final Map<String, RawMetrics> metrics;
+        try {
+            metrics = metrics(integrationId);
+        } catch (IOException e) {
+            LOGGER.error("Error persisting metrics!", e);
+            return;
+        }
+
+        if (!rawMetrics.equals(metrics.put(rawMetrics.getPod(), rawMetrics))) {
+            delegate.persist(rawMetrics);
+            changed.add(integrationId);
+        }
+    }
+
+    @Override
+    public Map<String, RawMetrics> getRawMetrics(String integrationId) throws IOException {
+        return new HashMap<>(metrics(integrationId));
+    }
+
+    @Override
+    public void curate(String integrationId, Map<String, RawMetrics> metrics, Set<String> livePodIds) throws IOException {
+        if (!hasDeadPods(metrics, livePodIds)) {
+            return;
+        }
+
+        try {
+            delegate.curate(integrationId, metrics, livePodIds);
+        } finally {
+            // read again with the history buckets as updated
+            integrations.remove(integrationId);
+        }
+    }
+
+    @Override
+    public void curate(Set<String> activeIntegrationIds) throws IOException {
+        delegate.curate(activeIntegrationIds);
+        integrations.keySet().retainAll(activeIntegrationIds);
+        changed.retainAll(activeIntegrationIds);
+    }
+
+    @Override
+    public Set<String> takeChangedIntegrations(Set<String> integrationIds, Set<String> livePodIds) {
+        final Set<String> result = new HashSet<>();
+        for (String integrationId : integrationIds) {
+            final Map<String, RawMetrics> metrics = integrations.get(integrationId);
+            // not read yet, changed, or with pods to move to the history
+            if (metrics == null || changed.remove(integrationId) || hasDeadPods(metrics, livePodIds)) {
+                result.add(integrationId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Marks the integration as changed, its summary is computed again on the
+     * next collection.
+     */
+    void markChanged(String integrationId) {
+        changed.add(integrationId);
+    }
+
+    private Map<String, RawMetrics> metrics(String integrationId) throws IOException {
+        try {
+            return integrations.computeIfAbsent(integrationId, id -> {
+                try {
+                    return new ConcurrentHashMap<>(delegate.getRawMetrics(id));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean hasDeadPods(Map<String, RawMetrics> metrics, Set<String> livePodIds) {
+        for (String pod : metrics.keySet()) {
+            if (!pod.startsWith(JsonDBRawMetrics.HISTORY) && !livePodIds.contains(pod)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
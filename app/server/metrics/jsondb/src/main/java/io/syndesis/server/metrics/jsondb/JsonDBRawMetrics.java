@@ -36,7 +36,7 @@ import com.fasterxml.jackson.databind.JsonMappingException;
 
 public class JsonDBRawMetrics implements RawMetricsHandler {
 
-    private static final String HISTORY = "HISTORY";
+    static final String HISTORY = "HISTORY";
     private static final Logger LOGGER = LoggerFactory.getLogger(JsonDBRawMetrics.class);
     public static final TypeReference<Map<String, Boolean>> TYPE_REFERENCE = new TypeReference<Map<String, Boolean>>() {
     };
@@ -19,19 +19,24 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.PostConstruct;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
@@ -39,8 +44,13 @@ import org.springframework.stereotype.Service;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.internal.readiness.Readiness;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 import io.syndesis.server.dao.manager.DataManager;
 import io.syndesis.server.jsondb.JsonDB;
+import io.syndesis.server.openshift.IntegrationResourceCache;
 import io.syndesis.common.model.integration.Integration;
 import io.syndesis.common.model.metrics.IntegrationMetricsSummary;
 
@@ -53,25 +63,75 @@ public class MetricsCollector implements Runnable, Closeable {
 
     private final KubernetesClient kubernetes;
     private final DataManager dataManager;
-    private final RawMetricsHandler rmh;
+    private final CachingRawMetrics rmh;
     private final IntegrationMetricsHandler imh;
+    private IntegrationResourceCache cache;
 
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-    private final ExecutorService executor = Executors.newCachedThreadPool(new CustomizableThreadFactory("metrics-collector"));
+    private ExecutorService executor;
+
+    // readers of the live pods, kept across collections
+    private final Map<String, PodMetricsReader> readers = new ConcurrentHashMap<>();
+
+    /** Number of pods read in parallel */
+    private int readerThreads = 4;
+    /** Milliseconds to wait for the connection to and the responses of a pod */
+    private int readTimeout = 5000;
+
+    private MeterRegistry meterRegistry = new CompositeMeterRegistry();
+    private Timer readTimer;
+    private Timer failedReadTimer;
+    private final LongAdder skippedReads = new LongAdder();
 
     @Autowired
     public MetricsCollector(DataManager dataManager, JsonDB jsonDB, KubernetesClient kubernetes) {
         this.dataManager = dataManager;
         this.kubernetes = kubernetes;
-        this.rmh = new JsonDBRawMetrics(jsonDB);
+        this.rmh = new CachingRawMetrics(new JsonDBRawMetrics(jsonDB));
         this.imh = new IntegrationMetricsHandler(dataManager);
     }
 
+    /**
+     * Lists the integration pods from the given cache instead of the API
+     * server.
+     */
+    @Autowired(required = false)
+    public void setResourceCache(IntegrationResourceCache cache) {
+        this.cache = cache;
+    }
+
+
+    @Value("${metrics.collector.threads:4}")
+    public void setReaderThreads(int readerThreads) {
+        this.readerThreads = Math.max(1, readerThreads);
+    }
+
+    @Value("${metrics.collector.timeout:5000}")
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        FunctionCounter.builder("metrics.collector.skipped", skippedReads, LongAdder::sum)
+            .description("Reads of pod metrics skipped as the previous read of the pod was still running")
+            .register(registry);
+    }
 
     @PostConstruct
     @SuppressWarnings("FutureReturnValueIgnored")
     public void open() {
         LOGGER.info("Starting metrics collector.");
+        readTimer = Timer.builder("metrics.collector.read")
+            .description("Time taken to read the metrics of a pod")
+            .tag("outcome", "success")
+            .register(meterRegistry);
+        failedReadTimer = Timer.builder("metrics.collector.read")
+            .description("Time taken to read the metrics of a pod")
+            .tag("outcome", "failure")
+            .register(meterRegistry);
+        executor = Executors.newFixedThreadPool(readerThreads, new CustomizableThreadFactory("metrics-collector"));
         scheduler.scheduleAtFixedRate(this, 10, 10, TimeUnit.SECONDS);
     }
 
@@ -80,7 +140,11 @@ public class MetricsCollector implements Runnable, Closeable {
     public void close() throws IOException {
         LOGGER.info("Stopping metrics collector.");
         close(scheduler);
-        close(executor);
+        if (executor != null) {
+            close(executor);
+        }
+        readers.values().forEach(PodMetricsReader::close);
+        readers.clear();
     }
 
 
@@ -88,36 +152,51 @@ public class MetricsCollector implements Runnable, Closeable {
     public void run() {
         LOGGER.debug("Collecting metrics for active integration pods.");
         try {
-            List<Pod> integrationPodList = kubernetes.pods().withLabel("integration").list().getItems();
+            List<Pod> integrationPodList = listIntegrationPods();
             Set<String> livePods = new HashSet<>();
             for (Pod pod : integrationPodList) {
                 livePods.add(pod.getMetadata().getName());
             }
 
+            Iterator<PodMetricsReader> i = readers.values().iterator();
+            while (i.hasNext()) {
+                PodMetricsReader reader = i.next();
+                if (!livePods.contains(reader.getPod())) {
+                    i.remove();
+                    reader.close();
+                }
+            }
             integrationPodList
                 .stream()
                 .filter(p -> Readiness.isReady(p))
-                .forEach(p ->
-                    executor.execute(new PodMetricsReader(
+                .map(p -> readers.computeIfAbsent(p.getMetadata().getName(), name -> new PodMetricsReader(
                             kubernetes,
-                            p.getMetadata().getName(),
+                            name,
                             p.getMetadata().getAnnotations().get("syndesis.io/integration-name"),
                             p.getMetadata().getLabels().get("syndesis.io/integration-id"),
                             p.getMetadata().getLabels().get("syndesis.io/deployment-version"),
-                            rmh))
-            );
+                            rmh,
+                            readTimeout)))
+                .forEach(this::submit);
 
             Set<String> activeIntegrationIds = dataManager.fetchIds(Integration.class);
-            for (String integrationId : activeIntegrationIds) {
+            // only the summaries of the integrations with new metrics or dead pods change
+            for (String integrationId : rmh.takeChangedIntegrations(activeIntegrationIds, livePods)) {
                 LOGGER.debug("Computing metrics for IntegrationId: {}",integrationId);
 
-                Map<String,RawMetrics> rawMetrics = rmh.getRawMetrics(integrationId);
-                IntegrationMetricsSummary imSummary = imh.compute(
-                                integrationId,
-                                rawMetrics,
-                                livePods);
-                imh.persist(imSummary);
-                rmh.curate(integrationId, rawMetrics, livePods);
+                try {
+                    Map<String,RawMetrics> rawMetrics = rmh.getRawMetrics(integrationId);
+                    IntegrationMetricsSummary imSummary = imh.compute(
+                                    integrationId,
+                                    rawMetrics,
+                                    livePods);
+                    imh.persist(imSummary);
+                    rmh.curate(integrationId, rawMetrics, livePods);
+                } catch (@SuppressWarnings("PMD.AvoidCatchingGenericException") Exception ex) {
+                    // computed again on the next collection
+                    rmh.markChanged(integrationId);
+                    LOGGER.error("Error while computing metrics of integration {}.", integrationId, ex);
+                }
             }
 
             rmh.curate(activeIntegrationIds);
@@ -129,6 +208,39 @@ public class MetricsCollector implements Runnable, Closeable {
 
     }
 
+    private void submit(PodMetricsReader reader) {
+        if (!reader.tryStart()) {
+            LOGGER.debug("Still reading metrics of pod {}, skipping it", reader.getPod());
+            skippedReads.increment();
+            return;
+        }
+
+        try {
+            executor.execute(() -> read(reader));
+        } catch (RejectedExecutionException e) {
+            reader.finish();
+            LOGGER.debug("Not reading metrics of pod {}, stopping", reader.getPod(), e);
+        }
+    }
+
+    private void read(PodMetricsReader reader) {
+        final long start = System.nanoTime();
+        boolean read = false;
+        try {
+            read = reader.read();
+        } finally {
+            reader.finish();
+            (read ? readTimer : failedReadTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private List<Pod> listIntegrationPods() {
+        if (cache != null) {
+            return cache.getPods(IntegrationResourceCache.integrationLabels("integration", null));
+        }
+        return kubernetes.pods().withLabel("integration").list().getItems();
+    }
+
     private static List<Runnable> close(ExecutorService service) throws IOException {
         service.shutdown();
         try {
@@ -33,6 +33,8 @@ import org.slf4j.LoggerFactory;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -43,8 +45,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class PodMetricsReader implements Runnable {
+public class PodMetricsReader implements Runnable, Closeable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PodMetricsReader.class);
 
@@ -56,6 +59,8 @@ public class PodMetricsReader implements Runnable {
     private static final String LAST_FAILED_TIMESTAMP = "LastExchangeFailureTimestamp";
     private static final String RESET_TIMESTAMP = "ResetTimestamp";
 
+    private static final int DEFAULT_TIMEOUT = 20_000;
+
     private final J4pClient jolokia;
     private final String integration;
     private final String integrationId;
@@ -64,19 +69,84 @@ public class PodMetricsReader implements Runnable {
     private final RawMetricsHandler handler;
 
     private final Map<String, ObjectName> cache = new HashMap<>();
+    // routes of the camel context, the same for the lifetime of the pod
+    private List<ObjectName> routes;
+
+    private final AtomicBoolean reading = new AtomicBoolean();
+    // closed while reading, the client is closed once the read is done
+    private boolean closed;
 
     public PodMetricsReader(KubernetesClient kubernetes, String pod, String integration, String integrationId, String version,
             RawMetricsHandler handler) {
+        this(kubernetes, pod, integration, integrationId, version, handler, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param timeout milliseconds to wait for the connection to and the
+     *        responses of the pod
+     */
+    public PodMetricsReader(KubernetesClient kubernetes, String pod, String integration, String integrationId, String version,
+            RawMetricsHandler handler, int timeout) {
         this.pod = pod;
         this.integration = integration;
         this.integrationId = integrationId;
         this.version = version;
         this.handler = handler;
-        this.jolokia = forPod(kubernetes, pod);
+        this.jolokia = forPod(kubernetes, pod, timeout);
+    }
+
+    public String getPod() {
+        return pod;
+    }
+
+    /**
+     * Marks the reader as reading, the metrics of a pod are read by one
+     * thread at a time.
+     * @return false if the reader is already reading
+     */
+    public boolean tryStart() {
+        return reading.compareAndSet(false, true);
+    }
+
+    public synchronized void finish() {
+        reading.set(false);
+        if (closed) {
+            closeClient();
+        }
+    }
+
+    /**
+     * Releases the connections to the pod, once the current read is done.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (!reading.get()) {
+            closeClient();
+        }
+    }
+
+    private void closeClient() {
+        if (jolokia.getHttpClient() instanceof Closeable) {
+            try {
+                ((Closeable) jolokia.getHttpClient()).close();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to close the client of pod {}", pod, e);
+            }
+        }
     }
 
     @Override
     public void run() {
+        read();
+    }
+
+    /**
+     * Reads the metrics of the routes of the pod and hands them to the
+     * handler.
+     * @return false if the metrics could not be read
+     */
+    public boolean read() {
         try {
             LOGGER.debug("Collecting stats from integrationId: {}", integrationId);
             List<Map<String, String>> routeStats = getRoutes(integration, "[a-zA-z0-9_-]+");
@@ -111,9 +181,14 @@ public class PodMetricsReader implements Runnable {
                 }
             );
 
+            return true;
         } catch (MalformedObjectNameException | J4pException e) {
+            // the context and routes are looked up again on the next read
+            cache.clear();
+            routes = null;
             LOGGER.error("Collecting stats from integrationId: {}", integrationId);
             LOGGER.debug("Collecting stats from integrationId: {}", integrationId, e);
+            return false;
         }
     }
 
@@ -166,6 +241,25 @@ public class PodMetricsReader implements Runnable {
         return on;
     }
 
+    private List<ObjectName> lookupRoutes(String camelContextName) throws MalformedObjectNameException, J4pException {
+        if (routes == null) {
+            ObjectName context = lookupCamelContext(camelContextName);
+            if (context == null) {
+                return null;
+            }
+
+            String pattern = String.format("%s:context=%s,type=routes,*", context.getDomain(), context.getKeyProperty("context"));
+            J4pSearchResponse sr = jolokia.execute(new J4pSearchRequest(pattern));
+            List<ObjectName> names = sr.getObjectNames();
+            if (names.isEmpty()) {
+                // not started yet
+                return names;
+            }
+            routes = names;
+        }
+        return routes;
+    }
+
     public List<Map<String, String>> getRoutes(String camelContextName, String filter) throws MalformedObjectNameException, J4pException {
         if (jolokia == null) {
             throw new IllegalStateException("Need to connect to remote jolokia first");
@@ -173,14 +267,12 @@ public class PodMetricsReader implements Runnable {
 
         List<Map<String, String>> answer = new ArrayList<>();
 
-        ObjectName found = camelContextName != null ? lookupCamelContext(camelContextName) : null;
-        if (found != null) {
-
-            String pattern = String.format("%s:context=%s,type=routes,*", found.getDomain(), found.getKeyProperty("context"));
-            J4pSearchResponse sr = jolokia.execute(new J4pSearchRequest(pattern));
+        List<ObjectName> found = camelContextName != null ? lookupRoutes(camelContextName) : null;
+        if (found != null && !found.isEmpty()) {
 
+            // a single bulk request per read once the routes are known
             List<J4pReadRequest> list = new ArrayList<>();
-            for (ObjectName on : sr.getObjectNames()) {
+            for (ObjectName on : found) {
                 list.add(new J4pReadRequest(on, ROUTE_ID, RESET_TIMESTAMP, EXCHANGES_TOTAL, EXCHANGES_FAILED, LAST_COMPLETED_TIMESTAMP, LAST_FAILED_TIMESTAMP, START_TIMESTAMP ));
             }
 
@@ -226,14 +318,17 @@ public class PodMetricsReader implements Runnable {
      * Creates a {@link J4pClient} for the specified pod.
      * @param kubernetes The {@link KubernetesClient} instance.
      * @param pod        The name of the pod.
+     * @param timeout    The connection and socket timeout in milliseconds.
      * @return An instance of the {@link J4pClient}.
      */
-    private static J4pClient forPod(KubernetesClient kubernetes, String pod) {
+    private static J4pClient forPod(KubernetesClient kubernetes, String pod, int timeout) {
         String jolokiaUrl = String.format("%sapi/v1/namespaces/%s/pods/https:%s:8778/proxy/jolokia/", kubernetes.getMasterUrl(), kubernetes.getNamespace(), pod);
         try {
             return new J4pClientBuilder()
                 .url(jolokiaUrl)
                 .user("user")
+                .connectionTimeout(timeout)
+                .socketTimeout(timeout)
                 .authenticator(new JolokiaKubernetesAuthenticator(kubernetes))
                 .sslConnectionSocketFactory(new SSLConnectionSocketFactory(SSLUtils.sslContext(kubernetes.getConfiguration())))
                 .build();
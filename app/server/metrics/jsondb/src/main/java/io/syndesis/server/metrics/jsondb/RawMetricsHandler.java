@@ -32,4 +32,15 @@ public interface RawMetricsHandler {
 
     void curate(Set<String> activeIntegrationIds)
             throws IOException, JsonMappingException;
+
+    /**
+     * Returns the integrations whose metrics summary needs to be computed
+     * again, because metrics of their pods were persisted or because some of
+     * their pods died since the last call.
+     * @param integrationIds the integrations to check
+     * @param livePodIds the pods currently running
+     */
+    default Set<String> takeChangedIntegrations(Set<String> integrationIds, Set<String> livePodIds) {
+        return integrationIds;
+    }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.metrics.jsondb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.skife.jdbi.v2.DBI;
+
+import io.syndesis.server.jsondb.impl.SqlJsonDB;
+
+public class CachingRawMetricsTest {
+
+    private static final Set<String> INTEGRATIONS = new HashSet<>(Arrays.asList("intId1", "intId2"));
+
+    private SqlJsonDB jsondb;
+    private JsonDBRawMetrics jsondbRM;
+    private CachingRawMetrics cachingRM;
+
+    @BeforeEach
+    public void before() {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:test;DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+        DBI dbi = new DBI(ds);
+
+        this.jsondb = new SqlJsonDB(dbi, null, Collections.emptyList());
+        try {
+            this.jsondb.dropTables();
+        } catch (Exception e) {
+        }
+        this.jsondb.createTables();
+
+        jsondbRM = new JsonDBRawMetrics(jsondb);
+        jsondbRM.persist(raw("intId1", "pod1", 3L));
+        jsondbRM.persist(raw("intId2", "pod2", 5L));
+
+        cachingRM = new CachingRawMetrics(jsondbRM);
+    }
+
+    @Test
+    public void shouldReadPersistedMetricsOnce() throws IOException {
+        Set<String> livePods = new HashSet<>(Arrays.asList("pod1", "pod2"));
+        assertThat(cachingRM.takeChangedIntegrations(INTEGRATIONS, livePods)).isEqualTo(INTEGRATIONS);
+
+        assertThat(cachingRM.getRawMetrics("intId1")).containsOnlyKeys("pod1");
+        assertThat(cachingRM.getRawMetrics("intId2").get("pod2").getMessages()).isEqualTo(5L);
+
+        assertThat(cachingRM.takeChangedIntegrations(INTEGRATIONS, livePods)).isEmpty();
+    }
+
+    @Test
+    public void shouldTrackChangedIntegrations() throws IOException {
+        Set<String> livePods = new HashSet<>(Arrays.asList("pod1", "pod2"));
+        cachingRM.getRawMetrics("intId1");
+        cachingRM.getRawMetrics("intId2");
+
+        // same metrics, nothing changed
+        cachingRM.persist(raw("intId1", "pod1", 3L));
+        assertThat(cachingRM.takeChangedIntegrations(INTEGRATIONS, livePods)).isEmpty();
+
+        cachingRM.persist(raw("intId1", "pod1", 4L));
+        assertThat(cachingRM.takeChangedIntegrations(INTEGRATIONS, livePods)).containsOnly("intId1");
+        assertThat(cachingRM.takeChangedIntegrations(INTEGRATIONS, livePods)).isEmpty();
+        assertThat(jsondbRM.getRawMetrics("intId1").get("pod1").getMessages()).isEqualTo(4L);
+
+        cachingRM.markChanged("intId2");
+        assertThat(cachingRM.takeChangedIntegrations(INTEGRATIONS, livePods)).containsOnly("intId2");
+    }
+
+    @Test
+    public void shouldMoveDeadPodsToHistory() throws IOException {
+        Set<String> livePods = new HashSet<>(Arrays.asList("pod2"));
+        Map<String, RawMetrics> metrics = cachingRM.getRawMetrics("intId1");
+        cachingRM.getRawMetrics("intId2");
+
+        // pod1 died
+        assertThat(cachingRM.takeChangedIntegrations(INTEGRATIONS, livePods)).containsOnly("intId1");
+        cachingRM.curate("intId1", metrics, livePods);
+
+        assertThat(cachingRM.getRawMetrics("intId1")).containsOnlyKeys(JsonDBRawMetrics.HISTORY + "1");
+        assertThat(jsondbRM.getRawMetrics("intId1")).containsOnlyKeys(JsonDBRawMetrics.HISTORY + "1");
+        assertThat(cachingRM.takeChangedIntegrations(INTEGRATIONS, livePods)).isEmpty();
+    }
+
+    @Test
+    public void shouldForgetDeletedIntegrations() throws IOException {
+        cachingRM.getRawMetrics("intId1");
+        cachingRM.getRawMetrics("intId2");
+
+        cachingRM.curate(Collections.singleton("intId2"));
+
+        assertThat(jsondbRM.getRawMetrics("intId1")).isEmpty();
+        assertThat(cachingRM.getRawMetrics("intId1")).isEmpty();
+    }
+
+    private static RawMetrics raw(String integrationId, String podName, Long messages) {
+        return new RawMetrics.Builder()
+                .integrationId(integrationId)
+                .version("1")
+                .pod(podName)
+                .messages(messages)
+                .errors(1L)
+                .startDate(Instant.parse("2018-01-31T10:20:56Z"))
+                .resetDate(Optional.empty())
+                .lastProcessed(Optional.empty())
+                .build();
+    }
+}
@@ -33,6 +33,8 @@ public class PrometheusConfigurationProperties {
     private String typeLabel = "type";
     private String metricsHistoryRange = "1d";
     private int topIntegrationsCount = 5;
+    private long queryCacheTtl = 5000;
+    private int queryThreads = 8;
 
     public String getService() {
         return service;
@@ -89,4 +91,26 @@ public class PrometheusConfigurationProperties {
     public void setTopIntegrationsCount(int topIntegrationsCount) {
         this.topIntegrationsCount = topIntegrationsCount;
     }
+
+    /**
+     * Milliseconds to keep the results of the queries for.
+     */
+    public long getQueryCacheTtl() {
+        return queryCacheTtl;
+    }
+
+    public void setQueryCacheTtl(long queryCacheTtl) {
+        this.queryCacheTtl = queryCacheTtl;
+    }
+
+    /**
+     * Number of queries sent to Prometheus in parallel.
+     */
+    public int getQueryThreads() {
+        return queryThreads;
+    }
+
+    public void setQueryThreads(int queryThreads) {
+        this.queryThreads = queryThreads;
+    }
 }
@@ -21,6 +21,10 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.BinaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -38,10 +42,12 @@ import io.syndesis.server.endpoint.metrics.MetricsProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 @Component
 @ConditionalOnProperty(value = "metrics.kind", havingValue = "prometheus")
+@SuppressWarnings("PMD.DoNotUseThreads")
 public class PrometheusMetricsProviderImpl implements MetricsProvider {
     private static final Logger LOG = LoggerFactory.getLogger(PrometheusMetricsProviderImpl.class);
 
@@ -64,6 +70,8 @@ public class PrometheusMetricsProviderImpl implements MetricsProvider {
     private final String typeLabel;
     private final String metricsHistoryRange;
     private final int topIntegrationsCount;
+    private final long queryCacheTtl;
+    private final int queryThreads;
 
     private final NamespacedOpenShiftClient openShiftClient;
 
@@ -75,6 +83,8 @@ public class PrometheusMetricsProviderImpl implements MetricsProvider {
     private static final LabelSelector SELECTOR = new LabelSelector(null, LABELS);
 
     private volatile HttpClient httpClient;
+    private volatile ExecutorService executor;
+    private volatile QueryCache queries;
 
     protected PrometheusMetricsProviderImpl(PrometheusConfigurationProperties config, NamespacedOpenShiftClient openShiftClient) {
         this.serviceName = config.getService();
@@ -84,6 +94,8 @@ public class PrometheusMetricsProviderImpl implements MetricsProvider {
         this.typeLabel = config.getTypeLabel();
         this.metricsHistoryRange = config.getMetricsHistoryRange();
         this.topIntegrationsCount = config.getTopIntegrationsCount();
+        this.queryCacheTtl = config.getQueryCacheTtl();
+        this.queryThreads = Math.max(1, config.getQueryThreads());
         this.openShiftClient = openShiftClient;
     }
 
@@ -91,6 +103,8 @@ public class PrometheusMetricsProviderImpl implements MetricsProvider {
     public void init() {
         if (this.httpClient == null) {
             this.httpClient = new HttpClient();
+            this.executor = Executors.newFixedThreadPool(queryThreads, new CustomizableThreadFactory("prometheus-query"));
+            this.queries = new QueryCache(httpClient::queryPrometheus, executor, queryCacheTtl);
         }
 
     }
@@ -98,7 +112,10 @@ public class PrometheusMetricsProviderImpl implements MetricsProvider {
     @PreDestroy
     public void destroy() {
         if (this.httpClient != null) {
+            this.executor.shutdown();
             this.httpClient.close();
+            this.queries = null;
+            this.executor = null;
             this.httpClient = null;
         }
     }
@@ -109,26 +126,28 @@ public class PrometheusMetricsProviderImpl implements MetricsProvider {
             throw new IllegalArgumentException("Did not privide an valid integration ID: " + integrationId);
         }
 
+        // the queries are independent, all of them are sent at once
         // aggregate values across versions
-        final Map<String, Long> totalMessagesMap = getMetricValues(integrationId, METRIC_TOTAL, deploymentVersionLabel, Long.class, PrometheusMetricsProviderImpl::sum);
-        final Map<String, Long> failedMessagesMap = getMetricValues(integrationId, METRIC_FAILED, deploymentVersionLabel, Long.class, PrometheusMetricsProviderImpl::sum);
+        final CompletableFuture<Map<String, Long>> totalMessagesMap = getMetricValues(integrationId, METRIC_TOTAL, deploymentVersionLabel, Long.class, PrometheusMetricsProviderImpl::sum);
+        final CompletableFuture<Map<String, Long>> failedMessagesMap = getMetricValues(integrationId, METRIC_FAILED, deploymentVersionLabel, Long.class, PrometheusMetricsProviderImpl::sum);
 
-        final Map<String, Instant> startTimeMap = getMetricValues(integrationId, METRIC_START_TIMESTAMP, deploymentVersionLabel, Instant.class, PrometheusMetricsProviderImpl::max);
+        final CompletableFuture<Map<String, Instant>> startTimeMap = getMetricValues(integrationId, METRIC_START_TIMESTAMP, deploymentVersionLabel, Instant.class, PrometheusMetricsProviderImpl::max);
 
         // compute last processed time from lastCompleted and lastFailure times
-        final Map<String, Instant> lastCompletedTimeMap = getMetricValues(integrationId, METRIC_COMPLETED_TIMESTAMP, deploymentVersionLabel, Instant.class, PrometheusMetricsProviderImpl::max);
-        final Map<String, Instant> lastFailedTimeMap = getMetricValues(integrationId, METRIC_FAILURE_TIMESTAMP, deploymentVersionLabel, Instant.class, PrometheusMetricsProviderImpl::max);
-        final Map<String, Instant> lastProcessedTimeMap = Stream.concat(lastCompletedTimeMap.entrySet().stream(), lastFailedTimeMap.entrySet().stream())
-            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, PrometheusMetricsProviderImpl::max));
+        final CompletableFuture<Map<String, Instant>> lastCompletedTimeMap = getMetricValues(integrationId, METRIC_COMPLETED_TIMESTAMP, deploymentVersionLabel, Instant.class, PrometheusMetricsProviderImpl::max);
+        final CompletableFuture<Map<String, Instant>> lastFailedTimeMap = getMetricValues(integrationId, METRIC_FAILURE_TIMESTAMP, deploymentVersionLabel, Instant.class, PrometheusMetricsProviderImpl::max);
+
+        final CompletableFuture<Optional<Instant>> startTime = getAggregateMetricValue(integrationId, METRIC_START_TIMESTAMP, Instant.class, "min");
 
-        final Optional<Instant> startTime = getAggregateMetricValue(integrationId, METRIC_START_TIMESTAMP, Instant.class, "min");
+        final CompletableFuture<Optional<Instant>> lastCompletedTime = getAggregateMetricValue(integrationId, METRIC_COMPLETED_TIMESTAMP, Instant.class, "max");
+        final CompletableFuture<Optional<Instant>> lastFailureTime = getAggregateMetricValue(integrationId, METRIC_FAILURE_TIMESTAMP, Instant.class, "max");
 
-        final Optional<Instant> lastCompletedTime = getAggregateMetricValue(integrationId, METRIC_COMPLETED_TIMESTAMP, Instant.class, "max");
-        final Optional<Instant> lastFailureTime = getAggregateMetricValue(integrationId, METRIC_FAILURE_TIMESTAMP, Instant.class, "max");
-        final Instant lastProcessedTime = max(lastCompletedTime.orElse(null), lastFailureTime.orElse(null));
+        final Map<String, Instant> lastProcessedTimeMap = Stream.concat(join(lastCompletedTimeMap).entrySet().stream(), join(lastFailedTimeMap).entrySet().stream())
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, PrometheusMetricsProviderImpl::max));
+        final Instant lastProcessedTime = max(join(lastCompletedTime).orElse(null), join(lastFailureTime).orElse(null));
 
-        return createIntegrationMetricsSummary(totalMessagesMap, failedMessagesMap,
-            startTimeMap, lastProcessedTimeMap, startTime, Optional.ofNullable(lastProcessedTime));
+        return createIntegrationMetricsSummary(join(totalMessagesMap), join(failedMessagesMap),
+            join(startTimeMap), lastProcessedTimeMap, join(startTime), Optional.ofNullable(lastProcessedTime));
     }
 
     private static IntegrationMetricsSummary createIntegrationMetricsSummary(Map<String, Long> totalMessagesMap, Map<String, Long> failedMessagesMap,
@@ -175,8 +194,12 @@ public class PrometheusMetricsProviderImpl implements MetricsProvider {
 
     @Override
     public IntegrationMetricsSummary getTotalIntegrationMetricsSummary() {
-        final Optional<Long> totalMessages = getSummaryMetricValue(METRIC_TOTAL, Long.class, "sum");
-        final Optional<Long> failedMessages = getSummaryMetricValue(METRIC_FAILED, Long.class, "sum");
+        // sent while the server pod is looked up
+        final CompletableFuture<Optional<Long>> totalMessages = getSummaryMetricValue(METRIC_TOTAL, Long.class, "sum");
+        final CompletableFuture<Optional<Long>> failedMessages = getSummaryMetricValue(METRIC_FAILED, Long.class, "sum");
+        final CompletableFuture<Optional<Instant>> lastCompletedTime = getAggregateMetricValue(METRIC_COMPLETED_TIMESTAMP, Instant.class, "max");
+        final CompletableFuture<Optional<Instant>> lastFailureTime = getAggregateMetricValue(METRIC_FAILURE_TIMESTAMP, Instant.class, "max");
+        final CompletableFuture<Map<String, Long>> topIntegrations = getTopIntegrations();
 
         final List<Pod> serverList = openShiftClient.pods().withLabelSelector(SELECTOR).list().getItems();
         final Optional<Instant> startTime;
@@ -190,9 +213,7 @@ public class PrometheusMetricsProviderImpl implements MetricsProvider {
         }
 
         // compute last processed time
-        final Optional<Instant> lastCompletedTime = getAggregateMetricValue(METRIC_COMPLETED_TIMESTAMP, Instant.class, "max");
-        final Optional<Instant> lastFailureTime = getAggregateMetricValue(METRIC_FAILURE_TIMESTAMP, Instant.class, "max");
-        final Optional<Instant> lastProcessedTime = Optional.ofNullable(max(lastCompletedTime.orElse(null), lastFailureTime.orElse(null)));
+        final Optional<Instant> lastProcessedTime = Optional.ofNullable(max(join(lastCompletedTime).orElse(null), join(lastFailureTime).orElse(null)));
 
         // get top 5 integrations by total messages
         return new IntegrationMetricsSummary.Builder()
@@ -201,48 +222,45 @@ public class PrometheusMetricsProviderImpl implements MetricsProvider {
             .start(startTime.map(st -> Instant.ofEpochMilli(st.toEpochMilli() * 1000)))
             .lastProcessed(lastProcessedTime.map(lp -> Instant.ofEpochMilli(lp.toEpochMilli() * 1000)))
             .uptimeDuration(startTime.map(date -> Duration.between(date, Instant.now()).toMillis()).orElse(0L))
-            .messages(totalMessages.orElse(0L))
-            .errors(failedMessages.orElse(0L))
-            .topIntegrations(getTopIntegrations())
+            .messages(join(totalMessages).orElse(0L))
+            .errors(join(failedMessages).orElse(0L))
+            .topIntegrations(join(topIntegrations))
             .build();
     }
 
-    private <T> Map<String, T> getMetricValues(String integrationId, String metric, String label, Class<? extends T> clazz, BinaryOperator<T> mergeFunction) {
+    private <T> CompletableFuture<Map<String, T>> getMetricValues(String integrationId, String metric, String label, Class<? extends T> clazz, BinaryOperator<T> mergeFunction) {
         HttpQuery queryTotalMessages = createSummaryHttpQuery(integrationId, metric, null);
-        QueryResult response = httpClient.queryPrometheus(queryTotalMessages);
-        validateResponse(response);
-        return QueryResult.getValueMap(response, label, clazz, mergeFunction);
+        return query(queryTotalMessages).thenApply(response -> QueryResult.getValueMap(response, label, clazz, mergeFunction));
     }
 
-    private <T> Optional<T> getSummaryMetricValue(String metric, Class<? extends T> clazz, String aggregationOperator) {
+    private <T> CompletableFuture<Optional<T>> getSummaryMetricValue(String metric, Class<? extends T> clazz, String aggregationOperator) {
         HttpQuery queryTotalMessages = createSummaryHttpQuery(metric, aggregationOperator);
-        QueryResult response = httpClient.queryPrometheus(queryTotalMessages);
-        validateResponse(response);
-        return QueryResult.getFirstValue(response, clazz);
+        return query(queryTotalMessages).thenApply(response -> QueryResult.getFirstValue(response, clazz));
     }
 
-    private <T> Optional<T> getAggregateMetricValue(String metric, Class<? extends T> clazz, String aggregationOperator) {
+    private <T> CompletableFuture<Optional<T>> getAggregateMetricValue(String metric, Class<? extends T> clazz, String aggregationOperator) {
         HttpQuery queryTotalMessages = createInstantHttpQuery(metric, aggregationOperator);
-        QueryResult response = httpClient.queryPrometheus(queryTotalMessages);
-        validateResponse(response);
-        return QueryResult.getFirstValue(response, clazz);
+        return query(queryTotalMessages).thenApply(response -> QueryResult.getFirstValue(response, clazz));
     }
 
-    private <T> Optional<T> getAggregateMetricValue(String integrationId, String metric, Class<? extends T> clazz, String aggregationOperator) {
+    private <T> CompletableFuture<Optional<T>> getAggregateMetricValue(String integrationId, String metric, Class<? extends T> clazz, String aggregationOperator) {
         HttpQuery queryTotalMessages = createInstantHttpQuery(integrationId, metric, aggregationOperator);
-        QueryResult response = httpClient.queryPrometheus(queryTotalMessages);
-        validateResponse(response);
-        return QueryResult.getFirstValue(response, clazz);
+        return query(queryTotalMessages).thenApply(response -> QueryResult.getFirstValue(response, clazz));
     }
 
-    private Map<String, Long> getTopIntegrations() {
+    private CompletableFuture<Map<String, Long>> getTopIntegrations() {
         HttpQuery queryTotalMessages = new HttpQuery.Builder().createFrom(createInstantHttpQuery(METRIC_TOTAL, OPERATOR_TOPK))
                 .addAggregationOperatorParameters(Integer.toString(topIntegrationsCount))
                 .addByLabels(integrationIdLabel)
                 .build();
-        QueryResult response = httpClient.queryPrometheus(queryTotalMessages);
-        validateResponse(response);
-        return QueryResult.getValueMap(response, integrationIdLabel, Long.class, PrometheusMetricsProviderImpl::sum);
+        return query(queryTotalMessages).thenApply(response -> QueryResult.getValueMap(response, integrationIdLabel, Long.class, PrometheusMetricsProviderImpl::sum));
+    }
+
+    private CompletableFuture<QueryResult> query(HttpQuery query) {
+        return queries.query(query).thenApply(response -> {
+            validateResponse(response);
+            return response;
+        });
     }
 
     private HttpQuery createSummaryHttpQuery(String integrationId, String metric, String aggregationOperator) {
@@ -282,6 +300,21 @@ public class PrometheusMetricsProviderImpl implements MetricsProvider {
         }
     }
 
+    /**
+     * Waits for the result of the query, rethrowing the failure of the query
+     * as is.
+     */
+    private static <T> T join(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     private static long sum(final Long a, final Long b) {
         if (a == null && b == null) {
             return 0;
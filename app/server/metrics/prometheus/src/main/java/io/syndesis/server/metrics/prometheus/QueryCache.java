@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.metrics.prometheus;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Results of the queries sent to Prometheus, kept for a short time so that
+ * the metrics polled by many clients at once are queried once. A query asked
+ * for while the same query is in flight waits for its result. Failed queries
+ * and error responses are not kept.
+ */
+class QueryCache {
+
+    private final Function<HttpQuery, QueryResult> client;
+    private final Executor executor;
+    private final long ttlNanos;
+
+    // queries are values, equal queries share their result
+    private final Map<HttpQuery, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        final CompletableFuture<QueryResult> result = new CompletableFuture<>();
+        // System.nanoTime() of the completion of the query
+        volatile long completed;
+    }
+
+    /**
+     * @param client sends the query to Prometheus
+     * @param executor runs the queries
+     * @param ttl milliseconds to keep the results for
+     */
+    QueryCache(Function<HttpQuery, QueryResult> client, Executor executor, long ttl) {
+        this.client = client;
+        this.executor = executor;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+    }
+
+    CompletableFuture<QueryResult> query(HttpQuery query) {
+        final long now = System.nanoTime();
+        final Entry[] created = new Entry[1];
+
+        final Entry entry = entries.compute(query, (k, existing) -> {
+            if (existing != null && isUsable(existing, now)) {
+                return existing;
+            }
+            created[0] = new Entry();
+            return created[0];
+        });
+
+        if (created[0] != null) {
+            evictExpired(now);
+            send(query, created[0]);
+        }
+
+        return entry.result;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void send(HttpQuery query, Entry entry) {
+        try {
+            executor.execute(() -> {
+                try {
+                    final QueryResult result = client.apply(query);
+                    entry.completed = System.nanoTime();
+                    if (result.isError()) {
+                        entries.remove(query, entry);
+                    }
+                    entry.result.complete(result);
+                } catch (@SuppressWarnings("PMD.AvoidCatchingGenericException") RuntimeException e) {
+                    entries.remove(query, entry);
+                    entry.result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entries.remove(query, entry);
+            entry.result.completeExceptionally(e);
+        }
+    }
+
+    private void evictExpired(long now) {
+        entries.values().removeIf(e -> !isUsable(e, now));
+    }
+
+    private boolean isUsable(Entry entry, long now) {
+        if (!entry.result.isDone()) {
+            // in flight
+            return true;
+        }
+        return !entry.result.isCompletedExceptionally() && now - entry.completed < ttlNanos;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.metrics.prometheus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class QueryCacheTest {
+
+    private static final HttpQuery QUERY = query("org_apache_camel_ExchangesTotal");
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final AtomicInteger sent = new AtomicInteger();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldSendConcurrentQueriesOnce() throws Exception {
+        final CountDownLatch responding = new CountDownLatch(1);
+        final QueryCache cache = new QueryCache(q -> {
+            await(responding);
+            return respond("success");
+        }, executor, 60_000);
+
+        final CompletableFuture<QueryResult> first = cache.query(QUERY);
+        final CompletableFuture<QueryResult> second = cache.query(query("org_apache_camel_ExchangesTotal"));
+        assertThat(second).isSameAs(first).isNotDone();
+
+        responding.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo("success");
+        assertThat(cache.query(QUERY).get(5, TimeUnit.SECONDS)).isSameAs(first.get());
+        assertThat(sent).hasValue(1);
+    }
+
+    @Test
+    public void shouldSendDifferentQueries() throws Exception {
+        final QueryCache cache = new QueryCache(q -> respond("success"), executor, 60_000);
+
+        cache.query(QUERY).get(5, TimeUnit.SECONDS);
+        cache.query(query("org_apache_camel_ExchangesFailed")).get(5, TimeUnit.SECONDS);
+
+        assertThat(sent).hasValue(2);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldSendExpiredQueriesAgain() throws Exception {
+        final QueryCache cache = new QueryCache(q -> respond("success"), executor, 0);
+
+        cache.query(QUERY).get(5, TimeUnit.SECONDS);
+        cache.query(QUERY).get(5, TimeUnit.SECONDS);
+
+        assertThat(sent).hasValue(2);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotKeepFailures() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final Function<HttpQuery, QueryResult> client = q -> {
+            switch (calls.incrementAndGet()) {
+            case 1:
+                sent.incrementAndGet();
+                throw new IllegalStateException("unreachable");
+            case 2:
+                return respond("error");
+            default:
+                return respond("success");
+            }
+        };
+        final QueryCache cache = new QueryCache(client, executor, 60_000);
+
+        assertThatThrownBy(() -> cache.query(QUERY).get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(cache.query(QUERY).get(5, TimeUnit.SECONDS).isError()).isTrue();
+        assertThat(cache.query(QUERY).get(5, TimeUnit.SECONDS).isError()).isFalse();
+        assertThat(cache.query(QUERY).get(5, TimeUnit.SECONDS).isError()).isFalse();
+
+        assertThat(sent).hasValue(3);
+    }
+
+    private QueryResult respond(String status) {
+        sent.incrementAndGet();
+        return new QueryResult.Builder().status(status).build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static HttpQuery query(String metric) {
+        return new HttpQuery.Builder()
+            .host("syndesis-prometheus")
+            .metric(metric)
+            .addLabelValues("integration", "syndesis_io_component")
+            .build();
+    }
+}
@@ -15,6 +15,7 @@
  */
 package io.syndesis.server.monitoring;
 
+import java.util.Map;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -25,6 +26,7 @@ import org.springframework.stereotype.Service;
 
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.api.model.PodListBuilder;
 import io.fabric8.kubernetes.api.model.PodStatus;
 import io.fabric8.kubernetes.api.model.ReplicationController;
 import io.fabric8.kubernetes.client.internal.readiness.Readiness;
@@ -36,6 +38,7 @@ import io.syndesis.common.model.monitoring.IntegrationDeploymentDetailedState;
 import io.syndesis.common.model.monitoring.IntegrationDeploymentStateDetails;
 import io.syndesis.common.model.monitoring.LinkType;
 import io.syndesis.server.dao.manager.DataManager;
+import io.syndesis.server.openshift.IntegrationResourceCache;
 import io.syndesis.server.openshift.OpenShiftService;
 
 import static io.syndesis.common.model.integration.IntegrationDeploymentState.Pending;
@@ -58,15 +61,26 @@ public class PublishingStateMonitor implements StateHandler {
 
     private final NamespacedOpenShiftClient client;
     private final DataManager dataManager;
+    private IntegrationResourceCache cache;
 
     @Autowired
     public PublishingStateMonitor(DeploymentStateMonitor monitor, NamespacedOpenShiftClient client, DataManager dataManager) {
         this.client = client;
         this.dataManager = dataManager;
+        this.cache = new IntegrationResourceCache(client);
 
         monitor.register(Pending, this);
     }
 
+    /**
+     * Reads the pods, builds and replication controllers from the given cache
+     * instead of the API server.
+     */
+    @Autowired(required = false)
+    public void setResourceCache(IntegrationResourceCache cache) {
+        this.cache = cache;
+    }
+
     @Override
     public String getDescription() {
         return "Publishing state details";
@@ -208,29 +222,23 @@ public class PublishingStateMonitor implements StateHandler {
     }
 
     protected Optional<ReplicationController> getReplicationController(String integrationId, String version) {
-        return client.replicationControllers()
-                .withLabel(OpenShiftService.INTEGRATION_ID_LABEL, integrationId)
-                .withLabel(OpenShiftService.DEPLOYMENT_VERSION_LABEL, version)
-                .list().getItems().stream().findFirst();
+        return cache.getReplicationControllers(IntegrationResourceCache.deploymentLabels(integrationId, version))
+                .stream().findFirst();
     }
 
     protected Pod getPod(String podName) {
-        return client.pods().withName(podName).get();
+        return cache.getPod(podName);
     }
 
     protected Optional<Build> getBuild(String integrationId, String version) {
-        return client.builds()
-                            .withLabel(OpenShiftService.INTEGRATION_ID_LABEL, integrationId)
-                            .withLabel(OpenShiftService.DEPLOYMENT_VERSION_LABEL, version)
-                            .list()
-                .getItems().stream().findFirst();
+        return cache.getBuilds(IntegrationResourceCache.deploymentLabels(integrationId, version))
+                .stream().findFirst();
     }
 
     protected PodList getDeploymentPodList(String integrationId, String version) {
-        return client.pods()
-                        .withLabel(OpenShiftService.COMPONENT_LABEL, "integration")
-                        .withLabel(OpenShiftService.DEPLOYMENT_VERSION_LABEL, version)
-                        .withLabel(OpenShiftService.INTEGRATION_ID_LABEL, integrationId).list();
+        final Map<String, String> labels = IntegrationResourceCache.deploymentLabels(integrationId, version);
+        labels.put(OpenShiftService.COMPONENT_LABEL, "integration");
+        return new PodListBuilder().withItems(cache.getPods(labels)).build();
     }
 
     protected LinkType getPodUrls(Pod pod) {
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.openshift;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.ReplicationControllerList;
+import io.fabric8.kubernetes.client.dsl.base.OperationContext;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.SharedInformerFactory;
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.api.model.BuildList;
+import io.fabric8.openshift.api.model.DeploymentConfig;
+import io.fabric8.openshift.api.model.DeploymentConfigList;
+import io.fabric8.openshift.client.NamespacedOpenShiftClient;
+
+/**
+ * Local cache of the pods, builds, replication controllers and deployment
+ * configs of the integrations in the namespace, kept up to date by watching
+ * the API server and shared by the components polling the state of the
+ * integrations. Only the resources labeled with
+ * {@link OpenShiftService#INTEGRATION_ID_LABEL} are listed and watched, they
+ * are indexed by that label and {@link OpenShiftService#DEPLOYMENT_VERSION_LABEL}.
+ *
+ * Until the cache is started and the initial listing of a kind of resource is
+ * done, lookups of that kind are made against the API server. So are lookups
+ * by name of resources not found in the cache, e.g. build and deployer pods
+ * that aren't labeled as resources of an integration, and lookups by labels
+ * that don't include {@link OpenShiftService#INTEGRATION_ID_LABEL}.
+ */
+public class IntegrationResourceCache implements Closeable {
+
+    static final String INTEGRATION_INDEX = "integration";
+    static final String DEPLOYMENT_VERSION_INDEX = "deployment-version";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IntegrationResourceCache.class);
+
+    // selects the resources of the integrations, whatever their id
+    private static final Map<String, String> INTEGRATION_SELECTOR = Collections.singletonMap(OpenShiftService.INTEGRATION_ID_LABEL, null);
+
+    private final NamespacedOpenShiftClient client;
+
+    private SharedInformerFactory factory;
+    private volatile SharedIndexInformer<Pod> pods;
+    private volatile SharedIndexInformer<Build> builds;
+    private volatile SharedIndexInformer<ReplicationController> replicationControllers;
+    private volatile SharedIndexInformer<DeploymentConfig> deploymentConfigs;
+
+    public IntegrationResourceCache(NamespacedOpenShiftClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Lists and starts watching the resources, lookups are served from the
+     * cache as soon as the resources of their kind are listed.
+     */
+    public synchronized void start() {
+        if (factory != null) {
+            return;
+        }
+
+        LOGGER.info("Starting cache of the integration resources of namespace {}", client.getNamespace());
+        factory = client.informers();
+        pods = informer(Pod.class, PodList.class);
+        builds = informer(Build.class, BuildList.class);
+        replicationControllers = informer(ReplicationController.class, ReplicationControllerList.class);
+        deploymentConfigs = informer(DeploymentConfig.class, DeploymentConfigList.class);
+        factory.startAllRegisteredInformers();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (factory == null) {
+            return;
+        }
+
+        pods = null;
+        builds = null;
+        replicationControllers = null;
+        deploymentConfigs = null;
+        factory.stopAllRegisteredInformers();
+        factory = null;
+    }
+
+    public boolean hasSynced() {
+        return isSynced(pods) && isSynced(builds) && isSynced(replicationControllers) && isSynced(deploymentConfigs);
+    }
+
+    public Pod getPod(String name) {
+        return get(pods, name, () -> client.pods().withName(name).get());
+    }
+
+    /**
+     * Pods with all of the given labels, a label with a {@code null} value
+     * matches any value.
+     */
+    public List<Pod> getPods(Map<String, String> labels) {
+        return list(pods, labels, () -> client.pods().withLabels(exactLabels(labels)).list().getItems());
+    }
+
+    public List<Build> getBuilds(Map<String, String> labels) {
+        return list(builds, labels, () -> client.builds().withLabels(exactLabels(labels)).list().getItems());
+    }
+
+    public List<ReplicationController> getReplicationControllers(Map<String, String> labels) {
+        return list(replicationControllers, labels, () -> client.replicationControllers().withLabels(exactLabels(labels)).list().getItems());
+    }
+
+    public DeploymentConfig getDeploymentConfig(String name) {
+        return get(deploymentConfigs, name, () -> client.deploymentConfigs().withName(name).get());
+    }
+
+    public List<DeploymentConfig> getDeploymentConfigs(Map<String, String> labels) {
+        return list(deploymentConfigs, labels, () -> client.deploymentConfigs().withLabels(exactLabels(labels)).list().getItems());
+    }
+
+    /**
+     * Labels selecting the resources of a version of an integration.
+     */
+    public static Map<String, String> deploymentLabels(String integrationId, String version) {
+        final Map<String, String> labels = new HashMap<>();
+        labels.put(OpenShiftService.INTEGRATION_ID_LABEL, integrationId);
+        labels.put(OpenShiftService.DEPLOYMENT_VERSION_LABEL, version);
+        return labels;
+    }
+
+    /**
+     * Labels selecting the resources of all integrations with the given label,
+     * a {@code null} value matches any value.
+     */
+    public static Map<String, String> integrationLabels(String label, String value) {
+        final Map<String, String> labels = new HashMap<>();
+        labels.put(OpenShiftService.INTEGRATION_ID_LABEL, null);
+        labels.put(label, value);
+        return labels;
+    }
+
+    private <T extends HasMetadata, L extends KubernetesResourceList<T>> SharedIndexInformer<T> informer(Class<T> type, Class<L> listType) {
+        // no handlers are registered, there is nothing to resync
+        final SharedIndexInformer<T> informer = factory.sharedIndexInformerFor(type, listType, new OperationContext().withLabels(INTEGRATION_SELECTOR), 0);
+
+        final Map<String, Function<T, List<String>>> indexers = new HashMap<>();
+        indexers.put(INTEGRATION_INDEX, r -> indexValue(r, OpenShiftService.INTEGRATION_ID_LABEL));
+        indexers.put(DEPLOYMENT_VERSION_INDEX, r -> indexValue(r, OpenShiftService.INTEGRATION_ID_LABEL, OpenShiftService.DEPLOYMENT_VERSION_LABEL));
+        informer.addIndexers(indexers);
+
+        return informer;
+    }
+
+    private <T extends HasMetadata> T get(SharedIndexInformer<T> informer, String name, Supplier<T> live) {
+        if (!isSynced(informer)) {
+            return live.get();
+        }
+
+        final String namespace = client.getNamespace();
+        final T cached = informer.getIndexer().getByKey(namespace == null || namespace.isEmpty() ? name : namespace + "/" + name);
+        return cached != null ? cached : live.get();
+    }
+
+    private static <T extends HasMetadata> List<T> list(SharedIndexInformer<T> informer, Map<String, String> labels, Supplier<List<T>> live) {
+        final List<T> candidates;
+        if (!isSynced(informer) || !labels.containsKey(OpenShiftService.INTEGRATION_ID_LABEL)) {
+            candidates = live.get();
+        } else {
+            final String integrationId = labels.get(OpenShiftService.INTEGRATION_ID_LABEL);
+            final String version = labels.get(OpenShiftService.DEPLOYMENT_VERSION_LABEL);
+            if (integrationId != null && version != null) {
+                candidates = informer.getIndexer().byIndex(DEPLOYMENT_VERSION_INDEX, indexKey(integrationId, version));
+            } else if (integrationId != null) {
+                candidates = informer.getIndexer().byIndex(INTEGRATION_INDEX, integrationId);
+            } else {
+                candidates = informer.getIndexer().list();
+            }
+        }
+
+        return candidates.stream()
+            .filter(r -> hasLabels(r, labels))
+            .collect(Collectors.toList());
+    }
+
+    private static boolean isSynced(SharedIndexInformer<?> informer) {
+        return informer != null && informer.hasSynced();
+    }
+
+    private static List<String> indexValue(HasMetadata resource, String... labels) {
+        final Map<String, String> resourceLabels = resource.getMetadata().getLabels();
+        if (resourceLabels == null) {
+            return Collections.emptyList();
+        }
+
+        final String[] values = new String[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            values[i] = resourceLabels.get(labels[i]);
+            if (values[i] == null) {
+                return Collections.emptyList();
+            }
+        }
+        return Collections.singletonList(indexKey(values));
+    }
+
+    private static String indexKey(String... values) {
+        return String.join("/", values);
+    }
+
+    private static boolean hasLabels(HasMetadata resource, Map<String, String> labels) {
+        final Map<String, String> resourceLabels = resource.getMetadata().getLabels();
+        if (labels.isEmpty()) {
+            return true;
+        }
+        if (resourceLabels == null) {
+            return false;
+        }
+
+        for (Map.Entry<String, String> label : labels.entrySet()) {
+            final String value = resourceLabels.get(label.getKey());
+            if (value == null || label.getValue() != null && !label.getValue().equals(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, String> exactLabels(Map<String, String> labels) {
+        final Map<String, String> exact = new HashMap<>();
+        for (Map.Entry<String, String> label : labels.entrySet()) {
+            if (label.getValue() != null) {
+                exact.put(label.getKey(), label.getValue());
+            }
+        }
+        return exact;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.openshift;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Tokens the pods of an integration deployment authenticate their requests
+ * to the server with. Derived from a key of the server and the deployment,
+ * so that they don't need to be stored and are the same on every server.
+ */
+public final class IntegrationTokens {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    public IntegrationTokens(String key) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("The key of the integration tokens is required");
+        }
+        this.key = new SecretKeySpec(key.getBytes(UTF_8), ALGORITHM);
+    }
+
+    public String tokenOf(String integrationId, String deploymentVersion) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sign(integrationId, deploymentVersion));
+    }
+
+    public boolean isValid(String token, String integrationId, String deploymentVersion) {
+        if (token == null) {
+            return false;
+        }
+        // compared in constant time
+        return MessageDigest.isEqual(tokenOf(integrationId, deploymentVersion).getBytes(UTF_8), token.getBytes(UTF_8));
+    }
+
+    private byte[] sign(String integrationId, String deploymentVersion) {
+        try {
+            // not thread safe, and cheap to create compared to the requests
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal((integrationId + ':' + deploymentVersion).getBytes(UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to sign the token of integration " + integrationId, e);
+        }
+    }
+}
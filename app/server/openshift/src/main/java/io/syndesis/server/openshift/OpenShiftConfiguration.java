@@ -36,8 +36,18 @@ public class OpenShiftConfiguration {
 
     @Bean
     @ConditionalOnProperty(value = "openshift.enabled", matchIfMissing = true, havingValue = "true")
-    public OpenShiftService openShiftService(NamespacedOpenShiftClient openShiftClient, OpenShiftConfigurationProperties openShiftConfigurationProperties) {
-        return new OpenShiftServiceImpl(openShiftClient, openShiftConfigurationProperties);
+    public OpenShiftService openShiftService(NamespacedOpenShiftClient openShiftClient, OpenShiftConfigurationProperties openShiftConfigurationProperties, IntegrationResourceCache integrationResourceCache) {
+        return new OpenShiftServiceImpl(openShiftClient, openShiftConfigurationProperties, integrationResourceCache);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(value = "openshift.enabled", matchIfMissing = true, havingValue = "true")
+    public IntegrationResourceCache integrationResourceCache(NamespacedOpenShiftClient openShiftClient, OpenShiftConfigurationProperties openShiftConfigurationProperties) {
+        final IntegrationResourceCache cache = new IntegrationResourceCache(openShiftClient);
+        if (openShiftConfigurationProperties.isResourceCacheEnabled()) {
+            cache.start();
+        }
+        return cache;
     }
 
     @Bean
@@ -56,6 +56,8 @@ public class OpenShiftConfigurationProperties {
     private int maximumRetries = 3;
     private long pollingInterval = 5000;
 
+    private boolean resourceCacheEnabled = true;
+
     private Map<String, String> buildNodeSelector;
 
     private int integrationLivenessProbeInitialDelaySeconds;
@@ -206,6 +208,19 @@ public class OpenShiftConfigurationProperties {
         this.pollingInterval = pollingInterval;
     }
 
+    /**
+     * Whether the state of pods, builds, replication controllers and
+     * deployment configs is read from a watched local cache instead of the
+     * API server.
+     */
+    public boolean isResourceCacheEnabled() {
+        return resourceCacheEnabled;
+    }
+
+    public void setResourceCacheEnabled(boolean resourceCacheEnabled) {
+        this.resourceCacheEnabled = resourceCacheEnabled;
+    }
+
     public Map<String, String> getBuildNodeSelector() {
         return buildNodeSelector;
     }
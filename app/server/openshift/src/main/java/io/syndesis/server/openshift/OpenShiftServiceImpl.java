@@ -57,7 +57,7 @@ import io.fabric8.openshift.api.model.RouteSpec;
 import io.fabric8.openshift.api.model.User;
 import io.fabric8.openshift.api.model.UserBuilder;
 import io.fabric8.openshift.client.NamespacedOpenShiftClient;
-import io.fabric8.openshift.client.dsl.DeployableScalableResource;
+import io.fabric8.openshift.client.internal.readiness.OpenShiftReadiness;
 import io.syndesis.common.util.Names;
 import io.syndesis.common.util.SyndesisServerException;
 import io.syndesis.server.openshift.OpenShiftConfigurationProperties.SchedulingConfiguration;
@@ -74,10 +74,16 @@ public class OpenShiftServiceImpl implements OpenShiftService {
 
     private final NamespacedOpenShiftClient openShiftClient;
     private final OpenShiftConfigurationProperties config;
+    private final IntegrationResourceCache cache;
 
     public OpenShiftServiceImpl(NamespacedOpenShiftClient openShiftClient, OpenShiftConfigurationProperties config) {
+        this(openShiftClient, config, new IntegrationResourceCache(openShiftClient));
+    }
+
+    public OpenShiftServiceImpl(NamespacedOpenShiftClient openShiftClient, OpenShiftConfigurationProperties config, IntegrationResourceCache cache) {
         this.openShiftClient = openShiftClient;
         this.config = config;
+        this.cache = cache;
     }
 
     @Override
@@ -112,8 +118,8 @@ public class OpenShiftServiceImpl implements OpenShiftService {
     @Override
     public boolean isDeploymentReady(String name) {
         String sName = openshiftName(name);
-        final DeployableScalableResource<DeploymentConfig, DoneableDeploymentConfig> dc = openShiftClient.deploymentConfigs().withName(sName);
-        return dc.get() != null && dc.isReady();
+        final DeploymentConfig dc = cache.getDeploymentConfig(sName);
+        return dc != null && OpenShiftReadiness.isDeploymentConfigReady(dc);
     }
 
     @Override
@@ -166,7 +172,7 @@ public class OpenShiftServiceImpl implements OpenShiftService {
 
     @Override
     public boolean isScaled(String name, int desiredMinimumReplicas, Map<String, String> labels) {
-        List<DeploymentConfig> deploymentConfigs = getDeploymentsByLabel(labels);
+        List<DeploymentConfig> deploymentConfigs = cache.getDeploymentConfigs(labels);
         if (deploymentConfigs.isEmpty()) {
           return false;
         }
@@ -196,10 +202,9 @@ public class OpenShiftServiceImpl implements OpenShiftService {
 
     protected boolean checkBuildStatus(String name, String status){
         String sName = openshiftName(name);
-        return !openShiftClient.builds()
-            .withLabel("openshift.io/build-config.name", sName)
-            .withField("status", status)
-            .list().getItems().isEmpty();
+        return cache.getBuilds(Collections.singletonMap("openshift.io/build-config.name", sName))
+            .stream()
+            .anyMatch(b -> b.getStatus() != null && status.equals(b.getStatus().getPhase()));
     }
 
     @Override
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.openshift;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.openshift.api.model.BuildBuilder;
+import io.fabric8.openshift.client.NamespacedOpenShiftClient;
+import io.fabric8.openshift.client.server.mock.OpenShiftMockServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class IntegrationResourceCacheTest {
+
+    private OpenShiftMockServer server;
+    private NamespacedOpenShiftClient client;
+    private IntegrationResourceCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        server = new OpenShiftMockServer(true);
+        server.init();
+        client = server.createOpenShiftClient();
+        cache = new IntegrationResourceCache(client);
+
+        client.pods().create(pod("i-one-1", "one", "1"));
+        client.pods().create(pod("i-one-2", "one", "2"));
+        client.pods().create(pod("i-two-1", "two", "1"));
+        client.pods().create(new PodBuilder().withNewMetadata().withName("syndesis-server").endMetadata().build());
+        client.builds().create(new BuildBuilder()
+            .withNewMetadata()
+                .withName("i-one-1")
+                .withLabels(IntegrationResourceCache.deploymentLabels("one", "1"))
+            .endMetadata()
+            .build());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cache.close();
+        client.close();
+        server.destroy();
+    }
+
+    @Test
+    public void shouldQueryTheApiServerUntilStarted() {
+        assertThat(cache.hasSynced()).isFalse();
+
+        assertThat(cache.getPod("i-one-1")).isNotNull();
+        assertThat(names(cache.getPods(IntegrationResourceCache.deploymentLabels("one", "2")))).containsOnly("i-one-2");
+        assertThat(cache.getBuilds(IntegrationResourceCache.deploymentLabels("one", "1"))).hasSize(1);
+    }
+
+    @Test
+    public void shouldLookupCachedResources() {
+        cache.start();
+        await().atMost(10, SECONDS).until(cache::hasSynced);
+
+        assertThat(cache.getPod("i-one-1")).isNotNull();
+        assertThat(cache.getPod("i-three-1")).isNull();
+        assertThat(names(cache.getPods(IntegrationResourceCache.deploymentLabels("one", "2")))).containsOnly("i-one-2");
+        assertThat(names(cache.getPods(Collections.singletonMap(OpenShiftService.INTEGRATION_ID_LABEL, "one")))).containsOnly("i-one-1", "i-one-2");
+        assertThat(names(cache.getPods(Collections.singletonMap(OpenShiftService.INTEGRATION_ID_LABEL, null)))).containsOnly("i-one-1", "i-one-2", "i-two-1");
+        assertThat(names(cache.getPods(IntegrationResourceCache.integrationLabels(OpenShiftService.COMPONENT_LABEL, "integration")))).containsOnly("i-one-1", "i-one-2", "i-two-1");
+        assertThat(cache.getPods(Collections.emptyMap())).hasSize(4);
+        assertThat(cache.getBuilds(IntegrationResourceCache.deploymentLabels("one", "1"))).hasSize(1);
+        assertThat(cache.getBuilds(IntegrationResourceCache.deploymentLabels("two", "1"))).isEmpty();
+    }
+
+    @Test
+    public void shouldOnlyCacheResourcesOfIntegrations() throws InterruptedException {
+        cache.start();
+        await().atMost(10, SECONDS).until(cache::hasSynced);
+
+        // the pods are listed and watched with the selector
+        final List<String> selectors = new ArrayList<>();
+        RecordedRequest request;
+        while ((request = server.takeRequest(1, SECONDS)) != null) {
+            if ("GET".equals(request.getMethod()) && request.getRequestUrl().encodedPath().endsWith("/pods")) {
+                selectors.add(request.getRequestUrl().queryParameter("labelSelector"));
+            }
+        }
+        assertThat(selectors).isNotEmpty().containsOnly(OpenShiftService.INTEGRATION_ID_LABEL);
+
+        // pods of other components are looked up from the API server
+        assertThat(cache.getPod("syndesis-server")).isNotNull();
+        assertThat(cache.getPod("i-three-1")).isNull();
+    }
+
+    private static Pod pod(String name, String integrationId, String version) {
+        final Map<String, String> labels = IntegrationResourceCache.deploymentLabels(integrationId, version);
+        labels.put(OpenShiftService.COMPONENT_LABEL, "integration");
+
+        return new PodBuilder()
+            .withNewMetadata()
+                .withName(name)
+                .withLabels(labels)
+            .endMetadata()
+            .build();
+    }
+
+    private static List<String> names(List<Pod> pods) {
+        return pods.stream()
+            .map(p -> p.getMetadata().getName())
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.openshift;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IntegrationTokensTest {
+
+    private final IntegrationTokens tokens = new IntegrationTokens("server-key");
+
+    @Test
+    public void shouldAcceptTheTokenOfTheDeployment() {
+        String token = tokens.tokenOf("my-integration", "3");
+
+        assertThat(new IntegrationTokens("server-key").isValid(token, "my-integration", "3")).isTrue();
+    }
+
+    @Test
+    public void shouldRejectTheTokensOfOtherDeployments() {
+        String token = tokens.tokenOf("my-integration", "3");
+
+        assertThat(tokens.isValid(token, "my-integration", "4")).isFalse();
+        assertThat(tokens.isValid(token, "other-integration", "3")).isFalse();
+        assertThat(new IntegrationTokens("other-key").isValid(token, "my-integration", "3")).isFalse();
+        assertThat(tokens.isValid(null, "my-integration", "3")).isFalse();
+    }
+}
@@ -15,8 +15,21 @@
  */
 package io.syndesis.server.runtime;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.syndesis.common.util.cache.CacheManager;
 import io.syndesis.common.util.cache.LRUCacheManager;
+import io.syndesis.common.util.cache.SampledWeigher;
+import io.syndesis.common.util.cache.WeightedCache;
+import io.syndesis.common.util.cache.WeightedCacheManager;
+import io.syndesis.common.util.json.JsonUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
@@ -25,12 +38,83 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class CacheConfiguration {
 
+    // weight of values that can't be serialized
+    private static final long DEFAULT_WEIGHT = 1024;
+
+    // values of a type serialized to estimate the weight of the others
+    private static final int WEIGHING_RATE = 16;
+
     @Value("${cache.max.entries}")
     private int maxEntries;
 
+    // lru: bounded by the number of entries, weighted: bounded by the approximate size of the entries
+    @Value("${cache.type:lru}")
+    private String type;
+
+    @Value("${cache.max.weight:16777216}")
+    private long maxWeight;
+
+    @Value("${cache.ttl.seconds:0}")
+    private long ttlSeconds;
+
     @Bean
     @ConditionalOnMissingBean
-    public CacheManager syndesisCacheManager() {
+    public CacheManager syndesisCacheManager(Optional<MeterRegistry> registry) {
+        if ("weighted".equals(type)) {
+            WeightedCacheManager manager = new WeightedCacheManager(maxWeight, ttlSeconds, TimeUnit.SECONDS,
+                new SampledWeigher(CacheConfiguration::weigh, WEIGHING_RATE));
+            registry.ifPresent(r -> manager.onCacheCreated((name, cache) -> registerMetrics(r, name, cache)));
+            return manager;
+        }
+
         return new LRUCacheManager(maxEntries);
     }
+
+    private static void registerMetrics(MeterRegistry registry, String name, WeightedCache<?, ?> cache) {
+        Tags tags = Tags.of("cache", name);
+        FunctionCounter.builder("cache.gets", cache, WeightedCache::getHitCount)
+            .tags(tags).tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("cache.gets", cache, WeightedCache::getMissCount)
+            .tags(tags).tag("result", "miss")
+            .register(registry);
+        FunctionCounter.builder("cache.evictions", cache, WeightedCache::getEvictionCount)
+            .tags(tags)
+            .register(registry);
+        Gauge.builder("cache.size", cache, WeightedCache::size)
+            .tags(tags)
+            .register(registry);
+        Gauge.builder("cache.weight", cache, WeightedCache::getWeight)
+            .tags(tags)
+            .baseUnit("bytes")
+            .register(registry);
+    }
+
+    /**
+     * Approximates the size of the value by the size of its JSON, computed
+     * for one value in {@link #WEIGHING_RATE} of each type.
+     */
+    static long weigh(Object value) {
+        CountingOutputStream out = new CountingOutputStream();
+        try {
+            JsonUtils.writer().writeValue(out, value);
+        } catch (@SuppressWarnings("PMD.AvoidCatchingGenericException") IOException | RuntimeException e) {
+            return DEFAULT_WEIGHT;
+        }
+        return out.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
 }
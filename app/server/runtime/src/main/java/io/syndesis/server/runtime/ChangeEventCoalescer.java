@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.runtime;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import io.syndesis.common.model.ChangeEvent;
+import io.syndesis.common.util.EventBus;
+import io.syndesis.common.util.json.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces the change events sent to browser clients: change events received
+ * within a window are deduplicated by kind and id and sent as a single
+ * {@value #BATCH_EVENT} event holding the JSON array of the change events, so
+ * that clients refresh once per window instead of once per change. A change
+ * event without an id covers all the change events of its kind.
+ *
+ * Other events flush the pending change events and are sent as they are.
+ *
+ * Once the window is over the pending change events are flushed by sending
+ * the subscription a {@value #FLUSH_EVENT} event through the event bus, so
+ * that batches are sent from the subscriber's own queue like any other event
+ * and a slow client only holds up itself. With the synchronous event bus the
+ * flush is delivered on the coalescer's thread while events are delivered on
+ * the threads publishing them, so the events of a subscription are sent one
+ * at a time to keep them in order.
+ */
+public class ChangeEventCoalescer implements AutoCloseable {
+
+    public static final String BATCH_EVENT = "change-events";
+
+    static final String FLUSH_EVENT = "change-events-flush";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeEventCoalescer.class);
+
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param windowMillis how long to collect change events for, 0 to send
+     *            the events as they are
+     */
+    public ChangeEventCoalescer(long windowMillis) {
+        this.windowMillis = windowMillis;
+        if (windowMillis > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "change-event-coalescer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Creates a subscription sending the coalesced events to the given sender,
+     * called with the event type and data. The subscription is to be
+     * subscribed to the given bus with the given id.
+     */
+    public EventBus.Subscription coalesce(EventBus bus, String subscriptionId, BiConsumer<String, String> sender, Runnable onDisconnect) {
+        if (scheduler == null) {
+            return new EventBus.Subscription() {
+                @Override
+                public void onEvent(String event, String data) {
+                    sender.accept(event, data);
+                }
+
+                @Override
+                public void onDisconnect() {
+                    onDisconnect.run();
+                }
+
+                @Override
+                public boolean isLossy() {
+                    return true;
+                }
+            };
+        }
+
+        return new Buffer(bus, subscriptionId, sender, onDisconnect);
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    private final class Buffer implements EventBus.Subscription {
+        private final EventBus bus;
+        private final String subscriptionId;
+        private final BiConsumer<String, String> sender;
+        private final Runnable onDisconnect;
+
+        // held while sending, so that batches and events don't interleave
+        private final Object sending = new Object();
+
+        // guarded by this
+        private final Map<String, ChangeEvent> pending = new LinkedHashMap<>();
+        private boolean flushRequested;
+        private long flushRequestedAt;
+
+        Buffer(EventBus bus, String subscriptionId, BiConsumer<String, String> sender, Runnable onDisconnect) {
+            this.bus = bus;
+            this.subscriptionId = subscriptionId;
+            this.sender = sender;
+            this.onDisconnect = onDisconnect;
+        }
+
+        @Override
+        public void onEvent(String event, String data) {
+            ChangeEvent change = EventBus.Type.CHANGE_EVENT.equals(event) ? parse(data) : null;
+            if (change == null) {
+                // the pending change events are only locked while taken, the
+                // sending lock keeps the batch ahead of the events sent after
+                // it without holding up the collection of change events
+                synchronized (sending) {
+                    String batch = takeBatch();
+                    if (batch != null) {
+                        sender.accept(BATCH_EVENT, batch);
+                    }
+                    if (!FLUSH_EVENT.equals(event)) {
+                        sender.accept(event, data);
+                    }
+                }
+                return;
+            }
+
+            boolean schedule;
+            synchronized (this) {
+                add(change);
+                // requested again should the flush event have been dropped
+                long now = System.nanoTime();
+                schedule = !flushRequested || now - flushRequestedAt > TimeUnit.MILLISECONDS.toNanos(2 * windowMillis);
+                if (schedule) {
+                    flushRequested = true;
+                    flushRequestedAt = now;
+                }
+            }
+
+            if (schedule) {
+                try {
+                    scheduler.schedule(this::requestFlush, windowMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    LOG.debug("Coalescer closed, sending pending change events", e);
+                    requestFlush();
+                }
+            }
+        }
+
+        @Override
+        public void onDisconnect() {
+            synchronized (this) {
+                pending.clear();
+                flushRequested = false;
+            }
+            onDisconnect.run();
+        }
+
+        @Override
+        public boolean isLossy() {
+            return true;
+        }
+
+        private void add(ChangeEvent change) {
+            String kind = change.getKind().orElse("");
+            if (pending.containsKey(kind + "/")) {
+                // already covered by a change of the whole kind
+                return;
+            }
+
+            if (!change.getId().isPresent()) {
+                for (Iterator<ChangeEvent> i = pending.values().iterator(); i.hasNext();) {
+                    if (kind.equals(i.next().getKind().orElse(""))) {
+                        i.remove();
+                    }
+                }
+            }
+
+            String key = kind + "/" + change.getId().orElse("");
+            ChangeEvent previous = pending.remove(key);
+            if (previous != null
+                && Objects.equals(previous.getAction().orElse(null), EventBus.Action.CREATED)
+                && Objects.equals(change.getAction().orElse(null), EventBus.Action.UPDATED)) {
+                // the client still needs to learn about the creation
+                pending.put(key, previous);
+            } else {
+                pending.put(key, change);
+            }
+        }
+
+        private void requestFlush() {
+            bus.send(subscriptionId, FLUSH_EVENT, "");
+        }
+
+        private synchronized String takeBatch() {
+            flushRequested = false;
+            if (pending.isEmpty()) {
+                return null;
+            }
+
+            List<String> changes = new ArrayList<>(pending.size());
+            for (ChangeEvent change : pending.values()) {
+                changes.add(change.toJson());
+            }
+            pending.clear();
+
+            return "[" + String.join(",", changes) + "]";
+        }
+    }
+
+    private static ChangeEvent parse(String data) {
+        try {
+            return JsonUtils.reader().forType(ChangeEvent.class).readValue(data);
+        } catch (IOException e) {
+            LOG.debug("Unable to parse change event: {}", data, e);
+            return null;
+        }
+    }
+}
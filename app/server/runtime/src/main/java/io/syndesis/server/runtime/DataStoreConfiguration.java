@@ -15,7 +15,13 @@
  */
 package io.syndesis.server.runtime;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.syndesis.common.util.EventBus;
 import io.syndesis.common.util.IndexedProperty;
+import io.syndesis.server.jsondb.impl.CachingJsonDB;
+import io.syndesis.server.jsondb.impl.DocumentSqlJsonDB;
 import io.syndesis.server.jsondb.impl.Index;
 import io.syndesis.server.jsondb.impl.SqlJsonDB;
 import io.syndesis.common.model.Kind;
@@ -24,12 +30,16 @@ import org.skife.jdbi.v2.DBI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Creates and configures the main datastore
@@ -38,10 +48,13 @@ import java.util.Optional;
 public class DataStoreConfiguration {
     private static final Logger LOG = LoggerFactory.getLogger(Migrations.class);
 
+    // changes to the JsonDB are published here and not on the application
+    // event bus, that one forwards all events to the browser clients
+    private final EventBus jsondbEvents = new SimpleEventBus();
+
     @Bean
     @Autowired
-    @SuppressWarnings("PMD.EmptyCatchBlock")
-    public SqlJsonDB jsonDB(DBI dbi, Optional<List<Index>> beanIndexes) {
+    public SqlJsonDB jsonDB(DBI dbi, Optional<List<Index>> beanIndexes, @Value("${dao.jsondb.storage:record}") String storage) {
 
         ArrayList<Index> indexes = new ArrayList<>();
         if(beanIndexes.isPresent()) {
@@ -64,20 +77,75 @@ public class DataStoreConfiguration {
                     addIndex(indexes, kind, p);
                 }
             }
+
+            IndexedProperty.Composite composite = kind.getModelClass().getAnnotation(IndexedProperty.Composite.class);
+            if (composite != null) {
+                List<String> fields = new ArrayList<>();
+                for (String field : composite.value()) {
+                    fields.add(field.replace('.', '/'));
+                }
+                indexes.add(new Index("/" + kind.getModelName() + "s", fields));
+            }
+        }
+
+        // "document" stores each collection member as a single record, "record"
+        // stores each value of the JSON tree as a record
+        if ("document".equals(storage)) {
+            DocumentSqlJsonDB jsondb = new DocumentSqlJsonDB(dbi, jsondbEvents, indexes);
+            createTables(jsondb);
+            jsondb.migrateToDocuments();
+            return jsondb;
         }
 
-        SqlJsonDB jsondb = new SqlJsonDB(dbi, null, indexes);
+        SqlJsonDB jsondb = new SqlJsonDB(dbi, jsondbEvents, indexes);
+        createTables(jsondb);
+        return jsondb;
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(value = "dao.jsondb.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public CachingJsonDB cachingJsonDB(SqlJsonDB jsondb, Optional<MeterRegistry> registry,
+                                       @Value("${dao.jsondb.cache.max-bytes:67108864}") long maximumSize) {
+        List<String> collections = new ArrayList<>();
+        for (Kind kind : Kind.values()) {
+            collections.add("/" + kind.getPluralModelName());
+        }
+
+        CachingJsonDB cache = new CachingJsonDB(jsondb, collections, maximumSize).subscribeTo(jsondbEvents);
+        registry.ifPresent(r -> registerMetrics(r, cache));
+
+        return cache;
+    }
+
+    private static void registerMetrics(MeterRegistry registry, CachingJsonDB cache) {
+        counter(registry, "jsondb.cache.hits", cache, CachingJsonDB::getHits);
+        counter(registry, "jsondb.cache.misses", cache, CachingJsonDB::getMisses);
+        counter(registry, "jsondb.cache.evictions", cache, CachingJsonDB::getEvictions);
+        counter(registry, "jsondb.cache.invalidations", cache, CachingJsonDB::getInvalidations);
+        Gauge.builder("jsondb.cache.size", cache, CachingJsonDB::getSize)
+            .baseUnit("bytes")
+            .register(registry);
+        Gauge.builder("jsondb.cache.entries", cache, CachingJsonDB::getEntryCount)
+            .register(registry);
+    }
+
+    private static void counter(MeterRegistry registry, String name, CachingJsonDB cache, ToDoubleFunction<CachingJsonDB> count) {
+        FunctionCounter.builder(name, cache, count).register(registry);
+    }
+
+    @SuppressWarnings("PMD.EmptyCatchBlock")
+    private static void createTables(SqlJsonDB jsondb) {
         try {
             jsondb.createTables();
         } catch (@SuppressWarnings("PMD.AvoidCatchingGenericException") Exception ignore) {
             LOG.debug("Could not create tables", ignore);
         }
-        return jsondb;
     }
 
     private static void addIndex(List<Index> indexes, Kind kind, IndexedProperty indexedProperty) {
         if (indexedProperty != null) {
-            indexes.add(new Index("/" + kind.getModelName() + "s", indexedProperty.value()));
+            indexes.add(new Index("/" + kind.getModelName() + "s", indexedProperty.value().replace('.', '/')));
         }
     }
 
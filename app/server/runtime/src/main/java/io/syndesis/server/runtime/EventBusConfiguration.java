@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.runtime;
+
+import java.util.Locale;
+import java.util.Optional;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class EventBusConfiguration {
+
+    // sync: deliver events on the thread sending them, async: per subscriber queues
+    @Value("${eventbus.mode:sync}")
+    private String mode;
+
+    @Value("${eventbus.threads:4}")
+    private int threads;
+
+    @Value("${eventbus.queue.capacity:1000}")
+    private int queueCapacity;
+
+    // drop-oldest, coalesce or disconnect
+    @Value("${eventbus.overflow:drop-oldest}")
+    private String overflow;
+
+    // how long change events sent to browser clients are collected for, 0 to send them one by one
+    @Value("${eventbus.coalesce.window.millis:0}")
+    private long coalesceWindowMillis;
+
+    @Bean
+    public ChangeEventCoalescer changeEventCoalescer() {
+        return new ChangeEventCoalescer(coalesceWindowMillis);
+    }
+
+    @Bean
+    public SimpleEventBus eventBus(Optional<MeterRegistry> registry) {
+        if (!"async".equals(mode)) {
+            return new SimpleEventBus();
+        }
+
+        SimpleEventBus.OverflowPolicy policy = SimpleEventBus.OverflowPolicy.valueOf(overflow.toUpperCase(Locale.US).replace('-', '_'));
+        SimpleEventBus bus = new SimpleEventBus(threads, queueCapacity, policy);
+        registry.ifPresent(r -> registerMetrics(r, bus));
+        return bus;
+    }
+
+    private static void registerMetrics(MeterRegistry registry, SimpleEventBus bus) {
+        Gauge.builder("eventbus.queue.depth", bus, SimpleEventBus::getQueueDepth)
+            .register(registry);
+        FunctionCounter.builder("eventbus.events.dropped", bus, SimpleEventBus::getDroppedCount)
+            .tag("reason", "overflow")
+            .register(registry);
+        FunctionCounter.builder("eventbus.events.dropped", bus, SimpleEventBus::getCoalescedCount)
+            .tag("reason", "coalesced")
+            .register(registry);
+        FunctionCounter.builder("eventbus.subscribers.disconnected", bus, SimpleEventBus::getDisconnectedCount)
+            .register(registry);
+    }
+}
@@ -45,13 +45,15 @@ public class EventBusToServerSentEvents implements UndertowDeploymentInfoCustomi
     protected final SyndesisCorsConfiguration cors;
     protected final EventBus bus;
     protected final EventReservationsHandler eventReservationsHandler;
+    protected final ChangeEventCoalescer coalescer;
     protected String path = DEFAULT_PATH;
 
     @Autowired
-    public EventBusToServerSentEvents(SyndesisCorsConfiguration cors, EventBus bus, EventReservationsHandler eventReservationsHandler) {
+    public EventBusToServerSentEvents(SyndesisCorsConfiguration cors, EventBus bus, EventReservationsHandler eventReservationsHandler, ChangeEventCoalescer coalescer) {
         this.cors = cors;
         this.bus = bus;
         this.eventReservationsHandler = eventReservationsHandler;
+        this.coalescer = coalescer;
     }
 
     public class EventBusHandler implements ServerSentEventConnectionCallback {
@@ -69,13 +71,14 @@ public class EventBusToServerSentEvents implements UndertowDeploymentInfoCustomi
             LOG.debug("Principal is: {}", reservation.getPrincipal());
             connection.send("connected", "message", null, null);
             connection.setKeepAliveTime(25*1000);
-            bus.subscribe(subscriptionId, (type, data)->{
+            bus.subscribe(subscriptionId, coalescer.coalesce(bus, subscriptionId, (type, data)->{
                 if( connection.isOpen() ) {
                     connection.send(data, type, null, null);
                 } else {
                     bus.unsubscribe(subscriptionId);
                 }
-            });
+            }, connection::shutdown));
+            connection.addCloseTask(c -> bus.unsubscribe(subscriptionId));
         }
 
     }
@@ -49,8 +49,8 @@ public class EventBusToWebSocket extends EventBusToServerSentEvents {
 
 
     @Autowired
-    public EventBusToWebSocket(SyndesisCorsConfiguration cors, EventBus bus, EventReservationsHandler eventReservationsHandler) {
-        super(cors, bus, eventReservationsHandler);
+    public EventBusToWebSocket(SyndesisCorsConfiguration cors, EventBus bus, EventReservationsHandler eventReservationsHandler, ChangeEventCoalescer coalescer) {
+        super(cors, bus, eventReservationsHandler, coalescer);
         path = DEFAULT_PATH;
     }
 
@@ -87,13 +87,14 @@ public class EventBusToWebSocket extends EventBusToServerSentEvents {
             LOG.debug("Principal is: {}", reservation.getPrincipal());
             connection.send("connected", "message", null, null);
             connection.setKeepAliveTime(25*1000);
-            bus.subscribe(subscriptionId, (type, data) -> {
+            bus.subscribe(subscriptionId, coalescer.coalesce(bus, subscriptionId, (type, data) -> {
                 if (connection.isOpen()) {
                     connection.send(data, type, null, null);
                 } else {
                     bus.unsubscribe(subscriptionId);
                 }
-            });
+            }, connection::shutdown));
+            connection.addCloseTask(c -> bus.unsubscribe(subscriptionId));
         }
 
     }
@@ -113,13 +114,14 @@ public class EventBusToWebSocket extends EventBusToServerSentEvents {
             }
             LOG.debug("Principal is: {}", reservation.getPrincipal());
             send(channel, "message", "connected");
-            bus.subscribe(subscriptionId, (type, data) -> {
+            bus.subscribe(subscriptionId, coalescer.coalesce(bus, subscriptionId, (type, data) -> {
                 if (channel.isOpen()) {
                     send(channel, type, data);
                 } else {
                     bus.unsubscribe(subscriptionId);
                 }
-            });
+            }, () -> safeClose(channel)));
+            channel.addCloseTask(c -> bus.unsubscribe(subscriptionId));
         }
 
         private void safeClose(WebSocketChannel channel) {
@@ -18,6 +18,8 @@ package io.syndesis.server.runtime;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.annotation.PostConstruct;
 
@@ -97,6 +99,17 @@ public class Migrations {
         } else {
             LOG.info("DB schema has not changed: {}", getTargetVersion());
         }
+
+        // entries of indexes are only maintained as values are written,
+        // values written before an index was added need to be indexed
+        final String indexes = Stream.concat(jsondb.getIndexPaths().stream(), jsondb.getCompositeIndexPaths().stream())
+            .sorted()
+            .collect(Collectors.joining(","));
+        if (!indexes.equals(storedSettings.get("jsondb_indexes"))) {
+            LOG.info("JsonDB indexes changed, reindexing.");
+            jsondb.reindex();
+            storedSettings.set("jsondb_indexes", indexes);
+        }
         manager.resetDeploymentData();
 
         return null;
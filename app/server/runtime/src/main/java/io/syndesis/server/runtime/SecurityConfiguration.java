@@ -51,6 +51,8 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
         "/actuator/health"
     };
 
+    private static final String ACTIVITY_INGESTION_PATH = "/api/v1/activity/pods/*";
+
     @Override
     protected void configure(AuthenticationManagerBuilder authenticationManagerBuilder) {
         authenticationManagerBuilder.authenticationProvider(authenticationProvider());
@@ -67,6 +69,8 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
             .antMatchers(HttpMethod.OPTIONS).permitAll()
             .antMatchers(COMMON_NON_SECURED_PATHS).permitAll()
             .antMatchers(HttpMethod.GET, "/api/v1/credentials/callback").permitAll()
+            // pushed by the integration pods, authenticated by the token of their deployment
+            .antMatchers(HttpMethod.POST, ACTIVITY_INGESTION_PATH).permitAll()
             .antMatchers("/api/v1/**").hasRole("AUTHENTICATED")
             .anyRequest().permitAll();
 
@@ -74,6 +78,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
             .ignoringAntMatchers(COMMON_NON_SECURED_PATHS)
             .ignoringAntMatchers("/api/v1/credentials/callback")
             .ignoringAntMatchers("/api/v1/atlas/**")
+            .ignoringAntMatchers(ACTIVITY_INGESTION_PATH)
             .csrfTokenRepository(new SyndesisCsrfRepository());
     }
 
@@ -15,44 +15,306 @@
  */
 package io.syndesis.server.runtime;
 
+import java.util.ArrayDeque;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import io.syndesis.common.util.EventBus;
-import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A simple event bus to abstract registering/sending Server Sent Events to browser clients
  * which have a subscribed to events.  This could potentially be implemented using a messaging broker.
+ *
+ * By default events are delivered on the thread sending them. In asynchronous mode each
+ * subscriber has a queue of events delivered in order on a shared pool of threads, so that
+ * slow subscribers don't hold up the sender. The queues of {@link Subscription#isLossy() lossy}
+ * subscriptions are bounded and the {@link OverflowPolicy} decides what happens once one is
+ * full, other subscriptions get every event.
  */
-@Component
-public class SimpleEventBus implements EventBus {
+public class SimpleEventBus implements EventBus, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SimpleEventBus.class);
+
+    // events delivered to a subscriber before giving other subscribers a turn
+    private static final int BATCH_SIZE = 64;
+
+    public enum OverflowPolicy {
+        /** drops the oldest queued event */
+        DROP_OLDEST,
+        /** skips events identical to a queued one, drops the oldest queued event when full */
+        COALESCE,
+        /** drops the subscription, see {@link Subscription#onDisconnect()} */
+        DISCONNECT
+    }
+
+    private final ConcurrentHashMap<String, Subscriber> subscriptions = new ConcurrentHashMap<>();
+
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
 
-    private final ConcurrentHashMap<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    public SimpleEventBus() {
+        this(null, null, 0, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Creates an event bus delivering the events asynchronously.
+     * @param threads number of threads delivering events
+     * @param queueCapacity maximum number of events queued per subscriber
+     * @param overflowPolicy what to do when a subscriber's queue is full
+     */
+    public SimpleEventBus(int threads, int queueCapacity, OverflowPolicy overflowPolicy) {
+        this(newExecutor(threads), queueCapacity, overflowPolicy);
+    }
+
+    SimpleEventBus(Executor executor, int queueCapacity, OverflowPolicy overflowPolicy) {
+        this(executor, null, queueCapacity, overflowPolicy);
+    }
+
+    private SimpleEventBus(ExecutorService ownedExecutor, int queueCapacity, OverflowPolicy overflowPolicy) {
+        this(ownedExecutor, ownedExecutor, queueCapacity, overflowPolicy);
+    }
+
+    private SimpleEventBus(Executor executor, ExecutorService ownedExecutor, int queueCapacity, OverflowPolicy overflowPolicy) {
+        this.executor = executor;
+        this.ownedExecutor = ownedExecutor;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+    }
 
     @Override
     public Subscription subscribe(String subscriberId, Subscription handler) {
-        return subscriptions.put(subscriberId, handler);
+        Subscriber previous = subscriptions.put(subscriberId, new Subscriber(subscriberId, handler));
+        return release(previous);
     }
+
     @Override
     public Subscription unsubscribe(String subscriberId) {
-        return subscriptions.remove(subscriberId);
+        return release(subscriptions.remove(subscriberId));
     }
 
     @Override
     public void broadcast(String event, String data) {
-        for (Map.Entry<String, Subscription> entry : subscriptions.entrySet()) {
+        for (Map.Entry<String, Subscriber> entry : subscriptions.entrySet()) {
             entry.getValue().onEvent(event, data);
         }
     }
 
     @Override
     public void send(String subscriberId, String event, String data) {
-        Subscription sub = subscriptions.get(subscriberId);
+        Subscriber sub = subscriptions.get(subscriberId);
         if( sub!=null ) {
             sub.onEvent(event, data);
         }
     }
 
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Returns the number of events queued for all subscribers.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Subscriber subscriber : subscriptions.values()) {
+            depth += subscriber.size();
+        }
+        return depth;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getDisconnectedCount() {
+        return disconnected.sum();
+    }
+
+    private static Subscription release(Subscriber subscriber) {
+        if (subscriber == null) {
+            return null;
+        }
+        subscriber.close();
+        return subscriber.handler;
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "event-bus-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, factory);
+    }
+
+    private static final class Event {
+        private final String type;
+        private final String data;
+
+        Event(String type, String data) {
+            this.type = type;
+            this.data = data;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Event)) {
+                return false;
+            }
+            Event other = (Event) obj;
+            return Objects.equals(type, other.type) && Objects.equals(data, other.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, data);
+        }
+    }
+
+    private final class Subscriber implements Runnable {
+        private final String id;
+        private final Subscription handler;
+        private final boolean lossy;
+
+        // guarded by this
+        private final Queue<Event> queue = new ArrayDeque<>();
+        private final Set<Event> queued = new HashSet<>();
+        private boolean scheduled;
+        private boolean closed;
+
+        Subscriber(String id, Subscription handler) {
+            this.id = id;
+            this.handler = handler;
+            this.lossy = handler.isLossy();
+        }
 
+        void onEvent(String type, String data) {
+            if (executor == null) {
+                handler.onEvent(type, data);
+                return;
+            }
+
+            boolean schedule = false;
+            boolean disconnect = false;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                Event event = new Event(type, data);
+                if (lossy && overflowPolicy == OverflowPolicy.COALESCE && queued.contains(event)) {
+                    coalesced.increment();
+                    return;
+                }
+                if (lossy && queue.size() >= queueCapacity) {
+                    if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                        disconnect = true;
+                    } else {
+                        queued.remove(queue.poll());
+                        dropped.increment();
+                    }
+                }
+                if (!disconnect) {
+                    queue.add(event);
+                    if (lossy && overflowPolicy == OverflowPolicy.COALESCE) {
+                        queued.add(event);
+                    }
+                    schedule = !scheduled;
+                    scheduled = true;
+                }
+            }
+
+            if (disconnect) {
+                disconnect();
+            } else if (schedule) {
+                dispatch();
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Event event;
+                synchronized (this) {
+                    event = queue.poll();
+                    if (event == null) {
+                        scheduled = false;
+                        return;
+                    }
+                    queued.remove(event);
+                }
+                try {
+                    handler.onEvent(event.type, event.data);
+                } catch (@SuppressWarnings("PMD.AvoidCatchingGenericException") RuntimeException e) {
+                    LOG.warn("Subscriber {} failed to handle event {}", id, event.type, e);
+                }
+            }
+
+            synchronized (this) {
+                if (queue.isEmpty()) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            dispatch();
+        }
+
+        synchronized int size() {
+            return queue.size();
+        }
+
+        synchronized void close() {
+            closed = true;
+            queue.clear();
+            queued.clear();
+        }
+
+        private void dispatch() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Event bus closed, dropping events of subscriber {}", id, e);
+                close();
+            }
+        }
+
+        private void disconnect() {
+            if (subscriptions.remove(id, this)) {
+                close();
+                disconnected.increment();
+                LOG.warn("Subscriber {} can't keep up with the events, disconnecting it", id);
+                try {
+                    handler.onDisconnect();
+                } catch (@SuppressWarnings("PMD.AvoidCatchingGenericException") RuntimeException e) {
+                    LOG.warn("Subscriber {} failed to disconnect", id, e);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.syndesis.server.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.syndesis.common.model.ChangeEvent;
+import io.syndesis.common.util.EventBus;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChangeEventCoalescerTest {
+
+    @Test
+    public void shouldSendEventsAsTheyAreWithoutWindow() {
+        List<String> sent = new ArrayList<>();
+        try (ChangeEventCoalescer coalescer = new ChangeEventCoalescer(0)) {
+            EventBus.Subscription subscription = coalescer.coalesce(new SimpleEventBus(), "a", (type, data) -> sent.add(type + ":" + data), () -> {});
+
+            subscription.onEvent(EventBus.Type.CHANGE_EVENT, change(EventBus.Action.UPDATED, "integration", "1"));
+            subscription.onEvent(EventBus.Type.CHANGE_EVENT, change(EventBus.Action.UPDATED, "integration", "1"));
+        }
+
+        assertThat(sent).hasSize(2).allMatch(e -> e.startsWith(EventBus.Type.CHANGE_EVENT + ":"));
+    }
+
+    @Test
+    public void shouldDeduplicateChangesWithinWindow() {
+        List<String> sent = new ArrayList<>();
+        try (ChangeEventCoalescer coalescer = new ChangeEventCoalescer(60_000)) {
+            EventBus.Subscription subscription = coalescer.coalesce(new SimpleEventBus(), "a", (type, data) -> sent.add(type + ":" + data), () -> {});
+
+            subscription.onEvent(EventBus.Type.CHANGE_EVENT, change(EventBus.Action.CREATED, "integration", "1"));
+            subscription.onEvent(EventBus.Type.CHANGE_EVENT, change(EventBus.Action.UPDATED, "integration", "1"));
+            subscription.onEvent(EventBus.Type.CHANGE_EVENT, change(EventBus.Action.UPDATED, "connection", "2"));
+            subscription.onEvent(EventBus.Type.CHANGE_EVENT, change(EventBus.Action.DELETED, "connection", "2"));
+            assertThat(sent).isEmpty();
+
+            // other events flush the pending changes first
+            subscription.onEvent("message", "hello");
+        }
+
+        assertThat(sent).containsExactly(
+            ChangeEventCoalescer.BATCH_EVENT + ":["
+                + change(EventBus.Action.CREATED, "integration", "1") + ","
+                + change(EventBus.Action.DELETED, "connection", "2") + "]",
+            "message:hello");
+    }
+
+    @Test
+    public void shouldCoverChangesOfKindWithoutId() {
+        List<String> sent = new ArrayList<>();
+        try (ChangeEventCoalescer coalescer = new ChangeEventCoalescer(60_000)) {
+            EventBus.Subscription subscription = coalescer.coalesce(new SimpleEventBus(), "a", (type, data) -> sent.add(data), () -> {});
+
+            subscription.onEvent(EventBus.Type.CHANGE_EVENT, change(EventBus.Action.UPDATED, "integration", "1"));
+            subscription.onEvent(EventBus.Type.CHANGE_EVENT, new ChangeEvent.Builder().action(EventBus.Action.DELETED).kind("integration").build().toJson());
+            subscription.onEvent(EventBus.Type.CHANGE_EVENT, change(EventBus.Action.UPDATED, "integration", "2"));
+            subscription.onEvent("message", "flush");
+        }
+
+        assertThat(sent).containsExactly(
+            "[" + new ChangeEvent.Builder().action(EventBus.Action.DELETED).kind("integration").build().toJson() + "]",
+            "flush");
+    }
+
+    @Test
+    public void shouldSendBatchAfterWindow() throws InterruptedException {
+        CountDownLatch sent = new CountDownLatch(1);
+        List<String> batches = new ArrayList<>();
+        try (ChangeEventCoalescer coalescer = new ChangeEventCoalescer(50)) {
+            EventBus bus = new SimpleEventBus();
+            bus.subscribe("a", coalescer.coalesce(bus, "a", (type, data) -> {
+                batches.add(data);
+                sent.countDown();
+            }, () -> {}));
+
+            bus.broadcast(EventBus.Type.CHANGE_EVENT, change(EventBus.Action.UPDATED, "integration", "1"));
+            bus.broadcast(EventBus.Type.CHANGE_EVENT, change(EventBus.Action.UPDATED, "integration", "2"));
+
+            assertThat(sent.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+
+        assertThat(batches).containsExactly("[" + change(EventBus.Action.UPDATED, "integration", "1") + ","
+            + change(EventBus.Action.UPDATED, "integration", "2") + "]");
+    }
+
+    @Test
+    public void shouldNotHoldUpOtherClientsWhileSendingBatch() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch sent = new CountDownLatch(1);
+        try (ChangeEventCoalescer coalescer = new ChangeEventCoalescer(10);
+            SimpleEventBus bus = new SimpleEventBus(2, 100, SimpleEventBus.OverflowPolicy.DROP_OLDEST)) {
+            bus.subscribe("slow", coalescer.coalesce(bus, "slow", (type, data) -> {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, () -> {}));
+
+            bus.send("slow", EventBus.Type.CHANGE_EVENT, change(EventBus.Action.UPDATED, "integration", "1"));
+            assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // the slow client is busy sending its batch, which only holds up
+            // its own events and leaves the coalescer free to flush the others
+            bus.subscribe("fast", coalescer.coalesce(bus, "fast", (type, data) -> sent.countDown(), () -> {}));
+            bus.send("fast", EventBus.Type.CHANGE_EVENT, change(EventBus.Action.UPDATED, "integration", "2"));
+            bus.send("slow", EventBus.Type.CHANGE_EVENT, change(EventBus.Action.UPDATED, "integration", "3"));
+
+            assertThat(sent.await(5, TimeUnit.SECONDS)).isTrue();
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void shouldSendBatchBeforeEventsWithSynchronousBus() throws InterruptedException {
+        CountDownLatch sendingBatch = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        AtomicInteger sending = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        try (ChangeEventCoalescer coalescer = new ChangeEventCoalescer(10)) {
+            EventBus bus = new SimpleEventBus();
+            bus.subscribe("a", coalescer.coalesce(bus, "a", (type, data) -> {
+                if (sending.incrementAndGet() > 1) {
+                    overlapped.set(true);
+                }
+                sent.add(type);
+                if (ChangeEventCoalescer.BATCH_EVENT.equals(type)) {
+                    sendingBatch.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                sending.decrementAndGet();
+            }, () -> {}));
+
+            // the batch is flushed on the thread of the coalescer
+            bus.send("a", EventBus.Type.CHANGE_EVENT, change(EventBus.Action.UPDATED, "integration", "1"));
+            assertThat(sendingBatch.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // while the event is sent on the thread publishing it
+            Thread publisher = new Thread(() -> bus.send("a", "message", "hello"));
+            publisher.start();
+            publisher.join(100);
+            assertThat(publisher.isAlive()).isTrue();
+
+            release.countDown();
+            publisher.join(5000);
+        }
+
+        assertThat(overlapped).isFalse();
+        assertThat(sent).containsExactly(ChangeEventCoalescer.BATCH_EVENT, "message");
+    }
+
+    private static String change(String action, String kind, String id) {
+        return ChangeEvent.of(action, kind, id).toJson();
+    }
+}
@@ -15,12 +15,19 @@
  */
 package io.syndesis.server.runtime;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.syndesis.common.util.EventBus;
 import org.junit.jupiter.api.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
@@ -84,4 +91,150 @@ public class SimpleEventBusTest {
         assertEquals("data", sub2[1]);
     }
 
+    @Test
+    public void testAsyncDelivery() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(100);
+        List<String> received = new ArrayList<>();
+        try (SimpleEventBus eventBus = new SimpleEventBus(2, 1000, SimpleEventBus.OverflowPolicy.DROP_OLDEST)) {
+            eventBus.subscribe("a", (event, data) -> {
+                received.add(data);
+                done.countDown();
+            });
+
+            for (int i = 0; i < 100; i++) {
+                eventBus.send("a", "text", Integer.toString(i));
+            }
+
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 100; i++) {
+                assertEquals(Integer.toString(i), received.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testDropOldest() {
+        ManualExecutor executor = new ManualExecutor();
+        SimpleEventBus eventBus = new SimpleEventBus(executor, 2, SimpleEventBus.OverflowPolicy.DROP_OLDEST);
+        List<String> received = new ArrayList<>();
+        eventBus.subscribe("a", lossy(received));
+
+        eventBus.send("a", "text", "1");
+        eventBus.send("a", "text", "2");
+        eventBus.send("a", "text", "3");
+        assertThat(eventBus.getQueueDepth()).isEqualTo(2);
+
+        executor.runAll();
+        assertThat(received).containsExactly("2", "3");
+        assertThat(eventBus.getDroppedCount()).isEqualTo(1);
+        assertThat(eventBus.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void testCoalesce() {
+        ManualExecutor executor = new ManualExecutor();
+        SimpleEventBus eventBus = new SimpleEventBus(executor, 2, SimpleEventBus.OverflowPolicy.COALESCE);
+        List<String> received = new ArrayList<>();
+        eventBus.subscribe("a", lossy(received));
+
+        eventBus.send("a", "change-event", "/integrations/:1");
+        eventBus.send("a", "change-event", "/integrations/:1");
+        eventBus.send("a", "change-event", "/integrations/:2");
+        eventBus.send("a", "change-event", "/integrations/:3");
+
+        executor.runAll();
+        assertThat(received).containsExactly("/integrations/:2", "/integrations/:3");
+        assertThat(eventBus.getCoalescedCount()).isEqualTo(1);
+        assertThat(eventBus.getDroppedCount()).isEqualTo(1);
+
+        // delivered events are no longer coalesced
+        eventBus.send("a", "change-event", "/integrations/:2");
+        executor.runAll();
+        assertThat(received).containsExactly("/integrations/:2", "/integrations/:3", "/integrations/:2");
+    }
+
+    @Test
+    public void testDisconnect() {
+        ManualExecutor executor = new ManualExecutor();
+        SimpleEventBus eventBus = new SimpleEventBus(executor, 1, SimpleEventBus.OverflowPolicy.DISCONNECT);
+        List<String> received = new ArrayList<>();
+        AtomicBoolean disconnected = new AtomicBoolean();
+        eventBus.subscribe("a", new EventBus.Subscription() {
+            @Override
+            public void onEvent(String event, String data) {
+                received.add(data);
+            }
+
+            @Override
+            public void onDisconnect() {
+                disconnected.set(true);
+            }
+
+            @Override
+            public boolean isLossy() {
+                return true;
+            }
+        });
+
+        eventBus.send("a", "text", "1");
+        eventBus.send("a", "text", "2");
+        assertThat(disconnected).isTrue();
+        assertThat(eventBus.getDisconnectedCount()).isEqualTo(1);
+        assertThat(eventBus.unsubscribe("a")).isNull();
+
+        executor.runAll();
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    public void testServerSideSubscribersReceiveEveryEvent() {
+        for (SimpleEventBus.OverflowPolicy policy : SimpleEventBus.OverflowPolicy.values()) {
+            ManualExecutor executor = new ManualExecutor();
+            SimpleEventBus eventBus = new SimpleEventBus(executor, 2, policy);
+            List<String> received = new ArrayList<>();
+            List<String> receivedByClient = new ArrayList<>();
+            eventBus.subscribe("controller", (event, data) -> received.add(data));
+            eventBus.subscribe("client", lossy(receivedByClient));
+
+            for (int i = 0; i < 5; i++) {
+                eventBus.broadcast("change-event", Integer.toString(i));
+            }
+            eventBus.broadcast("change-event", "4");
+
+            executor.runAll();
+            assertThat(received).as("with %s", policy).containsExactly("0", "1", "2", "3", "4", "4");
+            assertThat(receivedByClient).as("with %s", policy).hasSizeLessThan(received.size());
+            assertThat(eventBus.unsubscribe("controller")).as("with %s", policy).isNotNull();
+        }
+    }
+
+    private static EventBus.Subscription lossy(List<String> received) {
+        return new EventBus.Subscription() {
+            @Override
+            public void onEvent(String event, String data) {
+                received.add(data);
+            }
+
+            @Override
+            public boolean isLossy() {
+                return true;
+            }
+        };
+    }
+
+    private static final class ManualExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
 }
@@ -381,10 +381,6 @@ public class IntegrationUpdateHandler extends AbstractResourceUpdateHandler<Inte
             // When an extension is updated a new entity is written
             // to the db so we can't simply lookup by ID but whe need to
             // search for the latest installed extension.
-            //
-            // This fetchIdsByPropertyValue is not really optimized
-            // as it ends up in multiple statements sent to the db, we
-            // maybe need to have a better support for this use-case.
             final Set<String> ids = dataManager.fetchIdsByPropertyValue(Extension.class,
                 "extensionId", extension.getExtensionId(),
                 "status", Extension.Status.Installed.name());
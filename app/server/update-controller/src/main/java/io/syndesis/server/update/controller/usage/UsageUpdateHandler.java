@@ -15,7 +15,11 @@
  */
 package io.syndesis.server.update.controller.usage;
 
+import java.time.Duration;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -40,16 +44,47 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Functions;
 
+/**
+ * Keeps the number of integrations using each connection and extension up to
+ * date. The ids of the connections and extensions used by each integration are
+ * kept in memory, so a change of an integration updates the uses of only the
+ * connections and extensions it started or stopped using. All uses are
+ * computed again from scratch on the first event and then periodically, on
+ * the events of the background check of the {@link
+ * io.syndesis.server.update.controller.ResourceUpdateController}.
+ */
 public final class UsageUpdateHandler implements ResourceUpdateHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(UsageUpdateHandler.class);
 
     private static final EnumSet<Kind> SUPPORTED = EnumSet.of(Kind.Integration, Kind.Extension);
 
+    private static final Duration DEFAULT_RECONCILIATION_INTERVAL = Duration.ofMinutes(10);
+
     private final DataManager dataManager;
 
+    private final long reconciliationInterval;
+
+    // events are processed by the single scheduler thread of the controller
+    private final UsageIndex connections = new UsageIndex();
+
+    private final UsageIndex extensions = new UsageIndex();
+
+    private boolean indexed;
+
+    private long lastReconciliation;
+
     public UsageUpdateHandler(final DataManager dataManager) {
+        this(dataManager, DEFAULT_RECONCILIATION_INTERVAL);
+    }
+
+    /**
+     * @param reconciliationInterval minimum time between the computations of
+     *        all uses from scratch
+     */
+    public UsageUpdateHandler(final DataManager dataManager, final Duration reconciliationInterval) {
         this.dataManager = dataManager;
+        this.reconciliationInterval = reconciliationInterval.toNanos();
     }
 
     @Override
@@ -72,15 +107,75 @@ public final class UsageUpdateHandler implements ResourceUpdateHandler {
     void processInternal(final ChangeEvent event) {
         LOG.debug("Processing event: {}", event);
 
+        final Optional<String> id = event == null ? Optional.empty() : event.getId();
+        if (!indexed || !id.isPresent() && System.nanoTime() - lastReconciliation >= reconciliationInterval) {
+            reconcile();
+            return;
+        }
+
+        if (!id.isPresent()) {
+            // background check, the uses are up to date
+            return;
+        }
+
+        final Kind kind = Kind.from(event.getKind().get());
+        if (kind == Kind.Integration) {
+            integrationChanged(id.get());
+        } else if (kind == Kind.Extension) {
+            extensionChanged(id.get());
+        }
+    }
+
+    private void reconcile() {
+        LOG.debug("Computing the uses of all connections and extensions");
+
         final ListResult<Integration> integrationsResult = dataManager.fetchAll(Integration.class);
 
         final List<Integration> integrations = integrationsResult.getItems();
 
+        connections.clear();
+        extensions.clear();
+        for (final Integration integration : integrations) {
+            integration.getId().ifPresent(integrationId -> {
+                connections.update(integrationId, integration.getConnectionIds());
+                extensions.update(integrationId, integration.getExtensionIds());
+            });
+        }
+
         updateUsageFor(Connection.class, integrations, Integration::getConnectionIds, Functions.compose(Optional::get, Connection::getId),
             UsageUpdateHandler::withUpdatedUsage);
 
         updateUsageFor(Extension.class, integrations, Integration::getExtensionIds, Extension::getExtensionId,
             UsageUpdateHandler::withUpdatedUsage);
+
+        indexed = true;
+        lastReconciliation = System.nanoTime();
+    }
+
+    private void integrationChanged(final String integrationId) {
+        final Integration integration = dataManager.fetch(Integration.class, integrationId);
+
+        final Set<String> connectionIds = integration == null ? Collections.emptySet() : integration.getConnectionIds();
+        for (final String connectionId : connections.update(integrationId, connectionIds)) {
+            final Connection connection = dataManager.fetch(Connection.class, connectionId);
+            if (connection != null) {
+                updateUsage(connection, connections.count(connectionId), UsageUpdateHandler::withUpdatedUsage);
+            }
+        }
+
+        final Set<String> extensionIds = integration == null ? Collections.emptySet() : integration.getExtensionIds();
+        for (final String extensionId : extensions.update(integrationId, extensionIds)) {
+            final int currentUse = extensions.count(extensionId);
+            dataManager.fetchAllByPropertyValue(Extension.class, "extensionId", extensionId)
+                .forEach(extension -> updateUsage(extension, currentUse, UsageUpdateHandler::withUpdatedUsage));
+        }
+    }
+
+    private void extensionChanged(final String id) {
+        final Extension extension = dataManager.fetch(Extension.class, id);
+        if (extension != null) {
+            updateUsage(extension, extensions.count(extension.getExtensionId()), UsageUpdateHandler::withUpdatedUsage);
+        }
     }
 
     private <T extends WithId<T> & WithUsage> void updateUsageFor(final Class<T> type, final List<Integration> integrations,
@@ -94,13 +189,18 @@ public final class UsageUpdateHandler implements ResourceUpdateHandler {
         for (final T item : allItems) {
             final String id = idFunction.apply(item);
 
-            final int recordedUse = item.getUses();
             final int currentUse = usage.getOrDefault(id, 0L).intValue();
 
-            if (recordedUse != currentUse) {
-                LOG.debug("Updating usage from: {} to: {}", recordedUse, currentUse);
-                dataManager.update(usageUpdater.apply(item, currentUse));
-            }
+            updateUsage(item, currentUse, usageUpdater);
+        }
+    }
+
+    private <T extends WithId<T> & WithUsage> void updateUsage(final T item, final int currentUse, final BiFunction<T, Integer, T> usageUpdater) {
+        final int recordedUse = item.getUses();
+
+        if (recordedUse != currentUse) {
+            LOG.debug("Updating usage from: {} to: {}", recordedUse, currentUse);
+            dataManager.update(usageUpdater.apply(item, currentUse));
         }
     }
 
@@ -118,4 +218,63 @@ public final class UsageUpdateHandler implements ResourceUpdateHandler {
             .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
     }
 
+    /**
+     * Ids of the integrations using a connection or an extension, and the
+     * reverse.
+     */
+    static final class UsageIndex {
+
+        private final Map<String, Set<String>> usedBy = new HashMap<>();
+
+        private final Map<String, Set<String>> uses = new HashMap<>();
+
+        /**
+         * Records the ids used by the integration.
+         * @return the ids the integration started or stopped using
+         */
+        Set<String> update(final String integrationId, final Set<String> ids) {
+            final Set<String> previous = uses.getOrDefault(integrationId, Collections.emptySet());
+
+            final Set<String> changed = new HashSet<>();
+            for (final String id : previous) {
+                if (!ids.contains(id)) {
+                    changed.add(id);
+                    remove(id, integrationId);
+                }
+            }
+            for (final String id : ids) {
+                if (!previous.contains(id)) {
+                    changed.add(id);
+                    usedBy.computeIfAbsent(id, k -> new HashSet<>()).add(integrationId);
+                }
+            }
+
+            if (ids.isEmpty()) {
+                uses.remove(integrationId);
+            } else {
+                uses.put(integrationId, new HashSet<>(ids));
+            }
+
+            return changed;
+        }
+
+        int count(final String id) {
+            return usedBy.getOrDefault(id, Collections.emptySet()).size();
+        }
+
+        void clear() {
+            usedBy.clear();
+            uses.clear();
+        }
+
+        private void remove(final String id, final String integrationId) {
+            final Set<String> integrations = usedBy.get(id);
+            if (integrations != null) {
+                integrations.remove(integrationId);
+                if (integrations.isEmpty()) {
+                    usedBy.remove(id);
+                }
+            }
+        }
+    }
 }
@@ -16,7 +16,9 @@
 package io.syndesis.server.update.controller.usage;
 
 import static java.util.Collections.emptyList;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -30,8 +32,10 @@ import io.syndesis.common.model.integration.Flow;
 import io.syndesis.common.model.integration.Integration;
 import io.syndesis.common.model.integration.Step;
 import io.syndesis.server.dao.manager.DataManager;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -214,6 +218,79 @@ public class UsageUpdateHandlerTest {
         verifyNoMoreInteractions(dataManager);
     }
 
+    @Test
+    public void changedIntegrationsShouldUpdateOnlyTheConnectionsTheyStartOrStopUsing() {
+        final Integration usesC1andC2 = testIntegration().withFlowConnections(c1, c2).id("i1").build();
+        final Integration usesC1andC3 = testIntegration().withFlowConnections(c1, c3).id("i1").build();
+        final Integration usesC1 = testIntegration().withFlowConnections(c1).id("i2").build();
+        when(dataManager.fetchAll(Integration.class)).thenReturn(ListResult.of(usesC1andC2, usesC1));
+        handler.processInternal(NOT_USED);
+        clearInvocations(dataManager);
+
+        when(dataManager.fetch(Integration.class, "i1")).thenReturn(usesC1andC3);
+        when(dataManager.fetch(Connection.class, "c2")).thenReturn(UsageUpdateHandler.withUpdatedUsage(c2, 1));
+        when(dataManager.fetch(Connection.class, "c3")).thenReturn(c3);
+
+        handler.processInternal(ChangeEvent.of("updated", "integration", "i1"));
+
+        verify(dataManager).fetch(Integration.class, "i1");
+        verify(dataManager).fetch(Connection.class, "c2");
+        verify(dataManager).fetch(Connection.class, "c3");
+        verify(dataManager).update(UsageUpdateHandler.withUpdatedUsage(c2, 0));
+        verify(dataManager).update(UsageUpdateHandler.withUpdatedUsage(c3, 1));
+        verifyNoMoreInteractions(dataManager);
+    }
+
+    @Test
+    public void deletedIntegrationsShouldNotBeCounted() {
+        final Integration usesC1 = testIntegration().withFlowConnections(c1).id("i1").build();
+        when(dataManager.fetchAll(Integration.class)).thenReturn(ListResult.of(usesC1, integrationWithExtension));
+        handler.processInternal(NOT_USED);
+        clearInvocations(dataManager);
+
+        final Extension usedExtension = UsageUpdateHandler.withUpdatedUsage(extension, 1);
+        when(dataManager.fetchAllByPropertyValue(Extension.class, "extensionId", "extension-1")).thenReturn(Stream.of(usedExtension));
+
+        handler.processInternal(ChangeEvent.of("deleted", "integration", "integration-1"));
+
+        verify(dataManager).fetch(Integration.class, "integration-1");
+        verify(dataManager).fetchAllByPropertyValue(Extension.class, "extensionId", "extension-1");
+        verify(dataManager).update(UsageUpdateHandler.withUpdatedUsage(extension, 0));
+        verifyNoMoreInteractions(dataManager);
+    }
+
+    @Test
+    public void changedExtensionsShouldHaveTheirUseCounted() {
+        when(dataManager.fetchAll(Integration.class)).thenReturn(ListResult.of(integrationWithExtension));
+        handler.processInternal(NOT_USED);
+        clearInvocations(dataManager);
+
+        final Extension newVersion = new Extension.Builder().id("extension-v2").extensionId("extension-1").build();
+        when(dataManager.fetch(Extension.class, "extension-v2")).thenReturn(newVersion);
+
+        handler.processInternal(ChangeEvent.of("created", "extension", "extension-v2"));
+
+        verify(dataManager).fetch(Extension.class, "extension-v2");
+        verify(dataManager).update(UsageUpdateHandler.withUpdatedUsage(newVersion, 1));
+        verifyNoMoreInteractions(dataManager);
+    }
+
+    @Test
+    public void backgroundChecksShouldComputeAllUsesPeriodically() {
+        final ChangeEvent check = new ChangeEvent.Builder().kind("integration").build();
+        when(dataManager.fetchAll(Integration.class)).thenReturn(ListResult.of(emptyList()));
+        handler.processInternal(check);
+        clearInvocations(dataManager);
+
+        handler.processInternal(check);
+        verifyNoMoreInteractions(dataManager);
+
+        final UsageUpdateHandler alwaysReconciling = new UsageUpdateHandler(dataManager, Duration.ZERO);
+        alwaysReconciling.processInternal(check);
+        alwaysReconciling.processInternal(check);
+        verify(dataManager, times(2)).fetchAll(Integration.class);
+    }
+
     @Test
     public void unusedConnectionsShouldHaveUseOfZero() {
         final Integration emptyIntegration = new Integration.Builder().build();
@@ -202,6 +202,12 @@ export class WithServerEvents extends React.Component<IWithEventsProps> {
       // console.log('sse.change-event: ', value);
       this.postChangeEvent(value);
     });
+    this.eventSource.addEventListener('change-events', (event: any) => {
+      this.started = true;
+      const values = JSON.parse(event.data) as IChangeEvent[];
+      // console.log('sse.change-events: ', values);
+      values.forEach(value => this.postChangeEvent(value));
+    });
     const onError = (event: any) => {
       // console.log('sse.close: ', event);
       this.onFailure(event);
@@ -228,6 +234,12 @@ export class WithServerEvents extends React.Component<IWithEventsProps> {
           // console.log('ws.change-event: ', value);
           this.postChangeEvent(value);
           break;
+        case 'change-events': {
+          const values = JSON.parse(messageEvent.data) as IChangeEvent[];
+          // console.log('ws.change-events: ', values);
+          values.forEach(v => this.postChangeEvent(v));
+          break;
+        }
         default:
         // I guess we don't care what happens here...
         // console.log('ws.unknown-message: ', event);